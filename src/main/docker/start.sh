@@ -0,0 +1,13 @@
+#!/bin/sh
+# Lanceur de l'image : utilise l'archive AppCDS produite au build par "RestServer --train"
+# APP_CDS=off désactive l'archive ; JAVA_OPTS complète la ligne de commande de la JVM.
+set -e
+cd /app
+
+CDS_OPTS=""
+if [ "${APP_CDS:-on}" != "off" ] && [ -f /app/app.jsa ]; then
+    # -Xshare:auto : si l'archive est incompatible, la JVM démarre sans elle
+    CDS_OPTS="-XX:SharedArchiveFile=/app/app.jsa -Xshare:auto"
+fi
+
+exec java $CDS_OPTS $JAVA_OPTS -jar app.jar "$@"
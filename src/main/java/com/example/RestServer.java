@@ -1,75 +1,224 @@
 package com.example;
 
 import com.example.config.RestApplication;
+import com.example.config.RuntimeSettings;
+import com.example.config.RuntimeSettingsWatcher;
+import com.example.feed.ChangeFeed;
+import com.example.index.CompactProductStore;
+import com.example.index.CountingBloomFilter;
+import com.example.index.FullTextIndex;
+import com.example.index.InventoryStats;
+import com.example.index.PriceIndex;
+import com.example.index.PriceIndexBenchmark;
+import com.example.index.ProductCacheBenchmark;
+import com.example.index.ProductSearchIndex;
+import com.example.index.RowCounts;
+import com.example.index.SuggestIndex;
+import com.example.inventory.StockWriteBehind;
+import com.example.lifecycle.ApplicationLifecycle;
+import com.example.lifecycle.BackgroundStartup;
+import com.example.lifecycle.GracefulShutdown;
+import com.example.logging.AsyncLogging;
+import com.example.logging.ShutdownAwareLogManager;
+import com.example.monitoring.HealthMonitor;
+import com.example.monitoring.RequestReceiveProbe;
+import com.example.monitoring.StartupTimings;
+import com.example.sharding.ShardIds;
+import com.example.sharding.ShardRebalancer;
 import com.example.util.JPAUtil;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
+import java.io.IOException;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Serveur REST utilisant Grizzly et Jersey
  */
 public class RestServer {
+
+    static {
+        // Avant le premier Logger : conserve les handlers jusqu'à la fin de l'arrêt progressif
+        System.getProperties().putIfAbsent("java.util.logging.manager", ShutdownAwareLogManager.class.getName());
+    }
     
     private static final Logger logger = Logger.getLogger(RestServer.class.getName());
+    private static final URI BASE_URI = URI.create("http://0.0.0.0:3000/");
     private static HttpServer server;
 
     /**
      * Démarre le serveur Grizzly HTTP
      */
     public static HttpServer startServer() {
+        // Nœud des identifiants de produits exigé avant d'ouvrir le port
+        ShardIds.getInstance().node();
         // Initialiser JPA pour la production avec la persistence-unit "example-pu"
-        try {
-            logger.info("Initialisation de JPA pour la production...");
-            // Le fichier est dans src/main/resources/vars/flyway.conf, donc accessible via classpath comme "vars/flyway.conf"
-            JPAUtil.init("example-pu", "/app/config/flyway.conf");
-            logger.info("JPA initialisé avec succès");
-        } catch (Exception e) {
-            logger.severe("Erreur lors de l'initialisation de JPA: " + e.getMessage());
-            throw new RuntimeException("Impossible de démarrer le serveur: échec de l'initialisation JPA", e);
-        }
-        
-        // Créer la configuration des ressources
-        final ResourceConfig rc = ResourceConfig.forApplicationClass(RestApplication.class);
-        
-        // Ajouter les packages pour la sérialisation JSON
-        rc.packages("com.example.controller");
-        rc.register(org.glassfish.jersey.jackson.JacksonFeature.class);
+        return startServer(() -> JPAUtil.init("example-pu", "/app/config/flyway.conf"), BASE_URI);
+    }
+
+    /**
+     * Ouvre le port immédiatement puis exécute l'initialisation JPA fournie en arrière-plan ;
+     * les endpoints de données répondent 503 (Retry-After) jusqu'à ce qu'elle aboutisse
+     */
+    static HttpServer startServer(Runnable jpaInitializer, URI baseUri) {
+        ApplicationLifecycle lifecycle = ApplicationLifecycle.getInstance();
+
+        // Créer la configuration des ressources (initialisation Jersey comprise dans la phase http.start)
+        long httpStart = System.nanoTime();
+        // Enregistrement explicite des ressources et providers (pas de scan de packages)
+        final ResourceConfig rc = new RestApplication();
         
         // Créer et démarrer une nouvelle instance du serveur Grizzly HTTP
-        server = GrizzlyHttpServerFactory.createHttpServer(URI.create("http://0.0.0.0:3000/"), rc);
+        // Les sondes Grizzly doivent être enregistrées avant le démarrage du listener
+        server = GrizzlyHttpServerFactory.createHttpServer(baseUri, rc, false);
+        server.getServerConfiguration().getMonitoringConfig().getWebServerConfig()
+                .addProbes(new RequestReceiveProbe());
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new RuntimeException("Impossible de démarrer le serveur HTTP", e);
+        }
+        StartupTimings.record("http.start", httpStart);
+        logger.log(Level.INFO, "Port ouvert sur {0}, initialisation de JPA en arrière-plan", baseUri);
+
+        // Paramètres modifiables à chaud : fichier surveillé et /admin/settings
+        RuntimeSettings settings = RuntimeSettings.getInstance();
+        registerWorkerPoolSettings(server, settings);
+        JPAUtil.registerRuntimeSettings(settings);
+        CompactProductStore.getInstance().registerRuntimeSettings(settings);
+        RuntimeSettingsWatcher settingsWatcher = new RuntimeSettingsWatcher(settings);
+        settingsWatcher.start();
+
+        new BackgroundStartup(() -> {
+            long initStart = System.nanoTime();
+            jpaInitializer.run();
+            StartupTimings.record("jpa.ready", initStart);
+        }, () -> {
+            HealthMonitor.getInstance().start();
+            // Rejoue le journal des stocks avant d'accepter les mises à jour différées
+            StockWriteBehind.getInstance().start();
+            // Index construits en arrière-plan, la base répond en attendant
+            PriceIndex.getInstance().start();
+            ProductSearchIndex.getInstance().start();
+            FullTextIndex.getInstance().start();
+            InventoryStats.getInstance().start();
+            CompactProductStore.getInstance().start();
+            ChangeFeed.getInstance().start();
+            SuggestIndex.forProductNames().start();
+            SuggestIndex.forUsernames().start();
+            CountingBloomFilter.forUsernames().start();
+            CountingBloomFilter.forEmails().start();
+            RowCounts.forProducts().start();
+            RowCounts.forUsers().start();
+            // Les paramètres du pool de connexions ne s'appliquent qu'une fois JPA initialisé
+            settingsWatcher.reload();
+            StartupTimings.markReady();
+            logger.log(Level.INFO, "JPA initialisé, service prêt. Phases de démarrage : {0}", StartupTimings.summary());
+        }, lifecycle).start();
         
-        // Ajouter un shutdown hook pour nettoyer les ressources
+        // Shutdown hook : drainage des requêtes et transactions avant la fermeture de l'EntityManagerFactory
+        lifecycle.onShutdown("health-monitor", () -> HealthMonitor.getInstance().stop());
+        lifecycle.onShutdown("settings-watcher", settingsWatcher::stop);
+        lifecycle.onShutdown("stock-write-behind", () -> StockWriteBehind.getInstance().stop());
+        lifecycle.onShutdown("fulltext-index", () -> FullTextIndex.getInstance().flush());
+        lifecycle.onShutdown("inventory-stats", () -> InventoryStats.getInstance().stop());
+        lifecycle.onShutdown("product-cache", () -> CompactProductStore.getInstance().stop());
+        lifecycle.onShutdown("change-feed", () -> ChangeFeed.getInstance().stop());
+        final HttpServer started = server;
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Arrêt du serveur...");
-            if (server != null) {
-                server.shutdownNow();
-            }
-            JPAUtil.closeEntityManagerFactory();
-            logger.info("Serveur arrêté");
-        }));
+            new GracefulShutdown(started, lifecycle).run();
+            AsyncLogging.shutdown();
+        }, "graceful-shutdown"));
         
         return server;
     }
     
     /**
-     * Méthode principale pour démarrer le serveur
+     * Taille et file d'attente du pool de workers Grizzly ; chaque modification remplace le pool,
+     * les tâches en attente sont transférées au nouveau et les requêtes en cours se terminent
+     */
+    private static void registerWorkerPoolSettings(HttpServer httpServer, RuntimeSettings settings) {
+        TCPNIOTransport transport = httpServer.getListeners().iterator().next().getTransport();
+        settings.register("server.workers.core", 1, 1024,
+                () -> workerPoolConfig(transport).getCorePoolSize(),
+                value -> reconfigureWorkerPool(transport, config -> config.setCorePoolSize(value)));
+        settings.register("server.workers.max", 1, 1024,
+                () -> workerPoolConfig(transport).getMaxPoolSize(),
+                value -> reconfigureWorkerPool(transport, config -> config.setMaxPoolSize(value)));
+        // -1 : file non bornée
+        settings.register("server.workers.queueLimit", -1, 1_000_000,
+                () -> workerPoolConfig(transport).getQueueLimit(),
+                value -> reconfigureWorkerPool(transport, config -> config.setQueueLimit(value)));
+        settings.requireAtMost("server.workers.core", "server.workers.max");
+    }
+
+    private static ThreadPoolConfig workerPoolConfig(TCPNIOTransport transport) {
+        if (transport.getWorkerThreadPool() instanceof GrizzlyExecutorService pool) {
+            return pool.getConfiguration();
+        }
+        return transport.getWorkerThreadPoolConfig();
+    }
+
+    private static void reconfigureWorkerPool(TCPNIOTransport transport, Consumer<ThreadPoolConfig> change) {
+        if (!(transport.getWorkerThreadPool() instanceof GrizzlyExecutorService pool)) {
+            throw new IllegalStateException("Pool de workers non reconfigurable");
+        }
+        ThreadPoolConfig config = pool.getConfiguration().copy();
+        change.accept(config);
+        pool.reconfigure(config);
+    }
+
+    /**
+     * Méthode principale pour démarrer le serveur ; avec --train, exécution d'entraînement AppCDS,
+     * avec --rebalance-shards, rééquilibrage des produits entre shards (voir ShardRebalancer),
+     * avec --benchmark-price-index, comparaison de l'index des prix et de la requête SQL,
+     * avec --benchmark-product-cache, tas occupé par produit en cache (voir ProductCacheBenchmark)
      */
     public static void main(String[] args) {
+        AsyncLogging.install();
+        if (Arrays.asList(args).contains("--train")) {
+            // Exécution d'entraînement AppCDS : voir TrainingRun
+            System.exit(TrainingRun.run());
+        }
+        if (Arrays.asList(args).contains("--rebalance-shards")) {
+            exitAfterLogs(ShardRebalancer.run());
+        }
+        if (Arrays.asList(args).contains("--benchmark-price-index")) {
+            exitAfterLogs(PriceIndexBenchmark.run());
+        }
+        if (Arrays.asList(args).contains("--benchmark-product-cache")) {
+            exitAfterLogs(ProductCacheBenchmark.run());
+        }
         try {
             startServer();
-            logger.info("Serveur démarré sur http://0.0.0.0:3000/");
+            logger.log(Level.INFO, "Serveur démarré sur {0}", BASE_URI);
             
             Thread.currentThread().join();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.info("Serveur interrompu");
         } catch (Exception e) {
-            logger.severe("Erreur fatale lors du démarrage du serveur: " + e.getMessage());
+            logger.log(Level.SEVERE, "Erreur fatale lors du démarrage du serveur", e);
+            AsyncLogging.shutdown();
             System.exit(1);
         }
     }
+
+    /**
+     * Termine un outil en ligne de commande après l'écriture des journaux asynchrones en attente
+     * (sans serveur, aucun arrêt progressif ne les écrit)
+     */
+    private static void exitAfterLogs(int status) {
+        AsyncLogging.shutdown();
+        System.exit(status);
+    }
 }
@@ -0,0 +1,152 @@
+package com.example;
+
+import com.example.lifecycle.ApplicationLifecycle;
+import com.example.sharding.ShardIds;
+import com.example.util.JPAUtil;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Exécution d'entraînement AppCDS (RestServer --train) : démarre le serveur sur une base H2
+ * embarquée, appelle chaque endpoint des contrôleurs utilisateurs, produits et santé afin de
+ * charger le graphe de classes Jersey/Hibernate/Jackson, puis rend la main pour un arrêt propre.
+ * Lancée avec -XX:ArchiveClassesAtExit, la JVM écrit l'archive des classes chargées à la sortie.
+ */
+final class TrainingRun {
+
+    private static final Logger logger = Logger.getLogger(TrainingRun.class.getName());
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final URI baseUri;
+    private int failures;
+
+    private TrainingRun(URI baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * Retourne le code de sortie : 0 si tous les endpoints ont répondu sans erreur serveur
+     */
+    static int run() {
+        URI baseUri = URI.create("http://127.0.0.1:" + Integer.getInteger("train.port", 3000) + "/");
+        ShardIds.useSingleNodeUnlessConfigured();
+        RestServer.startServer(() -> JPAUtil.init("example-pu", "classpath:vars/flyway_train.conf",
+                JPAUtil.embeddedDatabase()), baseUri);
+
+        TrainingRun training = new TrainingRun(baseUri);
+        int iterations = Integer.getInteger("train.iterations", 2);
+        try {
+            // Requêtes pendant le démarrage : chemin 503 du filtre de disponibilité
+            training.exerciseHealth();
+            training.call("GET", "api/products/count", null, true);
+            if (!ApplicationLifecycle.getInstance().awaitReady(Duration.ofMinutes(5))) {
+                logger.severe("Le service n'est pas devenu prêt");
+                return 1;
+            }
+            for (int i = 0; i < iterations; i++) {
+                training.exerciseUsers(i);
+                training.exerciseProducts(i);
+                training.exerciseHealth();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Échec de l'exécution d'entraînement", e);
+            return 1;
+        }
+        logger.log(Level.INFO, "Exécution d''entraînement terminée ({0} échec(s))", training.failures);
+        return training.failures == 0 ? 0 : 1;
+    }
+
+    private void exerciseUsers(int iteration) throws Exception {
+        String user = "{\"username\":\"train" + iteration + "\",\"email\":\"train" + iteration
+                + "@example.com\",\"firstName\":\"Train\",\"lastName\":\"Run\"}";
+        String id = idOf(call("POST", "api/users", user));
+        // Doublon : chemin « peut-être présent » du filtre d'unicité quand il est actif
+        call("POST", "api/users", user);
+        call("POST", "api/users", "{\"email\":\"invalid@example.com\"}");
+        call("GET", "api/users", null);
+        call("GET", "api/users/" + id, null);
+        call("GET", "api/users/0", null);
+        call("PUT", "api/users/" + id, user.replace("\"Run\"", "\"Updated\""));
+        call("GET", "api/users/count", null);
+        // Flux des changements : 503 quand il est désactivé
+        call("GET", "api/users/changes?since=0&timeout=0", null, true);
+        call("DELETE", "api/users/" + id, null);
+    }
+
+    private void exerciseProducts(int iteration) throws Exception {
+        String product = "{\"name\":\"Train " + iteration + "\",\"description\":\"AppCDS\",\"price\":19.99,"
+                + "\"quantity\":5,\"category\":\"Training\"}";
+        String id = idOf(call("POST", "api/products", product));
+        call("POST", "api/products", "{\"name\":\"\"}");
+        call("GET", "api/products", null);
+        call("GET", "api/products/" + id, null);
+        call("GET", "api/products/0", null);
+        call("PUT", "api/products/" + id, product.replace("19.99", "24.99"));
+        // Quantité seule : chemin de l'écriture différée des stocks quand elle est active
+        call("PUT", "api/products/" + id, product.replace("19.99", "24.99").replace("\"quantity\":5", "\"quantity\":3"));
+        call("PATCH", "api/products/" + id + "/stock", "{\"delta\":2}");
+        call("PATCH", "api/products/" + id + "/stock", "{\"delta\":-1000}");
+        call("GET", "api/products/category/Training", null);
+        call("GET", "api/products/instock", null);
+        call("GET", "api/products/price/50", null);
+        call("GET", "api/products/price/50?limit=5", null);
+        call("GET", "api/products/search?category=Training&inStock=true&minPrice=10&maxPrice=30", null);
+        call("GET", "api/products/fulltext?q=train+appcds&limit=5", null);
+        call("GET", "api/products/suggest?prefix=tra&limit=5", null);
+        call("GET", "api/users/suggest?prefix=tra", null);
+        call("GET", "api/products/count", null);
+        call("GET", "api/products/count?category=Training&inStock=true", null);
+        call("GET", "api/products/count?exact=true", null);
+        call("GET", "api/products/stats", null);
+        call("GET", "api/products/changes?since=0&timeout=0", null, true);
+        call("GET", "api/products/changes", null, true);
+        call("DELETE", "api/products/" + id, null);
+    }
+
+    private void exerciseHealth() throws Exception {
+        call("GET", "actuator/health", null);
+        // 503 tant que JPA ou la première vérification de santé ne sont pas terminés
+        call("GET", "actuator/health/readiness", null, true);
+    }
+
+    private String call(String method, String path, String body) throws Exception {
+        return call(method, path, body, false);
+    }
+
+    private String call(String method, String path, String body, boolean unavailableAllowed) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        boolean unavailable = response.statusCode() == 503 && unavailableAllowed;
+        if (response.statusCode() >= 500 && !unavailable) {
+            failures++;
+            logger.log(Level.WARNING, "{0} /{1} -> {2} {3}",
+                    new Object[]{method, path, response.statusCode(), response.body()});
+        }
+        return response.body();
+    }
+
+    private static String idOf(String body) {
+        Matcher matcher = ID.matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Identifiant absent de la réponse: " + body);
+        }
+        return matcher.group(1);
+    }
+}
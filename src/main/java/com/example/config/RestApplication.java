@@ -1,27 +1,79 @@
 package com.example.config;
 
+import com.example.controller.HealthCheckController;
+import com.example.controller.MetricsController;
 import com.example.controller.ProductController;
+import com.example.controller.ProfilingController;
+import com.example.controller.SettingsController;
 import com.example.controller.UserController;
+import com.example.feed.ChangeFeed;
+import com.example.index.CompactProductStore;
+import com.example.index.CountingBloomFilter;
+import com.example.index.FullTextIndex;
+import com.example.index.InventoryStats;
+import com.example.index.ProductSearchIndex;
+import com.example.index.RowCounts;
+import com.example.index.SuggestIndex;
+import com.example.inventory.StockWriteBehind;
+import com.example.lifecycle.ReadinessGateFilter;
+import com.example.logging.RequestIdFilter;
+import com.example.monitoring.AllocationFilter;
+import com.example.monitoring.FlightRecorderFilter;
+import com.example.monitoring.RequestTimingFilter;
+import com.example.repository.ProductRepository;
+import com.example.repository.UserRepository;
+import com.example.security.AdminTokenFilter;
+import com.example.service.ProductService;
+import com.example.service.UserService;
+import com.example.util.ReadYourWritesFilter;
 import jakarta.ws.rs.ApplicationPath;
-import jakarta.ws.rs.core.Application;
-
-import java.util.HashSet;
-import java.util.Set;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.glassfish.jersey.server.ResourceConfig;
 
 /**
- * Classe d'application REST pour configurer JAX-RS
+ * Configuration JAX-RS : contrôleurs, services et repositories sont construits une seule fois ici
+ * et partagés par toutes les requêtes ; tout est enregistré explicitement, sans scan du classpath.
  */
 @ApplicationPath("/")
-public class RestApplication extends Application {
-    
-    @Override
-    public Set<Class<?>> getClasses() {
-        Set<Class<?>> classes = new HashSet<>();
-        
-        // Enregistrer les contrôleurs
-        classes.add(UserController.class);
-        classes.add(ProductController.class);
-        
-        return classes;
+public class RestApplication extends ResourceConfig {
+
+    public RestApplication() {
+        // Services et repositories sans état, partagés
+        ChangeFeed changeFeed = ChangeFeed.getInstance();
+        UserService userService = new UserService(new UserRepository(), SuggestIndex.forUsernames(),
+                CountingBloomFilter.forUsernames(), CountingBloomFilter.forEmails(), RowCounts.forUsers(), changeFeed);
+        ProductService productService = new ProductService(new ProductRepository(), StockWriteBehind.getInstance(),
+                ProductSearchIndex.getInstance(), FullTextIndex.getInstance(), SuggestIndex.forProductNames(),
+                RowCounts.forProducts(), InventoryStats.getInstance(), CompactProductStore.getInstance(), changeFeed);
+
+        // Enregistrer les contrôleurs (instances uniques)
+        register(new UserController(userService, changeFeed));
+        register(new ProductController(productService, changeFeed));
+        register(new HealthCheckController());
+        register(new MetricsController());
+        register(new ProfilingController());
+        register(new SettingsController());
+
+        // Identifiant de requête pour les journaux, puis filtres de mesure
+        register(RequestIdFilter.class);
+        register(RequestTimingFilter.class);
+        register(FlightRecorderFilter.class);
+        register(AllocationFilter.class);
+
+        // Lectures sur la base primaire pendant et juste après une écriture du client
+        register(ReadYourWritesFilter.class);
+
+        // Endpoints de données indisponibles tant que l'application n'est pas prête
+        register(ReadinessGateFilter.class);
+
+        // Authentification des endpoints d'administration
+        register(AdminTokenFilter.class);
+
+        // Sérialisation JSON
+        register(JacksonFeature.class);
+
+        // Flux des changements en Server-Sent Events
+        register(SseFeature.class);
     }
 }
@@ -0,0 +1,175 @@
+package com.example.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Paramètres modifiables à chaud (pool de workers, pool de connexions, caches, files d'attente).
+ * Chaque composant enregistre ses paramètres avec leurs bornes ; une demande de modification est
+ * entièrement validée avant d'être appliquée, et chaque changement est journalisé et rapporté.
+ */
+public class RuntimeSettings {
+
+    private static final Logger logger = Logger.getLogger(RuntimeSettings.class.getName());
+    private static final RuntimeSettings INSTANCE = new RuntimeSettings();
+
+    /** Valeur retournée par un paramètre dont le composant n'est pas encore disponible */
+    public static final int UNAVAILABLE = Integer.MIN_VALUE;
+
+    private final Map<String, Setting> settings = new ConcurrentHashMap<>();
+    private final List<String[]> orderings = new ArrayList<>();
+
+    public static RuntimeSettings getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Enregistre (ou remplace) un paramètre entier borné ; current retourne UNAVAILABLE
+     * et apply lève IllegalStateException tant que le composant n'existe pas
+     */
+    public void register(String name, int min, int max, IntSupplier current, IntConsumer apply) {
+        settings.put(name, new Setting(name, min, max, current, apply));
+    }
+
+    /**
+     * Contrainte entre deux paramètres : valeur(lower) <= valeur(upper)
+     */
+    public synchronized void requireAtMost(String lower, String upper) {
+        orderings.add(new String[] {lower, upper});
+    }
+
+    public boolean isRegistered(String name) {
+        return settings.containsKey(name);
+    }
+
+    /**
+     * Valeur courante et bornes de chaque paramètre, par ordre alphabétique
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        settings.keySet().stream().sorted().forEach(name -> {
+            Setting setting = settings.get(name);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            int value = setting.current().getAsInt();
+            entry.put("value", value == UNAVAILABLE ? null : value);
+            entry.put("min", setting.min());
+            entry.put("max", setting.max());
+            result.put(name, entry);
+        });
+        return result;
+    }
+
+    /**
+     * Valide puis applique les modifications demandées.
+     * Rapport par paramètre : previous/value, unchanged, ou error si l'application a échoué.
+     *
+     * @throws IllegalArgumentException si une valeur est inconnue, non entière, hors bornes
+     *         ou viole une contrainte ; rien n'est alors appliqué
+     */
+    public synchronized Map<String, Object> apply(Map<String, String> changes) {
+        Map<String, Integer> requested = validate(changes);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (String name : applyOrder(requested)) {
+            Setting setting = settings.get(name);
+            int previous = setting.current().getAsInt();
+            int value = requested.get(name);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            if (previous == value) {
+                entry.put("unchanged", value);
+            } else {
+                try {
+                    setting.apply().accept(value);
+                    entry.put("previous", previous == UNAVAILABLE ? null : previous);
+                    entry.put("value", value);
+                    logger.log(Level.INFO, "Paramètre {0} : {1,number,#} -> {2,number,#}",
+                            new Object[] {setting.name(), previous, value});
+                } catch (RuntimeException e) {
+                    entry.put("error", e.getMessage());
+                    logger.log(Level.WARNING, "Paramètre {0} non appliqué : {1}",
+                            new Object[] {setting.name(), e.getMessage()});
+                }
+            }
+            report.put(name, entry);
+        }
+        return report;
+    }
+
+    /**
+     * Ordre d'application respectant les contraintes à chaque étape : la borne supérieure
+     * d'abord si elle augmente, la borne inférieure d'abord sinon
+     */
+    private List<String> applyOrder(Map<String, Integer> requested) {
+        List<String> order = new ArrayList<>(requested.keySet());
+        for (String[] ordering : orderings) {
+            int lowerIndex = order.indexOf(ordering[0]);
+            int upperIndex = order.indexOf(ordering[1]);
+            if (lowerIndex < 0 || upperIndex < 0) {
+                continue;
+            }
+            boolean upperFirst = requested.get(ordering[1]) >= currentValue(ordering[1]);
+            if (upperFirst == (lowerIndex < upperIndex)) {
+                order.set(lowerIndex, ordering[1]);
+                order.set(upperIndex, ordering[0]);
+            }
+        }
+        return order;
+    }
+
+    private Map<String, Integer> validate(Map<String, String> changes) {
+        List<String> errors = new ArrayList<>();
+        Map<String, Integer> requested = new LinkedHashMap<>();
+        changes.keySet().stream().sorted().forEach(name -> {
+            Setting setting = settings.get(name);
+            String raw = changes.get(name);
+            if (setting == null) {
+                errors.add(name + " : paramètre inconnu");
+                return;
+            }
+            int value;
+            try {
+                value = Integer.parseInt(raw == null ? "" : raw.trim());
+            } catch (NumberFormatException e) {
+                errors.add(name + " : valeur entière attendue (" + raw + ")");
+                return;
+            }
+            if (value < setting.min() || value > setting.max()) {
+                errors.add(name + " : " + value + " hors de [" + setting.min() + ", " + setting.max() + "]");
+                return;
+            }
+            requested.put(name, value);
+        });
+
+        for (String[] ordering : orderings) {
+            if (!requested.containsKey(ordering[0]) && !requested.containsKey(ordering[1])) {
+                continue;
+            }
+            int lower = requested.getOrDefault(ordering[0], currentValue(ordering[0]));
+            int upper = requested.getOrDefault(ordering[1], currentValue(ordering[1]));
+            if (lower != UNAVAILABLE && upper != UNAVAILABLE && lower > upper) {
+                errors.add(ordering[0] + " (" + lower + ") doit être inférieur ou égal à "
+                        + ordering[1] + " (" + upper + ")");
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", errors));
+        }
+        return requested;
+    }
+
+    private int currentValue(String name) {
+        Setting setting = settings.get(name);
+        return setting != null ? setting.current().getAsInt() : UNAVAILABLE;
+    }
+
+    private record Setting(String name, int min, int max, IntSupplier current, IntConsumer apply) {
+    }
+}
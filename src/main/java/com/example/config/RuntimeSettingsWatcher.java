@@ -0,0 +1,125 @@
+package com.example.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Surveille le fichier de paramètres (settings.file, par défaut /app/config/runtime.properties,
+ * à côté de flyway.conf) et applique son contenu via RuntimeSettings à chaque modification.
+ * Le fichier décrit l'état souhaité : les valeurs inchangées ne sont pas réappliquées.
+ */
+public class RuntimeSettingsWatcher {
+
+    private static final Logger logger = Logger.getLogger(RuntimeSettingsWatcher.class.getName());
+
+    private final Path file;
+    private final RuntimeSettings settings;
+    private volatile WatchService watchService;
+
+    public RuntimeSettingsWatcher(RuntimeSettings settings) {
+        this(Path.of(System.getProperty("settings.file", "/app/config/runtime.properties")), settings);
+    }
+
+    public RuntimeSettingsWatcher(Path file, RuntimeSettings settings) {
+        this.file = file.toAbsolutePath();
+        this.settings = settings;
+    }
+
+    /**
+     * Applique le fichier s'il existe puis surveille son répertoire sur un thread démon ;
+     * sans répertoire de configuration, seul l'endpoint d'administration reste disponible
+     */
+    public synchronized void start() {
+        reload();
+        Path directory = file.getParent();
+        if (watchService != null || directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Surveillance de " + directory + " impossible", e);
+            return;
+        }
+        Thread thread = new Thread(this::watch, "settings-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.log(Level.INFO, "Paramètres modifiables à chaud surveillés dans {0}", file);
+    }
+
+    public void stop() {
+        WatchService current = watchService;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Fermeture du WatchService", e);
+            }
+        }
+    }
+
+    /**
+     * Lit le fichier et applique ses valeurs ; retourne le rapport, ou null si rien n'a été appliqué
+     */
+    public Map<String, Object> reload() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Lecture de " + file + " impossible", e);
+            return null;
+        }
+        Map<String, String> changes = new LinkedHashMap<>();
+        properties.stringPropertyNames().forEach(name -> changes.put(name, properties.getProperty(name)));
+        try {
+            Map<String, Object> report = settings.apply(changes);
+            logger.log(Level.INFO, "Paramètres de {0} appliqués : {1}", new Object[] {file.getFileName(), report});
+            return report;
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.WARNING, "Paramètres de {0} rejetés : {1}", new Object[] {file.getFileName(), e.getMessage()});
+            return null;
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path name && name.equals(file.getFileName())) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    reload();
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Arrêt demandé par stop()
+        }
+    }
+}
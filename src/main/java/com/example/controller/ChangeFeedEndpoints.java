@@ -0,0 +1,185 @@
+package com.example.controller;
+
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Attente longue et flux SSE des changements d'une entité, communs aux contrôleurs des produits
+ * et des utilisateurs ; aucun thread de requête n'est bloqué pendant l'attente
+ */
+final class ChangeFeedEndpoints {
+
+    private static final Logger logger = Logger.getLogger(ChangeFeedEndpoints.class.getName());
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+    private static final int MAX_TIMEOUT_SECONDS = 60;
+
+    private ChangeFeedEndpoints() {
+    }
+
+    /**
+     * Changements postérieurs à since, dès qu'il y en a ou au bout de timeout secondes (page vide) ;
+     * sans since, page vide portant le seq courant
+     */
+    static void longPoll(ChangeFeed changeFeed, String entity, Long since, Integer limit, Integer timeout,
+                         AsyncResponse asyncResponse) {
+        if (changeFeed == null || !changeFeed.isReady()) {
+            asyncResponse.resume(unavailable(changeFeed));
+            return;
+        }
+        if (since == null) {
+            asyncResponse.resume(Response.ok(page(List.of(), changeFeed.lastSeq())).build());
+            return;
+        }
+        if (since < 0) {
+            asyncResponse.resume(badRequest("Le paramètre since doit être positif ou nul"));
+            return;
+        }
+        if (limit != null && limit <= 0) {
+            asyncResponse.resume(badRequest("Le paramètre limit doit être strictement positif"));
+            return;
+        }
+        int max = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        int seconds = timeout == null ? DEFAULT_TIMEOUT_SECONDS : Math.max(0, Math.min(timeout, MAX_TIMEOUT_SECONDS));
+        AtomicReference<Runnable> cancel = new AtomicReference<>();
+        if (seconds > 0) {
+            asyncResponse.setTimeoutHandler(response -> {
+                Runnable action = cancel.get();
+                if (action != null) {
+                    action.run();
+                }
+            });
+            asyncResponse.setTimeout(seconds, TimeUnit.SECONDS);
+        }
+        try {
+            cancel.set(changeFeed.await(entity, since, max, page -> asyncResponse.resume(response(page))));
+            if (seconds == 0) {
+                cancel.get().run();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture des changements (" + entity + ") depuis le seq " + since, e);
+            asyncResponse.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build());
+        }
+    }
+
+    /**
+     * Flux SSE des changements postérieurs à Last-Event-ID (reconnexion) ou à since, sinon des suivants
+     */
+    static void stream(ChangeFeed changeFeed, String entity, Long since, String lastEventId,
+                       SseEventSink sink, Sse sse) {
+        if (changeFeed == null || !changeFeed.isReady()) {
+            throw new WebApplicationException(unavailable(changeFeed));
+        }
+        long cursor;
+        try {
+            cursor = lastEventId != null && !lastEventId.isBlank() ? Long.parseLong(lastEventId.trim())
+                    : since != null ? since : changeFeed.lastSeq();
+        } catch (NumberFormatException e) {
+            throw new WebApplicationException(badRequest("En-tête Last-Event-ID invalide : " + lastEventId));
+        }
+        if (cursor < 0) {
+            throw new WebApplicationException(badRequest("Le paramètre since doit être positif ou nul"));
+        }
+        // Premier envoi : en-têtes transmis aussitôt, avant tout changement
+        sink.send(sse.newEventBuilder().comment("seq " + cursor).build());
+        changeFeed.subscribe(entity, cursor, new SseSubscriber(sink, sse));
+    }
+
+    private static Response response(ChangeFeed.Page page) {
+        if (page.isExpired()) {
+            return Response.status(Response.Status.GONE)
+                    .entity("{\"error\": \"Changements supprimés après la rétention, resynchronisez à partir "
+                            + "d'une copie complète\", \"oldestSeq\": " + page.getNext() + "}").build();
+        }
+        return Response.ok(page(page.getChanges(), page.getNext())).build();
+    }
+
+    private static Map<String, Object> page(List<Change> changes, long next) {
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("changes", changes);
+        page.put("next", next);
+        return page;
+    }
+
+    private static Response unavailable(ChangeFeed changeFeed) {
+        String reason = changeFeed == null || !changeFeed.isEnabled()
+                ? "Flux de changements désactivé (-Dchange.feed.enabled=true)"
+                : "Flux de changements pas encore prêt";
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).type(MediaType.APPLICATION_JSON)
+                .entity("{\"error\": \"" + reason + "\"}").build();
+    }
+
+    private static Response badRequest(String message) {
+        return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON)
+                .entity("{\"error\": \"" + message + "\"}").build();
+    }
+
+    /**
+     * Client SSE : un événement par changement (id = seq, nom = opération, données JSON)
+     */
+    private static final class SseSubscriber implements ChangeFeed.Subscriber {
+        private final SseEventSink sink;
+        private final Sse sse;
+
+        SseSubscriber(SseEventSink sink, Sse sse) {
+            this.sink = sink;
+            this.sse = sse;
+        }
+
+        @Override
+        public boolean send(Change change) {
+            return send(sse.newEventBuilder().id(Long.toString(change.getSeq())).name(change.getOperation())
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE).data(Change.class, change));
+        }
+
+        @Override
+        public boolean heartbeat() {
+            return send(sse.newEventBuilder().comment("heartbeat"));
+        }
+
+        @Override
+        public void expired(long firstSeq) {
+            send(sse.newEventBuilder().name("expired").mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(String.class, "{\"oldestSeq\": " + firstSeq + "}"));
+        }
+
+        private boolean send(OutboundSseEvent.Builder event) {
+            if (sink.isClosed()) {
+                return false;
+            }
+            try {
+                sink.send(event.build());
+                return !sink.isClosed();
+            } catch (IllegalStateException e) {
+                // Client parti entre-temps
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                logger.log(Level.FINE, "Fermeture du flux SSE", e);
+            }
+        }
+    }
+}
@@ -2,33 +2,77 @@ package com.example.controller;
 
 import java.util.HashMap;
 import java.util.Map;
+
+import com.example.lifecycle.ApplicationLifecycle;
+import com.example.monitoring.HealthMonitor;
+import com.example.monitoring.HealthReport;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+/**
+ * Endpoints de santé : servent le dernier rapport du HealthMonitor sans interroger la base
+ */
 @Path("/actuator/health")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class HealthCheckController {
 
-   @GET
-public Response health() {
-    try {
-        Map<String, Object> status = new HashMap<>();
-        status.put("status", "UP");
-        status.put("timestamp", System.currentTimeMillis());
+    private final HealthMonitor healthMonitor;
+    private final ApplicationLifecycle lifecycle;
+
+    public HealthCheckController() {
+        this(HealthMonitor.getInstance(), ApplicationLifecycle.getInstance());
+    }
+
+    public HealthCheckController(HealthMonitor healthMonitor, ApplicationLifecycle lifecycle) {
+        this.healthMonitor = healthMonitor;
+        this.lifecycle = lifecycle;
+    }
 
+    /**
+     * Liveness : le processus répond et le moniteur de santé tourne (répond aussi pendant le démarrage)
+     * GET /actuator/health
+     */
+    @GET
+    public Response health() {
+        if (lifecycle.getState() == ApplicationLifecycle.State.FAILED) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                           .entity(lifecycle.describe())
+                           .build();
+        }
+        if (healthMonitor.isStale()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "DOWN");
+            error.put("timestamp", System.currentTimeMillis());
+            error.put("error", "Le moniteur de santé ne répond plus");
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                           .entity(error)
+                           .build();
+        }
+        return Response.ok(healthMonitor.getLastReport().toMap()).build();
+    }
 
-        return Response.ok(status).build();
-    } catch (Exception e) {
-        Map<String, Object> error = new HashMap<>();
-        error.put("status", "DOWN");
-        error.put("timestamp", System.currentTimeMillis());
-        error.put("error", e.getMessage());
+    /**
+     * Readiness : JPA est initialisé, la base est joignable et le schéma est à jour
+     * GET /actuator/health/readiness
+     */
+    @GET
+    @Path("/readiness")
+    public Response readiness() {
+        if (!lifecycle.isReady()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                           .header(HttpHeaders.RETRY_AFTER, lifecycle.getRetryAfterSeconds())
+                           .entity(lifecycle.describe())
+                           .build();
+        }
+        HealthReport report = healthMonitor.getLastReport();
+        if (report.isReady() && !healthMonitor.isStale()) {
+            return Response.ok(report.toMap()).build();
+        }
         return Response.status(Response.Status.SERVICE_UNAVAILABLE)
-                       .entity(error)
+                       .entity(report.toMap())
                        .build();
     }
 }
-
-}
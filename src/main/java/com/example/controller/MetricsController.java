@@ -0,0 +1,93 @@
+package com.example.controller;
+
+import com.example.index.CountingBloomFilter;
+import com.example.logging.AsyncLogHandler;
+import com.example.logging.AsyncLogging;
+import com.example.monitoring.RequestTiming;
+import com.example.monitoring.RouteTimings;
+import com.example.monitoring.StartupTimings;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Contrôleur REST exposant les métriques internes de l'application
+ */
+@Path("/actuator/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class MetricsController {
+
+    /**
+     * Histogrammes des phases de requête par route
+     * GET /actuator/metrics/timings
+     */
+    @GET
+    @Path("/timings")
+    public Response getTimings() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", RequestTiming.isEnabled());
+        result.put("routes", RouteTimings.snapshot());
+        return Response.ok(result).build();
+    }
+
+    /**
+     * Remet à zéro les histogrammes
+     * DELETE /actuator/metrics/timings
+     */
+    @DELETE
+    @Path("/timings")
+    public Response resetTimings() {
+        RouteTimings.reset();
+        return Response.noContent().build();
+    }
+
+    /**
+     * État de la file de journalisation asynchrone
+     * GET /actuator/metrics/logging
+     */
+    @GET
+    @Path("/logging")
+    public Response getLogging() {
+        AsyncLogHandler handler = AsyncLogging.getHandler();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("async", handler != null);
+        if (handler != null) {
+            result.put("overflowPolicy", handler.getOverflowPolicy().name());
+            result.put("capacity", handler.getCapacity());
+            result.put("queued", handler.getQueueSize());
+            result.put("written", handler.getWrittenCount());
+            result.put("dropped", handler.getDroppedCount());
+        }
+        return Response.ok(result).build();
+    }
+
+    /**
+     * Filtres d'unicité des utilisateurs : lectures évitées et taux de faux positifs
+     * GET /actuator/metrics/unique-filters
+     */
+    @GET
+    @Path("/unique-filters")
+    public Response getUniqueFilters() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", CountingBloomFilter.forUsernames().isEnabled());
+        if (CountingBloomFilter.forUsernames().isEnabled()) {
+            result.put("usernames", CountingBloomFilter.forUsernames().describe());
+            result.put("emails", CountingBloomFilter.forEmails().describe());
+        }
+        return Response.ok(result).build();
+    }
+
+    /**
+     * Durée des phases de démarrage
+     * GET /actuator/metrics/startup
+     */
+    @GET
+    @Path("/startup")
+    public Response getStartup() {
+        return Response.ok(StartupTimings.snapshot()).build();
+    }
+}
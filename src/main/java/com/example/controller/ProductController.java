@@ -1,30 +1,46 @@
 package com.example.controller;
 
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
 import com.example.model.Product;
+import com.example.service.InsufficientStockException;
 import com.example.service.ProductService;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Contrôleur REST pour gérer les produits
+ * Contrôleur REST pour gérer les produits ; instance unique créée par RestApplication
  */
 @Path("/api/products")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class ProductController {
     
+    private static final Logger logger = Logger.getLogger(ProductController.class.getName());
+    private static final int DEFAULT_FULLTEXT_LIMIT = 20;
+    private static final int MAX_FULLTEXT_LIMIT = 1000;
+    private static final int DEFAULT_SUGGEST_LIMIT = 10;
+    private static final int MAX_SUGGEST_LIMIT = 100;
     private final ProductService productService;
+    private final ChangeFeed changeFeed;
     
-    public ProductController() {
-        this.productService = new ProductService();
-    }
-    
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ChangeFeed changeFeed) {
         this.productService = productService;
+        this.changeFeed = changeFeed;
     }
     
     /**
@@ -37,11 +53,35 @@ public class ProductController {
             List<Product> products = productService.getAllProducts();
             return Response.ok(products).build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture des produits", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
     }
     
+    /**
+     * Changements des produits postérieurs au seq since, en attente longue (au plus timeout secondes)
+     * GET /api/products/changes?since=...&limit=...&timeout=...
+     */
+    @GET
+    @Path("/changes")
+    public void getProductChanges(@QueryParam("since") Long since, @QueryParam("limit") Integer limit,
+                                  @QueryParam("timeout") Integer timeout, @Suspended AsyncResponse asyncResponse) {
+        ChangeFeedEndpoints.longPoll(changeFeed, Change.PRODUCT, since, limit, timeout, asyncResponse);
+    }
+    
+    /**
+     * Changements des produits en flux continu (Server-Sent Events), reprise par Last-Event-ID
+     * GET /api/products/changes/stream?since=...
+     */
+    @GET
+    @Path("/changes/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamProductChanges(@QueryParam("since") Long since, @HeaderParam("Last-Event-ID") String lastEventId,
+                                     @Context SseEventSink sink, @Context Sse sse) {
+        ChangeFeedEndpoints.stream(changeFeed, Change.PRODUCT, since, lastEventId, sink, sse);
+    }
+    
     /**
      * Récupère un produit par son ID
      * GET /api/products/{id}
@@ -55,6 +95,7 @@ public class ProductController {
                     .orElse(Response.status(Response.Status.NOT_FOUND)
                             .entity("{\"error\": \"Produit non trouvé avec l'ID: " + id + "\"}").build());
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture du produit " + id, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -73,6 +114,7 @@ public class ProductController {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la création du produit", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -91,7 +133,38 @@ public class ProductController {
         } catch (IllegalArgumentException e) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        } catch (OptimisticLockException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la mise à jour du produit " + id, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        }
+    }
+    
+    /**
+     * Ajuste le stock d'un produit d'un delta signé, corps {"delta": -3}
+     * PATCH /api/products/{id}/stock
+     */
+    @PATCH
+    @Path("/{id}/stock")
+    public Response adjustStock(@PathParam("id") Long id, Map<String, Object> body) {
+        try {
+            if (body == null || !(body.get("delta") instanceof Integer delta)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Le champ delta (entier) est requis\"}").build();
+            }
+            int quantity = productService.adjustStock(id, delta);
+            return Response.ok("{\"id\": " + id + ", \"quantity\": " + quantity + "}").build();
+        } catch (NoSuchElementException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        } catch (InsufficientStockException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de l'ajustement du stock du produit " + id, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -113,6 +186,7 @@ public class ProductController {
                         .entity("{\"error\": \"Produit non trouvé avec l'ID: " + id + "\"}").build();
             }
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la suppression du produit " + id, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -129,6 +203,7 @@ public class ProductController {
             List<Product> products = productService.getProductsByCategory(category);
             return Response.ok(products).build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture des produits de la catégorie " + category, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -145,38 +220,137 @@ public class ProductController {
             List<Product> products = productService.getProductsInStock();
             return Response.ok(products).build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture des produits en stock", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        }
+    }
+    
+    /**
+     * Suggestions de noms de produits pour une saisie en cours (10 par défaut)
+     * GET /api/products/suggest?prefix=clav&limit=5
+     */
+    @GET
+    @Path("/suggest")
+    public Response suggestProductNames(@QueryParam("prefix") String prefix, @QueryParam("limit") Integer limit) {
+        try {
+            if (limit != null && (limit < 1 || limit > MAX_SUGGEST_LIMIT)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Le paramètre limit doit être compris entre 1 et " + MAX_SUGGEST_LIMIT + "\"}").build();
+            }
+            List<String> suggestions = productService.suggestProductNames(prefix, limit != null ? limit : DEFAULT_SUGGEST_LIMIT);
+            return Response.ok(suggestions).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la suggestion de noms de produits pour le préfixe " + prefix, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
     }
     
     /**
-     * Récupère les produits par prix maximum
-     * GET /api/products/price/{maxPrice}
+     * Recherche plein texte dans le nom et la description, par pertinence (20 résultats par défaut)
+     * GET /api/products/fulltext?q=clavier+sans+fil&limit=10
+     */
+    @GET
+    @Path("/fulltext")
+    public Response fullTextSearch(@QueryParam("q") String query, @QueryParam("limit") Integer limit) {
+        try {
+            if (limit != null && (limit < 1 || limit > MAX_FULLTEXT_LIMIT)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Le paramètre limit doit être compris entre 1 et " + MAX_FULLTEXT_LIMIT + "\"}").build();
+            }
+            List<Product> products = productService.fullTextSearch(query, limit != null ? limit : DEFAULT_FULLTEXT_LIMIT);
+            return Response.ok(products).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la recherche plein texte de " + query, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        }
+    }
+    
+    /**
+     * Recherche multicritère combinable, triée par identifiant
+     * GET /api/products/search?category=Electronics&inStock=true&minPrice=10&maxPrice=50
+     */
+    @GET
+    @Path("/search")
+    public Response searchProducts(@QueryParam("category") String category,
+                                   @QueryParam("inStock") Boolean inStock,
+                                   @QueryParam("minPrice") BigDecimal minPrice,
+                                   @QueryParam("maxPrice") BigDecimal maxPrice) {
+        try {
+            List<Product> products = productService.searchProducts(category, inStock, minPrice, maxPrice);
+            return Response.ok(products).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la recherche de produits", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        }
+    }
+    
+    /**
+     * Récupère les produits par prix maximum, triés par prix ; avec limit, les moins chers seulement
+     * GET /api/products/price/{maxPrice}?limit=10
      */
     @GET
     @Path("/price/{maxPrice}")
-    public Response getProductsByMaxPrice(@PathParam("maxPrice") BigDecimal maxPrice) {
+    public Response getProductsByMaxPrice(@PathParam("maxPrice") BigDecimal maxPrice,
+                                          @QueryParam("limit") Integer limit) {
         try {
-            List<Product> products = productService.getProductsByMaxPrice(maxPrice);
+            if (limit != null && limit < 1) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Le paramètre limit doit être positif\"}").build();
+            }
+            List<Product> products = limit == null
+                    ? productService.getProductsByMaxPrice(maxPrice)
+                    : productService.getProductsByMaxPrice(maxPrice, limit);
             return Response.ok(products).build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture des produits à moins de " + maxPrice, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        }
+    }
+    
+    /**
+     * Statistiques d'inventaire : valeur du stock, totaux par catégorie, histogramme des prix
+     * GET /api/products/stats
+     */
+    @GET
+    @Path("/stats")
+    public Response getInventoryStats() {
+        try {
+            Map<String, Object> stats = productService.getInventoryStats();
+            return Response.ok(stats).build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors du calcul des statistiques de stock", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
     }
     
     /**
-     * Compte le nombre de produits
-     * GET /api/products/count
+     * Compte les produits, éventuellement d'une catégorie et/ou en stock ; exact=true interroge la base
+     * GET /api/products/count?category=Electronics&inStock=true
      */
     @GET
     @Path("/count")
-    public Response countProducts() {
+    public Response countProducts(@QueryParam("category") String category, @QueryParam("inStock") Boolean inStock,
+                                  @QueryParam("exact") Boolean exact) {
         try {
-            long count = productService.countProducts();
+            long count = productService.countProducts(category, inStock, Boolean.TRUE.equals(exact));
             return Response.ok("{\"count\": " + count + "}").build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors du comptage des produits", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -0,0 +1,144 @@
+package com.example.controller;
+
+import com.example.monitoring.Profiler;
+import com.example.security.AdminOnly;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Contrôleur REST d'administration pour les captures de diagnostic (JFR, threads, allocations).
+ * Les captures sont exécutées par le Profiler, hors du pool de workers HTTP et une à la fois.
+ */
+@Path("/admin/profiling")
+@AdminOnly
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ProfilingController {
+
+    private static final Logger logger = Logger.getLogger(ProfilingController.class.getName());
+    private static final long RESUME_MARGIN_SECONDS = 30;
+
+    private final Profiler profiler;
+
+    public ProfilingController() {
+        this.profiler = Profiler.getInstance();
+    }
+
+    public ProfilingController(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Démarre un enregistrement JFR limité dans le temps
+     * POST /admin/profiling/recording?seconds=60
+     */
+    @POST
+    @Path("/recording")
+    public void startRecording(@QueryParam("seconds") @DefaultValue("60") long seconds,
+                               @Suspended AsyncResponse asyncResponse) {
+        capture(asyncResponse, 0, () -> Response.status(Response.Status.ACCEPTED)
+                .entity(profiler.startRecording(Duration.ofSeconds(seconds))).build());
+    }
+
+    /**
+     * État de l'enregistrement JFR
+     * GET /admin/profiling/recording/status
+     */
+    @GET
+    @Path("/recording/status")
+    public Response getRecordingStatus() {
+        return Response.ok(profiler.getRecordingStatus()).build();
+    }
+
+    /**
+     * Arrête l'enregistrement JFR en cours
+     * DELETE /admin/profiling/recording
+     */
+    @DELETE
+    @Path("/recording")
+    public void stopRecording(@Suspended AsyncResponse asyncResponse) {
+        capture(asyncResponse, 0, () -> Response.ok(profiler.stopRecording()).build());
+    }
+
+    /**
+     * Télécharge le fichier .jfr de l'enregistrement (en cours ou terminé)
+     * GET /admin/profiling/recording
+     */
+    @GET
+    @Path("/recording")
+    @Produces({MediaType.APPLICATION_OCTET_STREAM, MediaType.APPLICATION_JSON})
+    public void downloadRecording(@Suspended AsyncResponse asyncResponse) {
+        capture(asyncResponse, 0, () -> {
+            java.nio.file.Path file = profiler.dumpRecording();
+            StreamingOutput stream = output -> {
+                try {
+                    Files.copy(file, output);
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            };
+            return Response.ok(stream, MediaType.APPLICATION_OCTET_STREAM)
+                    .header("Content-Disposition", "attachment; filename=\"javaApp.jfr\"")
+                    .build();
+        });
+    }
+
+    /**
+     * Dump des threads
+     * GET /admin/profiling/threads
+     */
+    @GET
+    @Path("/threads")
+    @Produces({MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON})
+    public void getThreadDump(@Suspended AsyncResponse asyncResponse) {
+        capture(asyncResponse, 0, () -> Response.ok(profiler.threadDump(), MediaType.TEXT_PLAIN).build());
+    }
+
+    /**
+     * Octets alloués par route pendant la durée donnée
+     * GET /admin/profiling/allocations?seconds=30
+     */
+    @GET
+    @Path("/allocations")
+    public void getAllocations(@QueryParam("seconds") @DefaultValue("30") long seconds,
+                               @Suspended AsyncResponse asyncResponse) {
+        capture(asyncResponse, seconds, () -> Response.ok(
+                profiler.captureAllocations(Duration.ofSeconds(seconds))).build());
+    }
+
+    private void capture(AsyncResponse asyncResponse, long durationSeconds, Callable<Response> task) {
+        asyncResponse.setTimeout(Math.max(0, durationSeconds) + RESUME_MARGIN_SECONDS, TimeUnit.SECONDS);
+        boolean accepted = profiler.submit(() -> {
+            try {
+                asyncResponse.resume(task.call());
+            } catch (IllegalArgumentException e) {
+                asyncResponse.resume(error(Response.Status.BAD_REQUEST, e.getMessage()));
+            } catch (IllegalStateException e) {
+                asyncResponse.resume(error(Response.Status.CONFLICT, e.getMessage()));
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Échec de la capture de diagnostic", e);
+                asyncResponse.resume(error(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage()));
+            }
+        });
+        if (!accepted) {
+            asyncResponse.resume(error(Response.Status.TOO_MANY_REQUESTS, "Une capture est déjà en cours"));
+        }
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .type(MediaType.APPLICATION_JSON)
+                .entity("{\"error\": \"" + message + "\"}").build();
+    }
+}
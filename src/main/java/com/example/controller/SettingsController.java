@@ -0,0 +1,63 @@
+package com.example.controller;
+
+import com.example.config.RuntimeSettings;
+import com.example.security.AdminOnly;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Contrôleur REST d'administration des paramètres modifiables à chaud
+ */
+@Path("/admin/settings")
+@AdminOnly
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class SettingsController {
+
+    private final RuntimeSettings settings;
+
+    public SettingsController() {
+        this.settings = RuntimeSettings.getInstance();
+    }
+
+    public SettingsController(RuntimeSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Valeurs courantes et bornes
+     * GET /admin/settings
+     */
+    @GET
+    public Response getSettings() {
+        return Response.ok(settings.describe()).build();
+    }
+
+    /**
+     * Modifie un ou plusieurs paramètres, par exemple {"server.workers.max": 32}
+     * PATCH /admin/settings
+     */
+    @PATCH
+    public Response updateSettings(Map<String, Object> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return error(Response.Status.BAD_REQUEST, "Aucun paramètre fourni");
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        changes.forEach((name, value) -> values.put(name, value == null ? null : String.valueOf(value)));
+        try {
+            return Response.ok(settings.apply(values)).build();
+        } catch (IllegalArgumentException e) {
+            return error(Response.Status.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .type(MediaType.APPLICATION_JSON)
+                .entity("{\"error\": \"" + message + "\"}").build();
+    }
+}
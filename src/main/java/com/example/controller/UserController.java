@@ -1,29 +1,39 @@
 package com.example.controller;
 
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
 import com.example.model.User;
 import com.example.service.UserService;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Contrôleur REST pour gérer les utilisateurs
+ * Contrôleur REST pour gérer les utilisateurs ; instance unique créée par RestApplication
  */
 @Path("/api/users")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class UserController {
     
+    private static final Logger logger = Logger.getLogger(UserController.class.getName());
+    private static final int DEFAULT_SUGGEST_LIMIT = 10;
+    private static final int MAX_SUGGEST_LIMIT = 100;
     private final UserService userService;
+    private final ChangeFeed changeFeed;
     
-    public UserController() {
-        this.userService = new UserService();
-    }
-    
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ChangeFeed changeFeed) {
         this.userService = userService;
+        this.changeFeed = changeFeed;
     }
     
     /**
@@ -36,11 +46,35 @@ public class UserController {
             List<User> users = userService.getAllUsers();
             return Response.ok(users).build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture des utilisateurs", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
     }
     
+    /**
+     * Changements des utilisateurs postérieurs au seq since, en attente longue (au plus timeout secondes)
+     * GET /api/users/changes?since=...&limit=...&timeout=...
+     */
+    @GET
+    @Path("/changes")
+    public void getUserChanges(@QueryParam("since") Long since, @QueryParam("limit") Integer limit,
+                               @QueryParam("timeout") Integer timeout, @Suspended AsyncResponse asyncResponse) {
+        ChangeFeedEndpoints.longPoll(changeFeed, Change.USER, since, limit, timeout, asyncResponse);
+    }
+    
+    /**
+     * Changements des utilisateurs en flux continu (Server-Sent Events), reprise par Last-Event-ID
+     * GET /api/users/changes/stream?since=...
+     */
+    @GET
+    @Path("/changes/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamUserChanges(@QueryParam("since") Long since, @HeaderParam("Last-Event-ID") String lastEventId,
+                                  @Context SseEventSink sink, @Context Sse sse) {
+        ChangeFeedEndpoints.stream(changeFeed, Change.USER, since, lastEventId, sink, sse);
+    }
+    
     /**
      * Récupère un utilisateur par son ID
      * GET /api/users/{id}
@@ -54,6 +88,7 @@ public class UserController {
                     .orElse(Response.status(Response.Status.NOT_FOUND)
                             .entity("{\"error\": \"Utilisateur non trouvé avec l'ID: " + id + "\"}").build());
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la lecture de l'utilisateur " + id, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -72,6 +107,7 @@ public class UserController {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la création de l'utilisateur", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -91,6 +127,7 @@ public class UserController {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la mise à jour de l'utilisateur " + id, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
@@ -112,22 +149,48 @@ public class UserController {
                         .entity("{\"error\": \"Utilisateur non trouvé avec l'ID: " + id + "\"}").build();
             }
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la suppression de l'utilisateur " + id, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        }
+    }
+    
+    /**
+     * Suggestions de noms d'utilisateur pour une saisie en cours (10 par défaut)
+     * GET /api/users/suggest?prefix=jo&limit=5
+     */
+    @GET
+    @Path("/suggest")
+    public Response suggestUsernames(@QueryParam("prefix") String prefix, @QueryParam("limit") Integer limit) {
+        try {
+            if (limit != null && (limit < 1 || limit > MAX_SUGGEST_LIMIT)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Le paramètre limit doit être compris entre 1 et " + MAX_SUGGEST_LIMIT + "\"}").build();
+            }
+            List<String> suggestions = userService.suggestUsernames(prefix, limit != null ? limit : DEFAULT_SUGGEST_LIMIT);
+            return Response.ok(suggestions).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors de la suggestion de noms d'utilisateur pour le préfixe " + prefix, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
     }
     
     /**
-     * Compte le nombre d'utilisateurs
+     * Compte le nombre d'utilisateurs ; exact=true interroge la base
      * GET /api/users/count
      */
     @GET
     @Path("/count")
-    public Response countUsers() {
+    public Response countUsers(@QueryParam("exact") Boolean exact) {
         try {
-            long count = userService.countUsers();
+            long count = userService.countUsers(Boolean.TRUE.equals(exact));
             return Response.ok("{\"count\": " + count + "}").build();
         } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors du comptage des utilisateurs", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("{\"error\": \"" + e.getMessage() + "\"}").build();
         }
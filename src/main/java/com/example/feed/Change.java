@@ -0,0 +1,55 @@
+package com.example.feed;
+
+import java.time.LocalDateTime;
+
+/**
+ * Écriture d'un produit ou d'un utilisateur, numérotée par seq dans le flux des changements
+ */
+public final class Change {
+
+    public static final String PRODUCT = "product";
+    public static final String USER = "user";
+
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private final long seq;
+    private final String entity;
+    private final long id;
+    private final String operation;
+    private final LocalDateTime changedAt;
+
+    public Change(long seq, String entity, long id, String operation, LocalDateTime changedAt) {
+        this.seq = seq;
+        this.entity = entity;
+        this.id = id;
+        this.operation = operation;
+        this.changedAt = changedAt;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Change{seq=" + seq + ", entity='" + entity + "', id=" + id + ", operation='" + operation + "'}";
+    }
+}
@@ -0,0 +1,641 @@
+package com.example.feed;
+
+import com.example.lifecycle.ApplicationLifecycle;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Flux des écritures sur les produits et les utilisateurs (-Dchange.feed.enabled=true) : chaque
+ * création, mise à jour ou suppression ajoute une ligne à la table change_outbox de son shard, dans
+ * la même transaction ; validée avec l'écriture, elle ne peut pas manquer au flux. Le thread
+ * "change-feed" de chaque instance déplace ces lignes vers la table change_feed de la base primaire,
+ * un seul déplacement à la fois, qui les numérote par une séquence croissante (seq) : un seq n'est
+ * jamais visible avant ceux qui le précèdent. Il y lit les nouvelles lignes toutes les
+ * -Dchange.feed.poll.ms (200), ou aussitôt après une écriture locale, et les ajoute à un tampon
+ * circulaire des -Dchange.feed.buffer (8192) derniers changements, partagé par toutes les attentes
+ * longues et tous les flux SSE : aucune requête en base par abonné. Un client plus en retard que le
+ * tampon est rattrapé en base par lots de -Dchange.feed.batch (1000) ; au-delà de la rétention
+ * (-Dchange.feed.retention.hours, 24) il doit se resynchroniser. Les caches de l'instance s'y
+ * abonnent (listen) pour oublier les produits écrits par les autres.
+ */
+public class ChangeFeed {
+
+    private static final Logger logger = Logger.getLogger(ChangeFeed.class.getName());
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private static final ChangeFeed INSTANCE = fromSystemProperties();
+
+    /**
+     * Table des changements
+     */
+    public interface Log {
+        /**
+         * Numérote et déplace vers la base primaire au plus limit changements écrits par shard ; retourne le nombre déplacé
+         */
+        int relay(int limit) throws Exception;
+
+        /**
+         * Plus petit seq conservé, 0 si la table est vide
+         */
+        long firstSeq() throws Exception;
+
+        /**
+         * Plus grand seq conservé, 0 si la table est vide
+         */
+        long lastSeq() throws Exception;
+
+        /**
+         * Au plus limit changements de seq dans ]after, until], de l'entité donnée (toutes si null), par seq croissant
+         */
+        void readAfter(long after, long until, String entity, int limit, Consumer<Change> row) throws Exception;
+
+        /**
+         * Supprime les changements antérieurs à before, sauf le dernier ; retourne le nombre supprimé
+         */
+        int purge(LocalDateTime before) throws Exception;
+    }
+
+    /**
+     * Client d'un flux continu (SSE), appelé par le seul thread "change-feed"
+     */
+    public interface Subscriber {
+        /**
+         * Envoie un changement ; faux si le client est parti
+         */
+        boolean send(Change change);
+
+        /**
+         * Garde la connexion ouverte ; faux si le client est parti
+         */
+        boolean heartbeat();
+
+        /**
+         * Client trop en retard : plus ancien seq disponible, signalé juste avant la fermeture
+         */
+        void expired(long firstSeq);
+
+        void close();
+    }
+
+    /**
+     * Changements postérieurs à un seq ; next est le seq à repasser à l'appel suivant. Une page
+     * expirée ne contient rien et next y est le plus ancien seq encore disponible.
+     */
+    public static final class Page {
+        private final List<Change> changes;
+        private final long next;
+        private final boolean expired;
+
+        Page(List<Change> changes, long next, boolean expired) {
+            this.changes = changes;
+            this.next = next;
+            this.expired = expired;
+        }
+
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        public long getNext() {
+            return next;
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+
+    private static final class Waiter {
+        final String entity;
+        final int limit;
+        final Consumer<Page> callback;
+        final AtomicBoolean done = new AtomicBoolean();
+        // Avancé par le thread "change-feed" tant que les nouveaux changements sont d'une autre entité
+        volatile long since;
+
+        Waiter(String entity, long since, int limit, Consumer<Page> callback) {
+            this.entity = entity;
+            this.since = since;
+            this.limit = limit;
+            this.callback = callback;
+        }
+
+        void complete(Page page) {
+            if (done.compareAndSet(false, true)) {
+                callback.accept(page);
+            }
+        }
+    }
+
+    private static final class Stream {
+        final String entity;
+        final Subscriber subscriber;
+        long cursor;
+
+        Stream(String entity, long cursor, Subscriber subscriber) {
+            this.entity = entity;
+            this.cursor = cursor;
+            this.subscriber = subscriber;
+        }
+    }
+
+    private final boolean enabled;
+    private final Log log;
+    private final BooleanSupplier draining;
+    private final int batchSize;
+    private final long pollMillis;
+    private final long retentionHours;
+    private final long heartbeatNanos;
+    // Changements de seq dans ]floor, head], par seq croissant, à partir de l'indice start
+    private final Change[] ring;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final Queue<Stream> streams = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
+    private final Object signal = new Object();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+    private int start;
+    private int size;
+    private volatile long head;
+    private volatile long floor;
+    private volatile long firstSeq;
+    private volatile boolean ready;
+    private volatile boolean released;
+    private volatile boolean running;
+    private volatile String lastError;
+    private boolean nudged;
+    // Thread "change-feed" uniquement
+    private long nextPurge;
+    private long nextHeartbeat;
+    private Thread poller;
+
+    ChangeFeed(boolean enabled, Log log, BooleanSupplier draining, int capacity, int batchSize, long pollMillis,
+               long retentionHours, long heartbeatSeconds) {
+        this.enabled = enabled;
+        this.log = log;
+        this.draining = draining;
+        this.ring = new Change[Math.max(1, capacity)];
+        this.batchSize = Math.max(1, batchSize);
+        this.pollMillis = Math.max(1L, pollMillis);
+        this.retentionHours = retentionHours;
+        this.heartbeatNanos = TimeUnit.SECONDS.toNanos(heartbeatSeconds);
+    }
+
+    public static ChangeFeed getInstance() {
+        return INSTANCE;
+    }
+
+    private static ChangeFeed fromSystemProperties() {
+        return new ChangeFeed(Boolean.getBoolean("change.feed.enabled"), new DatabaseChangeLog(),
+                () -> ApplicationLifecycle.getInstance().getState() == ApplicationLifecycle.State.DRAINING,
+                Integer.getInteger("change.feed.buffer", 8192), Integer.getInteger("change.feed.batch", 1000),
+                Long.getLong("change.feed.poll.ms", 200L), Long.getLong("change.feed.retention.hours", 24L),
+                Long.getLong("change.feed.heartbeat.seconds", 15L));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai une fois le dernier seq lu en base, jusqu'à l'arrêt
+     */
+    public boolean isReady() {
+        return ready && !released;
+    }
+
+    /**
+     * Ajoute des changements dans la transaction d'une écriture (connexion de son shard) ; un échec
+     * annule l'écriture
+     */
+    public void record(Connection connection, String entity, Collection<Long> ids, String operation) throws SQLException {
+        if (enabled && !ids.isEmpty()) {
+            DatabaseChangeLog.insert(connection, entity, ids, operation);
+        }
+    }
+
+    /**
+     * Ajoute un changement dans la transaction JPA en cours de l'écriture
+     */
+    public void record(EntityManager em, String entity, long id, String operation) {
+        if (enabled) {
+            em.unwrap(Session.class).doWork(connection -> DatabaseChangeLog.insert(connection, entity, List.of(id), operation));
+        }
+    }
+
+    /**
+     * Écriture validée : le flux est relu sans attendre le prochain passage
+     */
+    public void committed() {
+        if (!enabled) {
+            return;
+        }
+        recorded.incrementAndGet();
+        wakeUp();
+    }
+
+    /**
+     * Démarre la lecture des nouveaux changements (thread "change-feed")
+     */
+    public synchronized void start() {
+        if (!enabled || poller != null) {
+            return;
+        }
+        running = true;
+        poller = new Thread(this::run, "change-feed");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    /**
+     * Arrête la lecture et libère les clients encore connectés
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = poller;
+            poller = null;
+            running = false;
+        }
+        if (thread != null) {
+            wakeUp();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        release();
+    }
+
+    /**
+     * Changements de l'entité (toutes si null) postérieurs à since, au plus limit : depuis le tampon
+     * s'il remonte jusqu'à since, sinon depuis la base ; page expirée si la rétention est dépassée
+     */
+    public Page read(String entity, long since, int limit) throws Exception {
+        long until;
+        lock.readLock().lock();
+        try {
+            if (since >= floor) {
+                return readBuffer(entity, since, limit);
+            }
+            until = head;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (since < firstSeq - 1) {
+            return new Page(List.of(), firstSeq, true);
+        }
+        List<Change> changes = new ArrayList<>();
+        log.readAfter(since, until, entity, limit, changes::add);
+        return new Page(changes, changes.size() >= limit ? changes.get(changes.size() - 1).getSeq() : until, false);
+    }
+
+    private Page readBuffer(String entity, long since, int limit) {
+        // Premier indice de seq > since
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (at(middle).getSeq() <= since) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<Change> changes = new ArrayList<>();
+        for (int i = low; i < size && changes.size() < limit; i++) {
+            Change change = at(i);
+            if (entity == null || entity.equals(change.getEntity())) {
+                changes.add(change);
+            }
+        }
+        long next = changes.size() >= limit ? changes.get(changes.size() - 1).getSeq() : Math.max(since, head);
+        return new Page(changes, next, false);
+    }
+
+    private Change at(int index) {
+        return ring[(start + index) % ring.length];
+    }
+
+    /**
+     * Attente longue : le callback reçoit aussitôt les changements postérieurs à since s'il y en a,
+     * sinon dès le prochain ; le Runnable retourné (délai écoulé) lui passe une page vide
+     */
+    public Runnable await(String entity, long since, int limit, Consumer<Page> callback) throws Exception {
+        Page page = read(entity, since, limit);
+        if (!page.getChanges().isEmpty() || page.isExpired() || released) {
+            callback.accept(page);
+            return () -> { };
+        }
+        Waiter waiter = new Waiter(entity, since, limit, callback);
+        waiters.add(waiter);
+        // Changement ajouté entre la lecture et l'inscription : déjà passé devant les attentes
+        Page again = read(entity, since, limit);
+        if (!again.getChanges().isEmpty() || again.isExpired() || released) {
+            waiters.remove(waiter);
+            waiter.complete(again);
+        }
+        return () -> {
+            waiters.remove(waiter);
+            waiter.complete(emptyPage(waiter.since));
+        };
+    }
+
+    /**
+     * Flux continu : le client reçoit les changements de l'entité postérieurs à since, puis chaque nouveau
+     */
+    public void subscribe(String entity, long since, Subscriber subscriber) {
+        Stream stream = new Stream(entity, since, subscriber);
+        streams.add(stream);
+        if (released && streams.remove(stream)) {
+            subscriber.close();
+            return;
+        }
+        wakeUp();
+    }
+
+    /**
+     * Appelle listener, depuis le thread "change-feed", pour chaque changement lu après
+     * l'initialisation, par seq croissant et quelle que soit l'instance qui l'a écrit
+     */
+    public void listen(Consumer<Change> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Dernier seq lu en base : point de départ d'un client qui copie d'abord tout le catalogue
+     */
+    public long lastSeq() {
+        return head;
+    }
+
+    private Page emptyPage(long since) {
+        return new Page(List.of(), Math.max(since, head), false);
+    }
+
+    private void wakeUp() {
+        synchronized (signal) {
+            nudged = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            boolean more = false;
+            try {
+                if (!ready) {
+                    initialize();
+                }
+                if (draining.getAsBoolean()) {
+                    release();
+                }
+                more = poll();
+                more |= dispatch();
+                purgeIfDue();
+                if (lastError != null) {
+                    logger.info("Lecture du flux de changements rétablie");
+                    lastError = null;
+                }
+            } catch (Exception e) {
+                String message = String.valueOf(e.getMessage());
+                logger.log(message.equals(lastError) ? Level.FINE : Level.WARNING,
+                        "Lecture du flux de changements impossible", e);
+                lastError = message;
+            }
+            if (!more) {
+                pause();
+            }
+        }
+    }
+
+    private void pause() {
+        synchronized (signal) {
+            try {
+                if (!nudged && running) {
+                    signal.wait(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            nudged = false;
+        }
+    }
+
+    void initialize() throws Exception {
+        long last = log.lastSeq();
+        long first = log.firstSeq();
+        lock.writeLock().lock();
+        try {
+            head = last;
+            floor = last;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        firstSeq = first == 0 ? last + 1 : first;
+        long now = System.nanoTime();
+        nextPurge = now;
+        nextHeartbeat = now + heartbeatNanos;
+        ready = true;
+        logger.log(Level.INFO, "Flux de changements prêt (dernier seq : {0,number,#}, tampon de {1,number,#} changements)",
+                new Object[]{last, ring.length});
+    }
+
+    /**
+     * Ajoute au tampon les changements validés qui suivent head ; vrai s'il en reste à lire
+     */
+    boolean poll() throws Exception {
+        int moved = log.relay(batchSize);
+        relayed.addAndGet(moved);
+        List<Change> rows = new ArrayList<>();
+        log.readAfter(head, Long.MAX_VALUE, null, batchSize, rows::add);
+        lock.writeLock().lock();
+        try {
+            rows.forEach(this::append);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Change change : rows) {
+            for (Consumer<Change> listener : listeners) {
+                try {
+                    listener.accept(change);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Abonné du flux de changements en échec sur " + change, e);
+                }
+            }
+        }
+        return rows.size() == batchSize || moved > 0;
+    }
+
+    private void append(Change change) {
+        if (size == ring.length) {
+            floor = ring[start].getSeq();
+            ring[start] = change;
+            start = (start + 1) % ring.length;
+        } else {
+            ring[(start + size) % ring.length] = change;
+            size++;
+        }
+        head = change.getSeq();
+    }
+
+    /**
+     * Répond aux attentes longues servies par les nouveaux changements et fait avancer chaque flux
+     * continu d'un lot au plus ; vrai si un flux a encore du retard
+     */
+    boolean dispatch() {
+        long current = head;
+        for (Iterator<Waiter> iterator = waiters.iterator(); iterator.hasNext(); ) {
+            Waiter waiter = iterator.next();
+            if (waiter.done.get()) {
+                iterator.remove();
+            } else if (waiter.since < current) {
+                try {
+                    Page page = read(waiter.entity, waiter.since, waiter.limit);
+                    if (!page.getChanges().isEmpty() || page.isExpired()) {
+                        iterator.remove();
+                        waiter.complete(page);
+                    } else {
+                        waiter.since = page.getNext();
+                    }
+                } catch (Exception e) {
+                    logger.log(Level.FINE, "Attente longue non servie, nouvel essai au prochain passage", e);
+                }
+            }
+        }
+
+        boolean more = false;
+        long now = System.nanoTime();
+        boolean heartbeat = now - nextHeartbeat >= 0;
+        if (heartbeat) {
+            nextHeartbeat = now + heartbeatNanos;
+        }
+        for (Iterator<Stream> iterator = streams.iterator(); iterator.hasNext(); ) {
+            Stream stream = iterator.next();
+            boolean open = true;
+            try {
+                if (stream.cursor < current) {
+                    Page page = read(stream.entity, stream.cursor, batchSize);
+                    if (page.isExpired()) {
+                        iterator.remove();
+                        stream.subscriber.expired(page.getNext());
+                        stream.subscriber.close();
+                        continue;
+                    }
+                    for (Change change : page.getChanges()) {
+                        open = stream.subscriber.send(change);
+                        if (!open) {
+                            break;
+                        }
+                    }
+                    stream.cursor = page.getNext();
+                    more |= stream.cursor < current;
+                } else if (heartbeat) {
+                    open = stream.subscriber.heartbeat();
+                }
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Flux continu non servi, nouvel essai au prochain passage", e);
+            }
+            if (!open) {
+                iterator.remove();
+                stream.subscriber.close();
+            }
+        }
+        return more;
+    }
+
+    private void purgeIfDue() throws Exception {
+        long now = System.nanoTime();
+        if (now - nextPurge < 0) {
+            return;
+        }
+        nextPurge = now + PURGE_INTERVAL_NANOS;
+        int deleted = log.purge(LocalDateTime.now().minusHours(retentionHours));
+        purged.addAndGet(deleted);
+        long first = log.firstSeq();
+        if (first > 0) {
+            firstSeq = first;
+        }
+        if (deleted > 0) {
+            logger.log(Level.FINE, "{0} changement(s) de plus de {1} h supprimé(s)", new Object[]{deleted, retentionHours});
+        }
+    }
+
+    /**
+     * Arrêt en cours : les attentes longues reçoivent une page vide et les flux continus sont
+     * fermés, pour que le drainage des requêtes n'attende pas leur expiration
+     */
+    private synchronized void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        int clients = 0;
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.complete(emptyPage(waiter.since));
+            clients++;
+        }
+        Stream stream;
+        while ((stream = streams.poll()) != null) {
+            stream.subscriber.close();
+            clients++;
+        }
+        if (clients > 0) {
+            logger.log(Level.INFO, "Flux de changements : {0} client(s) libéré(s) pour l''arrêt", clients);
+        }
+    }
+
+    /**
+     * État du flux (endpoint de santé)
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", enabled);
+        state.put("ready", isReady());
+        state.put("lastSeq", head);
+        state.put("oldestSeq", firstSeq);
+        lock.readLock().lock();
+        try {
+            state.put("buffered", size);
+            state.put("bufferedFromSeq", floor + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+        state.put("capacity", ring.length);
+        state.put("waiters", waiters.size());
+        state.put("streams", streams.size());
+        state.put("recorded", recorded.get());
+        state.put("relayed", relayed.get());
+        state.put("purged", purged.get());
+        if (lastError != null) {
+            state.put("error", lastError);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.feed;
+
+import com.example.util.JPAUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Table change_feed, en JDBC : chaque écriture ajoute sa ligne à change_outbox, sur son propre
+ * shard et dans sa transaction, sans numéro ; un seul déplacement à la fois, toutes instances
+ * confondues, la numérote en la copiant dans change_feed sur la base primaire (shard 0), seule
+ * lue par plage de seq croissante. Un seq n'est donc visible qu'avec tous ceux qui le précèdent.
+ */
+final class DatabaseChangeLog implements ChangeFeed.Log {
+
+    private static final String INSERT = "INSERT INTO change_outbox (entity, entity_id, operation, changed_at) "
+            + "VALUES (?, ?, ?, ?)";
+    private static final String LOCK_HEAD = "SELECT seq FROM change_feed_head WHERE id = 1 FOR UPDATE";
+    private static final String UPDATE_HEAD = "UPDATE change_feed_head SET seq = ? WHERE id = 1";
+    private static final String OUTBOX = "SELECT id, entity, entity_id, operation, changed_at FROM change_outbox "
+            + "ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String OUTBOX_DELETE = "DELETE FROM change_outbox WHERE id = ?";
+    private static final String FEED_INSERT = "INSERT INTO change_feed (seq, entity, entity_id, operation, changed_at) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String FIRST_SEQ = "SELECT COALESCE(MIN(seq), 0) FROM change_feed";
+    private static final String LAST_SEQ = "SELECT COALESCE(MAX(seq), 0) FROM change_feed";
+    private static final String READ = "SELECT seq, entity, entity_id, operation, changed_at FROM change_feed "
+            + "WHERE seq > ? AND seq <= ?";
+    private static final String OF_ENTITY = " AND entity = ?";
+    private static final String ORDER = " ORDER BY seq LIMIT ?";
+    private static final String PURGE = "DELETE FROM change_feed WHERE changed_at < ? "
+            + "AND seq < (SELECT MAX(seq) FROM change_feed)";
+
+    /**
+     * Insère les changements sur la connexion de l'écriture, validés ou annulés avec elle
+     */
+    static void insert(Connection connection, String entity, Collection<Long> ids, String operation) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            for (long id : ids) {
+                insert.setString(1, entity);
+                insert.setLong(2, id);
+                insert.setString(3, operation);
+                insert.setTimestamp(4, now);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Déplace vers change_feed au plus limit changements par shard. La ligne de change_feed_head,
+     * verrouillée jusqu'au commit, sérialise les instances ; les lignes lues sont verrouillées et
+     * supprimées sur leur shard avant ce commit, validé le dernier : une instance suivante ne peut
+     * pas les relire (au pire répétées après une panne entre les deux commits, jamais perdues)
+     */
+    @Override
+    public int relay(int limit) throws SQLException {
+        int moved = 0;
+        List<Connection> shards = new ArrayList<>();
+        try (Connection primary = JPAUtil.openConnection(0)) {
+            primary.setAutoCommit(false);
+            try {
+                long seq = lockHead(primary);
+                for (int shard = 0; shard < JPAUtil.getShardCount(); shard++) {
+                    Connection source = primary;
+                    if (shard > 0) {
+                        source = JPAUtil.openConnection(shard);
+                        shards.add(source);
+                        source.setAutoCommit(false);
+                    }
+                    List<Long> ids = new ArrayList<>();
+                    try (PreparedStatement select = source.prepareStatement(OUTBOX);
+                         PreparedStatement insert = primary.prepareStatement(FEED_INSERT)) {
+                        select.setInt(1, limit);
+                        try (ResultSet resultSet = select.executeQuery()) {
+                            while (resultSet.next()) {
+                                ids.add(resultSet.getLong(1));
+                                insert.setLong(1, ++seq);
+                                insert.setString(2, resultSet.getString(2));
+                                insert.setLong(3, resultSet.getLong(3));
+                                insert.setString(4, resultSet.getString(4));
+                                insert.setTimestamp(5, resultSet.getTimestamp(5));
+                                insert.addBatch();
+                            }
+                        }
+                        if (ids.isEmpty()) {
+                            continue;
+                        }
+                        insert.executeBatch();
+                    }
+                    try (PreparedStatement delete = source.prepareStatement(OUTBOX_DELETE)) {
+                        for (long id : ids) {
+                            delete.setLong(1, id);
+                            delete.addBatch();
+                        }
+                        delete.executeBatch();
+                    }
+                    moved += ids.size();
+                }
+                if (moved > 0) {
+                    try (PreparedStatement update = primary.prepareStatement(UPDATE_HEAD)) {
+                        update.setLong(1, seq);
+                        update.executeUpdate();
+                    }
+                }
+                primary.commit();
+            } catch (SQLException e) {
+                primary.rollback();
+                for (Connection source : shards) {
+                    try {
+                        source.rollback();
+                    } catch (SQLException rollbackError) {
+                        e.addSuppressed(rollbackError);
+                    }
+                }
+                throw e;
+            }
+            for (Connection source : shards) {
+                source.commit();
+            }
+            return moved;
+        } finally {
+            for (Connection source : shards) {
+                source.close();
+            }
+        }
+    }
+
+    private static long lockHead(Connection primary) throws SQLException {
+        try (PreparedStatement select = primary.prepareStatement(LOCK_HEAD);
+             ResultSet resultSet = select.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new SQLException("Ligne 1 de change_feed_head absente (migration V7)");
+            }
+            return resultSet.getLong(1);
+        }
+    }
+
+    @Override
+    public long firstSeq() throws SQLException {
+        return single(FIRST_SEQ);
+    }
+
+    @Override
+    public long lastSeq() throws SQLException {
+        return single(LAST_SEQ);
+    }
+
+    private static long single(String sql) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(0);
+             PreparedStatement select = connection.prepareStatement(sql);
+             ResultSet resultSet = select.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : 0L;
+        }
+    }
+
+    @Override
+    public void readAfter(long after, long until, String entity, int limit, Consumer<Change> row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(0);
+             PreparedStatement select = connection.prepareStatement(READ + (entity == null ? "" : OF_ENTITY) + ORDER)) {
+            int parameter = 1;
+            select.setLong(parameter++, after);
+            select.setLong(parameter++, until);
+            if (entity != null) {
+                select.setString(parameter++, entity);
+            }
+            select.setInt(parameter, limit);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    Timestamp changedAt = resultSet.getTimestamp(5);
+                    row.accept(new Change(resultSet.getLong(1), resultSet.getString(2), resultSet.getLong(3),
+                            resultSet.getString(4), changedAt == null ? null : changedAt.toLocalDateTime()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public int purge(LocalDateTime before) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(0);
+             PreparedStatement delete = connection.prepareStatement(PURGE)) {
+            delete.setTimestamp(1, Timestamp.valueOf(before));
+            return delete.executeUpdate();
+        }
+    }
+}
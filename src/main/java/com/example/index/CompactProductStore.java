@@ -0,0 +1,1094 @@
+package com.example.index;
+
+import com.example.config.RuntimeSettings;
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
+import com.example.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache des produits lus par identifiant (-Dproduct.cache.enabled=true) en disposition compacte :
+ * une colonne de primitives par champ (prix en centimes, quantité, horodatages en microsecondes
+ * depuis l'époque UTC, version), catégorie internée en numéro, nom et description en UTF-8 dans
+ * une arène d'octets partagée. Aucun objet par produit : un Product n'est matérialisé qu'à la
+ * lecture (get), au moment de la sérialisation ; read donne accès aux champs sans le construire.
+ *
+ * Au plus -Dproduct.cache.max (1 000 000) produits : au-delà, les lectures passent par la base.
+ * Avec le flux des changements (-Dchange.feed.enabled=true), chaque produit écrit, par cette instance
+ * ou une autre, est retiré du cache dès que le flux le lit, puis relu en base à la lecture suivante ;
+ * le cache ne sert qu'une fois le flux prêt. Sans lui, le cache est refusé avec plusieurs instances
+ * (SingleInstance). Une entrée peut en plus expirer -Dproduct.cache.ttl.seconds après son chargement
+ * (0 par défaut : pas d'expiration). Capacité et expiration sont modifiables à chaud (RuntimeSettings).
+ * L'arène est recompactée quand plus de la moitié de ses octets n'est plus référencée.
+ *
+ * Avec -Dproduct.cache.snapshot=<fichier>, le cache est écrit dans un instantané binaire toutes les
+ * -Dproduct.cache.snapshot.seconds secondes (300) s'il a changé, et à l'arrêt. Au démarrage,
+ * l'instantané est projeté en mémoire et chargé, puis seuls les produits modifiés depuis son point
+ * haut (moins -Dproduct.cache.snapshot.margin.seconds, 60, pour les transactions validées en retard)
+ * ou créés après lui sont relus ; les produits supprimés sont retirés d'après la liste des
+ * identifiants. Les lectures passent par la base jusqu'à la fin de cette restauration.
+ */
+public final class CompactProductStore {
+
+    private static final Logger logger = Logger.getLogger(CompactProductStore.class.getName());
+
+    private static final boolean ENABLED = Boolean.getBoolean("change.feed.enabled")
+            ? Boolean.getBoolean("product.cache.enabled") : SingleInstance.enabled("product.cache.enabled");
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int NO_CATEGORY = -1;
+    // En dessous, l'arène n'est jamais recompactée
+    private static final int MIN_COMPACTION_BYTES = 1 << 20;
+    private static final int MAX_ARENA_BYTES = Integer.MAX_VALUE - 16;
+
+    private static final CompactProductStore INSTANCE = new CompactProductStore(ENABLED,
+            Integer.getInteger("product.cache.max", 1_000_000),
+            System.getProperty("product.cache.snapshot") != null ? Paths.get(System.getProperty("product.cache.snapshot")) : null,
+            Long.getLong("product.cache.snapshot.seconds", 300L),
+            Long.getLong("product.cache.snapshot.margin.seconds", 60L),
+            Long.getLong("product.cache.ttl.seconds", 0L), System::nanoTime);
+
+    /**
+     * Accès aux produits en base pour le rattrapage d'un instantané, shard par shard
+     */
+    public interface Source {
+        int shardCount();
+
+        void scanHighWater(int shard, HighWaterRow row) throws Exception;
+
+        /**
+         * Produits modifiés depuis since (tous si null) ou d'identifiant supérieur à afterId
+         */
+        void scanChanged(int shard, LocalDateTime since, long afterId, Consumer<Product> row) throws Exception;
+
+        void scanIds(int shard, LongConsumer row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface HighWaterRow {
+        void accept(LocalDateTime maxUpdatedAt, long maxId);
+    }
+
+    private final boolean enabled;
+    // Modifiables à chaud (RuntimeSettings)
+    private volatile int maxProducts;
+    private final Path snapshotFile;
+    private final long snapshotSeconds;
+    private final long marginMicros;
+    private volatile long ttlSeconds;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object snapshotWrite = new Object();
+    private Slots slots = new Slots();
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private final List<String> categories = new ArrayList<>();
+    // Colonnes indexées par emplacement ; l'identifiant n'est conservé que dans la table des emplacements
+    private long[] priceCents = new long[0];
+    private int[] quantities = new int[0];
+    private int[] categoryOf = new int[0];
+    private long[] createdMicros = new long[0];
+    private long[] updatedMicros = new long[0];
+    private long[] versions = new long[0];
+    // Secondes écoulées depuis la création du cache au chargement de l'entrée
+    private int[] loadedAt = new int[0];
+    // Position dans l'arène du nom suivi de la description
+    private int[] texts = new int[0];
+    private int[] freeSlots = new int[0];
+    private int freeCount;
+    private int slotCount;
+    private byte[] arena = new byte[4096];
+    private int arenaSize;
+    private long garbageBytes;
+    // Incrémentée à chaque suppression : un chargement commencé avant ne doit pas ressusciter le produit
+    private long removals;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    // Modifications du contenu, pour n'écrire un instantané que si le cache a changé
+    private long modifications;
+    private long snapshotModifications = -1;
+    // Identifiants écrits pendant la restauration : leur copie est plus récente que l'instantané
+    private Set<Long> writesDuringRestore;
+    private volatile boolean ready;
+    // Retraits dictés par le flux des changements
+    private volatile boolean following;
+    private final LongAdder invalidated = new LongAdder();
+    private volatile String lastError;
+    private volatile long lastSnapshotMillis;
+    private volatile int restored;
+    private volatile int replayed;
+    private volatile int dropped;
+    private ScheduledExecutorService scheduler;
+
+    CompactProductStore(boolean enabled, int maxProducts) {
+        this(enabled, maxProducts, null, 300L, 60L);
+    }
+
+    CompactProductStore(boolean enabled, int maxProducts, Path snapshotFile, long snapshotSeconds, long marginSeconds) {
+        this(enabled, maxProducts, snapshotFile, snapshotSeconds, marginSeconds, 0L, System::nanoTime);
+    }
+
+    CompactProductStore(boolean enabled, int maxProducts, Path snapshotFile, long snapshotSeconds, long marginSeconds,
+                        long ttlSeconds, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.maxProducts = maxProducts;
+        this.snapshotFile = snapshotFile;
+        this.snapshotSeconds = Math.max(1, snapshotSeconds);
+        this.marginMicros = TimeUnit.SECONDS.toMicros(Math.max(0, marginSeconds));
+        this.ttlSeconds = Math.max(0, ttlSeconds);
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        // Sans instantané à restaurer, le cache vide est utilisable tout de suite
+        this.ready = snapshotFile == null;
+    }
+
+    public static CompactProductStore getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Rend la capacité et la durée de vie des entrées modifiables via RuntimeSettings (cache activé seulement)
+     */
+    public void registerRuntimeSettings(RuntimeSettings settings) {
+        if (!enabled) {
+            return;
+        }
+        settings.register("product.cache.max", 0, 100_000_000, () -> maxProducts, this::resize);
+        settings.register("product.cache.ttl.seconds", 0, 86_400, () -> (int) ttlSeconds, value -> ttlSeconds = value);
+    }
+
+    /**
+     * Change la capacité ; au-dessous du nombre de produits en cache, les produits en trop sont retirés
+     */
+    void resize(int capacity) {
+        lock.writeLock().lock();
+        try {
+            maxProducts = capacity;
+            List<Long> excess = new ArrayList<>();
+            for (int entry = 0; entry < slots.capacity() && slots.size() - excess.size() > capacity; entry++) {
+                if (slots.slotAt(entry) >= 0) {
+                    excess.add(slots.keyAt(entry));
+                }
+            }
+            for (long id : excess) {
+                drop(id, slots.get(id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire du cache chaque produit lu dans le flux ; à appeler avant le démarrage du flux. Le cache
+     * n'est plus utilisable avant restore, qui doit attendre que le flux soit prêt : un produit écrit
+     * avant ne sera jamais retiré par lui.
+     */
+    void follow(ChangeFeed feed) {
+        lock.writeLock().lock();
+        try {
+            following = true;
+            ready = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        feed.listen(this::invalidate);
+    }
+
+    void invalidate(Change change) {
+        if (Change.PRODUCT.equals(change.getEntity())) {
+            remove(change.getId());
+            invalidated.increment();
+        }
+    }
+
+    /**
+     * Faux pendant la restauration de l'instantané : les lectures passent alors par la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Champs d'un produit en cache, lus directement dans les colonnes ; valide seulement pendant
+     * l'appel de read (ne pas conserver)
+     */
+    public final class View {
+        private final long id;
+        private final int slot;
+
+        private View(long id, int slot) {
+            this.id = id;
+            this.slot = slot;
+        }
+
+        public long id() {
+            return id;
+        }
+
+        public long priceCents() {
+            return priceCents[slot];
+        }
+
+        public int quantity() {
+            return quantities[slot];
+        }
+
+        /**
+         * Catégorie internée : même instance pour tous les produits de la catégorie
+         */
+        public String category() {
+            return categoryOf[slot] == NO_CATEGORY ? null : categories.get(categoryOf[slot]);
+        }
+
+        public long version() {
+            return versions[slot];
+        }
+
+        public String name() {
+            return text(texts[slot]);
+        }
+
+        public String description() {
+            return text(skipText(arena, texts[slot]));
+        }
+
+        public Product toProduct() {
+            Product product = new Product(name(), description(), BigDecimal.valueOf(priceCents(), 2), quantity(), category());
+            product.setId(id);
+            product.setCreatedAt(time(createdMicros[slot]));
+            product.setUpdatedAt(time(updatedMicros[slot]));
+            product.setVersion(version());
+            return product;
+        }
+    }
+
+    /**
+     * Applique reader au produit en cache sous verrou partagé ; vide s'il est absent
+     */
+    public <T> Optional<T> read(long id, Function<View, T> reader) {
+        if (!enabled || !ready) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(id);
+            if (slot < 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            if (ttlSeconds > 0 && secondsSinceStart() - loadedAt[slot] >= ttlSeconds) {
+                // Relu en base par l'appelant puis remis en cache
+                expired.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.ofNullable(reader.apply(new View(id, slot)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Produit en cache, matérialisé en Product (nouvelle instance à chaque appel)
+     */
+    public Optional<Product> get(long id) {
+        return read(id, View::toProduct);
+    }
+
+    /**
+     * Numéro à passer à putIfUnchanged, lu avant le chargement en base
+     */
+    public long generation() {
+        lock.readLock().lock();
+        try {
+            return removals;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Met en cache un produit chargé en base, sauf si une suppression a eu lieu depuis generation()
+     */
+    public void putIfUnchanged(Product product, long generation) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (ready && removals == generation) {
+                store(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Met à jour le produit après une écriture (ignoré si le cache en connaît une version plus récente)
+     */
+    public void put(Product product) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (writesDuringRestore != null) {
+                writesDuringRestore.add(product.getId());
+            }
+            store(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire le produit (supprimé, ou modifié sans que sa nouvelle version soit connue)
+     */
+    public void remove(long id) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removals++;
+            if (writesDuringRestore != null) {
+                writesDuringRestore.add(id);
+            }
+            int slot = slots.get(id);
+            if (slot >= 0) {
+                drop(id, slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void drop(long id, int slot) {
+        modifications++;
+        garbageBytes += recordBytes(arena, texts[slot]);
+        slots.remove(id);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeSlots.length * 2));
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void store(Product product) {
+        byte[] name = bytes(product.getName());
+        byte[] description = bytes(product.getDescription());
+        byte[] record = new byte[fieldBytes(name) + fieldBytes(description)];
+        writeField(description, record, writeField(name, record, 0));
+        store(product.getId(), product.getVersion() == null ? 0L : product.getVersion(),
+                PriceIndex.cents(product.getPrice(), RoundingMode.HALF_UP), product.getQuantity(), product.getCategory(),
+                micros(product.getCreatedAt()), micros(product.getUpdatedAt()), record, 0, record.length);
+    }
+
+    /**
+     * Écrit une ligne ; record[from, from + length) contient le nom puis la description encodés
+     */
+    private void store(long id, long version, long price, int quantity, String category, long created,
+                       long updated, byte[] record, int from, int length) {
+        int slot = slots.get(id);
+        if (slot >= 0 && versions[slot] > version) {
+            return;
+        }
+        if (!reserve(length)) {
+            // Arène pleine : l'ancienne version ne doit pas rester servie
+            if (slot >= 0) {
+                drop(id, slot);
+            }
+            return;
+        }
+        if (slot >= 0) {
+            garbageBytes += recordBytes(arena, texts[slot]);
+        } else if (slots.size() >= maxProducts) {
+            return;
+        } else {
+            slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+            slots.put(id, slot);
+        }
+        modifications++;
+        priceCents[slot] = price;
+        quantities[slot] = quantity;
+        categoryOf[slot] = categoryId(category);
+        createdMicros[slot] = created;
+        updatedMicros[slot] = updated;
+        versions[slot] = version;
+        loadedAt[slot] = secondsSinceStart();
+        texts[slot] = arenaSize;
+        System.arraycopy(record, from, arena, arenaSize, length);
+        arenaSize += length;
+    }
+
+    private int secondsSinceStart() {
+        return (int) TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong() - startNanos);
+    }
+
+    private int newSlot() {
+        if (slotCount == versions.length) {
+            int capacity = Math.max(64, versions.length + (versions.length >> 1));
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            categoryOf = Arrays.copyOf(categoryOf, capacity);
+            createdMicros = Arrays.copyOf(createdMicros, capacity);
+            updatedMicros = Arrays.copyOf(updatedMicros, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            loadedAt = Arrays.copyOf(loadedAt, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        return slotCount++;
+    }
+
+    private int categoryId(String category) {
+        if (category == null) {
+            return NO_CATEGORY;
+        }
+        return categoryIds.computeIfAbsent(category, key -> {
+            categories.add(key);
+            return categories.size() - 1;
+        });
+    }
+
+    private static byte[] bytes(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Place pour length octets dans l'arène, après recompactage si besoin ; faux si l'arène est pleine
+     */
+    private boolean reserve(int length) {
+        if (garbageBytes > MIN_COMPACTION_BYTES && garbageBytes * 2 > arenaSize) {
+            compact();
+        }
+        if ((long) arenaSize + length > MAX_ARENA_BYTES) {
+            compact();
+            if ((long) arenaSize + length > MAX_ARENA_BYTES) {
+                return false;
+            }
+        }
+        if (arenaSize + length > arena.length) {
+            long capacity = Math.max((long) arena.length + (arena.length >> 1), (long) arenaSize + length);
+            arena = Arrays.copyOf(arena, (int) Math.min(capacity, MAX_ARENA_BYTES));
+        }
+        return true;
+    }
+
+    /**
+     * Champ texte : longueur + 1 en varint (0 pour null) puis octets UTF-8
+     */
+    private static int fieldBytes(byte[] text) {
+        int length = text == null ? 0 : text.length + 1;
+        int bytes = 1;
+        while ((length >>>= 7) != 0) {
+            bytes++;
+        }
+        return bytes + (text == null ? 0 : text.length);
+    }
+
+    /**
+     * Encode le champ dans target à partir de position ; retourne la position suivante
+     */
+    private static int writeField(byte[] text, byte[] target, int position) {
+        int length = text == null ? 0 : text.length + 1;
+        while ((length & ~0x7F) != 0) {
+            target[position++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        target[position++] = (byte) length;
+        if (text != null) {
+            System.arraycopy(text, 0, target, position, text.length);
+            position += text.length;
+        }
+        return position;
+    }
+
+    /**
+     * Longueur + 1 du champ à la position donnée (0 pour null)
+     */
+    private static int fieldLength(byte[] source, int offset) {
+        int length = 0;
+        for (int position = offset, shift = 0; ; position++, shift += 7) {
+            length |= (source[position] & 0x7F) << shift;
+            if (source[position] >= 0) {
+                return length;
+            }
+        }
+    }
+
+    /**
+     * Position du premier octet du texte, après son préfixe varint
+     */
+    private static int fieldStart(byte[] source, int offset) {
+        int position = offset;
+        while (source[position] < 0) {
+            position++;
+        }
+        return position + 1;
+    }
+
+    private String text(int offset) {
+        int length = fieldLength(arena, offset);
+        return length == 0 ? null : new String(arena, fieldStart(arena, offset), length - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Position du champ suivant
+     */
+    private static int skipText(byte[] source, int offset) {
+        return fieldStart(source, offset) + Math.max(0, fieldLength(source, offset) - 1);
+    }
+
+    /**
+     * Octets occupés par le nom et la description d'un produit
+     */
+    private static int recordBytes(byte[] source, int offset) {
+        return skipText(source, skipText(source, offset)) - offset;
+    }
+
+    /**
+     * Recopie les textes référencés dans une nouvelle arène, dans l'ordre de la table des emplacements
+     */
+    private void compact() {
+        byte[] previous = arena;
+        arena = new byte[Math.max(4096, arenaSize - (int) garbageBytes)];
+        int live = 0;
+        for (int entry = 0; entry < slots.capacity(); entry++) {
+            int slot = slots.slotAt(entry);
+            if (slot >= 0) {
+                int length = recordBytes(previous, texts[slot]);
+                System.arraycopy(previous, texts[slot], arena, live, length);
+                texts[slot] = live;
+                live += length;
+            }
+        }
+        arenaSize = live;
+        garbageBytes = 0;
+    }
+
+    private static long micros(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1000;
+    }
+
+    private static LocalDateTime time(long micros) {
+        if (micros == NO_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Charge l'instantané puis rattrape la base ; en cas d'échec (fichier illisible, base
+     * injoignable), le cache repart vide. Le cache est utilisable à la fin, dans tous les cas.
+     */
+    public void restore(Source source) {
+        if (!enabled || ready) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean found = snapshotFile != null && Files.exists(snapshotFile);
+        if (following && !found) {
+            // Produits chargés avant que le flux soit prêt : une écriture d'une autre instance a pu lui échapper
+            clear();
+        }
+        lock.writeLock().lock();
+        try {
+            writesDuringRestore = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            if (found) {
+                ProductCacheSnapshot snapshot = ProductCacheSnapshot.map(snapshotFile);
+                long[] highWater = highWater(source);
+                if (snapshot.highWaterMicros > highWater[0]) {
+                    // Base restaurée ou remplacée depuis l'instantané : ses produits ne sont plus fiables
+                    logger.log(Level.WARNING, "Instantané du cache des produits plus récent que la base, ignoré : {0}",
+                            snapshotFile);
+                } else {
+                    restored = install(snapshot);
+                    replayed = replay(source, snapshot);
+                    dropped = dropDeleted(source);
+                }
+            }
+            lastError = null;
+            logger.log(found ? Level.INFO : Level.FINE, "Cache des produits restauré : {0} produit(s) depuis l''instantané, {1} relu(s), "
+                    + "{2} retiré(s) en {3} ms", new Object[]{restored, replayed, dropped,
+                    (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(Level.WARNING, "Instantané du cache des produits inutilisable, démarrage à froid", e);
+            clear();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                writesDuringRestore = null;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Plus grand updated_at (microsecondes) et plus grand identifiant, tous shards confondus
+     */
+    private static long[] highWater(Source source) throws Exception {
+        long[] highWater = {NO_TIME, 0L};
+        for (int shard = 0; shard < source.shardCount(); shard++) {
+            source.scanHighWater(shard, (maxUpdatedAt, maxId) -> {
+                highWater[0] = Math.max(highWater[0], micros(maxUpdatedAt));
+                highWater[1] = Math.max(highWater[1], maxId);
+            });
+        }
+        return highWater;
+    }
+
+    private int install(ProductCacheSnapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            int count = 0;
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (writesDuringRestore.contains(snapshot.ids[i])) {
+                    continue;
+                }
+                store(snapshot.ids[i], snapshot.versions[i], snapshot.priceCents[i], snapshot.quantities[i],
+                        snapshot.categoryOf[i] == NO_CATEGORY ? null : snapshot.categories.get(snapshot.categoryOf[i]),
+                        snapshot.createdMicros[i], snapshot.updatedMicros[i], snapshot.arena, snapshot.texts[i],
+                        recordBytes(snapshot.arena, snapshot.texts[i]));
+                count++;
+            }
+            // Contenu identique au fichier : pas de nouvel instantané sans écriture ultérieure
+            snapshotModifications = modifications;
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Relit les produits modifiés ou créés depuis le point haut de l'instantané
+     */
+    private int replay(Source source, ProductCacheSnapshot snapshot) throws Exception {
+        LocalDateTime since = snapshot.highWaterMicros == NO_TIME ? null : time(snapshot.highWaterMicros - marginMicros);
+        int[] count = {0};
+        for (int shard = 0; shard < source.shardCount(); shard++) {
+            source.scanChanged(shard, since, snapshot.highWaterId, product -> {
+                lock.writeLock().lock();
+                try {
+                    if (!writesDuringRestore.contains(product.getId())) {
+                        store(product);
+                        count[0]++;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Retire les produits en cache absents de la base (supprimés depuis l'instantané)
+     */
+    private int dropDeleted(Source source) throws Exception {
+        BitSet seen = new BitSet();
+        for (int shard = 0; shard < source.shardCount(); shard++) {
+            source.scanIds(shard, id -> {
+                lock.readLock().lock();
+                try {
+                    int slot = slots.get(id);
+                    if (slot >= 0) {
+                        seen.set(slot);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            });
+        }
+        lock.writeLock().lock();
+        try {
+            List<Long> missing = new ArrayList<>();
+            for (int entry = 0; entry < slots.capacity(); entry++) {
+                int slot = slots.slotAt(entry);
+                if (slot >= 0 && !seen.get(slot) && !writesDuringRestore.contains(slots.keyAt(entry))) {
+                    missing.add(slots.keyAt(entry));
+                }
+            }
+            for (long id : missing) {
+                drop(id, slots.get(id));
+            }
+            return missing.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clear() {
+        lock.writeLock().lock();
+        try {
+            slots = new Slots();
+            categoryIds.clear();
+            categories.clear();
+            freeCount = 0;
+            slotCount = 0;
+            arenaSize = 0;
+            garbageBytes = 0;
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Écrit un instantané si le cache a changé depuis le précédent ; le point haut de la base est lu
+     * avant la copie, une écriture concurrente sera donc relue à la restauration. En cas d'échec,
+     * l'instantané précédent reste en place.
+     */
+    public void snapshot(Source source) {
+        if (!enabled || snapshotFile == null || !ready) {
+            return;
+        }
+        synchronized (snapshotWrite) {
+            long start = System.nanoTime();
+            try {
+                lock.readLock().lock();
+                try {
+                    if (modifications == snapshotModifications && Files.exists(snapshotFile)) {
+                        return;
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                long[] highWater = highWater(source);
+                long copied;
+                ProductCacheSnapshot snapshot;
+                lock.readLock().lock();
+                try {
+                    copied = modifications;
+                    snapshot = copy(highWater);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                snapshot.write(snapshotFile);
+                lock.writeLock().lock();
+                try {
+                    snapshotModifications = copied;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                lastSnapshotMillis = System.currentTimeMillis();
+                lastError = null;
+                logger.log(Level.INFO, "Instantané du cache des produits écrit : {0} produit(s) en {1} ms",
+                        new Object[]{snapshot.size(), (System.nanoTime() - start) / 1_000_000});
+            } catch (Exception e) {
+                lastError = e.getMessage();
+                logger.log(Level.WARNING, "Instantané du cache des produits impossible, précédent conservé", e);
+            }
+        }
+    }
+
+    /**
+     * Colonnes denses et arène sans octets inutilisés (verrou partagé tenu par l'appelant)
+     */
+    private ProductCacheSnapshot copy(long[] highWater) {
+        int count = slots.size();
+        long[] ids = new long[count];
+        int[] slotOf = new int[count];
+        int arenaBytes = 0;
+        for (int entry = 0, i = 0; entry < slots.capacity(); entry++) {
+            int slot = slots.slotAt(entry);
+            if (slot >= 0) {
+                ids[i] = slots.keyAt(entry);
+                slotOf[i++] = slot;
+                arenaBytes += recordBytes(arena, texts[slot]);
+            }
+        }
+        long[] prices = new long[count];
+        int[] quantityColumn = new int[count];
+        int[] categoryColumn = new int[count];
+        long[] created = new long[count];
+        long[] updated = new long[count];
+        long[] versionColumn = new long[count];
+        int[] textColumn = new int[count];
+        byte[] compacted = new byte[arenaBytes];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = slotOf[i];
+            prices[i] = priceCents[slot];
+            quantityColumn[i] = quantities[slot];
+            categoryColumn[i] = categoryOf[slot];
+            created[i] = createdMicros[slot];
+            updated[i] = updatedMicros[slot];
+            versionColumn[i] = versions[slot];
+            int length = recordBytes(arena, texts[slot]);
+            System.arraycopy(arena, texts[slot], compacted, position, length);
+            textColumn[i] = position;
+            position += length;
+        }
+        return new ProductCacheSnapshot(highWater[0], highWater[1], List.copyOf(categories), ids, prices,
+                quantityColumn, categoryColumn, created, updated, versionColumn, textColumn, compacted);
+    }
+
+    /**
+     * Suit le flux des changements s'il est activé, restaure l'instantané une fois le flux prêt puis
+     * écrit les suivants périodiquement (thread "product-cache-snapshot") ; avant ChangeFeed.start
+     */
+    public synchronized void start() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        Source source = new DatabaseCacheSource();
+        ChangeFeed feed = ChangeFeed.getInstance();
+        if (feed.isEnabled()) {
+            follow(feed);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "product-cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(() -> {
+            if (!following || awaitReady(feed)) {
+                restore(source);
+            }
+        });
+        if (snapshotFile != null) {
+            scheduler.scheduleWithFixedDelay(() -> snapshot(source), snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Faux si l'attente est interrompue (arrêt)
+     */
+    private static boolean awaitReady(ChangeFeed feed) {
+        try {
+            while (!feed.isReady()) {
+                Thread.sleep(100);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Arrête les écritures périodiques et écrit un dernier instantané (avant la fermeture de la base)
+     */
+    public void stop() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        snapshot(new DatabaseCacheSource());
+    }
+
+    /**
+     * Taille estimée du cache en octets : colonnes, table des emplacements, arène et catégories
+     */
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long columns = (long) versions.length * (8 + 4 + 4 + 8 + 8 + 8 + 4 + 4) + 4L * freeSlots.length;
+            long categoryBytes = 0;
+            for (String category : categories) {
+                categoryBytes += 40 + category.length() + 64;
+            }
+            return columns + slots.sizeInBytes() + arena.length + categoryBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * État du cache : produits, taille, octets par produit, arène, lectures trouvées ou non
+     */
+    public Map<String, Object> describe() {
+        long bytes = sizeInBytes();
+        Map<String, Object> result = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            int size = slots.size();
+            result.put("products", size);
+            result.put("maxProducts", maxProducts);
+            result.put("categories", categories.size());
+            result.put("sizeBytes", bytes);
+            result.put("bytesPerProduct", size == 0 ? 0 : bytes / size);
+            result.put("arenaBytes", arenaSize);
+            result.put("arenaGarbageBytes", garbageBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.put("hits", hits.sum());
+        result.put("misses", misses.sum());
+        result.put("expired", expired.sum());
+        result.put("ttlSeconds", ttlSeconds);
+        result.put("followsChangeFeed", following);
+        if (following) {
+            result.put("invalidated", invalidated.sum());
+        }
+        if (snapshotFile != null || following) {
+            result.put("ready", ready);
+        }
+        if (snapshotFile != null) {
+            result.put("snapshot", snapshotFile.toString());
+            result.put("restored", restored);
+            result.put("replayed", replayed);
+            result.put("dropped", dropped);
+            if (lastSnapshotMillis > 0) {
+                result.put("lastSnapshotAgeSeconds", (System.currentTimeMillis() - lastSnapshotMillis) / 1000);
+            }
+        }
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    /**
+     * Table à adressage ouvert identifiant → emplacement (12 octets par entrée, la version est
+     * dans les colonnes) ; même sondage et même suppression sans marqueur qu'IdTable
+     */
+    private static final class Slots {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys = new long[16];
+        private int[] values = new int[16];
+        private int size;
+
+        Slots() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        /**
+         * Emplacement de l'entrée donnée, ou -1 si elle est vide
+         */
+        int slotAt(int entry) {
+            return keys[entry] == EMPTY ? -1 : values[entry];
+        }
+
+        long keyAt(int entry) {
+            return keys[entry];
+        }
+
+        int get(long id) {
+            int mask = keys.length - 1;
+            for (int entry = entryOf(id, mask); ; entry = (entry + 1) & mask) {
+                if (keys[entry] == id) {
+                    return values[entry];
+                }
+                if (keys[entry] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long id, int slot) {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int entry = entryOf(id, mask);
+            while (keys[entry] != EMPTY && keys[entry] != id) {
+                entry = (entry + 1) & mask;
+            }
+            if (keys[entry] == EMPTY) {
+                keys[entry] = id;
+                size++;
+            }
+            values[entry] = slot;
+        }
+
+        void remove(long id) {
+            int mask = keys.length - 1;
+            int hole = entryOf(id, mask);
+            while (keys[hole] != id) {
+                if (keys[hole] == EMPTY) {
+                    return;
+                }
+                hole = (hole + 1) & mask;
+            }
+            for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                int home = entryOf(keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            keys[hole] = EMPTY;
+            size--;
+        }
+
+        long sizeInBytes() {
+            return 12L * keys.length;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[keys.length];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int entry = 0; entry < oldKeys.length; entry++) {
+                if (oldKeys[entry] != EMPTY) {
+                    put(oldKeys[entry], oldValues[entry]);
+                }
+            }
+        }
+
+        private static int entryOf(long id, int mask) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.index;
+
+import java.util.Arrays;
+
+/**
+ * Ensemble d'entiers positifs compressé à la manière de Roaring : les valeurs sont groupées par
+ * tranche de 65536 (16 bits de poids fort) ; une tranche peu remplie est un tableau trié de char,
+ * une tranche de plus de ARRAY_MAX valeurs un bitmap de 1024 mots. Les intersections et unions de
+ * deux tranches bitmap se font mot à mot. Non synchronisé (protégé par le verrou de l'index).
+ */
+final class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int size;
+
+    /**
+     * Tranche : values triées (cardinality premières) ou bits (1024 mots), jamais les deux
+     */
+    private static final class Chunk {
+        char[] values;
+        long[] bits;
+        int cardinality;
+
+        static Chunk ofArray(char[] values, int cardinality) {
+            Chunk chunk = new Chunk();
+            chunk.values = values;
+            chunk.cardinality = cardinality;
+            return chunk;
+        }
+
+        static Chunk ofBits(long[] bits, int cardinality) {
+            Chunk chunk = new Chunk();
+            chunk.bits = bits;
+            chunk.cardinality = cardinality;
+            return cardinality <= ARRAY_MAX ? chunk.toArrayChunk() : chunk;
+        }
+
+        boolean contains(char low) {
+            return bits != null
+                    ? (bits[low >>> 6] & (1L << low)) != 0
+                    : Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        void add(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] = before | (1L << low);
+                if (before != bits[low >>> 6]) {
+                    cardinality++;
+                }
+                return;
+            }
+            int position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position >= 0) {
+                return;
+            }
+            if (cardinality == ARRAY_MAX) {
+                bits = toBits();
+                values = null;
+                add(low);
+                return;
+            }
+            int insertion = -position - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, insertion, values, insertion + 1, cardinality - insertion);
+            values[insertion] = low;
+            cardinality++;
+        }
+
+        void remove(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] = before & ~(1L << low);
+                if (before != bits[low >>> 6] && --cardinality <= ARRAY_MAX / 2) {
+                    Chunk array = toArrayChunk();
+                    values = array.values;
+                    bits = null;
+                }
+                return;
+            }
+            int position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position >= 0) {
+                System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+                cardinality--;
+            }
+        }
+
+        long[] toBits() {
+            if (bits != null) {
+                return bits.clone();
+            }
+            long[] result = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                result[values[i] >>> 6] |= 1L << values[i];
+            }
+            return result;
+        }
+
+        Chunk toArrayChunk() {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int word = 0; word < WORDS; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    result[count++] = (char) (word * 64 + Long.numberOfTrailingZeros(remaining));
+                }
+            }
+            return ofArray(result, count);
+        }
+
+        Chunk copy() {
+            return bits != null ? ofBits(bits.clone(), cardinality) : ofArray(values.clone(), cardinality);
+        }
+
+        long sizeInBytes() {
+            return bits != null ? WORDS * 8L : values.length * 2L;
+        }
+
+        static Chunk and(Chunk left, Chunk right) {
+            if (left.bits != null && right.bits != null) {
+                long[] result = new long[WORDS];
+                int cardinality = 0;
+                for (int word = 0; word < WORDS; word++) {
+                    result[word] = left.bits[word] & right.bits[word];
+                    cardinality += Long.bitCount(result[word]);
+                }
+                return ofBits(result, cardinality);
+            }
+            if (left.bits != null) {
+                return and(right, left);
+            }
+            char[] result = new char[Math.min(left.cardinality, right.cardinality)];
+            int count = 0;
+            if (right.bits != null) {
+                for (int i = 0; i < left.cardinality; i++) {
+                    if (right.contains(left.values[i])) {
+                        result[count++] = left.values[i];
+                    }
+                }
+            } else {
+                for (int i = 0, j = 0; i < left.cardinality && j < right.cardinality; ) {
+                    int order = Character.compare(left.values[i], right.values[j]);
+                    if (order == 0) {
+                        result[count++] = left.values[i];
+                        i++;
+                        j++;
+                    } else if (order < 0) {
+                        i++;
+                    } else {
+                        j++;
+                    }
+                }
+            }
+            return ofArray(result, count);
+        }
+
+        static Chunk or(Chunk left, Chunk right) {
+            if (left.bits != null || right.bits != null || left.cardinality + right.cardinality > ARRAY_MAX) {
+                long[] result = left.toBits();
+                if (right.bits != null) {
+                    for (int word = 0; word < WORDS; word++) {
+                        result[word] |= right.bits[word];
+                    }
+                } else {
+                    for (int i = 0; i < right.cardinality; i++) {
+                        result[right.values[i] >>> 6] |= 1L << right.values[i];
+                    }
+                }
+                int cardinality = 0;
+                for (long word : result) {
+                    cardinality += Long.bitCount(word);
+                }
+                return ofBits(result, cardinality);
+            }
+            char[] result = new char[left.cardinality + right.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.cardinality || j < right.cardinality) {
+                if (j == right.cardinality || (i < left.cardinality && left.values[i] < right.values[j])) {
+                    result[count++] = left.values[i++];
+                } else if (i == left.cardinality || right.values[j] < left.values[i]) {
+                    result[count++] = right.values[j++];
+                } else {
+                    result[count++] = left.values[i++];
+                    j++;
+                }
+            }
+            return ofArray(result, count);
+        }
+
+        static Chunk andNot(Chunk left, Chunk right) {
+            if (left.bits != null) {
+                long[] result = left.bits.clone();
+                if (right.bits != null) {
+                    for (int word = 0; word < WORDS; word++) {
+                        result[word] &= ~right.bits[word];
+                    }
+                } else {
+                    for (int i = 0; i < right.cardinality; i++) {
+                        result[right.values[i] >>> 6] &= ~(1L << right.values[i]);
+                    }
+                }
+                int cardinality = 0;
+                for (long word : result) {
+                    cardinality += Long.bitCount(word);
+                }
+                return ofBits(result, cardinality);
+            }
+            char[] result = new char[left.cardinality];
+            int count = 0;
+            for (int i = 0; i < left.cardinality; i++) {
+                if (!right.contains(left.values[i])) {
+                    result[count++] = left.values[i];
+                }
+            }
+            return ofArray(result, count);
+        }
+    }
+
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        int position = position(key);
+        if (position < 0) {
+            position = -position - 1;
+            insertChunk(position, key, Chunk.ofArray(new char[4], 0));
+        }
+        chunks[position].add((char) value);
+    }
+
+    void remove(int value) {
+        int position = position((char) (value >>> 16));
+        if (position < 0) {
+            return;
+        }
+        chunks[position].remove((char) value);
+        if (chunks[position].cardinality == 0) {
+            System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+            System.arraycopy(chunks, position + 1, chunks, position, size - position - 1);
+            chunks[--size] = null;
+        }
+    }
+
+    boolean contains(int value) {
+        int position = position((char) (value >>> 16));
+        return position >= 0 && chunks[position].contains((char) value);
+    }
+
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += chunks[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    long sizeInBytes() {
+        long bytes = size * 3L;
+        for (int i = 0; i < size; i++) {
+            bytes += chunks[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Valeurs par ordre croissant
+     */
+    int[] toArray() {
+        int[] result = new int[cardinality()];
+        int count = 0;
+        for (int c = 0; c < size; c++) {
+            int high = keys[c] << 16;
+            Chunk chunk = chunks[c];
+            if (chunk.bits != null) {
+                for (int word = 0; word < WORDS; word++) {
+                    for (long remaining = chunk.bits[word]; remaining != 0; remaining &= remaining - 1) {
+                        result[count++] = high | (word * 64 + Long.numberOfTrailingZeros(remaining));
+                    }
+                }
+            } else {
+                for (int i = 0; i < chunk.cardinality; i++) {
+                    result[count++] = high | chunk.values[i];
+                }
+            }
+        }
+        return result;
+    }
+
+    static CompressedBitmap and(CompressedBitmap left, CompressedBitmap right) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0, j = 0; i < left.size && j < right.size; ) {
+            if (left.keys[i] == right.keys[j]) {
+                Chunk chunk = Chunk.and(left.chunks[i], right.chunks[j]);
+                if (chunk.cardinality > 0) {
+                    result.append(left.keys[i], chunk);
+                }
+                i++;
+                j++;
+            } else if (left.keys[i] < right.keys[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    static CompressedBitmap or(CompressedBitmap left, CompressedBitmap right) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < left.size || j < right.size) {
+            if (j == right.size || (i < left.size && left.keys[i] < right.keys[j])) {
+                result.append(left.keys[i], left.chunks[i++].copy());
+            } else if (i == left.size || right.keys[j] < left.keys[i]) {
+                result.append(right.keys[j], right.chunks[j++].copy());
+            } else {
+                result.append(left.keys[i], Chunk.or(left.chunks[i++], right.chunks[j++]));
+            }
+        }
+        return result;
+    }
+
+    static CompressedBitmap andNot(CompressedBitmap left, CompressedBitmap right) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0, j = 0; i < left.size; i++) {
+            while (j < right.size && right.keys[j] < left.keys[i]) {
+                j++;
+            }
+            Chunk chunk = j < right.size && right.keys[j] == left.keys[i]
+                    ? Chunk.andNot(left.chunks[i], right.chunks[j])
+                    : left.chunks[i].copy();
+            if (chunk.cardinality > 0) {
+                result.append(left.keys[i], chunk);
+            }
+        }
+        return result;
+    }
+
+    private int position(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void append(char key, Chunk chunk) {
+        insertChunk(size, key, chunk);
+    }
+
+    private void insertChunk(int position, char key, Chunk chunk) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(chunks, position, chunks, position + 1, size - position);
+        keys[position] = key;
+        chunks[position] = chunk;
+        size++;
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Filtre de Bloom à compteurs (-Dunique.filter.enabled=true) des noms d'utilisateur et des emails
+ * existants : « absent » est certain, « peut-être présent » demande la lecture en base. Compteurs de
+ * 4 bits (16 par long) pour accepter les suppressions ; un compteur saturé (15) n'est plus jamais
+ * décrémenté. Dimensionné pour -Dunique.filter.expected valeurs (1000000) et un taux de faux
+ * positifs -Dunique.filter.fpp (0.01).
+ *
+ * La contrainte d'unicité reste la référence : un faux négatif (écriture d'une autre instance,
+ * suppression concurrente de la construction) se traduit par un échec d'insertion, que UserService
+ * reconnaît. Taux de faux positifs mesuré exposé par describe().
+ */
+public final class CountingBloomFilter {
+
+    private static final Logger logger = Logger.getLogger(CountingBloomFilter.class.getName());
+
+    private static final boolean ENABLED = Boolean.getBoolean("unique.filter.enabled");
+    private static final int EXPECTED = Integer.getInteger("unique.filter.expected", 1_000_000);
+    private static final double FPP = Double.parseDouble(System.getProperty("unique.filter.fpp", "0.01"));
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final long MAX_COUNT = (1L << COUNTER_BITS) - 1;
+
+    private static final CountingBloomFilter USERNAMES =
+            new CountingBloomFilter("usernames", ENABLED, EXPECTED, FPP, DatabaseUniqueSource::usernames);
+    private static final CountingBloomFilter EMAILS =
+            new CountingBloomFilter("emails", ENABLED, EXPECTED, FPP, DatabaseUniqueSource::emails);
+
+    /**
+     * Lecture en flux des valeurs existantes
+     */
+    public interface Source {
+        void scan(Row row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Row {
+        void accept(String value);
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final int counterCount;
+    private final int hashCount;
+    private final Supplier<Source> database;
+    // Ajouts et suppressions : verrou partagé (compteurs mis à jour par CAS) ; remplacement des compteurs : exclusif
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile AtomicLongArray counters;
+    // Ajouts reçus pendant une construction, rejoués sur les nouveaux compteurs (les suppressions
+    // sont ignorées : un compteur trop haut ne coûte qu'un faux positif)
+    private List<String> addsDuringRebuild;
+    private volatile boolean ready;
+    private volatile String lastError;
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+
+    CountingBloomFilter(String name, boolean enabled, int expected, double fpp, Supplier<Source> database) {
+        this.name = name;
+        this.enabled = enabled;
+        int n = Math.max(1, expected);
+        double p = Math.min(0.5, Math.max(1e-9, fpp));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.counterCount = (int) Math.min(Math.max(m, COUNTERS_PER_WORD), (long) Integer.MAX_VALUE - COUNTERS_PER_WORD);
+        this.hashCount = Math.max(1, (int) Math.round((double) counterCount / n * Math.log(2)));
+        this.database = database;
+        this.counters = enabled ? newCounters() : null;
+    }
+
+    public static CountingBloomFilter forUsernames() {
+        return USERNAMES;
+    }
+
+    public static CountingBloomFilter forEmails() {
+        return EMAILS;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai une fois les valeurs existantes chargées ; avant, toute vérification passe par la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void add(String value) {
+        if (!enabled || value == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (addsDuringRebuild != null) {
+                synchronized (addsDuringRebuild) {
+                    addsDuringRebuild.add(value);
+                }
+            }
+            increment(counters, value);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(String value) {
+        if (!enabled || value == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            long hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                update(counters, index(hash, i), -1);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remplace une valeur après une mise à jour (rien si elle n'a pas changé)
+     */
+    public void replace(String previous, String value) {
+        if (previous == null ? value != null : !previous.equals(value)) {
+            remove(previous);
+            add(value);
+        }
+    }
+
+    /**
+     * Faux si la valeur est absente à coup sûr (compté comme lecture évitée) ; vrai si elle est
+     * peut-être présente ou si le filtre n'est pas prêt
+     */
+    public boolean mightContain(String value) {
+        if (!ready || value == null) {
+            return true;
+        }
+        AtomicLongArray current = counters;
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            if (count(current, index(hash, i)) == 0) {
+                definiteMisses.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Résultat de la lecture en base après un « peut-être présent » : absent = faux positif
+     */
+    public void recordLookup(boolean found) {
+        if (ready) {
+            (found ? confirmed : falsePositives).increment();
+        }
+    }
+
+    /**
+     * Recharge les valeurs existantes, puis rend le filtre disponible ; en cas d'échec, les
+     * compteurs précédents restent en place (indisponible s'ils n'ont jamais été chargés)
+     */
+    public void rebuild(Source source) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            addsDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            AtomicLongArray rebuilt = newCounters();
+            long[] loaded = {0};
+            source.scan(value -> {
+                if (value != null) {
+                    increment(rebuilt, value);
+                    loaded[0]++;
+                }
+            });
+            lock.writeLock().lock();
+            try {
+                for (String value : addsDuringRebuild) {
+                    increment(rebuilt, value);
+                }
+                counters = rebuilt;
+                ready = true;
+                lastError = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.log(Level.INFO, "Filtre d''unicité {0} chargé : {1} valeur(s), {2} compteurs, {3} hachages en {4} ms",
+                    new Object[]{name, loaded[0], counterCount, hashCount, (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(Level.SEVERE, "Chargement du filtre d'unicité " + name + " impossible, vérifications servies par la base", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                addsDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Démarre le chargement en arrière-plan (thread "unique-filter-build-<nom>")
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> rebuild(database.get()), "unique-filter-build-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * État du filtre : disponibilité, dimensionnement, lectures évitées, taux de faux positifs mesuré
+     * (faux positifs / valeurs absentes) et estimé d'après le remplissage des compteurs
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        result.put("counters", counterCount);
+        result.put("hashFunctions", hashCount);
+        long misses = definiteMisses.sum();
+        long falsePositiveCount = falsePositives.sum();
+        result.put("lookupsSkipped", misses);
+        result.put("lookupsConfirmed", confirmed.sum());
+        result.put("falsePositives", falsePositiveCount);
+        result.put("falsePositiveRate", misses + falsePositiveCount == 0 ? 0.0
+                : (double) falsePositiveCount / (misses + falsePositiveCount));
+        AtomicLongArray current = counters;
+        if (current != null) {
+            long nonZero = 0;
+            for (int i = 0; i < counterCount; i++) {
+                if (count(current, i) != 0) {
+                    nonZero++;
+                }
+            }
+            result.put("estimatedFalsePositiveRate", Math.pow((double) nonZero / counterCount, hashCount));
+        }
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    private AtomicLongArray newCounters() {
+        return new AtomicLongArray((counterCount + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    private void increment(AtomicLongArray target, String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            update(target, index(hash, i), 1);
+        }
+    }
+
+    /**
+     * Ajoute delta (+1 ou -1) au compteur par CAS ; un compteur saturé ou nul n'est pas décrémenté
+     */
+    private static void update(AtomicLongArray target, int counter, int delta) {
+        int word = counter / COUNTERS_PER_WORD;
+        int shift = (counter % COUNTERS_PER_WORD) * COUNTER_BITS;
+        while (true) {
+            long current = target.get(word);
+            long count = (current >>> shift) & MAX_COUNT;
+            if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                return;
+            }
+            long updated = current + ((long) delta << shift);
+            if (target.compareAndSet(word, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static long count(AtomicLongArray target, int counter) {
+        return (target.get(counter / COUNTERS_PER_WORD) >>> ((counter % COUNTERS_PER_WORD) * COUNTER_BITS)) & MAX_COUNT;
+    }
+
+    /**
+     * i-ème position par double hachage (h1 + i·h2) sur les deux moitiés d'un hachage 64 bits
+     */
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, counterCount);
+    }
+
+    /**
+     * FNV-1a 64 bits sur les caractères, puis mélange final de MurmurHash3
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe1a85ec3L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
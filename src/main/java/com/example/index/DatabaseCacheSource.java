@@ -0,0 +1,100 @@
+package com.example.index;
+
+import com.example.model.Product;
+import com.example.util.JPAUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Point haut, produits modifiés et identifiants de chaque shard pour le rattrapage de l'instantané
+ * de CompactProductStore (curseur JDBC, -Dproduct.cache.fetch.size lignes par aller-retour)
+ */
+final class DatabaseCacheSource implements CompactProductStore.Source {
+
+    private static final String HIGH_WATER = "SELECT MAX(updated_at), MAX(id) FROM products";
+    private static final String SCAN_PRODUCTS = "SELECT id, name, description, price, quantity, category, "
+            + "created_at, updated_at, version FROM products";
+    private static final String CHANGED = " WHERE updated_at >= ? OR updated_at IS NULL OR id > ?";
+    private static final String SCAN_IDS = "SELECT id FROM products";
+
+    private final int fetchSize = Integer.getInteger("product.cache.fetch.size", 10_000);
+
+    @Override
+    public int shardCount() {
+        return JPAUtil.getShardCount();
+    }
+
+    @Override
+    public void scanHighWater(int shard, CompactProductStore.HighWaterRow row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(shard);
+             PreparedStatement select = connection.prepareStatement(HIGH_WATER);
+             ResultSet resultSet = select.executeQuery()) {
+            if (resultSet.next()) {
+                Timestamp maxUpdatedAt = resultSet.getTimestamp(1);
+                row.accept(maxUpdatedAt == null ? null : maxUpdatedAt.toLocalDateTime(), resultSet.getLong(2));
+            }
+        }
+    }
+
+    @Override
+    public void scanChanged(int shard, LocalDateTime since, long afterId, Consumer<Product> row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(shard)) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL n'utilise un curseur (fetch size) qu'hors autocommit
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(since == null ? SCAN_PRODUCTS : SCAN_PRODUCTS + CHANGED)) {
+                select.setFetchSize(fetchSize);
+                if (since != null) {
+                    select.setTimestamp(1, Timestamp.valueOf(since));
+                    select.setLong(2, afterId);
+                }
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        row.accept(product(resultSet));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static Product product(ResultSet resultSet) throws SQLException {
+        Product product = new Product(resultSet.getString(2), resultSet.getString(3), resultSet.getBigDecimal(4),
+                resultSet.getInt(5), resultSet.getString(6));
+        product.setId(resultSet.getLong(1));
+        Timestamp createdAt = resultSet.getTimestamp(7);
+        product.setCreatedAt(createdAt == null ? null : createdAt.toLocalDateTime());
+        Timestamp updatedAt = resultSet.getTimestamp(8);
+        product.setUpdatedAt(updatedAt == null ? null : updatedAt.toLocalDateTime());
+        product.setVersion(resultSet.getLong(9));
+        return product;
+    }
+
+    @Override
+    public void scanIds(int shard, LongConsumer row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(shard)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(SCAN_IDS)) {
+                select.setFetchSize(fetchSize);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        row.accept(resultSet.getLong(1));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.index;
+
+import com.example.util.JPAUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Nombres de lignes agrégés pour RowCounts : produits par catégorie (total et en stock) sur chaque
+ * shard, utilisateurs sur la base primaire
+ */
+final class DatabaseCountSource implements RowCounts.Source {
+
+    private final String count;
+    private final boolean sharded;
+
+    private DatabaseCountSource(String count, boolean sharded) {
+        this.count = count;
+        this.sharded = sharded;
+    }
+
+    static DatabaseCountSource products() {
+        return new DatabaseCountSource("SELECT category, COUNT(*), SUM(CASE WHEN quantity > 0 THEN 1 ELSE 0 END) "
+                + "FROM products GROUP BY category", true);
+    }
+
+    static DatabaseCountSource users() {
+        return new DatabaseCountSource("SELECT NULL, COUNT(*), 0 FROM users", false);
+    }
+
+    @Override
+    public void scan(RowCounts.Row row) throws SQLException {
+        int shardCount = sharded ? JPAUtil.getShardCount() : 1;
+        for (int shard = 0; shard < shardCount; shard++) {
+            try (Connection connection = JPAUtil.openConnection(shard);
+                 PreparedStatement select = connection.prepareStatement(count);
+                 ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    row.accept(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.index;
+
+import com.example.util.JPAUtil;
+
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Lecture en flux des prix de chaque shard (curseur JDBC, -Dproduct.price.index.fetch.size lignes
+ * par aller-retour) : la construction de l'index ne charge jamais les entités Product en mémoire
+ */
+class DatabasePriceSource implements PriceIndex.Source {
+
+    static final String SCAN = "SELECT id, price, version FROM products ORDER BY price, id";
+
+    private final int fetchSize = Integer.getInteger("product.price.index.fetch.size", 10_000);
+
+    @Override
+    public int shardCount() {
+        return JPAUtil.getShardCount();
+    }
+
+    @Override
+    public void scan(int shard, PriceIndex.Row row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(shard)) {
+            scan(connection, fetchSize, row);
+        }
+    }
+
+    /**
+     * Parcourt les produits de la connexion ; PostgreSQL n'utilise un curseur (fetch size) qu'hors autocommit
+     */
+    static void scan(Connection connection, int fetchSize, PriceIndex.Row row) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement(SCAN)) {
+            select.setFetchSize(fetchSize);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    row.accept(resultSet.getLong(1), PriceIndex.cents(resultSet.getBigDecimal(2), RoundingMode.HALF_UP),
+                            resultSet.getLong(3));
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.index;
+
+import com.example.util.JPAUtil;
+
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Lecture en flux des attributs indexés de chaque shard pour ProductSearchIndex et InventoryStats
+ * (curseur JDBC, -Dproduct.search.index.fetch.size lignes par aller-retour)
+ */
+class DatabaseSearchSource implements ProductSearchIndex.Source, InventoryStats.Source {
+
+    private static final String SCAN = "SELECT id, category, quantity, price, version FROM products";
+
+    private final int fetchSize = Integer.getInteger("product.search.index.fetch.size", 10_000);
+
+    @Override
+    public int shardCount() {
+        return JPAUtil.getShardCount();
+    }
+
+    @Override
+    public void scan(int shard, InventoryStats.Row row) throws SQLException {
+        scan(shard, (ProductSearchIndex.Row) row::accept);
+    }
+
+    @Override
+    public void scan(int shard, ProductSearchIndex.Row row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(shard)) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL n'utilise un curseur (fetch size) qu'hors autocommit
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(SCAN)) {
+                select.setFetchSize(fetchSize);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        row.accept(resultSet.getLong(1), resultSet.getString(2), resultSet.getInt(3),
+                                PriceIndex.cents(resultSet.getBigDecimal(4), RoundingMode.HALF_UP), resultSet.getLong(5));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
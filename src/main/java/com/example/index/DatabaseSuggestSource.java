@@ -0,0 +1,57 @@
+package com.example.index;
+
+import com.example.util.JPAUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Lecture en flux d'une colonne pour SuggestIndex (curseur JDBC, -Dsuggest.index.fetch.size lignes
+ * par aller-retour) : noms de produits sur chaque shard, noms d'utilisateur sur la base primaire
+ */
+final class DatabaseSuggestSource implements SuggestIndex.Source {
+
+    private final String scan;
+    private final boolean sharded;
+    private final int fetchSize = Integer.getInteger("suggest.index.fetch.size", 10_000);
+
+    private DatabaseSuggestSource(String scan, boolean sharded) {
+        this.scan = scan;
+        this.sharded = sharded;
+    }
+
+    static DatabaseSuggestSource productNames() {
+        return new DatabaseSuggestSource("SELECT name FROM products", true);
+    }
+
+    static DatabaseSuggestSource usernames() {
+        return new DatabaseSuggestSource("SELECT username FROM users", false);
+    }
+
+    @Override
+    public int shardCount() {
+        return sharded ? JPAUtil.getShardCount() : 1;
+    }
+
+    @Override
+    public void scan(int shard, SuggestIndex.Row row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(shard)) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL n'utilise un curseur (fetch size) qu'hors autocommit
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(scan)) {
+                select.setFetchSize(fetchSize);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        row.accept(resultSet.getString(1));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.index;
+
+import com.example.util.JPAUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * Lecture des versions et des textes des produits de chaque shard pour FullTextIndex (curseur JDBC,
+ * -Dproduct.fulltext.fetch.size lignes par aller-retour)
+ */
+class DatabaseTextSource implements FullTextIndex.Source {
+
+    private static final String SCAN_VERSIONS = "SELECT id, version FROM products";
+    private static final String SCAN_TEXTS = "SELECT id, version, name, description FROM products";
+
+    private final int fetchSize = Integer.getInteger("product.fulltext.fetch.size", 10_000);
+
+    @Override
+    public int shardCount() {
+        return JPAUtil.getShardCount();
+    }
+
+    @Override
+    public void scanVersions(int shard, FullTextIndex.VersionRow row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(shard)) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL n'utilise un curseur (fetch size) qu'hors autocommit
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(SCAN_VERSIONS)) {
+                select.setFetchSize(fetchSize);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        row.accept(resultSet.getLong(1), resultSet.getLong(2));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @Override
+    public void scanTexts(int shard, long[] ids, FullTextIndex.TextRow row) throws SQLException {
+        String sql = ids == null ? SCAN_TEXTS
+                : SCAN_TEXTS + " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.length, "?")) + ")";
+        try (Connection connection = JPAUtil.openConnection(shard)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(sql)) {
+                select.setFetchSize(fetchSize);
+                if (ids != null) {
+                    for (int i = 0; i < ids.length; i++) {
+                        select.setLong(i + 1, ids[i]);
+                    }
+                }
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        row.accept(resultSet.getLong(1), resultSet.getLong(2), resultSet.getString(3), resultSet.getString(4));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
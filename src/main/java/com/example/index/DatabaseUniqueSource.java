@@ -0,0 +1,50 @@
+package com.example.index;
+
+import com.example.util.JPAUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Lecture en flux d'une colonne unique de la table users pour CountingBloomFilter (base primaire,
+ * curseur JDBC, -Dunique.filter.fetch.size lignes par aller-retour)
+ */
+final class DatabaseUniqueSource implements CountingBloomFilter.Source {
+
+    private final String scan;
+    private final int fetchSize = Integer.getInteger("unique.filter.fetch.size", 10_000);
+
+    private DatabaseUniqueSource(String scan) {
+        this.scan = scan;
+    }
+
+    static DatabaseUniqueSource usernames() {
+        return new DatabaseUniqueSource("SELECT username FROM users");
+    }
+
+    static DatabaseUniqueSource emails() {
+        return new DatabaseUniqueSource("SELECT email FROM users");
+    }
+
+    @Override
+    public void scan(CountingBloomFilter.Row row) throws SQLException {
+        try (Connection connection = JPAUtil.openConnection(0)) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL n'utilise un curseur (fetch size) qu'hors autocommit
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(scan)) {
+                select.setFetchSize(fetchSize);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        row.accept(resultSet.getString(1));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
@@ -0,0 +1,712 @@
+package com.example.index;
+
+import com.example.model.Product;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Index inversé plein texte du nom et de la description des produits
+ * (-Dproduct.fulltext.enabled=true), classement BM25.
+ *
+ * Les écritures vont dans un tampon en mémoire ; tous les -Dproduct.fulltext.flush.docs documents
+ * (1000), le tampon devient un segment immuable à postings compressés, écrit dans
+ * -Dproduct.fulltext.dir s'il est configuré. Les segments de même taille sont fusionnés quatre par
+ * quatre. Une table identifiant → (segment, longueur, version) désigne la copie vivante de chaque
+ * produit : une mise à jour ou une suppression n'a pas à réécrire les segments précédents.
+ *
+ * Au démarrage, les segments sur disque sont relus puis comparés aux versions en base ; seuls les
+ * produits absents ou modifiés sont relus et réindexés. Les écritures des autres instances n'y
+ * arrivent pas : -Dapp.instances au-delà de 1 le désactive.
+ */
+public final class FullTextIndex {
+
+    private static final Logger logger = Logger.getLogger(FullTextIndex.class.getName());
+
+    private static final FullTextIndex INSTANCE = new FullTextIndex(SingleInstance.enabled("product.fulltext.enabled"),
+            System.getProperty("product.fulltext.dir") != null ? Paths.get(System.getProperty("product.fulltext.dir")) : null,
+            Integer.getInteger("product.fulltext.flush.docs", 1000));
+
+    // Une occurrence dans le nom compte comme NAME_WEIGHT occurrences dans la description
+    private static final int NAME_WEIGHT = 2;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MERGE_FACTOR = 4;
+    private static final int MAX_SEGMENTS = 16;
+    // Au-delà de cette part de produits à relire, une lecture complète remplace la lecture par identifiants
+    private static final double FULL_SCAN_RATIO = 0.5;
+    private static final int IDS_PER_FETCH = 1000;
+    private static final int DOCUMENTS_PER_BUILD = 50_000;
+    private static final String SEGMENT_FILE = "segment-\\d{8}\\.ftx";
+
+    /**
+     * Accès aux produits en base, shard par shard
+     */
+    public interface Source {
+        int shardCount();
+
+        void scanVersions(int shard, VersionRow row) throws Exception;
+
+        /**
+         * Texte des produits donnés, ou de tous les produits du shard si ids est null
+         */
+        void scanTexts(int shard, long[] ids, TextRow row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface VersionRow {
+        void accept(long id, long version);
+    }
+
+    @FunctionalInterface
+    public interface TextRow {
+        void accept(long id, long version, String name, String description);
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int flushDocuments;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object files = new Object();
+    private List<TextSegment> segments = List.of();
+    private Map<Long, TextSegment.Document> buffer = new LinkedHashMap<>();
+    private int bufferGeneration;
+    private IdTable live = new IdTable(16);
+    private long totalLength;
+    // Identifiants écrits avant la fin du rattrapage : leur copie est plus récente que le disque et la base
+    private Set<Long> writesDuringCatchUp = new HashSet<>();
+    private volatile boolean ready;
+    private volatile String lastError;
+
+    FullTextIndex(boolean enabled, Path directory, int flushDocuments) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.flushDocuments = Math.max(1, flushDocuments);
+        this.bufferGeneration = nextGeneration(directory);
+    }
+
+    /**
+     * Génération suivant celle des fichiers de segments existants : les segments créés avant leur
+     * chargement ne peuvent pas porter le même numéro
+     */
+    private static int nextGeneration(Path directory) {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return 1;
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches(SEGMENT_FILE))
+                    .mapToInt(name -> Integer.parseInt(name.substring(8, 16)) + 1)
+                    .max()
+                    .orElse(1);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Lecture du répertoire de l'index plein texte impossible", e);
+            return 1;
+        }
+    }
+
+    public static FullTextIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai une fois le rattrapage terminé ; sinon les recherches passent par la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Indexe le nom et la description d'un produit après une écriture validée ; une version déjà
+     * indexée (mise à jour du seul stock) est ignorée
+     */
+    public void put(Product product) {
+        if (enabled && product.getId() != null) {
+            put(product.getId(), product.getVersion() != null ? product.getVersion() : 0L,
+                    product.getName(), product.getDescription());
+        }
+    }
+
+    void put(long id, long version, String name, String description) {
+        TextSegment.Document document = analyze(version, name, description);
+        boolean frozen;
+        lock.writeLock().lock();
+        try {
+            int slot = live.find(id);
+            if (slot >= 0 && live.versionAt(slot) >= version) {
+                return;
+            }
+            if (writesDuringCatchUp != null) {
+                writesDuringCatchUp.add(id);
+            }
+            if (slot >= 0) {
+                totalLength -= TextSegment.lengthOf(live.valueAt(slot));
+            }
+            buffer.put(id, document);
+            live.put(id, TextSegment.pack(bufferGeneration, document.length), version);
+            totalLength += document.length;
+            frozen = buffer.size() >= flushDocuments && freeze();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (frozen) {
+            persist();
+        }
+    }
+
+    /**
+     * Retire un produit supprimé
+     */
+    public void remove(long id) {
+        if (!enabled) {
+            return;
+        }
+        boolean frozen;
+        lock.writeLock().lock();
+        try {
+            if (writesDuringCatchUp != null) {
+                writesDuringCatchUp.add(id);
+            }
+            removeLive(id);
+            frozen = buffer.size() >= flushDocuments && freeze();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (frozen) {
+            persist();
+        }
+    }
+
+    /**
+     * Retire la copie vivante et enregistre la suppression dans le tampon (écrite avec lui)
+     */
+    private void removeLive(long id) {
+        dropLive(id);
+        buffer.put(id, TextSegment.Document.deleted());
+    }
+
+    private void dropLive(long id) {
+        int slot = live.find(id);
+        if (slot >= 0) {
+            totalLength -= TextSegment.lengthOf(live.valueAt(slot));
+            live.remove(id);
+        }
+    }
+
+    private static TextSegment.Document analyze(long version, String name, String description) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String term : TextAnalyzer.terms(name)) {
+            frequencies.merge(term, NAME_WEIGHT, Integer::sum);
+            length += NAME_WEIGHT;
+        }
+        for (String term : TextAnalyzer.terms(description)) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+        return new TextSegment.Document(version, length, frequencies);
+    }
+
+    /**
+     * Identifiants des limit produits les mieux classés pour la requête (BM25, termes combinés
+     * par OU), par score décroissant puis identifiant croissant
+     */
+    public long[] search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.terms(query));
+        lock.readLock().lock();
+        try {
+            int documentCount = live.size();
+            if (terms.isEmpty() || documentCount == 0) {
+                return new long[0];
+            }
+            double averageLength = Math.max(1.0, (double) totalLength / documentCount);
+            Scores scores = new Scores();
+            for (String term : terms) {
+                // Fréquence documentaire approchée : les copies remplacées comptent jusqu'à la fusion
+                int docFrequency = 0;
+                for (TextSegment segment : segments) {
+                    docFrequency += segment.docFrequency(term);
+                }
+                for (TextSegment.Document document : buffer.values()) {
+                    if (!document.isDeleted() && document.frequencies.containsKey(term)) {
+                        docFrequency++;
+                    }
+                }
+                if (docFrequency == 0) {
+                    continue;
+                }
+                int n = Math.min(docFrequency, documentCount);
+                double idf = Math.log(1 + (documentCount - n + 0.5) / (n + 0.5));
+                for (TextSegment segment : segments) {
+                    segment.postings(term, (id, frequency) -> {
+                        int slot = live.find(id);
+                        if (slot >= 0 && TextSegment.generationOf(live.valueAt(slot)) == segment.generation) {
+                            scores.add(id, idf * weight(frequency, TextSegment.lengthOf(live.valueAt(slot)), averageLength));
+                        }
+                    });
+                }
+                buffer.forEach((id, document) -> {
+                    Integer frequency = document.isDeleted() ? null : document.frequencies.get(term);
+                    if (frequency != null) {
+                        scores.add(id, idf * weight(frequency, document.length, averageLength));
+                    }
+                });
+            }
+            return scores.top(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static double weight(int frequency, int length, double averageLength) {
+        return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    /**
+     * Transforme le tampon en segment puis applique la politique de fusion ; vrai si la liste des
+     * segments a changé. Appelé sous le verrou d'écriture.
+     */
+    private boolean freeze() {
+        List<TextSegment> current = new ArrayList<>(segments);
+        boolean changed = false;
+        if (!buffer.isEmpty()) {
+            current.add(TextSegment.of(bufferGeneration++, buffer));
+            buffer = new LinkedHashMap<>();
+            changed = true;
+        }
+        while (true) {
+            int from = mergeStart(current);
+            if (from < 0) {
+                break;
+            }
+            List<TextSegment> merged = current.subList(from, current.size());
+            TextSegment segment = TextSegment.merge(bufferGeneration++, merged, live, from > 0);
+            for (int i = 0; i < segment.docIds.length; i++) {
+                if (segment.docLengths[i] >= 0) {
+                    live.put(segment.docIds[i], TextSegment.pack(segment.generation, segment.docLengths[i]),
+                            segment.docVersions[i]);
+                }
+            }
+            merged.clear();
+            current.add(segment);
+            changed = true;
+        }
+        segments = List.copyOf(current);
+        return changed;
+    }
+
+    /**
+     * Premier segment à fusionner : les MERGE_FACTOR derniers s'ils sont du même ordre de taille
+     * (puissance de MERGE_FACTOR du nombre de documents), tous au-delà de MAX_SEGMENTS ; -1 sinon
+     */
+    private int mergeStart(List<TextSegment> current) {
+        if (current.size() > MAX_SEGMENTS) {
+            return 0;
+        }
+        if (current.size() < MERGE_FACTOR) {
+            return -1;
+        }
+        int from = current.size() - MERGE_FACTOR;
+        int tier = tier(current.get(from));
+        for (int i = from + 1; i < current.size(); i++) {
+            if (tier(current.get(i)) != tier) {
+                return -1;
+            }
+        }
+        return from;
+    }
+
+    private int tier(TextSegment segment) {
+        int blocks = Math.max(1, segment.documentCount() / flushDocuments);
+        return (31 - Integer.numberOfLeadingZeros(blocks)) / 2;
+    }
+
+    /**
+     * Écrit le tampon sur disque (arrêt de l'application)
+     */
+    public void flush() {
+        if (!enabled || !ready) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            freeze();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        persist();
+    }
+
+    /**
+     * Écrit les segments en service qui n'ont pas encore de fichier puis supprime les fichiers des
+     * segments fusionnés ; rien avant la fin du chargement (fichiers pas encore relus)
+     */
+    private void persist() {
+        if (directory == null || !ready) {
+            return;
+        }
+        synchronized (files) {
+            try {
+                Files.createDirectories(directory);
+                List<TextSegment> inService;
+                lock.readLock().lock();
+                try {
+                    inService = segments;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                Set<Path> inUse = new HashSet<>();
+                for (TextSegment segment : inService) {
+                    Path file = fileOf(segment.generation);
+                    if (!Files.exists(file)) {
+                        segment.write(file);
+                    }
+                    inUse.add(file);
+                }
+                for (Path file : segmentFiles()) {
+                    if (!inUse.contains(file)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            } catch (IOException e) {
+                // Les segments manquants seront réindexés au prochain démarrage
+                logger.log(Level.WARNING, "Écriture des segments plein texte impossible", e);
+            }
+        }
+    }
+
+    private Path fileOf(int generation) {
+        return directory.resolve(String.format("segment-%08d.ftx", generation));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.filter(file -> file.getFileName().toString().matches(SEGMENT_FILE))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Relit les segments sur disque puis rattrape la base : produits absents ou de version
+     * différente relus et réindexés, produits disparus retirés. En cas d'échec, les recherches
+     * restent servies par la base.
+     */
+    public void rebuild(Source source) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int loaded = load();
+            int reindexed = catchUp(source);
+            lock.writeLock().lock();
+            try {
+                freeze();
+                writesDuringCatchUp = null;
+                ready = true;
+                lastError = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            persist();
+            logger.log(Level.INFO, "Index plein texte prêt : {0} produit(s), {1} relu(s) sur disque, {2} réindexé(s) en {3} ms",
+                    new Object[]{live.size(), loaded, reindexed, (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(Level.SEVERE, "Construction de l'index plein texte impossible, recherches servies par la base", e);
+        }
+    }
+
+    /**
+     * Charge les segments sur disque dans l'ordre des générations, avant les segments déjà créés
+     * en mémoire ; un segment illisible est ignoré (ses produits seront réindexés). Retourne le
+     * nombre de produits chargés.
+     */
+    private int load() throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<TextSegment> loaded = new ArrayList<>();
+        for (Path file : segmentFiles()) {
+            try {
+                loaded.add(TextSegment.read(file));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Segment plein texte ignoré : {0} ({1})", new Object[]{file, e.getMessage()});
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            int count = 0;
+            for (TextSegment segment : loaded) {
+                for (int i = 0; i < segment.docIds.length; i++) {
+                    long id = segment.docIds[i];
+                    if (writesDuringCatchUp.contains(id)) {
+                        continue;
+                    }
+                    if (segment.docLengths[i] < 0) {
+                        dropLive(id);
+                    } else {
+                        installLive(id, segment.generation, segment.docLengths[i], segment.docVersions[i]);
+                        count++;
+                    }
+                }
+            }
+            loaded.addAll(segments);
+            segments = List.copyOf(loaded);
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void installLive(long id, int generation, int length, long version) {
+        int slot = live.find(id);
+        if (slot >= 0) {
+            totalLength -= TextSegment.lengthOf(live.valueAt(slot));
+        }
+        live.put(id, TextSegment.pack(generation, length), version);
+        totalLength += length;
+    }
+
+    /**
+     * Compare les versions en base à celles de l'index et réindexe l'écart ; retourne le nombre de
+     * produits réindexés
+     */
+    private int catchUp(Source source) throws Exception {
+        int shardCount = source.shardCount();
+        List<long[]> staleByShard = new ArrayList<>(shardCount);
+        IdTable seen = new IdTable(1024);
+        long staleCount = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            long[][] stale = {new long[64]};
+            int[] count = {0};
+            source.scanVersions(shard, (id, version) -> {
+                seen.put(id, 0L, 0L);
+                if (isIndexed(id, version)) {
+                    return;
+                }
+                if (count[0] == stale[0].length) {
+                    stale[0] = Arrays.copyOf(stale[0], count[0] * 2);
+                }
+                stale[0][count[0]++] = id;
+            });
+            staleByShard.add(Arrays.copyOf(stale[0], count[0]));
+            staleCount += count[0];
+        }
+        boolean fullScan = staleCount > seen.size() * FULL_SCAN_RATIO;
+        Map<Long, TextSegment.Document> batch = new HashMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            long[] stale = staleByShard.get(shard);
+            TextRow row = (id, version, name, description) -> {
+                if (isIndexed(id, version)) {
+                    return;
+                }
+                batch.put(id, analyze(version, name, description));
+                if (batch.size() >= DOCUMENTS_PER_BUILD) {
+                    install(batch);
+                }
+            };
+            if (fullScan) {
+                source.scanTexts(shard, null, row);
+            } else {
+                for (int from = 0; from < stale.length; from += IDS_PER_FETCH) {
+                    source.scanTexts(shard, Arrays.copyOfRange(stale, from, Math.min(from + IDS_PER_FETCH, stale.length)), row);
+                }
+            }
+        }
+        install(batch);
+        lock.writeLock().lock();
+        try {
+            for (long id : live.keys()) {
+                if (seen.find(id) < 0 && !writesDuringCatchUp.contains(id)) {
+                    removeLive(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return (int) staleCount;
+    }
+
+    private boolean isIndexed(long id, long version) {
+        lock.readLock().lock();
+        try {
+            int slot = live.find(id);
+            return slot >= 0 && live.versionAt(slot) == version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute un lot relu de la base comme nouveau segment ; les produits écrits entre-temps par
+     * cette instance gardent leur copie
+     */
+    private void install(Map<Long, TextSegment.Document> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            batch.keySet().removeAll(writesDuringCatchUp);
+            TextSegment segment = TextSegment.of(bufferGeneration++, batch);
+            for (int i = 0; i < segment.docIds.length; i++) {
+                installLive(segment.docIds[i], segment.generation, segment.docLengths[i], segment.docVersions[i]);
+            }
+            List<TextSegment> current = new ArrayList<>(segments);
+            current.add(segment);
+            segments = List.copyOf(current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        batch.clear();
+    }
+
+    /**
+     * Démarre le chargement et le rattrapage en arrière-plan (thread "fulltext-index-build")
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> rebuild(new DatabaseTextSource()), "fulltext-index-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * État de l'index : disponibilité, produits, segments, termes en tampon, taille, dernière erreur
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        lock.readLock().lock();
+        try {
+            result.put("products", live.size());
+            result.put("segments", segments.size());
+            result.put("buffered", buffer.size());
+            result.put("segmentBytes", segments.stream().mapToLong(TextSegment::sizeInBytes).sum());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (directory != null) {
+            result.put("directory", directory.toString());
+        }
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    /**
+     * Scores cumulés par produit et sélection des meilleurs dans un tas borné
+     */
+    private static final class Scores {
+        private final IdTable table = new IdTable(64);
+        private long[] ids = new long[64];
+        private int size;
+
+        void add(long id, double score) {
+            int slot = table.find(id);
+            if (slot >= 0) {
+                table.put(id, Double.doubleToRawLongBits(Double.longBitsToDouble(table.valueAt(slot)) + score), 0L);
+                return;
+            }
+            table.put(id, Double.doubleToRawLongBits(score), 0L);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        long[] top(int limit) {
+            int capacity = Math.min(limit, size);
+            long[] heapIds = new long[capacity];
+            double[] heapScores = new double[capacity];
+            int heapSize = 0;
+            for (int i = 0; i < size; i++) {
+                long id = ids[i];
+                double score = Double.longBitsToDouble(table.valueAt(table.find(id)));
+                if (heapSize < capacity) {
+                    heapIds[heapSize] = id;
+                    heapScores[heapSize] = score;
+                    siftUp(heapIds, heapScores, heapSize++);
+                } else if (capacity > 0 && better(score, id, heapScores[0], heapIds[0])) {
+                    heapIds[0] = id;
+                    heapScores[0] = score;
+                    siftDown(heapIds, heapScores, heapSize);
+                }
+            }
+            // Extraction du tas (le moins bon en tête) de la fin vers le début
+            long[] result = new long[heapSize];
+            for (int last = heapSize - 1; last >= 0; last--) {
+                result[last] = heapIds[0];
+                heapIds[0] = heapIds[last];
+                heapScores[0] = heapScores[last];
+                siftDown(heapIds, heapScores, last);
+            }
+            return result;
+        }
+
+        private static boolean better(double score, long id, double otherScore, long otherId) {
+            return score != otherScore ? score > otherScore : id < otherId;
+        }
+
+        private static void siftUp(long[] ids, double[] scores, int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!better(scores[parent], ids[parent], scores[index], ids[index])) {
+                    return;
+                }
+                swap(ids, scores, parent, index);
+                index = parent;
+            }
+        }
+
+        private static void siftDown(long[] ids, double[] scores, int size) {
+            int index = 0;
+            while (true) {
+                int worst = index;
+                for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                    if (better(scores[worst], ids[worst], scores[child], ids[child])) {
+                        worst = child;
+                    }
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(ids, scores, worst, index);
+                index = worst;
+            }
+        }
+
+        private static void swap(long[] ids, double[] scores, int left, int right) {
+            long id = ids[left];
+            ids[left] = ids[right];
+            ids[right] = id;
+            double score = scores[left];
+            scores[left] = scores[right];
+            scores[right] = score;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.index;
+
+import java.util.Arrays;
+
+/**
+ * Table de hachage à adressage ouvert identifiant → (valeur, version), en tableaux de primitives,
+ * sans objet par entrée : prix en centimes pour PriceIndex, ordinal pour ProductSearchIndex,
+ * segment et longueur pour FullTextIndex. Non synchronisée (protégée par le verrou de l'index).
+ */
+final class IdTable {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private long[] versions;
+    private int size;
+
+    IdTable(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 4 / 3) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        versions = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Emplacement de l'identifiant, ou -1 s'il est absent
+     */
+    int find(long id) {
+        int mask = keys.length - 1;
+        for (int slot = slotOf(id, mask); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    long valueAt(int slot) {
+        return values[slot];
+    }
+
+    long versionAt(int slot) {
+        return versions[slot];
+    }
+
+    void put(long id, long value, long version) {
+        if ((size + 1) * 4L > keys.length * 3L) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = slotOf(id, mask);
+        while (keys[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = id;
+            size++;
+        }
+        values[slot] = value;
+        versions[slot] = version;
+    }
+
+    /**
+     * Identifiants présents, dans l'ordre des emplacements
+     */
+    long[] keys() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retire l'identifiant en recompactant la suite de collisions (pas de marqueur de suppression)
+     */
+    void remove(long id) {
+        int slot = find(id);
+        if (slot < 0) {
+            return;
+        }
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            // L'entrée peut combler le trou si son emplacement naturel ne se situe pas entre le trou et elle
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                versions[hole] = versions[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        long[] oldVersions = versions;
+        keys = new long[oldKeys.length * 2];
+        values = new long[keys.length];
+        versions = new long[keys.length];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                put(oldKeys[slot], oldValues[slot], oldVersions[slot]);
+            }
+        }
+    }
+
+    private static int slotOf(long id, int mask) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,411 @@
+package com.example.index;
+
+import com.example.model.Product;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Statistiques d'inventaire tenues à jour par écart (-Dproduct.stats.enabled=true) : valeur totale
+ * du stock (Σ prix × quantité), produits en stock et épuisés, par catégorie nombre, valeur et prix
+ * min/max/moyen, histogramme des prix sur les tranches R10 de ProductSearchIndex. Chaque produit garde
+ * sa catégorie, sa quantité et son prix : une écriture retire l'ancienne contribution et ajoute la
+ * nouvelle, sans agrégat sur la table.
+ *
+ * Tenues à jour par ProductService après chaque écriture (quantité en attente comprise) ; la version
+ * du produit écarte une mise à jour plus ancienne appliquée en retard. Reconstruites au démarrage puis
+ * toutes les -Dproduct.stats.rebuild.seconds secondes (60) par une lecture en flux de chaque shard,
+ * installée d'un bloc : les écritures des autres instances n'y manquent que jusqu'à la passe suivante.
+ */
+public final class InventoryStats {
+
+    private static final Logger logger = Logger.getLogger(InventoryStats.class.getName());
+
+    private static final InventoryStats INSTANCE = new InventoryStats(Boolean.getBoolean("product.stats.enabled"),
+            Long.getLong("product.stats.rebuild.seconds", 60L));
+
+    /**
+     * Lecture en flux des produits de chaque shard (ordre indifférent)
+     */
+    public interface Source {
+        int shardCount();
+
+        void scan(int shard, Row row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Row {
+        void accept(long id, String category, int quantity, long priceCents, long version);
+    }
+
+    private final boolean enabled;
+    private final long rebuildSeconds;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Aggregates aggregates = new Aggregates();
+    // Écritures reçues pendant une reconstruction, rejouées sur les nouveaux agrégats
+    private List<Runnable> writesDuringRebuild;
+    private volatile boolean ready;
+    private volatile String lastError;
+    private volatile long lastRebuildMillis;
+    private ScheduledExecutorService scheduler;
+
+    InventoryStats(boolean enabled) {
+        this(enabled, 60L);
+    }
+
+    InventoryStats(boolean enabled, long rebuildSeconds) {
+        this.enabled = enabled;
+        this.rebuildSeconds = Math.max(1, rebuildSeconds);
+    }
+
+    public static InventoryStats getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai une fois les agrégats construits ; sinon les statistiques sont calculées par lecture de la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Enregistre un produit après une écriture validée, avec sa quantité courante (variations en attente comprises)
+     */
+    public void put(Product product) {
+        if (enabled && product.getId() != null && product.getPrice() != null && product.getQuantity() != null) {
+            long priceCents = PriceIndex.cents(product.getPrice(), RoundingMode.HALF_UP);
+            long version = product.getVersion() != null ? product.getVersion() : 0L;
+            write(target -> target.put(product.getId(), product.getCategory(), product.getQuantity(), priceCents, version));
+        }
+    }
+
+    /**
+     * Met à jour le stock d'un produit ajusté sans relecture
+     */
+    public void updateStock(long id, int quantity) {
+        if (enabled) {
+            write(target -> target.updateStock(id, quantity));
+        }
+    }
+
+    /**
+     * Retire un produit supprimé
+     */
+    public void remove(long id) {
+        if (enabled) {
+            write(target -> target.remove(id));
+        }
+    }
+
+    private void write(Consumer<Aggregates> change) {
+        lock.writeLock().lock();
+        try {
+            if (writesDuringRebuild != null) {
+                // Rejouée sur les agrégats en place au moment du rejeu, c'est-à-dire les nouveaux
+                writesDuringRebuild.add(() -> change.accept(aggregates));
+            }
+            change.accept(aggregates);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Statistiques courantes, prêtes à sérialiser
+     */
+    public Map<String, Object> snapshot() {
+        lock.readLock().lock();
+        try {
+            return aggregates.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Statistiques calculées par une lecture complète de la base, sans rien garder en mémoire
+     */
+    public static Map<String, Object> fromDatabase() throws Exception {
+        return compute(new DatabaseSearchSource()).snapshot();
+    }
+
+    private static Aggregates compute(Source source) throws Exception {
+        Aggregates computed = new Aggregates();
+        for (int shard = 0; shard < source.shardCount(); shard++) {
+            source.scan(shard, computed::put);
+        }
+        return computed;
+    }
+
+    /**
+     * Reconstruit les agrégats à partir de la source, puis les rend disponibles. En cas d'échec, les
+     * agrégats précédents restent en place (indisponibles s'ils n'ont jamais été construits).
+     */
+    public void rebuild(Source source) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            writesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Aggregates rebuilt = compute(source);
+            boolean first;
+            lock.writeLock().lock();
+            try {
+                aggregates = rebuilt;
+                writesDuringRebuild.forEach(Runnable::run);
+                first = !ready;
+                ready = true;
+                lastError = null;
+                lastRebuildMillis = System.currentTimeMillis();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.log(first ? Level.INFO : Level.FINE, "Statistiques d''inventaire construites : {0} produit(s) en {1} ms",
+                    new Object[]{rebuilt.ordinals.size(), (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(ready ? Level.WARNING : Level.SEVERE, ready
+                    ? "Reconstruction des statistiques d'inventaire impossible, agrégats précédents conservés"
+                    : "Construction des statistiques d'inventaire impossible, calcul par lecture de la base", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                writesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Démarre les reconstructions périodiques (thread "inventory-stats-build", la première immédiatement)
+     */
+    public synchronized void start() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-stats-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> rebuild(new DatabaseSearchSource()), 0, rebuildSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * État des agrégats : disponibilité, produits, catégories, âge de la dernière reconstruction
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        lock.readLock().lock();
+        try {
+            result.put("products", aggregates.ordinals.size());
+            result.put("categories", aggregates.categories.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (lastRebuildMillis > 0) {
+            result.put("lastRebuildAgeSeconds", (System.currentTimeMillis() - lastRebuildMillis) / 1000);
+        }
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    private static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Contribution d'une catégorie ; la valeur est un BigInteger (prix NUMERIC(10,2) × quantité INT
+     * dépasse un long)
+     */
+    private static final class CategoryTotals {
+        final String name;
+        long count;
+        long inStock;
+        long priceSumCents;
+        BigInteger valueCents = BigInteger.ZERO;
+        // Prix en centimes → nombre de produits, pour le minimum et le maximum après suppression
+        final TreeMap<Long, Integer> prices = new TreeMap<>();
+
+        CategoryTotals(String name) {
+            this.name = name;
+        }
+
+        void add(int quantity, long priceCents, int sign) {
+            count += sign;
+            priceSumCents += sign * priceCents;
+            if (quantity > 0) {
+                inStock += sign;
+                valueCents = valueCents.add(BigInteger.valueOf(priceCents).multiply(BigInteger.valueOf((long) sign * quantity)));
+            }
+            prices.merge(priceCents, sign, (current, delta) -> current + delta == 0 ? null : current + delta);
+        }
+    }
+
+    /**
+     * Attributs par ordinal et totaux ; remplacés d'un bloc par une reconstruction
+     */
+    private static final class Aggregates {
+        final IdTable ordinals = new IdTable(1024);
+        final Map<String, Integer> categoryCodes = new HashMap<>();
+        final List<CategoryTotals> categories = new ArrayList<>();
+        final long[] histogram = new long[ProductSearchIndex.bucketCount()];
+        int[] categoryOf = new int[1024];
+        int[] quantityOf = new int[1024];
+        long[] priceOf = new long[1024];
+        int nextOrdinal;
+        int[] freeOrdinals = new int[16];
+        int freeCount;
+
+        void put(long id, String category, int quantity, long priceCents, long version) {
+            int slot = ordinals.find(id);
+            int ordinal;
+            if (slot >= 0) {
+                if (ordinals.versionAt(slot) > version) {
+                    return;
+                }
+                ordinal = (int) ordinals.valueAt(slot);
+                contribute(ordinal, -1);
+            } else {
+                ordinal = allocate();
+            }
+            categoryOf[ordinal] = categoryCodes.computeIfAbsent(category, name -> {
+                categories.add(new CategoryTotals(name));
+                return categories.size() - 1;
+            });
+            quantityOf[ordinal] = quantity;
+            priceOf[ordinal] = priceCents;
+            contribute(ordinal, 1);
+            ordinals.put(id, ordinal, version);
+        }
+
+        void updateStock(long id, int quantity) {
+            int slot = ordinals.find(id);
+            if (slot < 0) {
+                return;
+            }
+            int ordinal = (int) ordinals.valueAt(slot);
+            contribute(ordinal, -1);
+            quantityOf[ordinal] = quantity;
+            contribute(ordinal, 1);
+        }
+
+        void remove(long id) {
+            int slot = ordinals.find(id);
+            if (slot < 0) {
+                return;
+            }
+            int ordinal = (int) ordinals.valueAt(slot);
+            contribute(ordinal, -1);
+            ordinals.remove(id);
+            if (freeCount == freeOrdinals.length) {
+                freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+            }
+            freeOrdinals[freeCount++] = ordinal;
+        }
+
+        private void contribute(int ordinal, int sign) {
+            categories.get(categoryOf[ordinal]).add(quantityOf[ordinal], priceOf[ordinal], sign);
+            histogram[ProductSearchIndex.bucketOf(priceOf[ordinal])] += sign;
+        }
+
+        private int allocate() {
+            if (freeCount > 0) {
+                return freeOrdinals[--freeCount];
+            }
+            if (nextOrdinal == categoryOf.length) {
+                categoryOf = Arrays.copyOf(categoryOf, nextOrdinal * 2);
+                quantityOf = Arrays.copyOf(quantityOf, nextOrdinal * 2);
+                priceOf = Arrays.copyOf(priceOf, nextOrdinal * 2);
+            }
+            return nextOrdinal++;
+        }
+
+        Map<String, Object> snapshot() {
+            long products = 0;
+            long inStock = 0;
+            BigInteger valueCents = BigInteger.ZERO;
+            List<Map<String, Object>> byCategory = new ArrayList<>();
+            for (CategoryTotals totals : categories) {
+                if (totals.count == 0) {
+                    continue;
+                }
+                products += totals.count;
+                inStock += totals.inStock;
+                valueCents = valueCents.add(totals.valueCents);
+                Map<String, Object> category = new LinkedHashMap<>();
+                category.put("category", totals.name);
+                category.put("count", totals.count);
+                category.put("inStock", totals.inStock);
+                category.put("outOfStock", totals.count - totals.inStock);
+                category.put("value", new BigDecimal(totals.valueCents, 2));
+                category.put("minPrice", amount(totals.prices.firstKey()));
+                category.put("maxPrice", amount(totals.prices.lastKey()));
+                category.put("avgPrice", amount(totals.priceSumCents)
+                        .divide(BigDecimal.valueOf(totals.count), 2, RoundingMode.HALF_UP));
+                byCategory.add(category);
+            }
+            byCategory.sort(Comparator.comparing(category -> (String) category.get("category"),
+                    Comparator.nullsFirst(Comparator.naturalOrder())));
+            List<Map<String, Object>> priceHistogram = new ArrayList<>();
+            for (int bucket = 0; bucket < histogram.length; bucket++) {
+                if (histogram[bucket] == 0) {
+                    continue;
+                }
+                Map<String, Object> range = new LinkedHashMap<>();
+                range.put("from", amount(ProductSearchIndex.bucketFrom(bucket)));
+                if (bucket < histogram.length - 1) {
+                    range.put("to", amount(ProductSearchIndex.bucketFrom(bucket + 1)));
+                }
+                range.put("count", histogram[bucket]);
+                priceHistogram.add(range);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("products", products);
+            result.put("inStock", inStock);
+            result.put("outOfStock", products - inStock);
+            result.put("totalValue", new BigDecimal(valueCents, 2));
+            result.put("categories", byCategory);
+            result.put("priceHistogram", priceHistogram);
+            return result;
+        }
+    }
+}
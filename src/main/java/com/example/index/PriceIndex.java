@@ -0,0 +1,369 @@
+package com.example.index;
+
+import com.example.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index en mémoire des produits triés par prix (-Dproduct.price.index.enabled=true) : deux tableaux
+ * parallèles de primitives (prix en centimes, identifiant) triés par prix puis identifiant, et une
+ * table identifiant → prix pour retrouver l'entrée d'un produit modifié. Une requête par prix est
+ * une recherche dichotomique suivie d'un parcours séquentiel.
+ *
+ * L'index est tenu à jour par ProductRepository après chaque écriture validée ; la version du
+ * produit écarte une mise à jour plus ancienne appliquée en retard. Il est reconstruit au démarrage
+ * par une lecture en flux de chaque shard ; les écritures concurrentes sont rejouées à la fin.
+ * Il ne voit que les écritures de cette instance : refusé avec plusieurs instances (SingleInstance).
+ */
+public final class PriceIndex {
+
+    private static final Logger logger = Logger.getLogger(PriceIndex.class.getName());
+
+    private static final PriceIndex INSTANCE = new PriceIndex(SingleInstance.enabled("product.price.index.enabled"));
+
+    /**
+     * Lecture en flux des produits d'un shard, triés par prix puis identifiant
+     */
+    public interface Source {
+        int shardCount();
+
+        void scan(int shard, Row row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Row {
+        void accept(long id, long priceCents, long version);
+    }
+
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] prices = new long[16];
+    private long[] ids = new long[16];
+    private int size;
+    private IdTable table = new IdTable(16);
+    // Écritures reçues pendant une reconstruction, rejouées sur le nouvel index
+    private List<long[]> writesDuringRebuild;
+    private volatile boolean ready;
+    private volatile String lastError;
+
+    PriceIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static PriceIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai une fois l'index construit ; sinon les requêtes passent par la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Prix en centimes (colonne NUMERIC(10,2)) ; arrondi vers le haut pour une borne minimale
+     * et vers le bas pour une borne maximale
+     */
+    public static long cents(BigDecimal price, RoundingMode rounding) {
+        return price.movePointRight(2).setScale(0, rounding).longValueExact();
+    }
+
+    /**
+     * Enregistre le prix d'un produit après une écriture validée
+     */
+    public void put(Product product) {
+        if (enabled && product.getId() != null && product.getPrice() != null) {
+            put(product.getId(), cents(product.getPrice(), RoundingMode.HALF_UP),
+                    product.getVersion() != null ? product.getVersion() : 0L);
+        }
+    }
+
+    void put(long id, long priceCents, long version) {
+        lock.writeLock().lock();
+        try {
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(new long[]{id, priceCents, version});
+            }
+            apply(id, priceCents, version);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire un produit supprimé
+     */
+    public void remove(long id) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(new long[]{id});
+            }
+            int slot = table.find(id);
+            if (slot >= 0) {
+                removeAt(position(table.valueAt(slot), id));
+                table.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(long id, long priceCents, long version) {
+        int slot = table.find(id);
+        if (slot >= 0) {
+            if (table.versionAt(slot) > version) {
+                return;
+            }
+            long previous = table.valueAt(slot);
+            if (previous != priceCents) {
+                removeAt(position(previous, id));
+                insertAt(-position(priceCents, id) - 1, priceCents, id);
+            }
+        } else {
+            insertAt(-position(priceCents, id) - 1, priceCents, id);
+        }
+        table.put(id, priceCents, version);
+    }
+
+    /**
+     * Identifiants des produits de prix compris entre minCents et maxCents inclus, par prix
+     * croissant puis identifiant, au plus limit
+     */
+    public long[] range(long minCents, long maxCents, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = -position(minCents, Long.MIN_VALUE) - 1;
+            int to = from;
+            while (to < size && to - from < limit && prices[to] <= maxCents) {
+                to++;
+            }
+            return Arrays.copyOfRange(ids, from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Identifiants des produits de prix inférieur ou égal à maxCents, par prix croissant
+     */
+    public long[] atMost(long maxCents, int limit) {
+        return range(Long.MIN_VALUE, maxCents, limit);
+    }
+
+    /**
+     * Identifiants des limit produits les moins chers
+     */
+    public long[] cheapest(int limit) {
+        return range(Long.MIN_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * Position de (prix, identifiant) dans les tableaux triés, ou -(point d'insertion) - 1 si absent
+     */
+    private int position(long price, long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = prices[middle] != price ? Long.compare(prices[middle], price) : Long.compare(ids[middle], id);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insertAt(int index, long price, long id) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(prices, index, prices, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        prices[index] = price;
+        ids[index] = id;
+        size++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(prices, index + 1, prices, index, size - index - 1);
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Reconstruit l'index à partir de la source, puis le rend disponible. En cas d'échec, l'index
+     * précédent reste en place (indisponible s'il n'a jamais été construit).
+     */
+    public void rebuild(Source source) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            writesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            int shardCount = source.shardCount();
+            List<Column> shards = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                Column column = new Column();
+                source.scan(shard, column);
+                shards.add(column);
+            }
+            Column merged = shards.size() == 1 ? shards.get(0) : Column.merge(shards);
+            IdTable rebuilt = new IdTable(merged.size);
+            for (int i = 0; i < merged.size; i++) {
+                rebuilt.put(merged.ids[i], merged.prices[i], merged.versions[i]);
+            }
+            lock.writeLock().lock();
+            try {
+                prices = merged.prices;
+                ids = merged.ids;
+                size = merged.size;
+                table = rebuilt;
+                for (long[] write : writesDuringRebuild) {
+                    if (write.length == 1) {
+                        int slot = table.find(write[0]);
+                        if (slot >= 0) {
+                            removeAt(position(table.valueAt(slot), write[0]));
+                            table.remove(write[0]);
+                        }
+                    } else {
+                        apply(write[0], write[1], write[2]);
+                    }
+                }
+                ready = true;
+                lastError = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.log(Level.INFO, "Index des prix construit : {0} produit(s) en {1} ms",
+                    new Object[]{merged.size, (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(Level.SEVERE, "Construction de l'index des prix impossible, requêtes servies par la base", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                writesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Démarre la construction en arrière-plan (thread "price-index-build") ; les requêtes par prix
+     * passent par la base jusqu'à ce qu'elle aboutisse
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> rebuild(new DatabasePriceSource()), "price-index-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * État de l'index : disponibilité, nombre de produits, dernière erreur
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        result.put("products", size());
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    /**
+     * Colonnes croissantes remplies par une source, vérifiées triées
+     */
+    private static final class Column implements Row {
+        long[] prices = new long[1024];
+        long[] ids = new long[1024];
+        long[] versions = new long[1024];
+        int size;
+
+        @Override
+        public void accept(long id, long priceCents, long version) {
+            if (size > 0 && compare(prices[size - 1], ids[size - 1], priceCents, id) >= 0) {
+                throw new IllegalStateException("Produits non triés par prix puis identifiant (id " + id + ")");
+            }
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+                versions = Arrays.copyOf(versions, size * 2);
+            }
+            prices[size] = priceCents;
+            ids[size] = id;
+            versions[size] = version;
+            size++;
+        }
+
+        /**
+         * Fusion k-voies des colonnes triées de chaque shard
+         */
+        static Column merge(List<Column> columns) {
+            Column merged = new Column();
+            int[] cursors = new int[columns.size()];
+            while (true) {
+                int best = -1;
+                for (int c = 0; c < columns.size(); c++) {
+                    Column column = columns.get(c);
+                    if (cursors[c] < column.size && (best < 0 || compare(column.prices[cursors[c]], column.ids[cursors[c]],
+                            columns.get(best).prices[cursors[best]], columns.get(best).ids[cursors[best]]) < 0)) {
+                        best = c;
+                    }
+                }
+                if (best < 0) {
+                    return merged;
+                }
+                Column column = columns.get(best);
+                int index = cursors[best]++;
+                merged.accept(column.ids[index], column.prices[index], column.versions[index]);
+            }
+        }
+
+        private static int compare(long leftPrice, long leftId, long rightPrice, long rightId) {
+            return leftPrice != rightPrice ? Long.compare(leftPrice, rightPrice) : Long.compare(leftId, rightId);
+        }
+    }
+}
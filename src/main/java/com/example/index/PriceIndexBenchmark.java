@@ -0,0 +1,166 @@
+package com.example.index;
+
+import com.example.feed.ChangeFeed;
+import com.example.model.Product;
+import com.example.repository.ProductRepository;
+import com.example.sharding.ShardIds;
+import com.example.sharding.ShardRouter;
+import com.example.util.JPAUtil;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Comparaison de l'index des prix et de la requête SQL (RestServer --benchmark-price-index) :
+ * charge -Dbenchmark.products (1 000 000) produits de prix aléatoires dans la base H2 embarquée,
+ * construit l'index en flux, puis exécute -Dbenchmark.queries (200) requêtes de chaque type par
+ * les deux chemins de ProductRepository. Code de sortie 0 si les deux chemins donnent les mêmes produits.
+ */
+public final class PriceIndexBenchmark {
+
+    private static final Logger logger = Logger.getLogger(PriceIndexBenchmark.class.getName());
+
+    private static final String INSERT = "INSERT INTO products (id, name, price, quantity, category, created_at, "
+            + "updated_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final int BATCH_SIZE = 10_000;
+    // Prix de 0,01 à 10 000,00
+    private static final int MAX_PRICE_CENTS = 1_000_000;
+
+    private PriceIndexBenchmark() {
+    }
+
+    public static int run() {
+        int products = Integer.getInteger("benchmark.products", 1_000_000);
+        int queries = Integer.getInteger("benchmark.queries", 200);
+        Random random = new Random(42);
+        try {
+            JPAUtil.init("example-pu", "classpath:vars/flyway_train.conf", JPAUtil.embeddedDatabase());
+            ShardIds.useSingleNodeUnlessConfigured();
+            load(products, random);
+
+            PriceIndex index = new PriceIndex(true);
+            index.rebuild(new DatabasePriceSource());
+            if (!index.isReady()) {
+                return 1;
+            }
+
+            ProductRepository sql = new ProductRepository(ShardRouter.getInstance(), new PriceIndex(false),
+                    ChangeFeed.getInstance());
+            ProductRepository indexed = new ProductRepository(ShardRouter.getInstance(), index, ChangeFeed.getInstance());
+            boolean same = compare("100 moins chers <= X", queries, sql, indexed,
+                    i -> price(random.nextInt(MAX_PRICE_CENTS)), 100);
+            // Environ 0,1 % des produits : au plus ~1000 résultats à 1M
+            same &= compare("tous <= X (sélectif)", queries, sql, indexed,
+                    i -> price(random.nextInt(MAX_PRICE_CENTS / 1000)), Integer.MAX_VALUE);
+
+            long indexOnly = time(queries, i -> index.atMost(random.nextInt(MAX_PRICE_CENTS), 100));
+            logger.log(Level.INFO, "Index seul (identifiants, 100 moins chers <= X) : {0} µs/requête",
+                    indexOnly / 1000 / queries);
+            return same ? 0 : 1;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Échec du benchmark de l'index des prix", e);
+            return 1;
+        } finally {
+            JPAUtil.closeEntityManagerFactory();
+        }
+    }
+
+    /**
+     * Exécute les mêmes requêtes par les deux chemins (après un tour de chauffe) et vérifie les résultats
+     */
+    private static boolean compare(String label, int queries, ProductRepository sql, ProductRepository indexed,
+                                   IntFunction<BigDecimal> maxPrices, int limit) {
+        BigDecimal[] prices = new BigDecimal[queries];
+        Arrays.setAll(prices, maxPrices::apply);
+        boolean same = true;
+        for (BigDecimal price : Arrays.copyOf(prices, Math.min(queries, 20))) {
+            same &= ids(sql.findByPriceLessThanOrEqual(price, limit))
+                    .equals(ids(indexed.findByPriceLessThanOrEqual(price, limit)));
+        }
+        long sqlNanos = time(queries, i -> sql.findByPriceLessThanOrEqual(prices[i], limit));
+        long indexNanos = time(queries, i -> indexed.findByPriceLessThanOrEqual(prices[i], limit));
+        logger.log(Level.INFO, "{0} : SQL {1} ms/requête, index {2} ms/requête (x{3}), résultats identiques : {4}",
+                new Object[]{label, String.format("%.3f", sqlNanos / 1e6 / queries),
+                        String.format("%.3f", indexNanos / 1e6 / queries),
+                        String.format("%.1f", (double) sqlNanos / Math.max(1, indexNanos)), same});
+        return same;
+    }
+
+    private static long time(int queries, IntFunction<?> query) {
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            query.apply(i);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<Long> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+
+    private static BigDecimal price(int cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Insère les produits par lots JDBC, répartis sur les shards configurés
+     */
+    private static void load(int products, Random random) throws Exception {
+        long start = System.nanoTime();
+        int shardCount = JPAUtil.getShardCount();
+        Connection[] connections = new Connection[shardCount];
+        PreparedStatement[] inserts = new PreparedStatement[shardCount];
+        int[] pending = new int[shardCount];
+        try {
+            for (int shard = 0; shard < shardCount; shard++) {
+                connections[shard] = JPAUtil.openConnection(shard);
+                connections[shard].setAutoCommit(false);
+                inserts[shard] = connections[shard].prepareStatement(INSERT);
+            }
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            ShardIds ids = ShardIds.getInstance();
+            for (int i = 0; i < products; i++) {
+                long id = ids.next();
+                int shard = JPAUtil.getShardMap().shardOf(id);
+                PreparedStatement insert = inserts[shard];
+                insert.setLong(1, id);
+                insert.setString(2, "Produit " + i);
+                insert.setBigDecimal(3, price(1 + random.nextInt(MAX_PRICE_CENTS)));
+                insert.setInt(4, random.nextInt(100));
+                insert.setString(5, "Benchmark");
+                insert.setTimestamp(6, now);
+                insert.setTimestamp(7, now);
+                insert.addBatch();
+                if (++pending[shard] == BATCH_SIZE) {
+                    insert.executeBatch();
+                    connections[shard].commit();
+                    pending[shard] = 0;
+                }
+            }
+            for (int shard = 0; shard < shardCount; shard++) {
+                inserts[shard].executeBatch();
+                connections[shard].commit();
+            }
+        } finally {
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (inserts[shard] != null) {
+                    inserts[shard].close();
+                }
+                if (connections[shard] != null) {
+                    connections[shard].close();
+                }
+            }
+        }
+        logger.log(Level.INFO, "{0} produit(s) chargé(s) en {1} ms",
+                new Object[]{products, (System.nanoTime() - start) / 1_000_000});
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.index;
+
+import com.example.model.Product;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mesure du tas occupé par produit en cache (RestServer --benchmark-product-cache) : les mêmes
+ * -Dbenchmark.products (200 000) produits, construits comme les lit Hibernate (chaînes, BigDecimal,
+ * LocalDateTime et entiers en objets distincts par ligne), sont chargés dans une HashMap de Product
+ * puis dans CompactProductStore ; chaque structure est mesurée par le tas utilisé après GC.
+ * Mesure ensuite l'écriture d'un instantané du cache et sa restauration dans un cache vide (la
+ * HashMap tient lieu de base). Code de sortie 0 si le cache compact et le cache restauré restituent
+ * les mêmes produits et si le cache compact occupe au moins -Dbenchmark.min.ratio (3) fois moins de tas.
+ */
+public final class ProductCacheBenchmark {
+
+    private static final Logger logger = Logger.getLogger(ProductCacheBenchmark.class.getName());
+
+    private static final String[] BRANDS = {"Acme", "Nordik", "Helios", "Kappa", "Orion", "Vega", "Zenith", "Atlas"};
+    private static final String[] ITEMS = {"Ordinateur portable", "Casque audio", "Chaise de bureau", "Lampe LED",
+            "Sac à dos", "Bouilloire", "Clavier mécanique", "Tapis de yoga", "Montre connectée", "Enceinte"};
+    private static final String[] WORDS = {"robuste", "léger", "compact", "garantie deux ans", "livré monté",
+            "finition mate", "recyclable", "batterie longue durée", "silencieux", "réglable"};
+    private static final int CATEGORIES = 40;
+
+    private ProductCacheBenchmark() {
+    }
+
+    public static int run() {
+        int products = Integer.getInteger("benchmark.products", 200_000);
+        double minRatio = Double.parseDouble(System.getProperty("benchmark.min.ratio", "3"));
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("product-cache");
+            Path file = directory.resolve("products.snapshot");
+            long baseline = usedHeapAfterGc();
+            CompactProductStore store = new CompactProductStore(true, Integer.MAX_VALUE, file, 300L, 60L);
+            // Pas encore d'instantané : le cache est aussitôt utilisable
+            store.restore(source(Map.of()));
+            Random random = new Random(42);
+            for (int i = 0; i < products; i++) {
+                store.put(product(i + 1, random));
+            }
+            long storeBytes = usedHeapAfterGc() - baseline;
+
+            Map<Long, Product> objects = new HashMap<>();
+            random = new Random(42);
+            for (int i = 0; i < products; i++) {
+                Product product = product(i + 1, random);
+                objects.put(product.getId(), product);
+            }
+            long objectBytes = usedHeapAfterGc() - baseline - storeBytes;
+
+            // Instantané puis restauration, la HashMap tenant lieu de base
+            CompactProductStore.Source source = source(objects);
+            long writeStart = System.nanoTime();
+            store.snapshot(source);
+            long writeMillis = (System.nanoTime() - writeStart) / 1_000_000;
+            CompactProductStore warm = new CompactProductStore(true, Integer.MAX_VALUE, file, 300L, 60L);
+            long restoreStart = System.nanoTime();
+            warm.restore(source);
+            long restoreMillis = (System.nanoTime() - restoreStart) / 1_000_000;
+            logger.log(Level.INFO, "Instantané : {0} Mo écrits en {1} ms, restaurés en {2} ms",
+                    new Object[]{Files.size(file) >> 20, writeMillis, restoreMillis});
+
+            boolean same = true;
+            for (long id = 1; id <= products; id += Math.max(1, products / 10_000)) {
+                same &= sameProduct(objects.get(id), store.get(id).orElse(null))
+                        && sameProduct(objects.get(id), warm.get(id).orElse(null));
+            }
+            double ratio = (double) objectBytes / Math.max(1, storeBytes);
+            logger.log(Level.INFO, "{0} produits : HashMap<Long, Product> {1} octets/produit, cache compact {2} "
+                            + "octets/produit (estimation interne {3}), x{4}, produits identiques : {5}",
+                    new Object[]{products, objectBytes / products, storeBytes / products,
+                            store.sizeInBytes() / products, String.format("%.1f", ratio), same});
+            Reference.reachabilityFence(store);
+            Reference.reachabilityFence(objects);
+            return same && ratio >= minRatio ? 0 : 1;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Échec du benchmark du cache des produits", e);
+            return 1;
+        } finally {
+            if (directory != null) {
+                try {
+                    Files.deleteIfExists(directory.resolve("products.snapshot"));
+                    Files.deleteIfExists(directory);
+                } catch (Exception e) {
+                    logger.log(Level.FINE, "Répertoire temporaire conservé : {0}", directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Base simulée par la HashMap : un seul shard
+     */
+    private static CompactProductStore.Source source(Map<Long, Product> products) {
+        return new CompactProductStore.Source() {
+            @Override
+            public int shardCount() {
+                return 1;
+            }
+
+            @Override
+            public void scanHighWater(int shard, CompactProductStore.HighWaterRow row) {
+                row.accept(products.values().stream().map(Product::getUpdatedAt).max(LocalDateTime::compareTo).orElse(null),
+                        products.keySet().stream().mapToLong(Long::longValue).max().orElse(0L));
+            }
+
+            @Override
+            public void scanChanged(int shard, LocalDateTime since, long afterId, Consumer<Product> row) {
+                products.values().stream()
+                        .filter(product -> since == null || !product.getUpdatedAt().isBefore(since) || product.getId() > afterId)
+                        .forEach(row);
+            }
+
+            @Override
+            public void scanIds(int shard, LongConsumer row) {
+                products.keySet().forEach(row::accept);
+            }
+        };
+    }
+
+    /**
+     * Produit aléatoire, champs en instances distinctes comme après une lecture JDBC
+     */
+    private static Product product(long id, Random random) {
+        String name = BRANDS[random.nextInt(BRANDS.length)] + " " + ITEMS[random.nextInt(ITEMS.length)]
+                + " " + (100 + random.nextInt(900));
+        String description = random.nextInt(5) == 0 ? null : ITEMS[random.nextInt(ITEMS.length)] + " "
+                + WORDS[random.nextInt(WORDS.length)] + ", " + WORDS[random.nextInt(WORDS.length)];
+        Product product = new Product(name, description, BigDecimal.valueOf(100 + random.nextInt(500_000), 2),
+                random.nextInt(1000), "Catégorie " + random.nextInt(CATEGORIES));
+        product.setId(id);
+        LocalDateTime created = LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(random.nextInt(50_000_000))
+                .plusNanos(random.nextInt(1_000_000) * 1000L);
+        product.setCreatedAt(created);
+        product.setUpdatedAt(created.plusSeconds(random.nextInt(1_000_000)));
+        product.setVersion((long) random.nextInt(20));
+        return product;
+    }
+
+    private static boolean sameProduct(Product expected, Product actual) {
+        return expected != null && actual != null
+                && expected.getId().equals(actual.getId())
+                && expected.getName().equals(actual.getName())
+                && Objects.equals(expected.getDescription(), actual.getDescription())
+                && expected.getPrice().compareTo(actual.getPrice()) == 0
+                && expected.getQuantity().equals(actual.getQuantity())
+                && expected.getCategory().equals(actual.getCategory())
+                && expected.getCreatedAt().equals(actual.getCreatedAt())
+                && expected.getUpdatedAt().equals(actual.getUpdatedAt())
+                && expected.getVersion().equals(actual.getVersion());
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Instantané du cache compact des produits : colonnes denses (un produit par indice), catégories,
+ * arène des textes sans octets inutilisés, et point haut de la base (plus grand updated_at, plus
+ * grand identifiant) lu avant la copie. Écrit dans un fichier temporaire puis renommé ; relu par
+ * projection en mémoire (FileChannel.map) et vérifié par un CRC32 final.
+ */
+final class ProductCacheSnapshot {
+
+    private static final int MAGIC = 0x50435348; // "PCSH"
+    private static final int FORMAT = 1;
+    // Magic, format, point haut (2 long), nombres de produits, de catégories et d'octets de l'arène
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+
+    final long highWaterMicros;
+    final long highWaterId;
+    final List<String> categories;
+    final long[] ids;
+    final long[] priceCents;
+    final int[] quantities;
+    final int[] categoryOf;
+    final long[] createdMicros;
+    final long[] updatedMicros;
+    final long[] versions;
+    final int[] texts;
+    final byte[] arena;
+
+    ProductCacheSnapshot(long highWaterMicros, long highWaterId, List<String> categories, long[] ids,
+                         long[] priceCents, int[] quantities, int[] categoryOf, long[] createdMicros,
+                         long[] updatedMicros, long[] versions, int[] texts, byte[] arena) {
+        this.highWaterMicros = highWaterMicros;
+        this.highWaterId = highWaterId;
+        this.categories = categories;
+        this.ids = ids;
+        this.priceCents = priceCents;
+        this.quantities = quantities;
+        this.categoryOf = categoryOf;
+        this.createdMicros = createdMicros;
+        this.updatedMicros = updatedMicros;
+        this.versions = versions;
+        this.texts = texts;
+        this.arena = arena;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(highWaterMicros);
+            out.writeLong(highWaterId);
+            out.writeInt(ids.length);
+            out.writeInt(categories.size());
+            out.writeInt(arena.length);
+            for (String category : categories) {
+                byte[] bytes = category.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            writeLongs(out, ids);
+            writeLongs(out, priceCents);
+            writeInts(out, quantities);
+            writeInts(out, categoryOf);
+            writeLongs(out, createdMicros);
+            writeLongs(out, updatedMicros);
+            writeLongs(out, versions);
+            writeInts(out, texts);
+            out.write(arena);
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Projette le fichier en mémoire et en copie les colonnes par blocs ; IOException si le fichier
+     * est tronqué, corrompu ou d'un autre format
+     */
+    static ProductCacheSnapshot map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 8 || size > Integer.MAX_VALUE) {
+                throw new IOException("Instantané tronqué ou trop grand : " + size + " octets");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int checked = (int) size - 8;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, checked));
+            if (crc.getValue() != buffer.getLong(checked)) {
+                throw new IOException("Somme de contrôle de l'instantané invalide");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new IOException("Format d'instantané inconnu");
+            }
+            long highWaterMicros = buffer.getLong();
+            long highWaterId = buffer.getLong();
+            int count = buffer.getInt();
+            int categoryCount = buffer.getInt();
+            int arenaBytes = buffer.getInt();
+            List<String> categories = new ArrayList<>(categoryCount);
+            for (int i = 0; i < categoryCount; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                categories.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            long[] ids = longs(buffer, count);
+            long[] priceCents = longs(buffer, count);
+            int[] quantities = ints(buffer, count);
+            int[] categoryOf = ints(buffer, count);
+            long[] createdMicros = longs(buffer, count);
+            long[] updatedMicros = longs(buffer, count);
+            long[] versions = longs(buffer, count);
+            int[] texts = ints(buffer, count);
+            byte[] arena = new byte[arenaBytes];
+            buffer.get(arena);
+            if (buffer.position() != checked) {
+                throw new IOException("Instantané incohérent : " + (checked - buffer.position()) + " octet(s) en trop");
+            }
+            return new ProductCacheSnapshot(highWaterMicros, highWaterId, categories, ids, priceCents, quantities,
+                    categoryOf, createdMicros, updatedMicros, versions, texts, arena);
+        }
+    }
+
+    private static long[] longs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+    private static int[] ints(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,386 @@
+package com.example.index;
+
+import com.example.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+
+/**
+ * Index bitmap des produits pour la recherche multicritère (-Dproduct.search.index.enabled=true).
+ * Chaque produit reçoit un ordinal (réutilisé après suppression) ; un bitmap compressé par catégorie,
+ * un bitmap des produits en stock et un bitmap par tranche de prix (série de Renard R10 : 10 tranches
+ * par décade) donnent les ordinaux candidats par intersection et union mot à mot. Les candidats
+ * sont un sur-ensemble (tranches de prix) : l'appelant relit les produits et vérifie les critères.
+ *
+ * Tenu à jour par ProductService après chaque écriture (quantité en attente comprise) ; la version
+ * du produit écarte une mise à jour plus ancienne appliquée en retard. Reconstruit au démarrage par
+ * une lecture en flux de chaque shard. Activé avec une seule instance (-Dapp.instances), dont il
+ * voit toutes les écritures.
+ */
+public final class ProductSearchIndex {
+
+    private static final Logger logger = Logger.getLogger(ProductSearchIndex.class.getName());
+
+    // Avant INSTANCE : les bitmaps de l'instance sont dimensionnés sur les tranches
+    private static final long[] PRICE_BOUNDS = priceBounds();
+
+    private static final ProductSearchIndex INSTANCE =
+            new ProductSearchIndex(SingleInstance.enabled("product.search.index.enabled"));
+
+    /**
+     * Lecture en flux des produits de chaque shard (ordre indifférent)
+     */
+    public interface Source {
+        int shardCount();
+
+        void scan(int shard, Row row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Row {
+        void accept(long id, String category, int quantity, long priceCents, long version);
+    }
+
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Bitmaps bitmaps = new Bitmaps();
+    // Écritures reçues pendant une reconstruction, rejouées sur le nouvel index
+    private List<Runnable> writesDuringRebuild;
+    private volatile boolean ready;
+    private volatile String lastError;
+
+    ProductSearchIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static ProductSearchIndex getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai une fois l'index construit ; sinon les recherches passent par la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Indexe un produit après une écriture validée, avec sa quantité courante (variations en attente comprises)
+     */
+    public void put(Product product) {
+        if (enabled && product.getId() != null && product.getPrice() != null && product.getQuantity() != null) {
+            put(product.getId(), product.getCategory(), product.getQuantity(),
+                    PriceIndex.cents(product.getPrice(), RoundingMode.HALF_UP),
+                    product.getVersion() != null ? product.getVersion() : 0L);
+        }
+    }
+
+    void put(long id, String category, int quantity, long priceCents, long version) {
+        write(target -> target.put(id, category, quantity, priceCents, version));
+    }
+
+    /**
+     * Met à jour le stock d'un produit ajusté sans relecture
+     */
+    public void updateStock(long id, int quantity) {
+        if (enabled) {
+            write(target -> target.updateStock(id, quantity));
+        }
+    }
+
+    /**
+     * Retire un produit supprimé
+     */
+    public void remove(long id) {
+        if (enabled) {
+            write(target -> target.remove(id));
+        }
+    }
+
+    private void write(Consumer<Bitmaps> change) {
+        lock.writeLock().lock();
+        try {
+            if (writesDuringRebuild != null) {
+                // Rejouée sur les bitmaps en place au moment du rejeu, c'est-à-dire les nouveaux
+                writesDuringRebuild.add(() -> change.accept(bitmaps));
+            }
+            change.accept(bitmaps);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Identifiants candidats, par identifiant croissant : catégorie exacte, en stock (true) ou épuisés
+     * (false), et prix dans les tranches couvrant [minPrice, maxPrice] ; un critère null est ignoré
+     */
+    public long[] search(String category, Boolean inStock, BigDecimal minPrice, BigDecimal maxPrice) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap result = bitmaps.live;
+            if (category != null) {
+                Integer code = bitmaps.categoryCodes.get(category);
+                if (code == null) {
+                    return new long[0];
+                }
+                result = CompressedBitmap.and(result, bitmaps.byCategory.get(code));
+            }
+            if (inStock != null) {
+                result = inStock
+                        ? CompressedBitmap.and(result, bitmaps.inStock)
+                        : CompressedBitmap.andNot(result, bitmaps.inStock);
+            }
+            if (minPrice != null || maxPrice != null) {
+                int from = minPrice == null ? 0 : bucketOf(PriceIndex.cents(minPrice, RoundingMode.CEILING));
+                int to = maxPrice == null ? PRICE_BOUNDS.length : bucketOf(PriceIndex.cents(maxPrice, RoundingMode.FLOOR));
+                CompressedBitmap prices = new CompressedBitmap();
+                for (int bucket = from; bucket <= to; bucket++) {
+                    prices = CompressedBitmap.or(prices, bitmaps.byPrice[bucket]);
+                }
+                result = CompressedBitmap.and(result, prices);
+            }
+            int[] ordinals = result.toArray();
+            long[] ids = new long[ordinals.length];
+            for (int i = 0; i < ordinals.length; i++) {
+                ids[i] = bitmaps.idOf[ordinals[i]];
+            }
+            Arrays.sort(ids);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static int bucketCount() {
+        return PRICE_BOUNDS.length + 1;
+    }
+
+    /**
+     * Borne basse (incluse) de la tranche en centimes ; la borne haute (exclue) est celle de la suivante
+     */
+    static long bucketFrom(int bucket) {
+        return bucket == 0 ? 0 : PRICE_BOUNDS[bucket - 1];
+    }
+
+    /**
+     * Tranche de prix : nombre de bornes inférieures ou égales au prix
+     */
+    static int bucketOf(long priceCents) {
+        int position = Arrays.binarySearch(PRICE_BOUNDS, priceCents);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * Bornes des tranches en centimes : série R10 (1 ; 1,25 ; 1,6 ; 2 ; 2,5 ; 3,15 ; 4 ; 5 ; 6,3 ; 8)
+     * de 1 centime à 80 000 000,00
+     */
+    private static long[] priceBounds() {
+        long[] series = {100, 125, 160, 200, 250, 315, 400, 500, 630, 800};
+        return LongStream.iterate(1, decade -> decade <= 1_000_000_000L, decade -> decade * 10)
+                .flatMap(decade -> Arrays.stream(series).map(step -> decade * step / 100))
+                .filter(bound -> bound > 0)
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * Reconstruit l'index à partir de la source, puis le rend disponible. En cas d'échec, l'index
+     * précédent reste en place (indisponible s'il n'a jamais été construit).
+     */
+    public void rebuild(Source source) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            writesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Bitmaps rebuilt = new Bitmaps();
+            for (int shard = 0; shard < source.shardCount(); shard++) {
+                source.scan(shard, rebuilt::put);
+            }
+            lock.writeLock().lock();
+            try {
+                bitmaps = rebuilt;
+                writesDuringRebuild.forEach(Runnable::run);
+                ready = true;
+                lastError = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.log(Level.INFO, "Index de recherche construit : {0} produit(s) en {1} ms",
+                    new Object[]{rebuilt.live.cardinality(), (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(Level.SEVERE, "Construction de l'index de recherche impossible, recherches servies par la base", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                writesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Démarre la construction en arrière-plan (thread "search-index-build")
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> rebuild(new DatabaseSearchSource()), "search-index-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * État de l'index : disponibilité, produits, catégories, taille des bitmaps
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        lock.readLock().lock();
+        try {
+            result.put("products", bitmaps.live.cardinality());
+            result.put("categories", bitmaps.categoryCodes.size());
+            result.put("bitmapBytes", bitmaps.sizeInBytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    /**
+     * Bitmaps et attributs indexés par ordinal ; remplacés d'un bloc par une reconstruction
+     */
+    private static final class Bitmaps {
+        final IdTable ordinals = new IdTable(1024);
+        final CompressedBitmap live = new CompressedBitmap();
+        final CompressedBitmap inStock = new CompressedBitmap();
+        final Map<String, Integer> categoryCodes = new HashMap<>();
+        final List<CompressedBitmap> byCategory = new ArrayList<>();
+        final CompressedBitmap[] byPrice = new CompressedBitmap[PRICE_BOUNDS.length + 1];
+        long[] idOf = new long[1024];
+        int[] categoryOf = new int[1024];
+        int[] bucketOf = new int[1024];
+        int nextOrdinal;
+        int[] freeOrdinals = new int[16];
+        int freeCount;
+
+        Bitmaps() {
+            Arrays.setAll(byPrice, bucket -> new CompressedBitmap());
+        }
+
+        void put(long id, String category, int quantity, long priceCents, long version) {
+            int slot = ordinals.find(id);
+            int ordinal;
+            if (slot >= 0) {
+                if (ordinals.versionAt(slot) > version) {
+                    return;
+                }
+                ordinal = (int) ordinals.valueAt(slot);
+                clear(ordinal);
+            } else {
+                ordinal = allocate();
+                idOf[ordinal] = id;
+                live.add(ordinal);
+            }
+            categoryOf[ordinal] = category == null ? -1 : categoryCodes.computeIfAbsent(category, name -> {
+                byCategory.add(new CompressedBitmap());
+                return byCategory.size() - 1;
+            });
+            if (categoryOf[ordinal] >= 0) {
+                byCategory.get(categoryOf[ordinal]).add(ordinal);
+            }
+            bucketOf[ordinal] = ProductSearchIndex.bucketOf(priceCents);
+            byPrice[bucketOf[ordinal]].add(ordinal);
+            if (quantity > 0) {
+                inStock.add(ordinal);
+            }
+            ordinals.put(id, ordinal, version);
+        }
+
+        void updateStock(long id, int quantity) {
+            int slot = ordinals.find(id);
+            if (slot < 0) {
+                return;
+            }
+            int ordinal = (int) ordinals.valueAt(slot);
+            if (quantity > 0) {
+                inStock.add(ordinal);
+            } else {
+                inStock.remove(ordinal);
+            }
+        }
+
+        void remove(long id) {
+            int slot = ordinals.find(id);
+            if (slot < 0) {
+                return;
+            }
+            int ordinal = (int) ordinals.valueAt(slot);
+            clear(ordinal);
+            live.remove(ordinal);
+            ordinals.remove(id);
+            if (freeCount == freeOrdinals.length) {
+                freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+            }
+            freeOrdinals[freeCount++] = ordinal;
+        }
+
+        private void clear(int ordinal) {
+            if (categoryOf[ordinal] >= 0) {
+                byCategory.get(categoryOf[ordinal]).remove(ordinal);
+            }
+            byPrice[bucketOf[ordinal]].remove(ordinal);
+            inStock.remove(ordinal);
+        }
+
+        private int allocate() {
+            if (freeCount > 0) {
+                return freeOrdinals[--freeCount];
+            }
+            if (nextOrdinal == idOf.length) {
+                idOf = Arrays.copyOf(idOf, nextOrdinal * 2);
+                categoryOf = Arrays.copyOf(categoryOf, nextOrdinal * 2);
+                bucketOf = Arrays.copyOf(bucketOf, nextOrdinal * 2);
+            }
+            return nextOrdinal++;
+        }
+
+        long sizeInBytes() {
+            long bytes = live.sizeInBytes() + inStock.sizeInBytes();
+            for (CompressedBitmap bitmap : byCategory) {
+                bytes += bitmap.sizeInBytes();
+            }
+            for (CompressedBitmap bitmap : byPrice) {
+                bytes += bitmap.sizeInBytes();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Nombres de lignes tenus en mémoire (-Dcount.cache.enabled=true) pour les endpoints /count : total,
+ * par groupe (catégorie des produits) et en stock, en compteurs LongAdder mis à jour par
+ * ProductService et UserService après chaque écriture. Réconciliés avec la base au démarrage puis
+ * toutes les -Dcount.reconcile.seconds secondes (60) par une requête GROUP BY ; les écritures reçues
+ * pendant la réconciliation sont rejouées sur le résultat.
+ *
+ * Les valeurs sont approchées entre deux réconciliations : écritures des autres instances,
+ * écritures validées pendant la lecture d'un shard, variations de stock différées non encore écrites
+ * (la base compte la quantité écrite). Le mode exact (?exact=true) interroge la base.
+ */
+public final class RowCounts {
+
+    private static final Logger logger = Logger.getLogger(RowCounts.class.getName());
+
+    private static final boolean ENABLED = Boolean.getBoolean("count.cache.enabled");
+    private static final long RECONCILE_SECONDS = Long.getLong("count.reconcile.seconds", 60L);
+    // ConcurrentHashMap refuse la clé null : lignes sans groupe
+    private static final String NO_GROUP = "\u0000";
+
+    private static final RowCounts PRODUCTS =
+            new RowCounts("products", ENABLED, RECONCILE_SECONDS, DatabaseCountSource::products);
+    private static final RowCounts USERS =
+            new RowCounts("users", ENABLED, RECONCILE_SECONDS, DatabaseCountSource::users);
+
+    /**
+     * Lecture des nombres agrégés : un appel par groupe (et par shard, les appels s'additionnent)
+     */
+    public interface Source {
+        void scan(Row row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Row {
+        void accept(String group, long total, long inStock);
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final long reconcileSeconds;
+    private final Supplier<Source> database;
+    // Écritures : verrou partagé (LongAdder) ; installation d'une réconciliation : exclusif
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<String, Group> groups = new ConcurrentHashMap<>();
+    // Écritures reçues pendant une réconciliation (groupe, en stock, +1 ou -1), rejouées sur le résultat
+    private List<Object[]> writesDuringReconcile;
+    private volatile boolean ready;
+    private volatile String lastError;
+    private volatile long lastReconcileMillis;
+    private volatile long lastDrift;
+    private ScheduledExecutorService scheduler;
+
+    RowCounts(String name, boolean enabled, long reconcileSeconds, Supplier<Source> database) {
+        this.name = name;
+        this.enabled = enabled;
+        this.reconcileSeconds = Math.max(1, reconcileSeconds);
+        this.database = database;
+    }
+
+    public static RowCounts forProducts() {
+        return PRODUCTS;
+    }
+
+    public static RowCounts forUsers() {
+        return USERS;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai après la première réconciliation ; avant, les comptages passent par la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void add(String group, boolean inStock) {
+        change(group, inStock, 1);
+    }
+
+    public void remove(String group, boolean inStock) {
+        change(group, inStock, -1);
+    }
+
+    /**
+     * Déplace une ligne après une mise à jour (rien si ni le groupe ni la disponibilité ne changent)
+     */
+    public void move(String previousGroup, boolean previouslyInStock, String group, boolean inStock) {
+        if (!Objects.equals(previousGroup, group) || previouslyInStock != inStock) {
+            remove(previousGroup, previouslyInStock);
+            add(group, inStock);
+        }
+    }
+
+    private void change(String group, boolean inStock, int delta) {
+        if (!enabled) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (writesDuringReconcile != null) {
+                synchronized (writesDuringReconcile) {
+                    writesDuringReconcile.add(new Object[]{group, inStock, delta});
+                }
+            }
+            apply(groups, group, inStock, delta);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void apply(Map<String, Group> target, String group, boolean inStock, long delta) {
+        Group counts = target.computeIfAbsent(group == null ? NO_GROUP : group, key -> new Group());
+        counts.total.add(delta);
+        if (inStock) {
+            counts.inStock.add(delta);
+        }
+    }
+
+    /**
+     * Nombre de lignes du groupe (tous si null), en stock (true), hors stock (false) ou toutes (null)
+     */
+    public long count(String group, Boolean inStock) {
+        Map<String, Group> current = groups;
+        if (group != null) {
+            Group counts = current.get(group);
+            return counts == null ? 0 : counts.count(inStock);
+        }
+        long count = 0;
+        for (Group counts : current.values()) {
+            count += counts.count(inStock);
+        }
+        return count;
+    }
+
+    /**
+     * Remplace les compteurs par les nombres lus en base, écritures concurrentes rejouées ; en cas
+     * d'échec, les compteurs précédents restent en place (indisponibles s'ils n'ont jamais été lus)
+     */
+    public void reconcile(Source source) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            writesDuringReconcile = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Map<String, long[]> read = new HashMap<>();
+            source.scan((group, total, inStock) -> {
+                long[] counts = read.computeIfAbsent(group == null ? NO_GROUP : group, key -> new long[2]);
+                counts[0] += total;
+                counts[1] += inStock;
+            });
+            Map<String, Group> reconciled = new ConcurrentHashMap<>();
+            read.forEach((group, counts) -> {
+                Group target = new Group();
+                target.total.add(counts[0]);
+                target.inStock.add(counts[1]);
+                reconciled.put(group, target);
+            });
+            long drift;
+            lock.writeLock().lock();
+            try {
+                for (Object[] write : writesDuringReconcile) {
+                    apply(reconciled, (String) write[0], (Boolean) write[1], (Integer) write[2]);
+                }
+                drift = ready ? Math.abs(total(reconciled) - total(groups)) : 0;
+                groups = reconciled;
+                ready = true;
+                lastError = null;
+                lastDrift = drift;
+                lastReconcileMillis = System.currentTimeMillis();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.log(drift == 0 ? Level.FINE : Level.INFO, "Comptages {0} réconciliés : {1} ligne(s), écart {2}, en {3} ms",
+                    new Object[]{name, total(reconciled), drift, (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(Level.WARNING, "Réconciliation des comptages " + name + " impossible, valeurs précédentes conservées", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                writesDuringReconcile = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static long total(Map<String, Group> target) {
+        long total = 0;
+        for (Group counts : target.values()) {
+            total += counts.total.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Démarre les réconciliations périodiques (thread "row-counts-<nom>", la première immédiatement)
+     */
+    public synchronized void start() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "row-counts-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> reconcile(database.get()), 0, reconcileSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * État des compteurs : disponibilité, total, groupes, écart corrigé à la dernière réconciliation
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        result.put("total", count(null, null));
+        result.put("groups", groups.size());
+        result.put("lastDrift", lastDrift);
+        if (lastReconcileMillis > 0) {
+            result.put("lastReconcileAgeSeconds", (System.currentTimeMillis() - lastReconcileMillis) / 1000);
+        }
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    private static final class Group {
+        final LongAdder total = new LongAdder();
+        final LongAdder inStock = new LongAdder();
+
+        long count(Boolean inStockOnly) {
+            if (inStockOnly == null) {
+                return total.sum();
+            }
+            return inStockOnly ? inStock.sum() : total.sum() - inStock.sum();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.index;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Activation des index tenus à jour par les seules écritures de l'instance qui les porte : refusée
+ * quand -Dapp.instances (1) annonce plusieurs instances, dont les écritures y manqueraient ; les
+ * lectures passent alors par la base
+ */
+final class SingleInstance {
+
+    private static final Logger logger = Logger.getLogger(SingleInstance.class.getName());
+
+    private static final int INSTANCES = Integer.getInteger("app.instances", 1);
+
+    private SingleInstance() {
+    }
+
+    /**
+     * Valeur de la propriété booléenne, fausse avec plusieurs instances
+     */
+    static boolean enabled(String property) {
+        return enabled(property, Boolean.getBoolean(property), INSTANCES);
+    }
+
+    static boolean enabled(String property, boolean requested, int instances) {
+        if (!requested || instances <= 1) {
+            return requested;
+        }
+        logger.log(Level.WARNING, "-D{0}=true ignoré : {1} instances (-Dapp.instances), l''index manquerait "
+                + "les écritures des autres", new Object[]{property, instances});
+        return false;
+    }
+}
@@ -0,0 +1,492 @@
+package com.example.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Autocomplétion par préfixe (-Dsuggest.index.enabled=true) : arbre radix des valeurs normalisées
+ * (accents retirés, minuscules), chaque nœud gardant les -Dsuggest.index.k (10) meilleures valeurs
+ * de son sous-arbre. Une suggestion est un parcours de la longueur du préfixe, sans tri ni copie
+ * au-delà du résultat. Classement : valeur la plus fréquente (plusieurs produits de même nom),
+ * puis la plus courte, puis l'ordre alphabétique.
+ *
+ * Une instance pour les noms de produits, une pour les noms d'utilisateur ; construites au
+ * démarrage par lecture en flux, tenues à jour par ProductService et UserService ; désactivées
+ * quand plusieurs instances se partagent les écritures (SingleInstance).
+ */
+public final class SuggestIndex {
+
+    private static final Logger logger = Logger.getLogger(SuggestIndex.class.getName());
+
+    private static final boolean ENABLED = SingleInstance.enabled("suggest.index.enabled");
+    private static final int TOP_K = Integer.getInteger("suggest.index.k", 10);
+
+    // Avant les instances : la racine de chaque instance est construite avec ces tableaux
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+    private static final String[] NO_VALUES = new String[0];
+    private static final int[] NO_COUNTS = new int[0];
+
+    private static final SuggestIndex PRODUCT_NAMES =
+            new SuggestIndex("productNames", ENABLED, TOP_K, DatabaseSuggestSource::productNames);
+    private static final SuggestIndex USERNAMES =
+            new SuggestIndex("usernames", ENABLED, TOP_K, DatabaseSuggestSource::usernames);
+
+    /**
+     * Lecture en flux des valeurs de chaque shard
+     */
+    public interface Source {
+        int shardCount();
+
+        void scan(int shard, Row row) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Row {
+        void accept(String value);
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final int k;
+    private final Supplier<Source> database;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node("");
+    private int valueCount;
+    // Écritures reçues pendant une reconstruction (valeur, +1 ou -1), rejouées sur le nouvel arbre
+    private List<Object[]> writesDuringRebuild;
+    private volatile boolean ready;
+    private volatile String lastError;
+
+    SuggestIndex(String name, boolean enabled, int k, Supplier<Source> database) {
+        this.name = name;
+        this.enabled = enabled;
+        this.k = Math.max(1, k);
+        this.database = database;
+    }
+
+    public static SuggestIndex forProductNames() {
+        return PRODUCT_NAMES;
+    }
+
+    public static SuggestIndex forUsernames() {
+        return USERNAMES;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Vrai une fois l'arbre construit ; sinon les suggestions passent par la base
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Nombre maximal de suggestions par préfixe
+     */
+    public int maxSuggestions() {
+        return k;
+    }
+
+    public void add(String value) {
+        change(value, 1);
+    }
+
+    public void remove(String value) {
+        change(value, -1);
+    }
+
+    /**
+     * Remplace une valeur après une mise à jour (rien si elle n'a pas changé)
+     */
+    public void replace(String previous, String value) {
+        if (previous == null ? value != null : !previous.equals(value)) {
+            remove(previous);
+            add(value);
+        }
+    }
+
+    private void change(String value, int delta) {
+        if (!enabled || value == null || value.isEmpty()) {
+            return;
+        }
+        String key = TextAnalyzer.fold(value);
+        lock.writeLock().lock();
+        try {
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(new Object[]{value, delta});
+            }
+            apply(root, key, value, delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Au plus limit valeurs commençant par le préfixe (accents et casse ignorés), les meilleures d'abord
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = TextAnalyzer.fold(prefix);
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int matched = 0;
+            while (matched < key.length()) {
+                node = node.child(key.charAt(matched));
+                if (node == null) {
+                    return List.of();
+                }
+                int common = Math.min(node.label.length(), key.length() - matched);
+                if (!key.regionMatches(matched, node.label, 0, common)) {
+                    return List.of();
+                }
+                matched += common;
+            }
+            return List.of(Arrays.copyOf(node.top, Math.min(limit, node.top.length)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ajoute ou retire une occurrence de la valeur, puis recalcule les meilleures valeurs des nœuds
+     * du chemin, de la feuille vers la racine
+     */
+    private void apply(Node tree, String key, String value, int delta) {
+        List<Node> path = new ArrayList<>();
+        Node node = tree;
+        int matched = 0;
+        path.add(node);
+        while (matched < key.length()) {
+            Node child = node.child(key.charAt(matched));
+            if (child == null) {
+                if (delta < 0) {
+                    return;
+                }
+                child = new Node(key.substring(matched));
+                node.addChild(child);
+                matched = key.length();
+            } else {
+                int common = commonPrefix(child.label, key, matched);
+                if (common < child.label.length()) {
+                    if (delta < 0) {
+                        return;
+                    }
+                    child = node.split(child, common);
+                }
+                matched += common;
+            }
+            node = child;
+            path.add(node);
+        }
+        if (!node.count(value, delta)) {
+            return;
+        }
+        valueCount += delta > 0 ? (node.countOf(value) == 1 ? 1 : 0) : (node.countOf(value) == 0 ? -1 : 0);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node current = path.get(i);
+            if (i > 0 && current.isEmpty()) {
+                path.get(i - 1).removeChild(current);
+            } else if (i > 0 && current.values == null && current.children.length == 1) {
+                path.get(i - 1).replaceChild(current, current.mergeWithChild());
+            } else {
+                current.computeTop(k);
+            }
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int from) {
+        int common = 0;
+        while (common < label.length() && from + common < key.length()
+                && label.charAt(common) == key.charAt(from + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Reconstruit l'arbre à partir de la source, puis le rend disponible ; en cas d'échec, l'arbre
+     * précédent reste en place (indisponible s'il n'a jamais été construit)
+     */
+    public void rebuild(Source source) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            writesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Node rebuilt = new Node("");
+            Map<String, Integer> counts = new HashMap<>();
+            for (int shard = 0; shard < source.shardCount(); shard++) {
+                source.scan(shard, value -> {
+                    if (value != null && !value.isEmpty()) {
+                        counts.merge(value, 1, Integer::sum);
+                    }
+                });
+            }
+            counts.forEach((value, count) -> rebuilt.insert(TextAnalyzer.fold(value), value, count));
+            rebuilt.computeTops(k);
+            lock.writeLock().lock();
+            try {
+                root = rebuilt;
+                valueCount = counts.size();
+                for (Object[] write : writesDuringRebuild) {
+                    String value = (String) write[0];
+                    apply(root, TextAnalyzer.fold(value), value, (Integer) write[1]);
+                }
+                ready = true;
+                lastError = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.log(Level.INFO, "Index de suggestions {0} construit : {1} valeur(s) en {2} ms",
+                    new Object[]{name, counts.size(), (System.nanoTime() - start) / 1_000_000});
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.log(Level.SEVERE, "Construction de l'index de suggestions " + name + " impossible, suggestions servies par la base", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                writesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Démarre la construction en arrière-plan (thread "suggest-index-build-<nom>")
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> rebuild(database.get()), "suggest-index-build-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * État de l'index : disponibilité, valeurs distinctes, nœuds, dernière erreur
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ready", ready);
+        lock.readLock().lock();
+        try {
+            result.put("values", valueCount);
+            result.put("nodes", root.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    /**
+     * Nœud de l'arbre : étiquette de l'arête venant du parent, enfants triés par premier caractère,
+     * valeurs d'origine dont la clé normalisée s'arrête ici (avec leur nombre d'occurrences) et
+     * meilleures valeurs du sous-arbre
+     */
+    private static final class Node {
+        String label;
+        char[] firstChars = NO_CHARS;
+        Node[] children = NO_NODES;
+        Map<String, Integer> values;
+        String[] top = NO_VALUES;
+        int[] topCounts = NO_COUNTS;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int position = Arrays.binarySearch(firstChars, first);
+            return position >= 0 ? children[position] : null;
+        }
+
+        void addChild(Node child) {
+            int position = -Arrays.binarySearch(firstChars, child.label.charAt(0)) - 1;
+            char[] chars = new char[firstChars.length + 1];
+            Node[] nodes = new Node[children.length + 1];
+            System.arraycopy(firstChars, 0, chars, 0, position);
+            System.arraycopy(children, 0, nodes, 0, position);
+            chars[position] = child.label.charAt(0);
+            nodes[position] = child;
+            System.arraycopy(firstChars, position, chars, position + 1, firstChars.length - position);
+            System.arraycopy(children, position, nodes, position + 1, children.length - position);
+            firstChars = chars;
+            children = nodes;
+        }
+
+        void removeChild(Node child) {
+            int position = Arrays.binarySearch(firstChars, child.label.charAt(0));
+            char[] chars = new char[firstChars.length - 1];
+            Node[] nodes = new Node[children.length - 1];
+            System.arraycopy(firstChars, 0, chars, 0, position);
+            System.arraycopy(children, 0, nodes, 0, position);
+            System.arraycopy(firstChars, position + 1, chars, position, chars.length - position);
+            System.arraycopy(children, position + 1, nodes, position, nodes.length - position);
+            firstChars = chars;
+            children = nodes;
+        }
+
+        void replaceChild(Node previous, Node child) {
+            children[Arrays.binarySearch(firstChars, previous.label.charAt(0))] = child;
+        }
+
+        /**
+         * Coupe l'arête vers child après common caractères ; retourne le nœud intermédiaire
+         */
+        Node split(Node child, int common) {
+            Node middle = new Node(child.label.substring(0, common));
+            replaceChild(child, middle);
+            child.label = child.label.substring(common);
+            middle.addChild(child);
+            middle.top = child.top;
+            middle.topCounts = child.topCounts;
+            return middle;
+        }
+
+        /**
+         * Nœud sans valeur à enfant unique fusionné avec lui (arbre compact après une suppression)
+         */
+        Node mergeWithChild() {
+            Node child = children[0];
+            child.label = label + child.label;
+            return child;
+        }
+
+        /**
+         * Ajoute delta occurrences de la valeur ; faux si la valeur à retirer est absente
+         */
+        boolean count(String value, int delta) {
+            if (delta < 0 && (values == null || !values.containsKey(value))) {
+                return false;
+            }
+            if (values == null) {
+                values = new HashMap<>(2);
+            }
+            if (values.merge(value, delta, Integer::sum) <= 0) {
+                values.remove(value);
+                if (values.isEmpty()) {
+                    values = null;
+                }
+            }
+            return true;
+        }
+
+        int countOf(String value) {
+            return values == null ? 0 : values.getOrDefault(value, 0);
+        }
+
+        boolean isEmpty() {
+            return values == null && children.length == 0;
+        }
+
+        /**
+         * Insertion sans recalcul des meilleures valeurs (construction en bloc, suivie de computeTops)
+         */
+        void insert(String key, String value, int count) {
+            Node node = this;
+            int matched = 0;
+            while (matched < key.length()) {
+                Node child = node.child(key.charAt(matched));
+                if (child == null) {
+                    child = new Node(key.substring(matched));
+                    node.addChild(child);
+                    matched = key.length();
+                } else {
+                    int common = commonPrefix(child.label, key, matched);
+                    if (common < child.label.length()) {
+                        child = node.split(child, common);
+                    }
+                    matched += common;
+                }
+                node = child;
+            }
+            node.count(value, count);
+        }
+
+        void computeTops(int k) {
+            for (Node child : children) {
+                child.computeTops(k);
+            }
+            computeTop(k);
+        }
+
+        /**
+         * Meilleures valeurs parmi celles du nœud et les meilleures de chaque enfant
+         */
+        void computeTop(int k) {
+            String[] best = new String[k];
+            int[] bestCounts = new int[k];
+            int[] size = {0};
+            if (values != null) {
+                values.forEach((value, count) -> offer(best, bestCounts, size, value, count));
+            }
+            for (Node child : children) {
+                for (int i = 0; i < child.top.length; i++) {
+                    offer(best, bestCounts, size, child.top[i], child.topCounts[i]);
+                }
+            }
+            top = Arrays.copyOf(best, size[0]);
+            topCounts = Arrays.copyOf(bestCounts, size[0]);
+        }
+
+        /**
+         * Insertion dans le tableau trié des meilleures valeurs (taille bornée)
+         */
+        private static void offer(String[] best, int[] bestCounts, int[] size, String value, int count) {
+            int position = size[0];
+            while (position > 0 && ranksBefore(value, count, best[position - 1], bestCounts[position - 1])) {
+                position--;
+            }
+            if (position == best.length) {
+                return;
+            }
+            int last = Math.min(size[0], best.length - 1);
+            System.arraycopy(best, position, best, position + 1, last - position);
+            System.arraycopy(bestCounts, position, bestCounts, position + 1, last - position);
+            best[position] = value;
+            bestCounts[position] = count;
+            size[0] = Math.min(size[0] + 1, best.length);
+        }
+
+        private static boolean ranksBefore(String value, int count, String other, int otherCount) {
+            if (count != otherCount) {
+                return count > otherCount;
+            }
+            if (value.length() != other.length()) {
+                return value.length() < other.length();
+            }
+            return value.compareTo(other) < 0;
+        }
+
+        int size() {
+            int size = 1;
+            for (Node child : children) {
+                size += child.size();
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Découpage et normalisation du texte pour FullTextIndex : accents retirés (é → e, ç → c,
+ * œ → oe), minuscules, découpage sur tout caractère non alphanumérique, mots d'une lettre et mots
+ * vides écartés, pluriel simple retiré (s ou x final). Appliqué à l'identique aux produits indexés
+ * et aux requêtes ; toute modification impose d'incrémenter VERSION (segments sur disque ignorés).
+ */
+final class TextAnalyzer {
+
+    static final int VERSION = 1;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "elle", "en", "est", "et", "il",
+            "la", "le", "les", "leur", "mais", "ou", "par", "pas", "pour", "qui", "sa", "se", "ses", "son",
+            "sur", "un", "une", "and", "for", "of", "the", "to", "with");
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Termes du texte dans l'ordre d'apparition (doublons conservés) ; vide pour null
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean letter = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                String term = stem(folded.substring(start, i));
+                if (term.length() > 1 && !STOP_WORDS.contains(term)) {
+                    terms.add(term);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Texte sans accents ni ligatures, en minuscules (ponctuation et espaces conservés)
+     */
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            switch (c) {
+                case 'œ', 'Œ' -> folded.append("oe");
+                case 'æ', 'Æ' -> folded.append("ae");
+                case 'ß' -> folded.append("ss");
+                default -> folded.append(c);
+            }
+        }
+        return folded.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Pluriel régulier : "ordinateurs" → "ordinateur", "jeux" → "jeu" ; les mots courts et en -ss
+     * sont laissés tels quels
+     */
+    private static String stem(String term) {
+        int length = term.length();
+        if (length > 3 && (term.charAt(length - 1) == 's' || term.charAt(length - 1) == 'x')
+                && term.charAt(length - 2) != 's') {
+            return term.substring(0, length - 1);
+        }
+        return term;
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Segment immuable de FullTextIndex : documents (identifiant, version, longueur ; longueur -1 pour
+ * une suppression), dictionnaire trié des termes et listes de postings compressées dans un seul
+ * tableau d'octets (écart d'identifiant puis fréquence, en entiers de longueur variable).
+ *
+ * Un posting n'est valable que si la table des documents vivants de l'index désigne ce segment
+ * pour l'identifiant : une version plus récente ou une suppression dans un segment ultérieur
+ * l'écarte sans réécrire le segment.
+ */
+final class TextSegment {
+
+    private static final int MAGIC = 0x46545853; // "FTXS"
+
+    /**
+     * Document analysé : version, longueur pondérée et fréquence de chaque terme ; frequencies
+     * null pour une suppression
+     */
+    static final class Document {
+        final long version;
+        final int length;
+        final Map<String, Integer> frequencies;
+
+        Document(long version, int length, Map<String, Integer> frequencies) {
+            this.version = version;
+            this.length = length;
+            this.frequencies = frequencies;
+        }
+
+        static Document deleted() {
+            return new Document(0L, -1, null);
+        }
+
+        boolean isDeleted() {
+            return frequencies == null;
+        }
+    }
+
+    @FunctionalInterface
+    interface PostingVisitor {
+        void accept(long id, int frequency);
+    }
+
+    final int generation;
+    final long[] docIds;
+    final long[] docVersions;
+    final int[] docLengths;
+    private final String[] terms;
+    private final int[] docFrequencies;
+    private final int[] offsets;
+    private final byte[] postings;
+
+    private TextSegment(int generation, long[] docIds, long[] docVersions, int[] docLengths,
+                        String[] terms, int[] docFrequencies, int[] offsets, byte[] postings) {
+        this.generation = generation;
+        this.docIds = docIds;
+        this.docVersions = docVersions;
+        this.docLengths = docLengths;
+        this.terms = terms;
+        this.docFrequencies = docFrequencies;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+    int documentCount() {
+        return docIds.length;
+    }
+
+    /**
+     * Nombre de documents du segment contenant le terme (versions remplacées comprises)
+     */
+    int docFrequency(String term) {
+        int position = Arrays.binarySearch(terms, term);
+        return position >= 0 ? docFrequencies[position] : 0;
+    }
+
+    /**
+     * Parcourt les postings du terme par identifiant croissant
+     */
+    void postings(String term, PostingVisitor visitor) {
+        int position = Arrays.binarySearch(terms, term);
+        if (position < 0) {
+            return;
+        }
+        int[] cursor = {offsets[position]};
+        long id = 0;
+        for (int i = 0; i < docFrequencies[position]; i++) {
+            id += readVarLong(postings, cursor);
+            visitor.accept(id, (int) readVarLong(postings, cursor));
+        }
+    }
+
+    long sizeInBytes() {
+        long bytes = postings.length + docIds.length * 20L + offsets.length * 8L;
+        for (String term : terms) {
+            bytes += 40 + term.length() * 2L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Segment des documents donnés (suppressions comprises)
+     */
+    static TextSegment of(int generation, Map<Long, Document> documents) {
+        long[] ids = documents.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        Builder builder = new Builder(ids.length);
+        for (long id : ids) {
+            builder.add(id, documents.get(id));
+        }
+        return builder.build(generation);
+    }
+
+    /**
+     * Fusionne des segments consécutifs en ne gardant que les documents vivants dans leur segment ;
+     * les suppressions ne sont gardées que si keepDeletions (segments plus anciens conservés)
+     */
+    static TextSegment merge(int generation, List<TextSegment> segments, IdTable live, boolean keepDeletions) {
+        Map<Long, Document> documents = new HashMap<>();
+        for (TextSegment segment : segments) {
+            for (int i = 0; i < segment.docIds.length; i++) {
+                long id = segment.docIds[i];
+                if (segment.docLengths[i] < 0) {
+                    if (keepDeletions && live.find(id) < 0) {
+                        documents.put(id, Document.deleted());
+                    }
+                } else if (segment.isLiveIn(live, id)) {
+                    documents.put(id, new Document(segment.docVersions[i], segment.docLengths[i], Map.of()));
+                }
+            }
+        }
+        long[] ids = documents.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        Builder builder = new Builder(ids.length);
+        for (long id : ids) {
+            builder.addDocument(id, documents.get(id));
+        }
+        TreeSet<String> allTerms = new TreeSet<>();
+        for (TextSegment segment : segments) {
+            allTerms.addAll(Arrays.asList(segment.terms));
+        }
+        long[][] segmentIds = new long[segments.size()][];
+        int[][] segmentFrequencies = new int[segments.size()][];
+        int[] counts = new int[segments.size()];
+        for (String term : allTerms) {
+            for (int s = 0; s < segments.size(); s++) {
+                TextSegment segment = segments.get(s);
+                int docFrequency = segment.docFrequency(term);
+                long[] termIds = new long[docFrequency];
+                int[] termFrequencies = new int[docFrequency];
+                int[] count = {0};
+                segment.postings(term, (id, frequency) -> {
+                    if (segment.isLiveIn(live, id)) {
+                        termIds[count[0]] = id;
+                        termFrequencies[count[0]++] = frequency;
+                    }
+                });
+                segmentIds[s] = termIds;
+                segmentFrequencies[s] = termFrequencies;
+                counts[s] = count[0];
+            }
+            // Fusion k-voies : un identifiant n'est vivant que dans un seul segment
+            int[] cursors = new int[segments.size()];
+            while (true) {
+                int best = -1;
+                for (int s = 0; s < segments.size(); s++) {
+                    if (cursors[s] < counts[s] && (best < 0 || segmentIds[s][cursors[s]] < segmentIds[best][cursors[best]])) {
+                        best = s;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                builder.addPosting(term, segmentIds[best][cursors[best]], segmentFrequencies[best][cursors[best]]);
+                cursors[best]++;
+            }
+        }
+        return builder.build(generation);
+    }
+
+    private boolean isLiveIn(IdTable live, long id) {
+        int slot = live.find(id);
+        return slot >= 0 && generationOf(live.valueAt(slot)) == generation;
+    }
+
+    /**
+     * Valeur de la table des documents vivants : génération du segment et longueur du document
+     */
+    static long pack(int generation, int length) {
+        return ((long) generation << 32) | (length & 0xFFFFFFFFL);
+    }
+
+    static int generationOf(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    static int lengthOf(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Écrit le segment (fichier temporaire puis renommage, somme de contrôle CRC32 en fin de fichier)
+     */
+    void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, crc)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(TextAnalyzer.VERSION);
+            out.writeInt(generation);
+            out.writeInt(docIds.length);
+            for (int i = 0; i < docIds.length; i++) {
+                out.writeLong(docIds[i]);
+                out.writeLong(docVersions[i]);
+                out.writeInt(docLengths[i]);
+            }
+            out.writeInt(terms.length);
+            for (int i = 0; i < terms.length; i++) {
+                out.writeUTF(terms[i]);
+                out.writeInt(docFrequencies[i]);
+                out.writeInt(offsets[i]);
+            }
+            out.writeInt(postings.length);
+            out.write(postings);
+            out.flush();
+            stream.write(longBytes(crc.getValue()));
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Relit un segment, somme de contrôle vérifiée avant toute lecture ; IOException si le fichier
+     * est tronqué, corrompu ou d'une autre version de l'analyseur
+     */
+    static TextSegment read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, Math.max(0, bytes.length - 8));
+        if (bytes.length < 8 || ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+            throw new IOException("Segment " + file.getFileName() + " corrompu (somme de contrôle)");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+        if (in.readInt() != MAGIC || in.readInt() != TextAnalyzer.VERSION) {
+            throw new IOException("Segment " + file.getFileName() + " d'un autre format");
+        }
+        int generation = in.readInt();
+        int documentCount = in.readInt();
+        long[] ids = new long[documentCount];
+        long[] versions = new long[documentCount];
+        int[] lengths = new int[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            ids[i] = in.readLong();
+            versions[i] = in.readLong();
+            lengths[i] = in.readInt();
+        }
+        int termCount = in.readInt();
+        String[] terms = new String[termCount];
+        int[] docFrequencies = new int[termCount];
+        int[] offsets = new int[termCount];
+        for (int i = 0; i < termCount; i++) {
+            terms[i] = in.readUTF();
+            docFrequencies[i] = in.readInt();
+            offsets[i] = in.readInt();
+        }
+        byte[] postings = new byte[in.readInt()];
+        in.readFully(postings);
+        return new TextSegment(generation, ids, versions, lengths, terms, docFrequencies, offsets, postings);
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] cursor) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[cursor[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Construction d'un segment : documents par identifiant croissant, postings ajoutés par
+     * identifiant croissant pour chaque terme
+     */
+    private static final class Builder {
+        private final long[] ids;
+        private final long[] versions;
+        private final int[] lengths;
+        private int documentCount;
+        private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+        Builder(int expected) {
+            ids = new long[expected];
+            versions = new long[expected];
+            lengths = new int[expected];
+        }
+
+        void add(long id, Document document) {
+            addDocument(id, document);
+            if (!document.isDeleted()) {
+                document.frequencies.forEach((term, frequency) -> addPosting(term, id, frequency));
+            }
+        }
+
+        void addDocument(long id, Document document) {
+            ids[documentCount] = id;
+            versions[documentCount] = document.version;
+            lengths[documentCount] = document.length;
+            documentCount++;
+        }
+
+        void addPosting(String term, long id, int frequency) {
+            postings.computeIfAbsent(term, key -> new Postings()).add(id, frequency);
+        }
+
+        TextSegment build(int generation) {
+            String[] terms = postings.keySet().toArray(new String[0]);
+            int[] docFrequencies = new int[terms.length];
+            int[] offsets = new int[terms.length];
+            int total = 0;
+            for (Postings list : postings.values()) {
+                total += list.size;
+            }
+            byte[] bytes = new byte[total];
+            int position = 0;
+            for (int i = 0; i < terms.length; i++) {
+                Postings list = postings.get(terms[i]);
+                docFrequencies[i] = list.count;
+                offsets[i] = position;
+                System.arraycopy(list.bytes, 0, bytes, position, list.size);
+                position += list.size;
+            }
+            return new TextSegment(generation, Arrays.copyOf(ids, documentCount), Arrays.copyOf(versions, documentCount),
+                    Arrays.copyOf(lengths, documentCount), terms, docFrequencies, offsets, bytes);
+        }
+    }
+
+    /**
+     * Liste de postings en cours d'encodage
+     */
+    private static final class Postings {
+        byte[] bytes = new byte[8];
+        int size;
+        int count;
+        long lastId;
+
+        void add(long id, int frequency) {
+            writeVarLong(id - lastId);
+            writeVarLong(frequency);
+            lastId = id;
+            count++;
+        }
+
+        private void writeVarLong(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + 10));
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+}
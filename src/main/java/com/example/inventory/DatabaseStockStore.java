@@ -0,0 +1,91 @@
+package com.example.inventory;
+
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
+import com.example.sharding.ShardRouter;
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Écriture des deltas de stock : un UPDATE groupé (batch JDBC) par shard, et le dernier segment
+ * de journal appliqué (table stock_journal_checkpoints) et les changements des produits (ChangeFeed)
+ * dans la même transaction. La version des produits n'est pas incrémentée : un flush ne fait
+ * qu'écrire des variations déjà visibles en lecture, une mise à jour versionnée lue avant lui reste valide.
+ */
+class DatabaseStockStore implements StockWriteBehind.Store {
+
+    private static final String UPDATE = "UPDATE products SET quantity = quantity + ?, updated_at = ? WHERE id = ?";
+    private static final String SELECT_CHECKPOINT = "SELECT segment FROM stock_journal_checkpoints WHERE journal = ?";
+    private static final String UPDATE_CHECKPOINT = "UPDATE stock_journal_checkpoints SET segment = ? WHERE journal = ?";
+    private static final String INSERT_CHECKPOINT = "INSERT INTO stock_journal_checkpoints (journal, segment) VALUES (?, ?)";
+
+    private final ShardRouter shards = ShardRouter.getInstance();
+    private final ChangeFeed changeFeed = ChangeFeed.getInstance();
+    private final String journalName;
+
+    DatabaseStockStore(String journalName) {
+        this.journalName = journalName;
+    }
+
+    @Override
+    public int shardOf(long id) {
+        return shards.shardOf(id);
+    }
+
+    @Override
+    public void apply(int shard, Map<Long, Long> deltas, long segment) {
+        shards.writeOnShard(shard, em -> {
+            em.unwrap(Session.class).doWork(connection -> {
+                if (segment > 0 && checkpoint(connection) >= segment) {
+                    return;
+                }
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                try (PreparedStatement update = connection.prepareStatement(UPDATE)) {
+                    for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+                        update.setLong(1, delta.getValue());
+                        update.setTimestamp(2, now);
+                        update.setLong(3, delta.getKey());
+                        update.addBatch();
+                    }
+                    update.executeBatch();
+                }
+                changeFeed.record(connection, Change.PRODUCT, deltas.keySet(), Change.UPDATE);
+                if (segment > 0) {
+                    saveCheckpoint(connection, segment);
+                }
+            });
+            return null;
+        });
+    }
+
+    private long checkpoint(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SELECT_CHECKPOINT)) {
+            select.setString(1, journalName);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            }
+        }
+    }
+
+    private void saveCheckpoint(Connection connection, long segment) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_CHECKPOINT)) {
+            update.setLong(1, segment);
+            update.setString(2, journalName);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_CHECKPOINT)) {
+            insert.setString(1, journalName);
+            insert.setLong(2, segment);
+            insert.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.inventory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local en ajout seul des variations de stock en attente d'écriture : un fichier
+ * stock-N.journal par segment, un segment par flush. Les numéros de segment croissent d'un
+ * démarrage à l'autre (au moins l'heure courante en millisecondes), car les shards retiennent
+ * le dernier segment appliqué. Chaque enregistrement (identifiant, delta, CRC32) fait 20 octets ;
+ * un enregistrement tronqué ou corrompu (arrêt brutal) termine la lecture. Le fichier journal.id
+ * du répertoire porte l'identifiant du journal, clé de ses points de reprise en base.
+ */
+class StockJournal {
+
+    private static final int RECORD_SIZE = 20;
+    private static final String PREFIX = "stock-";
+    private static final String SUFFIX = ".journal";
+    private static final String IDENTITY_FILE = "journal.id";
+
+    private final Path directory;
+    private final boolean syncEachRecord;
+    private FileChannel channel;
+    private long segment;
+
+    /**
+     * @param syncEachRecord force l'écriture sur disque à chaque enregistrement, sinon à chaque rotation
+     */
+    StockJournal(Path directory, boolean syncEachRecord) {
+        this.directory = directory;
+        this.syncEachRecord = syncEachRecord;
+    }
+
+    /**
+     * Identifiant stable du journal, lu dans journal.id ou créé au premier usage : il suit le
+     * répertoire (volume monté) et non le conteneur, dont le nom d'hôte change à chaque recréation.
+     * Un répertoire qui contient déjà des segments sans journal.id reprend legacyName, la clé
+     * sous laquelle ces segments ont été enregistrés.
+     */
+    String identity(String legacyName) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(IDENTITY_FILE);
+        if (Files.exists(file)) {
+            String identity = Files.readString(file, StandardCharsets.UTF_8).trim();
+            if (!identity.isEmpty()) {
+                return identity;
+            }
+        }
+        String identity = leftoverSegments().isEmpty() ? "journal-" + UUID.randomUUID() : legacyName;
+        Path temporary = directory.resolve(IDENTITY_FILE + ".tmp");
+        Files.writeString(temporary, identity + "\n", StandardCharsets.UTF_8);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return identity;
+    }
+
+    /**
+     * Segments laissés par une exécution précédente, par numéro croissant
+     */
+    List<Long> leftoverSegments() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> segments.add(Long.parseLong(name.substring(PREFIX.length(),
+                            name.length() - SUFFIX.length()))));
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    /**
+     * Ouvre un nouveau segment après les segments existants
+     */
+    synchronized void open() throws IOException {
+        List<Long> existing = leftoverSegments();
+        long next = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        segment = Math.max(next, System.currentTimeMillis());
+        channel = openSegment(segment);
+    }
+
+    void append(long id, long delta) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putLong(id).putLong(delta);
+        record.putInt((int) checksum(record.array()));
+        record.flip();
+        FileChannel current;
+        synchronized (this) {
+            current = channel;
+            while (record.hasRemaining()) {
+                current.write(record);
+            }
+        }
+        if (syncEachRecord) {
+            current.force(false);
+        }
+    }
+
+    /**
+     * Ferme le segment courant sur disque et en ouvre un nouveau ; retourne le numéro du segment fermé
+     */
+    synchronized long rotate() throws IOException {
+        long closed = segment;
+        channel.force(false);
+        channel.close();
+        segment = Math.max(segment + 1, System.currentTimeMillis());
+        channel = openSegment(segment);
+        return closed;
+    }
+
+    synchronized long currentSegment() {
+        return segment;
+    }
+
+    /**
+     * Supprime les segments de numéro inférieur ou égal à lastSegment (hors segment courant)
+     */
+    void deleteUpTo(long lastSegment) throws IOException {
+        for (long leftover : leftoverSegments()) {
+            if (leftover <= lastSegment && leftover != currentSegment()) {
+                Files.deleteIfExists(path(leftover));
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * Variations cumulées par produit d'un segment
+     */
+    Map<Long, Long> read(long segmentNumber) throws IOException {
+        Map<Long, Long> deltas = new HashMap<>();
+        byte[] bytes = Files.readAllBytes(path(segmentNumber));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.remaining() >= RECORD_SIZE) {
+            byte[] payload = new byte[16];
+            buffer.get(payload);
+            int crc = buffer.getInt();
+            if ((int) checksum(payload) != crc) {
+                break;
+            }
+            ByteBuffer values = ByteBuffer.wrap(payload);
+            deltas.merge(values.getLong(), values.getLong(), Long::sum);
+        }
+        return deltas;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(path(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path path(long number) {
+        return directory.resolve(PREFIX + number + SUFFIX);
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, 16);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.inventory;
+
+import com.example.model.Product;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Écriture différée des variations de stock (-Dstock.writebehind.enabled=true) : les deltas de
+ * quantité sont cumulés en mémoire par produit, puis écrits par lot (un UPDATE groupé par shard)
+ * toutes les -Dstock.writebehind.flush.ms (200) ou dès -Dstock.writebehind.max.entries (1000)
+ * produits en attente. Les lectures voient la valeur en base augmentée des deltas non écrits
+ * (à la durée d'un UPDATE groupé près) ; withStableView garantit une vue exacte pour une mise à jour.
+ * Les deltas sont répartis en 64 bandes par produit : un ajout ne verrouille que sa bande, le flush
+ * échange les tampons de toutes les bandes le temps de la rotation du journal, puis écrit en base
+ * sans bloquer les ajouts. Chaque bande a aussi un verrou de vue, distinct : withStableView le tient
+ * pendant ses accès à la base, et le flush tient ceux des bandes de son lot pendant l'UPDATE groupé
+ * d'un shard. Une mise à jour (PUT/PATCH) attend donc une autre mise à jour de la même bande ou le
+ * flush d'un produit de sa bande ; un ajout n'attend jamais la base.
+ *
+ * Avec -Dstock.writebehind.journal.dir, chaque delta est d'abord ajouté à un journal local
+ * (StockJournal), forcé sur disque à chaque flush ou, avec -Dstock.writebehind.journal.fsync=always,
+ * à chaque delta. Les segments restants au démarrage sont rejoués ; le dernier segment appliqué
+ * est enregistré par shard dans la même transaction que les deltas, un segment n'est donc jamais
+ * appliqué deux fois.
+ */
+public class StockWriteBehind {
+
+    private static final Logger logger = Logger.getLogger(StockWriteBehind.class.getName());
+
+    private static final int STRIPES = 64;
+
+    private static final StockWriteBehind INSTANCE = fromSystemProperties();
+
+    /**
+     * Application des deltas en base
+     */
+    interface Store {
+        int shardOf(long id);
+
+        /**
+         * Applique les deltas d'un shard et, si segment > 0, enregistre ce segment comme appliqué
+         * dans la même transaction ; ne fait rien si le shard a déjà appliqué ce segment
+         */
+        void apply(int shard, Map<Long, Long> deltas, long segment);
+    }
+
+    private final boolean enabled;
+    private final Store store;
+    private final StockJournal journal;
+    private final long flushMillis;
+    private final int maxEntries;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ConcurrentHashMap<Long, Long> inFlight = new ConcurrentHashMap<>();
+    // Par bande : vue stable d'un produit, ou application en base et retrait des deltas écrits
+    private final ReentrantLock[] viewLocks = new ReentrantLock[STRIPES];
+    private final AtomicLong flushedDeltas = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile boolean active;
+    private volatile String lastError;
+    private long lastSegment;
+    private ScheduledExecutorService scheduler;
+
+    StockWriteBehind(boolean enabled, Store store, StockJournal journal, long flushMillis, int maxEntries) {
+        this.enabled = enabled;
+        this.store = store;
+        this.journal = journal;
+        this.flushMillis = flushMillis;
+        this.maxEntries = maxEntries;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+            viewLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public static StockWriteBehind getInstance() {
+        return INSTANCE;
+    }
+
+    private static StockWriteBehind fromSystemProperties() {
+        boolean enabled = Boolean.getBoolean("stock.writebehind.enabled");
+        String journalDirectory = System.getProperty("stock.writebehind.journal.dir", "");
+        StockJournal journal = journalDirectory.isBlank() ? null : new StockJournal(Path.of(journalDirectory),
+                "always".equalsIgnoreCase(System.getProperty("stock.writebehind.journal.fsync", "flush")));
+        String journalName = System.getProperty("stock.writebehind.journal.name", "");
+        if (journalName.isBlank()) {
+            journalName = hostName();
+            if (journal != null && enabled) {
+                try {
+                    journalName = journal.identity(journalName);
+                } catch (IOException e) {
+                    // Sans identifiant stable, un rejeu pourrait réappliquer des segments déjà écrits
+                    logger.log(Level.SEVERE, "Identifiant du journal de stock illisible dans " + journalDirectory
+                            + ", écriture différée désactivée", e);
+                    enabled = false;
+                }
+            }
+        }
+        return new StockWriteBehind(enabled, new DatabaseStockStore(journalName),
+                journal, Long.getLong("stock.writebehind.flush.ms", 200L),
+                Integer.getInteger("stock.writebehind.max.entries", 1000));
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * Vrai une fois démarré (journal rejoué) ; sinon les mises à jour de stock sont écrites directement
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Rejoue les segments du journal restants puis démarre le flush périodique (thread "stock-write-behind").
+     * Si le rejeu échoue, l'écriture différée reste désactivée et le journal est conservé.
+     */
+    public synchronized void start() {
+        if (!enabled || active) {
+            return;
+        }
+        try {
+            if (journal != null) {
+                replay();
+                journal.open();
+                lastSegment = journal.currentSegment() - 1;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Rejeu du journal de stock impossible, écriture différée désactivée", e);
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        active = true;
+        logger.log(Level.INFO, "Écriture différée des stocks active (flush toutes les {0} ms, journal : {1})",
+                new Object[]{flushMillis, journal != null});
+    }
+
+    /**
+     * Arrête le flush périodique puis écrit les deltas restants (à appeler avant la fermeture de JPA)
+     */
+    public synchronized void stop() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Fermeture du journal de stock impossible", e);
+        }
+        if (pendingCount.get() > 0 || !inFlight.isEmpty()) {
+            logger.log(Level.SEVERE, "{0} variation(s) de stock non écrite(s) à l''arrêt{1}",
+                    new Object[]{pendingCount.get() + inFlight.size(), journal != null ? ", conservée(s) dans le journal" : ""});
+        }
+    }
+
+    /**
+     * Ajoute une variation de quantité, écrite au prochain flush
+     */
+    public void add(long productId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        Stripe stripe = stripeOf(productId);
+        synchronized (stripe) {
+            try {
+                if (journal != null) {
+                    journal.append(productId, delta);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Écriture du journal de stock impossible", e);
+            }
+            Long previous = stripe.pending.put(productId, delta);
+            if (previous == null) {
+                pendingCount.incrementAndGet();
+            } else {
+                stripe.pending.put(productId, previous + delta);
+            }
+        }
+        if (pendingCount.get() >= maxEntries && active) {
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Arrêt en cours : le flush final écrira ce delta
+            }
+        }
+    }
+
+    /**
+     * Variation non encore écrite en base pour un produit
+     */
+    public long pendingDelta(long productId) {
+        Stripe stripe = stripeOf(productId);
+        // Sous la bande : un delta en cours d'échange n'est compté ni zéro ni deux fois
+        synchronized (stripe) {
+            return stripe.pending.getOrDefault(productId, 0L) + inFlight.getOrDefault(productId, 0L);
+        }
+    }
+
+    /**
+     * Applique au produit lu en base les variations non encore écrites
+     */
+    public Product merge(Product product) {
+        if (product != null && product.getId() != null && (pendingCount.get() > 0 || !inFlight.isEmpty())) {
+            long delta = pendingDelta(product.getId());
+            if (delta != 0) {
+                product.setQuantity((int) (product.getQuantity() + delta));
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Exécute une lecture suivie d'une écriture du stock d'un produit sans flush concurrent du
+     * produit ni autre mise à jour de sa bande : la vue fusionnée y reste exacte. Les ajouts
+     * concurrents ne sont pas bloqués.
+     */
+    public <T> T withStableView(long productId, Supplier<T> work) {
+        ReentrantLock viewLock = viewLocks[stripeIndex(productId)];
+        viewLock.lock();
+        try {
+            return work.get();
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    private Stripe stripeOf(long productId) {
+        return stripes[stripeIndex(productId)];
+    }
+
+    private static int stripeIndex(long productId) {
+        return (int) Math.floorMod(productId, (long) STRIPES);
+    }
+
+    /**
+     * Exécute work en tenant les verrous de vue des bandes de ces produits, pris par indice croissant
+     */
+    private void withViewLocks(Collection<Long> productIds, Runnable work) {
+        BitSet indexes = new BitSet(STRIPES);
+        productIds.forEach(productId -> indexes.set(stripeIndex(productId)));
+        int[] held = indexes.stream().toArray();
+        int locked = 0;
+        try {
+            for (int index : held) {
+                viewLocks[index].lock();
+                locked++;
+            }
+            work.run();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                viewLocks[held[i]].unlock();
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            logger.log(Level.WARNING, "Échec de l'écriture différée des stocks, nouvelle tentative au prochain flush", e);
+        }
+    }
+
+    /**
+     * Écrit les deltas en attente, groupés par shard ; ceux d'un shard en échec restent en cours
+     * et sont retentés au flush suivant
+     */
+    synchronized void flush() {
+        if (pendingCount.get() == 0 && inFlight.isEmpty()) {
+            return;
+        }
+        if (pendingCount.get() > 0) {
+            // Toutes les bandes tenues, dans l'ordre : les deltas du segment fermé sont exactement
+            // ceux des tampons échangés, les ajouts suivants vont au nouveau segment
+            withAllStripes(0, this::rotate);
+        }
+        long segment = journal != null ? lastSegment : 0L;
+
+        Map<Integer, Map<Long, Long>> byShard = new HashMap<>();
+        inFlight.forEach((productId, delta) -> {
+            if (delta != 0) {
+                byShard.computeIfAbsent(store.shardOf(productId), shard -> new HashMap<>()).put(productId, delta);
+            }
+        });
+        RuntimeException failure = null;
+        for (Map.Entry<Integer, Map<Long, Long>> shard : byShard.entrySet()) {
+            // Écriture en base et retrait des deltas écrits sans vue stable concurrente sur ces produits
+            try {
+                withViewLocks(shard.getValue().keySet(), () -> {
+                    store.apply(shard.getKey(), shard.getValue(), segment);
+                    shard.getValue().forEach((productId, delta) ->
+                            inFlight.computeIfPresent(productId, (id, current) -> current - delta == 0 ? null : current - delta));
+                });
+                flushedDeltas.addAndGet(shard.getValue().size());
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        inFlight.values().removeIf(delta -> delta == 0);
+        if (failure != null) {
+            throw failure;
+        }
+        flushes.incrementAndGet();
+        lastError = null;
+        if (journal != null && inFlight.isEmpty()) {
+            try {
+                journal.deleteUpTo(segment);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Suppression des segments du journal de stock impossible", e);
+            }
+        }
+    }
+
+    private void withAllStripes(int index, Runnable work) {
+        if (index == STRIPES) {
+            work.run();
+            return;
+        }
+        synchronized (stripes[index]) {
+            withAllStripes(index + 1, work);
+        }
+    }
+
+    /**
+     * Ferme le segment courant du journal et vide les tampons des bandes dans les deltas en cours
+     */
+    private void rotate() {
+        try {
+            if (journal != null) {
+                lastSegment = journal.rotate();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Rotation du journal de stock impossible", e);
+        }
+        for (Stripe stripe : stripes) {
+            if (!stripe.pending.isEmpty()) {
+                stripe.pending.forEach((productId, delta) -> inFlight.merge(productId, delta, Long::sum));
+                stripe.pending = new HashMap<>();
+            }
+        }
+        pendingCount.set(0);
+    }
+
+    /**
+     * Rejoue chaque segment restant, dans l'ordre, puis le supprime
+     */
+    private void replay() throws IOException {
+        List<Long> segments = journal.leftoverSegments();
+        for (long segment : segments) {
+            Map<Integer, Map<Long, Long>> byShard = new HashMap<>();
+            journal.read(segment).forEach((productId, delta) -> {
+                if (delta != 0) {
+                    byShard.computeIfAbsent(store.shardOf(productId), shard -> new HashMap<>()).put(productId, delta);
+                }
+            });
+            byShard.forEach((shard, deltas) -> store.apply(shard, deltas, segment));
+            logger.log(Level.INFO, "Segment {0} du journal de stock rejoué ({1} shard(s))",
+                    new Object[]{segment, byShard.size()});
+        }
+        if (!segments.isEmpty()) {
+            journal.deleteUpTo(segments.get(segments.size() - 1));
+        }
+    }
+
+    /**
+     * État de l'écriture différée : deltas en attente, flushes réussis, dernière erreur
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("active", active);
+        result.put("pendingProducts", pendingCount.get() + inFlight.size());
+        result.put("flushes", flushes.get());
+        result.put("flushedDeltas", flushedDeltas.get());
+        result.put("journal", journal != null);
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    /**
+     * Deltas en attente d'une bande de produits, protégés par le moniteur de la bande
+     */
+    private static final class Stripe {
+        Map<Long, Long> pending = new HashMap<>();
+    }
+}
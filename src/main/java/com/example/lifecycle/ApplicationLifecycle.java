@@ -0,0 +1,155 @@
+package com.example.lifecycle;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * État du cycle de vie de l'application : le port HTTP est ouvert dès STARTING, mais seules
+ * les ressources de santé et d'administration répondent tant que JPA n'est pas prêt (READY).
+ */
+public class ApplicationLifecycle {
+
+    public enum State { STARTING, READY, DRAINING, STOPPED, FAILED }
+
+    private static final Logger logger = Logger.getLogger(ApplicationLifecycle.class.getName());
+    private static final ApplicationLifecycle INSTANCE = new ApplicationLifecycle();
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private final List<Map.Entry<String, Runnable>> shutdownActions = new CopyOnWriteArrayList<>();
+    private volatile State state = State.STARTING;
+    private volatile long stateSince = System.currentTimeMillis();
+    private volatile int initAttempts;
+    private volatile String lastInitError;
+    private volatile long nextInitAttemptAt;
+
+    public static ApplicationLifecycle getInstance() {
+        return INSTANCE;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Vrai si les endpoints de données peuvent être servis
+     */
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    /**
+     * Vrai si les requêtes de données sont encore servies (prêt ou en cours de drainage)
+     */
+    public boolean acceptsRequests() {
+        State current = state;
+        return current == State.READY || current == State.DRAINING;
+    }
+
+    public synchronized void markReady() {
+        if (state == State.STARTING) {
+            transition(State.READY);
+            nextInitAttemptAt = 0L;
+            ready.countDown();
+        }
+    }
+
+    public synchronized void markFailed(Throwable error) {
+        lastInitError = String.valueOf(error.getMessage());
+        if (state == State.STARTING) {
+            transition(State.FAILED);
+        }
+        ready.countDown();
+    }
+
+    /**
+     * Début de l'arrêt : la sonde readiness passe à 503 mais les requêtes en cours et celles
+     * déjà acheminées continuent d'être servies
+     */
+    public synchronized void startDraining() {
+        if (state == State.STARTING || state == State.READY) {
+            transition(State.DRAINING);
+        }
+        ready.countDown();
+    }
+
+    public synchronized void markStopped() {
+        transition(State.STOPPED);
+        ready.countDown();
+    }
+
+    /**
+     * Enregistre une action exécutée à l'arrêt, après le drainage des requêtes et avant la
+     * fermeture de l'EntityManagerFactory (vidage d'écritures ou de métriques en mémoire...)
+     */
+    public void onShutdown(String name, Runnable action) {
+        shutdownActions.add(Map.entry(name, action));
+    }
+
+    /**
+     * Exécute les actions d'arrêt dans l'ordre d'enregistrement ; un échec n'empêche pas les suivantes
+     */
+    public void runShutdownActions() {
+        for (Map.Entry<String, Runnable> action : shutdownActions) {
+            try {
+                action.getValue().run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, e, () -> "Échec de l'action d'arrêt " + action.getKey());
+            }
+        }
+    }
+
+    /**
+     * Échec d'une tentative d'initialisation ; la suivante aura lieu dans retryInMillis
+     */
+    public void recordInitFailure(int attempt, Throwable error, long retryInMillis) {
+        initAttempts = attempt;
+        lastInitError = String.valueOf(error.getMessage());
+        nextInitAttemptAt = System.currentTimeMillis() + retryInMillis;
+    }
+
+    public void recordInitAttempt(int attempt) {
+        initAttempts = attempt;
+    }
+
+    /**
+     * Attend la fin de l'initialisation ; retourne vrai si l'application est prête
+     */
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        ready.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        return isReady();
+    }
+
+    /**
+     * Délai conseillé aux clients (en-tête Retry-After) pendant le démarrage
+     */
+    public long getRetryAfterSeconds() {
+        long untilNextAttempt = nextInitAttemptAt - System.currentTimeMillis();
+        long seconds = untilNextAttempt > 0
+                ? TimeUnit.MILLISECONDS.toSeconds(untilNextAttempt + 999)
+                : Long.getLong("startup.retry.after.seconds", 5L);
+        return Math.max(1L, seconds);
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("state", state.name());
+        result.put("since", stateSince);
+        result.put("initAttempts", initAttempts);
+        if (lastInitError != null && state != State.READY) {
+            result.put("lastError", lastInitError);
+        }
+        return result;
+    }
+
+    protected synchronized void transition(State newState) {
+        state = newState;
+        stateSince = System.currentTimeMillis();
+    }
+}
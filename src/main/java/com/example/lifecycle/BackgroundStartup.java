@@ -0,0 +1,80 @@
+package com.example.lifecycle;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Initialisation JPA/Flyway en arrière-plan, après l'ouverture du port HTTP.
+ * En cas d'échec (base pas encore joignable...), nouvelle tentative avec un délai exponentiel
+ * plafonné et une part aléatoire, indéfiniment sauf si startup.retry.max.attempts est positif.
+ */
+public class BackgroundStartup {
+
+    private static final Logger logger = Logger.getLogger(BackgroundStartup.class.getName());
+
+    private final Runnable initializer;
+    private final Runnable onReady;
+    private final ApplicationLifecycle lifecycle;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+
+    public BackgroundStartup(Runnable initializer, Runnable onReady, ApplicationLifecycle lifecycle) {
+        this(initializer, onReady, lifecycle,
+                Long.getLong("startup.retry.initial.ms", 1000L),
+                Long.getLong("startup.retry.max.ms", 30000L),
+                Integer.getInteger("startup.retry.max.attempts", 0));
+    }
+
+    public BackgroundStartup(Runnable initializer, Runnable onReady, ApplicationLifecycle lifecycle,
+                             long initialBackoffMillis, long maxBackoffMillis, int maxAttempts) {
+        this.initializer = initializer;
+        this.onReady = onReady;
+        this.lifecycle = lifecycle;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Thread start() {
+        Thread thread = new Thread(this::run, "jpa-init");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Boucle de tentatives ; rend la main quand l'application est prête, a échoué ou est arrêtée
+     */
+    public void run() {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; lifecycle.getState() == ApplicationLifecycle.State.STARTING; attempt++) {
+            final int current = attempt;
+            lifecycle.recordInitAttempt(current);
+            try {
+                initializer.run();
+                onReady.run();
+                lifecycle.markReady();
+                return;
+            } catch (RuntimeException e) {
+                if (maxAttempts > 0 && current >= maxAttempts) {
+                    logger.log(Level.SEVERE, e, () -> "Initialisation abandonnée après " + current + " tentatives");
+                    lifecycle.markFailed(e);
+                    return;
+                }
+                long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                lifecycle.recordInitFailure(current, e, delay);
+                logger.log(Level.WARNING, e, () -> "Échec de l'initialisation (tentative " + current
+                        + "), nouvel essai dans " + delay + " ms");
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(maxBackoffMillis, backoff * 2);
+            }
+        }
+    }
+}
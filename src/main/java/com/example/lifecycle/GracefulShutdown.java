@@ -0,0 +1,124 @@
+package com.example.lifecycle;
+
+import com.example.util.JPAUtil;
+import org.glassfish.grizzly.http.server.HttpServer;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Arrêt progressif exécuté par le shutdown hook :
+ * readiness à 503, délai laissé aux répartiteurs de charge (shutdown.readiness.delay.ms),
+ * fermeture des listeners puis attente des requêtes et transactions en cours jusqu'à
+ * l'échéance shutdown.drain.timeout.seconds, actions d'arrêt, et seulement ensuite
+ * fermeture de l'EntityManagerFactory.
+ */
+public class GracefulShutdown implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(GracefulShutdown.class.getName());
+    private static final long POLL_INTERVAL_MILLIS = 50L;
+
+    private final HttpServer server;
+    private final ApplicationLifecycle lifecycle;
+    private final IntSupplier activeTransactions;
+    private final Runnable closeDatabase;
+    private final long readinessDelayMillis;
+    private final long drainTimeoutMillis;
+
+    public GracefulShutdown(HttpServer server, ApplicationLifecycle lifecycle) {
+        this(server, lifecycle, JPAUtil::getActiveTransactionCount, JPAUtil::closeEntityManagerFactory,
+                Long.getLong("shutdown.readiness.delay.ms", 0L),
+                TimeUnit.SECONDS.toMillis(Long.getLong("shutdown.drain.timeout.seconds", 25L)));
+    }
+
+    public GracefulShutdown(HttpServer server, ApplicationLifecycle lifecycle, IntSupplier activeTransactions,
+                            Runnable closeDatabase, long readinessDelayMillis, long drainTimeoutMillis) {
+        this.server = server;
+        this.lifecycle = lifecycle;
+        this.activeTransactions = activeTransactions;
+        this.closeDatabase = closeDatabase;
+        this.readinessDelayMillis = readinessDelayMillis;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        lifecycle.startDraining();
+        logger.log(Level.INFO, "Arrêt progressif : readiness à 503, drainage pendant au plus {0,number,#} ms",
+                drainTimeoutMillis);
+
+        if (readinessDelayMillis > 0) {
+            try {
+                Thread.sleep(Math.min(readinessDelayMillis, remainingMillis(deadline)));
+            } catch (InterruptedException e) {
+                // Interrompu : les attentes suivantes échouent aussitôt et l'arrêt est forcé
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Grizzly cesse d'accepter des connexions et termine les requêtes en cours dans le délai donné
+        boolean requestsDrained = false;
+        if (server != null) {
+            // Un délai nul signifierait une attente illimitée côté Grizzly
+            long gracePeriod = Math.max(1L, remainingMillis(deadline));
+            Future<HttpServer> stopped = server.shutdown(gracePeriod, TimeUnit.MILLISECONDS);
+            requestsDrained = awaitServer(stopped, deadline);
+            if (!requestsDrained) {
+                logger.warning("Requêtes encore en cours à l'échéance du drainage, arrêt forcé du serveur HTTP");
+                server.shutdownNow();
+            }
+        }
+
+        boolean transactionsDrained = awaitTransactions(deadline);
+        if (!transactionsDrained) {
+            logger.log(Level.WARNING, "{0} transaction(s) encore active(s) à la fermeture de l''EntityManagerFactory",
+                    activeTransactions.getAsInt());
+        }
+
+        lifecycle.runShutdownActions();
+        closeDatabase.run();
+        lifecycle.markStopped();
+        logger.log(Level.INFO, "Serveur arrêté en {0,number,#} ms (requêtes drainées : {1}, transactions drainées : {2})",
+                new Object[] {TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                        requestsDrained, transactionsDrained});
+    }
+
+    private boolean awaitServer(Future<HttpServer> stopped, long deadline) {
+        try {
+            // Marge pour laisser Grizzly constater lui-même l'échéance
+            stopped.get(remainingMillis(deadline) + POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean awaitTransactions(long deadline) {
+        while (activeTransactions.getAsInt() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long remainingMillis(long deadline) {
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+}
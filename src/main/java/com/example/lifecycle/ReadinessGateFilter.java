@@ -0,0 +1,63 @@
+package com.example.lifecycle;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Répond 503 avec Retry-After aux endpoints de données (/api/...) tant que l'application
+ * n'est pas prête ; la santé, les métriques et l'administration restent accessibles.
+ * Pendant le drainage, les requêtes sont servies avec "Connection: close" pour que les
+ * clients en keep-alive se reconnectent vers une autre instance.
+ */
+@Provider
+@PreMatching
+@Priority(Priorities.AUTHENTICATION - 100)
+public class ReadinessGateFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String DATA_PATH_PREFIX = "api/";
+
+    private final ApplicationLifecycle lifecycle;
+
+    public ReadinessGateFilter() {
+        this.lifecycle = ApplicationLifecycle.getInstance();
+    }
+
+    public ReadinessGateFilter(ApplicationLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (lifecycle.acceptsRequests()) {
+            return;
+        }
+        String path = requestContext.getUriInfo().getPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.startsWith(DATA_PATH_PREFIX)) {
+            requestContext.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, lifecycle.getRetryAfterSeconds())
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity("{\"error\": \"Service indisponible (" + lifecycle.getState().name().toLowerCase()
+                            + "), réessayer plus tard\"}")
+                    .build());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (lifecycle.getState() == ApplicationLifecycle.State.DRAINING) {
+            responseContext.getHeaders().putSingle("Connection", "close");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.logging;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler java.util.logging asynchrone : publish(...) se contente de déposer
+ * l'enregistrement dans une file circulaire bornée ; le formatage JSON et
+ * l'écriture sur la sortie sont faits par un thread dédié.
+ * Quand la file est pleine, l'enregistrement est abandonné et compté (DROP)
+ * ou le thread appelant attend qu'une place se libère (BLOCK).
+ */
+public class AsyncLogHandler extends Handler {
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LogRingBuffer<Entry> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final JsonLogFormatter formatter = new JsonLogFormatter();
+    private final Writer writer;
+    private final Thread drainThread;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long written;
+    private volatile boolean closed;
+
+    /**
+     * Handler écrivant sur la sortie standard, sans passer par le PrintStream synchronisé de System.out
+     */
+    public AsyncLogHandler(int capacity, OverflowPolicy overflowPolicy) {
+        this(capacity, overflowPolicy, new FileOutputStream(FileDescriptor.out));
+    }
+
+    public AsyncLogHandler(int capacity, OverflowPolicy overflowPolicy, OutputStream out) {
+        this.buffer = new LogRingBuffer<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        this.drainThread = new Thread(this::drain, "async-log-writer");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        Entry entry = new Entry(record, LogContext.getRequestId(), Thread.currentThread().getName());
+        published.increment();
+        if (buffer.offer(entry)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            dropped.increment();
+            return;
+        }
+        while (!buffer.offer(entry)) {
+            if (closed) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.unpark(drainThread);
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Attend que les enregistrements déjà publiés soient écrits (au plus une seconde)
+     */
+    @Override
+    public void flush() {
+        long target = published.sum() - dropped.sum();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (written < target && drainThread.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(drainThread);
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Nombre d'enregistrements abandonnés faute de place dans la file
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getWrittenCount() {
+        return written;
+    }
+
+    public int getQueueSize() {
+        return buffer.size();
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    private void drain() {
+        StringBuilder line = new StringBuilder(512);
+        while (true) {
+            Entry entry = buffer.poll();
+            if (entry == null) {
+                flushWriter();
+                if (closed && buffer.size() == 0) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            line.setLength(0);
+            try {
+                formatter.format(entry.record, entry.requestId, entry.threadName, line);
+                writer.write(line.toString());
+            } catch (IOException | RuntimeException e) {
+                reportError("Échec d'écriture du journal", e, ErrorManager.WRITE_FAILURE);
+            }
+            written++;
+        }
+    }
+
+    private void flushWriter() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            reportError("Échec de vidage du journal", e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    private record Entry(LogRecord record, String requestId, String threadName) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.logging;
+
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+/**
+ * Installe AsyncLogHandler sur le logger racine à la place du ConsoleHandler.
+ * Configuration par propriétés système :
+ * log.async.capacity (puissance de deux, 8192 par défaut) et log.async.overflow (DROP ou BLOCK).
+ */
+public final class AsyncLogging {
+
+    private static volatile AsyncLogHandler handler;
+
+    private AsyncLogging() {
+    }
+
+    public static synchronized AsyncLogHandler install() {
+        if (handler != null) {
+            return handler;
+        }
+        int capacity = Integer.getInteger("log.async.capacity", 8192);
+        AsyncLogHandler.OverflowPolicy policy = AsyncLogHandler.OverflowPolicy.valueOf(
+                System.getProperty("log.async.overflow", "DROP").trim().toUpperCase());
+
+        Logger root = LogManager.getLogManager().getLogger("");
+        for (Handler existing : root.getHandlers()) {
+            root.removeHandler(existing);
+            existing.close();
+        }
+        handler = new AsyncLogHandler(capacity, policy);
+        root.addHandler(handler);
+        return handler;
+    }
+
+    /**
+     * Handler installé, ou null si install() n'a pas été appelé
+     */
+    public static AsyncLogHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Écrit les enregistrements en attente ; à appeler en fin d'arrêt du serveur
+     */
+    public static void shutdown() {
+        AsyncLogHandler current = handler;
+        if (current != null) {
+            current.close();
+        }
+        if (LogManager.getLogManager() instanceof ShutdownAwareLogManager manager) {
+            manager.resetFinally();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formate un enregistrement de journal en une ligne JSON :
+ * {"ts":...,"level":...,"logger":...,"thread":...,"requestId":...,"message":...,"exception":...}
+ */
+public class JsonLogFormatter extends Formatter {
+
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder line = new StringBuilder(256);
+        format(record, LogContext.getRequestId(), Thread.currentThread().getName(), line);
+        return line.toString();
+    }
+
+    /**
+     * Variante utilisée par AsyncLogHandler : le contexte est capturé sur le thread d'origine
+     */
+    void format(LogRecord record, String requestId, String threadName, StringBuilder line) {
+        line.append("{\"ts\":\"").append(record.getInstant()).append('"');
+        line.append(",\"level\":\"").append(record.getLevel().getName()).append('"');
+        appendField(line, "logger", record.getLoggerName());
+        appendField(line, "thread", threadName);
+        appendField(line, "requestId", requestId);
+        appendField(line, "message", formatMessage(record));
+        if (record.getThrown() != null) {
+            StringWriter stackTrace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(stackTrace));
+            appendField(line, "exception", stackTrace.toString());
+        }
+        line.append("}\n");
+    }
+
+    private static void appendField(StringBuilder line, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":\"");
+        escape(line, value);
+        line.append('"');
+    }
+
+    static void escape(StringBuilder line, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
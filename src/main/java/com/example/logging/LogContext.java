@@ -0,0 +1,24 @@
+package com.example.logging;
+
+/**
+ * Contexte de journalisation du thread courant (identifiant de la requête HTTP en cours)
+ */
+public final class LogContext {
+
+    private static final ThreadLocal<String> REQUEST_ID = new ThreadLocal<>();
+
+    private LogContext() {
+    }
+
+    public static String getRequestId() {
+        return REQUEST_ID.get();
+    }
+
+    public static void setRequestId(String requestId) {
+        REQUEST_ID.set(requestId);
+    }
+
+    public static void clear() {
+        REQUEST_ID.remove();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * File circulaire bornée sans verrou, plusieurs producteurs et un seul consommateur.
+ * Chaque case porte un numéro de séquence qui indique si elle est libre pour le
+ * producteur de la position p (séquence == p) ou publiée pour le consommateur (séquence == p + 1).
+ */
+final class LogRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    LogRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacité doit être une puissance de deux: " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Ajoute un élément ; retourne false si la file est pleine
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        int index;
+        for (;;) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        elements[index] = element;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Retire le plus ancien élément publié, ou null si la file est vide (consommateur unique)
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.lazySet(index, position + elements.length);
+        head = position + 1;
+        return element;
+    }
+
+    int size() {
+        return (int) Math.max(0L, tail.get() - head);
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.logging;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Associe un identifiant à chaque requête (en-tête X-Request-Id reçu ou généré),
+ * le place dans LogContext pour les journaux du thread et le renvoie dans la réponse.
+ */
+@Provider
+@Priority(Priorities.USER - 1100)
+public class RequestIdFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String HEADER = "X-Request-Id";
+    private static final int MAX_LENGTH = 64;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String requestId = requestContext.getHeaderString(HEADER);
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_LENGTH) {
+            requestId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        }
+        requestContext.setProperty(HEADER, requestId);
+        LogContext.setRequestId(requestId);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object requestId = requestContext.getProperty(HEADER);
+        if (requestId != null) {
+            responseContext.getHeaders().putSingle(HEADER, requestId);
+        }
+        LogContext.clear();
+    }
+}
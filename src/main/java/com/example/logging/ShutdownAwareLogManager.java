@@ -0,0 +1,35 @@
+package com.example.logging;
+
+import java.util.logging.LogManager;
+
+/**
+ * LogManager dont la réinitialisation déclenchée par son propre shutdown hook est ignorée :
+ * sans cela, les handlers sont retirés pendant que l'arrêt progressif journalise encore.
+ * La réinitialisation a lieu dans AsyncLogging.shutdown(), en fin d'arrêt.
+ * Activé par -Djava.util.logging.manager=com.example.logging.ShutdownAwareLogManager.
+ */
+public class ShutdownAwareLogManager extends LogManager {
+
+    @Override
+    public void reset() {
+        if (isShutdownInProgress()) {
+            return;
+        }
+        super.reset();
+    }
+
+    void resetFinally() {
+        super.reset();
+    }
+
+    private static boolean isShutdownInProgress() {
+        Thread probe = new Thread(() -> { });
+        try {
+            Runtime.getRuntime().addShutdownHook(probe);
+            Runtime.getRuntime().removeShutdownHook(probe);
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+}
@@ -11,8 +11,8 @@ import java.time.LocalDateTime;
 @Table(name = "products")
 public class Product {
     
+    // Attribué par ProductRepository (ShardIds) avant l'insertion : il détermine le shard du produit
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
     @Column(name = "name", nullable = false, length = 100)
@@ -36,6 +36,11 @@ public class Product {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // Verrouillage optimiste : une mise à jour fondée sur une version périmée échoue
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -130,6 +135,14 @@ public class Product {
         this.updatedAt = updatedAt;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
     @Override
     public String toString() {
         return "Product{" +
@@ -141,6 +154,7 @@ public class Product {
                 ", category='" + category + '\'' +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,62 @@
+package com.example.monitoring;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+import java.io.IOException;
+
+/**
+ * Mesure les octets alloués par requête, sérialisation comprise, pendant une capture d'AllocationProfile.
+ * Hors capture, le filtre se limite à la lecture d'un booléen volatile.
+ */
+@Provider
+@Priority(Priorities.USER - 950)
+public class AllocationFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    private static final String START_PROPERTY = AllocationFilter.class.getName() + ".start";
+    private static final String ROUTE_PROPERTY = AllocationFilter.class.getName() + ".route";
+    private static final String THREAD_PROPERTY = AllocationFilter.class.getName() + ".thread";
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (AllocationProfile.isActive()) {
+            requestContext.setProperty(START_PROPERTY, AllocationProfile.currentThreadAllocatedBytes());
+            requestContext.setProperty(THREAD_PROPERTY, Thread.currentThread());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Long start = (Long) requestContext.getProperty(START_PROPERTY);
+        if (start == null || requestContext.getProperty(THREAD_PROPERTY) != Thread.currentThread()) {
+            // Compteur propre à chaque thread : une réponse asynchrone reprise ailleurs n'est pas mesurable
+            return;
+        }
+        String route = RequestTimingFilter.routeOf(requestContext);
+        if (responseContext.hasEntity()) {
+            requestContext.setProperty(ROUTE_PROPERTY, route);
+        } else {
+            AllocationProfile.record(route, AllocationProfile.currentThreadAllocatedBytes() - start);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Long start = (Long) context.getProperty(START_PROPERTY);
+        String route = (String) context.getProperty(ROUTE_PROPERTY);
+        try {
+            context.proceed();
+        } finally {
+            if (start != null && route != null) {
+                AllocationProfile.record(route, AllocationProfile.currentThreadAllocatedBytes() - start);
+            }
+        }
+    }
+}
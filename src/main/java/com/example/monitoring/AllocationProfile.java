@@ -0,0 +1,86 @@
+package com.example.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Octets alloués par route pendant une capture, mesurés sur le thread qui traite la requête
+ * (com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes). Inactif hors capture.
+ */
+public final class AllocationProfile {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final Map<String, RouteAllocation> ROUTES = new ConcurrentHashMap<>();
+    private static volatile boolean active;
+
+    private AllocationProfile() {
+    }
+
+    public static boolean isSupported() {
+        return THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled();
+    }
+
+    public static boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Démarre une nouvelle capture (les résultats précédents sont effacés)
+     */
+    static void start() {
+        ROUTES.clear();
+        active = true;
+    }
+
+    /**
+     * Arrête la capture et retourne les routes triées par volume alloué décroissant
+     */
+    static List<Map<String, Object>> stop() {
+        active = false;
+        List<Map.Entry<String, RouteAllocation>> entries = new ArrayList<>(ROUTES.entrySet());
+        entries.sort(Comparator.comparingLong(
+                (Map.Entry<String, RouteAllocation> entry) -> entry.getValue().bytes.sum()).reversed());
+        List<Map<String, Object>> result = new ArrayList<>(entries.size());
+        for (Map.Entry<String, RouteAllocation> entry : entries) {
+            long requests = entry.getValue().requests.sum();
+            long bytes = entry.getValue().bytes.sum();
+            Map<String, Object> route = new LinkedHashMap<>();
+            route.put("route", entry.getKey());
+            route.put("requests", requests);
+            route.put("totalBytes", bytes);
+            route.put("avgBytes", requests > 0 ? bytes / requests : 0L);
+            route.put("maxBytes", entry.getValue().max.get());
+            result.add(route);
+        }
+        return result;
+    }
+
+    static long currentThreadAllocatedBytes() {
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    static void record(String route, long bytes) {
+        if (!active || bytes < 0) {
+            return;
+        }
+        RouteAllocation allocation = ROUTES.computeIfAbsent(route, key -> new RouteAllocation());
+        allocation.requests.increment();
+        allocation.bytes.add(bytes);
+        allocation.max.accumulate(bytes);
+    }
+
+    private static final class RouteAllocation {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+    }
+}
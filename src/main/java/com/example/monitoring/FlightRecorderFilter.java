@@ -0,0 +1,48 @@
+package com.example.monitoring;
+
+import com.example.logging.LogContext;
+import com.example.monitoring.events.HttpRequestEvent;
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Émet un événement JFR par requête traitée par les contrôleurs.
+ * Sans enregistrement JFR actif, le filtre se limite à un test de EventType.isEnabled().
+ */
+@Provider
+@Priority(Priorities.USER - 900)
+public class FlightRecorderFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String EVENT_PROPERTY = FlightRecorderFilter.class.getName() + ".event";
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (HttpRequestEvent.TYPE.isEnabled()) {
+            HttpRequestEvent event = new HttpRequestEvent();
+            event.begin();
+            requestContext.setProperty(EVENT_PROPERTY, event);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        HttpRequestEvent event = (HttpRequestEvent) requestContext.getProperty(EVENT_PROPERTY);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = requestContext.getMethod();
+            event.route = RequestTimingFilter.routeOf(requestContext);
+            event.path = requestContext.getUriInfo().getPath();
+            event.status = responseContext.getStatus();
+            event.requestId = LogContext.getRequestId();
+            event.commit();
+        }
+    }
+}
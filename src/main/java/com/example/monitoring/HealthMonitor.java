@@ -0,0 +1,302 @@
+package com.example.monitoring;
+
+import com.example.feed.ChangeFeed;
+import com.example.index.CompactProductStore;
+import com.example.index.FullTextIndex;
+import com.example.index.InventoryStats;
+import com.example.index.PriceIndex;
+import com.example.index.ProductSearchIndex;
+import com.example.index.RowCounts;
+import com.example.index.SuggestIndex;
+import com.example.inventory.StockWriteBehind;
+import com.example.util.JPAUtil;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationInfoService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Vérifie périodiquement la base de données, l'état des migrations Flyway et la saturation
+ * du pool de connexions, puis publie le dernier rapport en mémoire.
+ * Les endpoints de santé lisent ce rapport sans jamais interroger la base eux-mêmes.
+ */
+public class HealthMonitor {
+
+    private static final Logger logger = Logger.getLogger(HealthMonitor.class.getName());
+
+    private static final HealthMonitor INSTANCE = new HealthMonitor(
+            Long.getLong("health.check.interval.ms", 5000L),
+            Integer.getInteger("health.check.timeout.seconds", 2),
+            Double.parseDouble(System.getProperty("health.pool.saturation.threshold", "0.9")));
+
+    private final long intervalMillis;
+    private final int dbTimeoutSeconds;
+    private final double saturationThreshold;
+
+    private volatile HealthReport lastReport = HealthReport.unknown();
+    // Point de départ du délai tant qu'aucun rapport n'a été publié ; 0 avant start()
+    private volatile long startedMillis;
+    private ScheduledExecutorService scheduler;
+
+    public HealthMonitor(long intervalMillis, int dbTimeoutSeconds, double saturationThreshold) {
+        this.intervalMillis = intervalMillis;
+        this.dbTimeoutSeconds = dbTimeoutSeconds;
+        this.saturationThreshold = saturationThreshold;
+    }
+
+    public static HealthMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Démarre les vérifications périodiques (la première est exécutée immédiatement)
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "health-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        startedMillis = System.currentTimeMillis();
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.log(Level.INFO, "Moniteur de santé démarré (intervalle: {0} ms)", intervalMillis);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Dernier rapport calculé, servi en O(1)
+     */
+    public HealthReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Vrai si le dernier rapport est trop ancien, c'est-à-dire si le thread de vérification est bloqué ;
+     * sans rapport, le délai court depuis start() (première vérification bloquée)
+     */
+    public boolean isStale() {
+        HealthReport report = lastReport;
+        long since = report.getStatus() == HealthReport.Status.UNKNOWN ? startedMillis : report.getCheckedAt();
+        return since > 0 && System.currentTimeMillis() - since > 3 * intervalMillis + dbTimeoutSeconds * 1000L;
+    }
+
+    private void refresh() {
+        try {
+            lastReport = runChecks();
+        } catch (Throwable t) {
+            logger.log(Level.WARNING, "Échec inattendu des vérifications de santé", t);
+        }
+    }
+
+    /**
+     * Exécute toutes les vérifications et construit un nouveau rapport
+     */
+    HealthReport runChecks() {
+        long start = System.nanoTime();
+        Map<String, Map<String, Object>> components = new LinkedHashMap<>();
+        components.put("db", checkDatabase());
+        components.put("flyway", checkFlyway());
+        components.put("pool", checkPool());
+        Map<String, Object> replica = checkReplica();
+        if (replica != null) {
+            components.put("replica", replica);
+        }
+        Map<String, Object> stock = checkStockWriteBehind();
+        if (stock != null) {
+            components.put("stockWriteBehind", stock);
+        }
+        Map<String, Object> priceIndex = checkIndex(PriceIndex.getInstance().isEnabled(),
+                PriceIndex.getInstance().isReady(), PriceIndex.getInstance().describe());
+        if (priceIndex != null) {
+            components.put("priceIndex", priceIndex);
+        }
+        Map<String, Object> searchIndex = checkIndex(ProductSearchIndex.getInstance().isEnabled(),
+                ProductSearchIndex.getInstance().isReady(), ProductSearchIndex.getInstance().describe());
+        if (searchIndex != null) {
+            components.put("searchIndex", searchIndex);
+        }
+        Map<String, Object> fullTextIndex = checkIndex(FullTextIndex.getInstance().isEnabled(),
+                FullTextIndex.getInstance().isReady(), FullTextIndex.getInstance().describe());
+        if (fullTextIndex != null) {
+            components.put("fullTextIndex", fullTextIndex);
+        }
+        Map<String, Object> inventoryStats = checkIndex(InventoryStats.getInstance().isEnabled(),
+                InventoryStats.getInstance().isReady(), InventoryStats.getInstance().describe());
+        if (inventoryStats != null) {
+            components.put("inventoryStats", inventoryStats);
+        }
+        Map<String, Object> productCache = checkIndex(CompactProductStore.getInstance().isEnabled(),
+                CompactProductStore.getInstance().isReady(), CompactProductStore.getInstance().describe());
+        if (productCache != null) {
+            components.put("productCache", productCache);
+        }
+        Map<String, Object> changeFeed = checkIndex(ChangeFeed.getInstance().isEnabled(),
+                ChangeFeed.getInstance().isReady(), ChangeFeed.getInstance().describe());
+        if (changeFeed != null) {
+            components.put("changeFeed", changeFeed);
+        }
+        Map<String, Object> productSuggest = checkIndex(SuggestIndex.forProductNames().isEnabled(),
+                SuggestIndex.forProductNames().isReady(), SuggestIndex.forProductNames().describe());
+        if (productSuggest != null) {
+            components.put("productSuggest", productSuggest);
+        }
+        Map<String, Object> userSuggest = checkIndex(SuggestIndex.forUsernames().isEnabled(),
+                SuggestIndex.forUsernames().isReady(), SuggestIndex.forUsernames().describe());
+        if (userSuggest != null) {
+            components.put("userSuggest", userSuggest);
+        }
+        Map<String, Object> productCounts = checkIndex(RowCounts.forProducts().isEnabled(),
+                RowCounts.forProducts().isReady(), RowCounts.forProducts().describe());
+        if (productCounts != null) {
+            components.put("productCounts", productCounts);
+        }
+        Map<String, Object> userCounts = checkIndex(RowCounts.forUsers().isEnabled(),
+                RowCounts.forUsers().isReady(), RowCounts.forUsers().describe());
+        if (userCounts != null) {
+            components.put("userCounts", userCounts);
+        }
+
+        HealthReport.Status overall = HealthReport.Status.UP;
+        for (Map<String, Object> component : components.values()) {
+            HealthReport.Status status = (HealthReport.Status) component.get("status");
+            if (status == HealthReport.Status.DOWN) {
+                overall = HealthReport.Status.DOWN;
+            } else if (status == HealthReport.Status.DEGRADED && overall == HealthReport.Status.UP) {
+                overall = HealthReport.Status.DEGRADED;
+            }
+        }
+        return new HealthReport(overall, System.currentTimeMillis(), elapsedMillis(start), components);
+    }
+
+    private Map<String, Object> checkDatabase() {
+        long start = System.nanoTime();
+        Map<String, Object> details = new LinkedHashMap<>();
+        try {
+            boolean reachable = JPAUtil.isDatabaseReachable(dbTimeoutSeconds);
+            details.put("status", reachable ? HealthReport.Status.UP : HealthReport.Status.DOWN);
+        } catch (Exception e) {
+            details.put("status", HealthReport.Status.DOWN);
+            details.put("error", e.getMessage());
+        }
+        details.put("latencyMs", elapsedMillis(start));
+        return details;
+    }
+
+    private Map<String, Object> checkFlyway() {
+        long start = System.nanoTime();
+        Map<String, Object> details = new LinkedHashMap<>();
+        // Historique lu par le pool : pas de connexion JDBC ouverte à chaque vérification
+        Flyway flyway = JPAUtil.getPooledFlyway();
+        if (flyway == null) {
+            details.put("status", HealthReport.Status.UNKNOWN);
+            details.put("latencyMs", elapsedMillis(start));
+            return details;
+        }
+        try {
+            MigrationInfoService info = flyway.info();
+            MigrationInfo current = info.current();
+            int pending = info.pending().length;
+            details.put("status", pending == 0 ? HealthReport.Status.UP : HealthReport.Status.DOWN);
+            details.put("version", current != null ? current.getVersion().getVersion() : null);
+            details.put("pending", pending);
+        } catch (Exception e) {
+            details.put("status", HealthReport.Status.DOWN);
+            details.put("error", e.getMessage());
+        }
+        details.put("latencyMs", elapsedMillis(start));
+        return details;
+    }
+
+    private Map<String, Object> checkPool() {
+        long start = System.nanoTime();
+        Map<String, Object> details = new LinkedHashMap<>();
+        try {
+            HikariPoolMXBean pool = JPAUtil.getConnectionPool();
+            int max = JPAUtil.getMaximumPoolSize();
+            if (pool == null || max <= 0) {
+                details.put("status", HealthReport.Status.UNKNOWN);
+            } else {
+                int active = pool.getActiveConnections();
+                int waiting = pool.getThreadsAwaitingConnection();
+                double saturation = (double) active / max;
+                boolean saturated = saturation >= saturationThreshold || waiting > 0;
+                details.put("status", saturated ? HealthReport.Status.DEGRADED : HealthReport.Status.UP);
+                details.put("active", active);
+                details.put("idle", pool.getIdleConnections());
+                details.put("total", pool.getTotalConnections());
+                details.put("max", max);
+                details.put("waiting", waiting);
+                details.put("saturation", Math.round(saturation * 1000) / 1000.0);
+            }
+            details.put("openEntityManagers", JPAUtil.getOpenEntityManagerCount());
+            details.put("activeTransactions", JPAUtil.getActiveTransactionCount());
+        } catch (Exception e) {
+            details.put("status", HealthReport.Status.UNKNOWN);
+            details.put("error", e.getMessage());
+        }
+        details.put("latencyMs", elapsedMillis(start));
+        return details;
+    }
+
+    /**
+     * Réplique en lecture : DEGRADED si elle est écartée (les lectures passent alors par la base primaire)
+     */
+    private Map<String, Object> checkReplica() {
+        Map<String, Object> state = JPAUtil.describeReadReplica();
+        if (state == null) {
+            return null;
+        }
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("status", Boolean.TRUE.equals(state.get("usable")) ? HealthReport.Status.UP : HealthReport.Status.DEGRADED);
+        details.putAll(state);
+        return details;
+    }
+
+    /**
+     * Écriture différée des stocks : DEGRADED si le dernier flush a échoué (les deltas sont conservés)
+     */
+    private Map<String, Object> checkStockWriteBehind() {
+        Map<String, Object> state = StockWriteBehind.getInstance().describe();
+        if (!Boolean.TRUE.equals(state.get("active"))) {
+            return null;
+        }
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("status", state.containsKey("error") ? HealthReport.Status.DEGRADED : HealthReport.Status.UP);
+        details.putAll(state);
+        return details;
+    }
+
+    /**
+     * Index en mémoire : DEGRADED tant qu'il n'est pas construit (requêtes servies par la base)
+     */
+    private Map<String, Object> checkIndex(boolean enabled, boolean ready, Map<String, Object> state) {
+        if (!enabled) {
+            return null;
+        }
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("status", ready ? HealthReport.Status.UP : HealthReport.Status.DEGRADED);
+        details.putAll(state);
+        return details;
+    }
+
+    private static double elapsedMillis(long startNanos) {
+        return Math.round((System.nanoTime() - startNanos) / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.monitoring;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Résultat immuable d'un passage des vérifications de santé.
+ * La représentation JSON est construite une seule fois, au moment de la vérification,
+ * afin que les endpoints de santé la servent sans recalcul.
+ */
+public final class HealthReport {
+
+    public enum Status { UP, DEGRADED, DOWN, UNKNOWN }
+
+    private final Status status;
+    private final long checkedAt;
+    private final Map<String, Object> payload;
+
+    public HealthReport(Status status, long checkedAt, double latencyMs, Map<String, Map<String, Object>> components) {
+        this.status = status;
+        this.checkedAt = checkedAt;
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("status", status.name());
+        map.put("checkedAt", checkedAt);
+        map.put("latencyMs", latencyMs);
+        map.put("components", Collections.unmodifiableMap(new LinkedHashMap<>(components)));
+        this.payload = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Rapport initial, avant la première vérification
+     */
+    public static HealthReport unknown() {
+        return new HealthReport(Status.UNKNOWN, 0L, 0.0, Collections.emptyMap());
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getCheckedAt() {
+        return checkedAt;
+    }
+
+    /**
+     * Le service peut recevoir du trafic (un pool saturé reste routable)
+     */
+    public boolean isReady() {
+        return status == Status.UP || status == Status.DEGRADED;
+    }
+
+    public Map<String, Object> toMap() {
+        return payload;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences à seaux en puissances de deux de microsecondes (1 µs à ~35 min).
+ * L'enregistrement est sans verrou ; les percentiles sont estimés par la borne haute du seau.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public void record(long durationNanos) {
+        long micros = Math.max(1L, durationNanos / 1000L);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        totalNanos.add(durationNanos);
+        maxNanos.accumulate(durationNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Estimation du percentile (0 < p <= 1) en millisecondes
+     */
+    public double percentileMillis(double p) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(p * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return (1L << (i + 1)) / 1000.0;
+            }
+        }
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    public Map<String, Object> toMap() {
+        long count = getCount();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", count);
+        map.put("meanMs", count == 0 ? 0.0 : round(totalNanos.sum() / 1_000_000.0 / count));
+        map.put("p50Ms", percentileMillis(0.50));
+        map.put("p90Ms", percentileMillis(0.90));
+        map.put("p99Ms", percentileMillis(0.99));
+        map.put("maxMs", round(maxNanos.get() / 1_000_000.0));
+        return map;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.monitoring;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Captures de diagnostic à la demande : enregistrement JFR limité dans le temps,
+ * dump des threads et allocations par route. Les captures s'exécutent sur un thread
+ * dédié, hors du pool de workers HTTP, une seule à la fois.
+ */
+public class Profiler {
+
+    public static final Duration MAX_DURATION = Duration.ofMinutes(10);
+    private static final String SETTINGS_RESOURCE = "/jfr/production.jfc";
+    private static final long MAX_RECORDING_SIZE = 256L * 1024 * 1024;
+
+    private static final Profiler INSTANCE = new Profiler(Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "profiler");
+        thread.setDaemon(true);
+        return thread;
+    }));
+
+    private final Executor executor;
+    private final Semaphore capturePermit = new Semaphore(1);
+    private Recording recording;
+
+    public Profiler(Executor executor) {
+        this.executor = executor;
+    }
+
+    public static Profiler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Exécute une capture sur le thread du profiler ; retourne false si une capture est déjà en cours
+     */
+    public boolean submit(Runnable capture) {
+        if (!capturePermit.tryAcquire()) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    capture.run();
+                } finally {
+                    capturePermit.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            capturePermit.release();
+            return false;
+        }
+    }
+
+    /**
+     * Démarre un enregistrement JFR (profil production.jfc) arrêté automatiquement après la durée donnée
+     */
+    public synchronized Map<String, Object> startRecording(Duration duration) throws IOException, ParseException {
+        checkDuration(duration);
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Un enregistrement JFR est déjà en cours");
+        }
+        closeRecording();
+        Recording newRecording = new Recording(loadConfiguration());
+        newRecording.setName("javaApp-profiling");
+        newRecording.setDuration(duration);
+        newRecording.setMaxSize(MAX_RECORDING_SIZE);
+        newRecording.setToDisk(true);
+        newRecording.start();
+        recording = newRecording;
+        return describe(newRecording);
+    }
+
+    /**
+     * Arrête l'enregistrement en cours ; les données restent téléchargeables jusqu'au suivant
+     */
+    public synchronized Map<String, Object> stopRecording() {
+        if (recording == null) {
+            throw new IllegalStateException("Aucun enregistrement JFR");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        return describe(recording);
+    }
+
+    /**
+     * Copie les données de l'enregistrement (en cours ou terminé) dans un fichier temporaire
+     */
+    public synchronized Path dumpRecording() throws IOException {
+        if (recording == null || recording.getState() == RecordingState.CLOSED) {
+            throw new IllegalStateException("Aucun enregistrement JFR");
+        }
+        Path file = Files.createTempFile("javaApp-", ".jfr");
+        recording.dump(file);
+        return file;
+    }
+
+    public synchronized Map<String, Object> getRecordingStatus() {
+        if (recording == null) {
+            return Map.of("state", "NONE");
+        }
+        return describe(recording);
+    }
+
+    /**
+     * Dump des threads au format texte, avec moniteurs et verrous détenus
+     */
+    public String threadDump() {
+        ThreadInfo[] threads = ManagementFactory.getThreadMXBean().dumpAllThreads(true, true);
+        StringBuilder dump = new StringBuilder(threads.length * 512);
+        dump.append("Thread dump ").append(Instant.now()).append(" (").append(threads.length).append(" threads)\n\n");
+        for (ThreadInfo thread : threads) {
+            dump.append('"').append(thread.getThreadName()).append("\" #").append(thread.getThreadId());
+            if (thread.isDaemon()) {
+                dump.append(" daemon");
+            }
+            dump.append(' ').append(thread.getThreadState());
+            if (thread.getLockName() != null) {
+                dump.append(" on ").append(thread.getLockName());
+            }
+            if (thread.getLockOwnerName() != null) {
+                dump.append(" owned by \"").append(thread.getLockOwnerName()).append('"');
+            }
+            dump.append('\n');
+            StackTraceElement[] frames = thread.getStackTrace();
+            MonitorInfo[] monitors = thread.getLockedMonitors();
+            for (int depth = 0; depth < frames.length; depth++) {
+                dump.append("\tat ").append(frames[depth]).append('\n');
+                for (MonitorInfo monitor : monitors) {
+                    if (monitor.getLockedStackDepth() == depth) {
+                        dump.append("\t- locked ").append(monitor).append('\n');
+                    }
+                }
+            }
+            LockInfo[] synchronizers = thread.getLockedSynchronizers();
+            if (synchronizers.length > 0) {
+                dump.append("\tLocked synchronizers:\n");
+                for (LockInfo synchronizer : synchronizers) {
+                    dump.append("\t- ").append(synchronizer).append('\n');
+                }
+            }
+            dump.append('\n');
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Mesure les allocations par route pendant la durée donnée (bloque le thread du profiler)
+     */
+    public Map<String, Object> captureAllocations(Duration duration) throws InterruptedException {
+        checkDuration(duration);
+        if (!AllocationProfile.isSupported()) {
+            throw new IllegalStateException("Mesure des allocations par thread non supportée par la JVM");
+        }
+        Instant startedAt = Instant.now();
+        AllocationProfile.start();
+        List<Map<String, Object>> routes;
+        try {
+            Thread.sleep(duration.toMillis());
+        } finally {
+            routes = AllocationProfile.stop();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startedAt", startedAt.toString());
+        result.put("durationSeconds", duration.toSeconds());
+        result.put("routes", routes);
+        return result;
+    }
+
+    private static void checkDuration(Duration duration) {
+        if (duration.isNegative() || duration.isZero() || duration.compareTo(MAX_DURATION) > 0) {
+            throw new IllegalArgumentException("La durée doit être comprise entre 1 et "
+                    + MAX_DURATION.toSeconds() + " secondes");
+        }
+    }
+
+    private static Configuration loadConfiguration() throws IOException, ParseException {
+        InputStream settings = Profiler.class.getResourceAsStream(SETTINGS_RESOURCE);
+        if (settings == null) {
+            return Configuration.getConfiguration("profile");
+        }
+        try (Reader reader = new InputStreamReader(settings, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private static Map<String, Object> describe(Recording recording) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", recording.getName());
+        result.put("state", recording.getState().name());
+        result.put("startedAt", recording.getStartTime() != null ? recording.getStartTime().toString() : null);
+        result.put("durationSeconds", recording.getDuration() != null ? recording.getDuration().toSeconds() : null);
+        result.put("size", recording.getSize());
+        return result;
+    }
+}
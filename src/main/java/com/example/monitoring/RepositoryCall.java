@@ -0,0 +1,81 @@
+package com.example.monitoring;
+
+import com.example.monitoring.events.RepositoryCallEvent;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Instrumentation d'un appel de repository : phase "db" du chronométrage de requête
+ * et événement JFR. Quand ni l'un ni l'autre n'est actif, begin(...) retourne une
+ * instance partagée sans état et aucun objet n'est alloué.
+ */
+public final class RepositoryCall {
+
+    private static final RepositoryCall DISABLED = new RepositoryCall(0L, null);
+
+    private final long dbStart;
+    private final RepositoryCallEvent event;
+
+    private RepositoryCall(long dbStart, RepositoryCallEvent event) {
+        this.dbStart = dbStart;
+        this.event = event;
+    }
+
+    /**
+     * Début d'un appel ; jpql peut être null pour les opérations par identifiant
+     */
+    public static RepositoryCall begin(String operation, String jpql) {
+        long dbStart = RequestTiming.start();
+        RepositoryCallEvent event = null;
+        if (RepositoryCallEvent.TYPE.isEnabled()) {
+            event = new RepositoryCallEvent();
+            event.operation = operation;
+            event.jpql = jpql;
+            event.begin();
+        }
+        if (dbStart == 0L && event == null) {
+            return DISABLED;
+        }
+        return new RepositoryCall(dbStart, event);
+    }
+
+    public <T> List<T> rows(List<T> results) {
+        if (event != null) {
+            event.rowCount = results.size();
+            event.succeeded = true;
+        }
+        return results;
+    }
+
+    public <T> Optional<T> rows(Optional<T> result) {
+        if (event != null) {
+            event.rowCount = result.isPresent() ? 1 : 0;
+            event.succeeded = true;
+        }
+        return result;
+    }
+
+    public void rows(long rowCount) {
+        if (event != null) {
+            event.rowCount = rowCount;
+            event.succeeded = true;
+        }
+    }
+
+    /**
+     * À appeler dans le bloc finally ; un appel sans rows(...) est considéré en échec
+     */
+    public void end() {
+        if (this == DISABLED) {
+            return;
+        }
+        RequestTiming.stop(RequestTiming.Phase.DB, dbStart);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+}
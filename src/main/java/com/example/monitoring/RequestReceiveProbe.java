@@ -0,0 +1,23 @@
+package com.example.monitoring;
+
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.http.server.HttpServerFilter;
+import org.glassfish.grizzly.http.server.HttpServerProbe;
+import org.glassfish.grizzly.http.server.Request;
+
+/**
+ * Sonde Grizzly qui horodate la réception d'une requête sur le thread sélecteur.
+ * L'attribut est visible comme propriété de requête côté Jersey ; l'écart avec l'entrée
+ * dans le filtre constitue l'attente dans la file du pool de workers (phase "queue").
+ */
+public class RequestReceiveProbe extends HttpServerProbe.Adapter {
+
+    public static final String RECEIVED_AT_ATTRIBUTE = RequestReceiveProbe.class.getName() + ".receivedAt";
+
+    @Override
+    public void onRequestReceiveEvent(HttpServerFilter filter, Connection connection, Request request) {
+        if (RequestTiming.isEnabled()) {
+            request.setAttribute(RECEIVED_AT_ATTRIBUTE, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.monitoring;
+
+import java.util.Arrays;
+
+/**
+ * Chronométrage par phase de la requête HTTP en cours sur le thread courant.
+ * Une instance est réutilisée par thread worker ; lorsque la mesure est désactivée,
+ * start() retourne 0 sans toucher au ThreadLocal et stop(...) ne fait rien.
+ */
+public final class RequestTiming {
+
+    /**
+     * Compteurs bruts accumulés pendant la requête
+     */
+    public enum Phase {
+        QUEUE, ENTITY_MANAGER, CONNECTION, DB, SQL, APP, SERIALIZE, WRITE
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean("request.timing.enabled");
+    private static volatile boolean headerEnabled = Boolean.getBoolean("server.timing.header");
+
+    private static final ThreadLocal<RequestTiming> CURRENT = ThreadLocal.withInitial(RequestTiming::new);
+
+    private final long[] nanos = new long[Phase.values().length];
+    private long beginAt;
+    private boolean active;
+
+    private RequestTiming() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static boolean isHeaderEnabled() {
+        return headerEnabled;
+    }
+
+    public static void setHeaderEnabled(boolean value) {
+        headerEnabled = value;
+    }
+
+    /**
+     * Démarre la mesure d'une requête (filtre Jersey) et retourne son chronomètre.
+     * receivedAt est l'horodatage (System.nanoTime) de réception par Grizzly, ou 0 s'il est inconnu.
+     */
+    public static RequestTiming begin(long receivedAt) {
+        RequestTiming timing = CURRENT.get();
+        Arrays.fill(timing.nanos, 0L);
+        timing.beginAt = System.nanoTime();
+        timing.nanos[Phase.QUEUE.ordinal()] = receivedAt > 0 ? timing.beginAt - receivedAt : 0L;
+        timing.active = true;
+        return timing;
+    }
+
+    /**
+     * Chronomètre de la requête en cours, ou null si aucune requête n'est mesurée
+     */
+    public static RequestTiming current() {
+        if (!enabled) {
+            return null;
+        }
+        RequestTiming timing = CURRENT.get();
+        return timing.active ? timing : null;
+    }
+
+    /**
+     * Début d'une section mesurée ; 0 si la mesure est désactivée
+     */
+    public static long start() {
+        if (!enabled || !CURRENT.get().active) {
+            return 0L;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Fin d'une section commencée par start()
+     */
+    public static void stop(Phase phase, long start) {
+        if (start != 0L) {
+            RequestTiming timing = CURRENT.get();
+            if (timing.active) {
+                timing.nanos[phase.ordinal()] += System.nanoTime() - start;
+            }
+        }
+    }
+
+    public void add(Phase phase, long durationNanos) {
+        nanos[phase.ordinal()] += durationNanos;
+    }
+
+    /**
+     * Fixe le temps applicatif : durée du traitement moins l'accès aux données
+     */
+    public void markHandled() {
+        long handled = System.nanoTime() - beginAt;
+        nanos[Phase.APP.ordinal()] = Math.max(0L, handled - nanos[Phase.ENTITY_MANAGER.ordinal()] - nanos[Phase.DB.ordinal()]);
+    }
+
+    public void end() {
+        active = false;
+    }
+
+    public long getBeginAt() {
+        return beginAt;
+    }
+
+    public long get(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Acquisition de l'EntityManager et de la connexion JDBC
+     */
+    public long entityManagerNanos() {
+        return nanos[Phase.ENTITY_MANAGER.ordinal()] + nanos[Phase.CONNECTION.ordinal()];
+    }
+
+    /**
+     * Temps passé dans les repositories hors exécution SQL et attente de connexion : construction des entités
+     */
+    public long hydrationNanos() {
+        return Math.max(0L, nanos[Phase.DB.ordinal()] - nanos[Phase.SQL.ordinal()] - nanos[Phase.CONNECTION.ordinal()]);
+    }
+
+    /**
+     * Valeur de l'en-tête Server-Timing pour les phases connues avant l'écriture de la réponse
+     */
+    public String toServerTimingHeader() {
+        StringBuilder header = new StringBuilder(128);
+        appendMetric(header, "queue", nanos[Phase.QUEUE.ordinal()]);
+        appendMetric(header, "em", entityManagerNanos());
+        appendMetric(header, "sql", nanos[Phase.SQL.ordinal()]);
+        appendMetric(header, "hydrate", hydrationNanos());
+        appendMetric(header, "app", nanos[Phase.APP.ordinal()]);
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long durationNanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(Math.round(durationNanos / 1000.0) / 1000.0);
+    }
+}
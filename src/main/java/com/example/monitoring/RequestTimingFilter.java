@@ -0,0 +1,144 @@
+package com.example.monitoring;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Découpe chaque requête en phases (attente d'un worker, EntityManager, SQL, hydratation, applicatif,
+ * sérialisation JSON, écriture), publie l'en-tête Server-Timing si activé et alimente
+ * les histogrammes par route. Ne fait rien tant que request.timing.enabled est faux.
+ */
+@Provider
+@Priority(Priorities.USER - 1000)
+public class RequestTimingFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+    static final String TIMING_PROPERTY = RequestTimingFilter.class.getName() + ".timing";
+    static final String ROUTE_PROPERTY = RequestTimingFilter.class.getName() + ".route";
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (RequestTiming.isEnabled()) {
+            Object receivedAt = requestContext.getProperty(RequestReceiveProbe.RECEIVED_AT_ATTRIBUTE);
+            long received = receivedAt instanceof Long ? (Long) receivedAt : 0L;
+            requestContext.setProperty(TIMING_PROPERTY, RequestTiming.begin(received));
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        RequestTiming timing = (RequestTiming) requestContext.getProperty(TIMING_PROPERTY);
+        if (timing == null || timing != RequestTiming.current()) {
+            // Réponse asynchrone reprise sur un autre thread : l'objet du worker a pu être réutilisé
+            requestContext.removeProperty(TIMING_PROPERTY);
+            return;
+        }
+        timing.markHandled();
+        if (RequestTiming.isHeaderEnabled()) {
+            // Les phases de sérialisation et d'écriture ne sont connues qu'après l'envoi des en-têtes
+            responseContext.getHeaders().add("Server-Timing", timing.toServerTimingHeader());
+        }
+        String route = routeOf(requestContext);
+        if (responseContext.hasEntity()) {
+            requestContext.setProperty(ROUTE_PROPERTY, route);
+        } else {
+            finish(route, timing);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        RequestTiming timing = (RequestTiming) context.getProperty(TIMING_PROPERTY);
+        String route = (String) context.getProperty(ROUTE_PROPERTY);
+        if (timing == null || route == null) {
+            context.proceed();
+            return;
+        }
+        TimedOutputStream output = new TimedOutputStream(context.getOutputStream());
+        context.setOutputStream(output);
+        long start = System.nanoTime();
+        try {
+            context.proceed();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            timing.add(RequestTiming.Phase.WRITE, output.writeNanos);
+            timing.add(RequestTiming.Phase.SERIALIZE, Math.max(0L, elapsed - output.writeNanos));
+            finish(route, timing);
+        }
+    }
+
+    private static void finish(String route, RequestTiming timing) {
+        long total = System.nanoTime() - timing.getBeginAt() + timing.get(RequestTiming.Phase.QUEUE);
+        RouteTimings.record(route, timing, total);
+        timing.end();
+    }
+
+    /**
+     * Route agrégée : méthode HTTP et gabarit de chemin (ex. "GET /api/products/{id}")
+     */
+    static String routeOf(ContainerRequestContext requestContext) {
+        UriInfo uriInfo = requestContext.getUriInfo();
+        StringBuilder path = new StringBuilder();
+        if (uriInfo instanceof ExtendedUriInfo) {
+            List<UriTemplate> templates = ((ExtendedUriInfo) uriInfo).getMatchedTemplates();
+            for (int i = templates.size() - 1; i >= 0; i--) {
+                String template = templates.get(i).getTemplate();
+                if (template.isEmpty() || "/".equals(template)) {
+                    continue;
+                }
+                if (!template.startsWith("/")) {
+                    path.append('/');
+                }
+                path.append(template);
+            }
+        }
+        return requestContext.getMethod() + " " + (path.length() > 0 ? path.toString() : "<unmatched>");
+    }
+
+    /**
+     * Mesure le temps passé dans les écritures vers le conteneur HTTP
+     */
+    private static final class TimedOutputStream extends FilterOutputStream {
+
+        private long writeNanos;
+
+        TimedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            writeNanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            writeNanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            writeNanos += System.nanoTime() - start;
+        }
+    }
+}
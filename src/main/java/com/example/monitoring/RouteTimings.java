@@ -0,0 +1,58 @@
+package com.example.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Histogrammes agrégés des phases de requête, par route (méthode HTTP + gabarit de chemin)
+ */
+public final class RouteTimings {
+
+    private static final String[] PHASES = {"queue", "em", "sql", "hydrate", "app", "serialize", "write", "total"};
+
+    private static final ConcurrentHashMap<String, LatencyHistogram[]> routes = new ConcurrentHashMap<>();
+
+    private RouteTimings() {
+    }
+
+    /**
+     * Enregistre une requête terminée ; totalNanos couvre toute la requête depuis la réception
+     */
+    public static void record(String route, RequestTiming timing, long totalNanos) {
+        LatencyHistogram[] histograms = routes.computeIfAbsent(route, key -> newHistograms());
+        histograms[0].record(timing.get(RequestTiming.Phase.QUEUE));
+        histograms[1].record(timing.entityManagerNanos());
+        histograms[2].record(timing.get(RequestTiming.Phase.SQL));
+        histograms[3].record(timing.hydrationNanos());
+        histograms[4].record(timing.get(RequestTiming.Phase.APP));
+        histograms[5].record(timing.get(RequestTiming.Phase.SERIALIZE));
+        histograms[6].record(timing.get(RequestTiming.Phase.WRITE));
+        histograms[7].record(totalNanos);
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        routes.forEach((route, histograms) -> {
+            Map<String, Object> phases = new LinkedHashMap<>();
+            for (int i = 0; i < PHASES.length; i++) {
+                phases.put(PHASES[i], histograms[i].toMap());
+            }
+            result.put(route, phases);
+        });
+        return result;
+    }
+
+    public static void reset() {
+        routes.clear();
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Durée de chaque phase du démarrage (configuration Flyway, migrations, EntityManagerFactory,
+ * démarrage HTTP...), dans l'ordre où elles se terminent. Les phases exécutées en parallèle
+ * se recouvrent : leur somme peut dépasser la durée totale.
+ */
+public final class StartupTimings {
+
+    private static final Map<String, Double> PHASES = new LinkedHashMap<>();
+    private static volatile long readyAtUptimeMillis = -1L;
+
+    private StartupTimings() {
+    }
+
+    /**
+     * Enregistre la durée d'une phase commencée à startNanos (System.nanoTime())
+     */
+    public static void record(String phase, long startNanos) {
+        double millis = (System.nanoTime() - startNanos) / 1_000_000.0;
+        synchronized (PHASES) {
+            PHASES.put(phase, Math.round(millis * 1000.0) / 1000.0);
+        }
+    }
+
+    /**
+     * Marque le serveur prêt (temps écoulé depuis le démarrage de la JVM)
+     */
+    public static void markReady() {
+        readyAtUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        synchronized (PHASES) {
+            result.put("phasesMs", new LinkedHashMap<>(PHASES));
+        }
+        result.put("readyAfterJvmStartMs", readyAtUptimeMillis >= 0 ? readyAtUptimeMillis : null);
+        return result;
+    }
+
+    public static String summary() {
+        StringBuilder summary = new StringBuilder();
+        synchronized (PHASES) {
+            PHASES.forEach((phase, millis) -> {
+                if (summary.length() > 0) {
+                    summary.append(", ");
+                }
+                summary.append(phase).append('=').append(millis).append(" ms");
+            });
+        }
+        return summary.toString();
+    }
+
+    static void reset() {
+        synchronized (PHASES) {
+            PHASES.clear();
+        }
+        readyAtUptimeMillis = -1L;
+    }
+}
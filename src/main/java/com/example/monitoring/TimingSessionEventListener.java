@@ -0,0 +1,48 @@
+package com.example.monitoring;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Écouteur de session Hibernate qui attribue à la requête en cours le temps d'attente
+ * d'une connexion du pool et le temps d'exécution des requêtes SQL.
+ * Instancié par Hibernate pour chaque session (propriété hibernate.session.events.auto).
+ */
+public class TimingSessionEventListener extends BaseSessionEventListener {
+
+    private long connectionStart;
+    private long statementStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        connectionStart = RequestTiming.start();
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        RequestTiming.stop(RequestTiming.Phase.CONNECTION, connectionStart);
+        connectionStart = 0L;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = RequestTiming.start();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestTiming.stop(RequestTiming.Phase.SQL, statementStart);
+        statementStart = 0L;
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = RequestTiming.start();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestTiming.stop(RequestTiming.Phase.SQL, batchStart);
+        batchStart = 0L;
+    }
+}
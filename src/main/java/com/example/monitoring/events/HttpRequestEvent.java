@@ -0,0 +1,37 @@
+package com.example.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Événement JFR couvrant le traitement d'une requête HTTP par un contrôleur
+ */
+@Name("com.example.HttpRequest")
+@Label("HTTP Request")
+@Category({"javaApp", "HTTP"})
+@Description("Requête HTTP traitée par un contrôleur JAX-RS")
+@StackTrace(false)
+public class HttpRequestEvent extends Event {
+
+    public static final EventType TYPE = EventType.getEventType(HttpRequestEvent.class);
+
+    @Label("Method")
+    public String method;
+
+    @Label("Route")
+    public String route;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Request Id")
+    public String requestId;
+}
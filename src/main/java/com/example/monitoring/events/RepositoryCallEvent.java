@@ -0,0 +1,32 @@
+package com.example.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant un appel de méthode de repository
+ */
+@Name("com.example.RepositoryCall")
+@Label("Repository Call")
+@Category({"javaApp", "Persistence"})
+@Description("Appel d'une méthode de repository JPA, avec la requête JPQL et le nombre de lignes")
+public class RepositoryCallEvent extends Event {
+
+    public static final EventType TYPE = EventType.getEventType(RepositoryCallEvent.class);
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("JPQL")
+    public String jpql;
+
+    @Label("Row Count")
+    public long rowCount;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
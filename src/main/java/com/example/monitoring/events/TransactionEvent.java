@@ -0,0 +1,31 @@
+package com.example.monitoring.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Événement JFR couvrant une transaction JPA, de begin() jusqu'au commit ou rollback
+ */
+@Name("com.example.Transaction")
+@Label("JPA Transaction")
+@Category({"javaApp", "Persistence"})
+@Description("Transaction JPA de ressource locale")
+@StackTrace(false)
+public class TransactionEvent extends Event {
+
+    public static final EventType TYPE = EventType.getEventType(TransactionEvent.class);
+
+    @Label("Outcome")
+    @Description("commit, rollback ou commit_failed")
+    public String outcome;
+
+    @Label("Commit Duration")
+    @Timespan
+    public long commitDuration;
+}
@@ -0,0 +1,22 @@
+package com.example.repository;
+
+import java.util.Locale;
+
+/**
+ * Motifs LIKE construits à partir d'une saisie utilisateur : les caractères spéciaux sont échappés
+ * par '!' (requêtes écrites avec ESCAPE '!')
+ */
+final class LikePatterns {
+
+    static final String ESCAPE = " ESCAPE '!'";
+
+    private LikePatterns() {
+    }
+
+    /**
+     * Motif "commence par", en minuscules (à comparer à LOWER(colonne))
+     */
+    static String startsWith(String prefix) {
+        return prefix.toLowerCase(Locale.ROOT).replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+}
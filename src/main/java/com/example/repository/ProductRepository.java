@@ -1,165 +1,480 @@
 package com.example.repository;
 
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
+import com.example.index.PriceIndex;
 import com.example.model.Product;
-import com.example.util.JPAUtil;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.EntityTransaction;
+import com.example.monitoring.RepositoryCall;
+import com.example.sharding.ShardIds;
+import com.example.sharding.ShardRouter;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
- * Repository pour gérer les opérations CRUD sur l'entité Product
+ * Repository pour gérer les opérations CRUD sur l'entité Product ; sans état, un EntityManager par appel.
+ * Les produits sont répartis sur les shards par ShardRouter (un seul shard sans -Dshard.config) :
+ * les opérations par identifiant vont au shard propriétaire, les recherches interrogent tous les
+ * shards en parallèle. Les lectures du shard 0 peuvent être servies par la réplique.
+ * Les recherches par prix passent par l'index en mémoire (PriceIndex) quand il est construit.
+ * Chaque écriture ajoute son changement au flux (ChangeFeed) dans sa propre transaction.
  */
 public class ProductRepository {
-    
+
+    private static final String FIND_ALL = "SELECT p FROM Product p";
+    private static final String FIND_BY_CATEGORY = "SELECT p FROM Product p WHERE p.category = :category";
+    private static final String FIND_BY_MAX_PRICE = "SELECT p FROM Product p WHERE p.price <= :price ORDER BY p.price, p.id";
+    private static final String FIND_BY_IDS = "SELECT p FROM Product p WHERE p.id IN :ids";
+    private static final String FIND_IN_STOCK = "SELECT p FROM Product p WHERE p.quantity > 0";
+    private static final String COUNT = "SELECT COUNT(p) FROM Product p";
+    private static final String SUGGEST_NAMES = "SELECT DISTINCT p.name FROM Product p WHERE LOWER(p.name) LIKE :prefix"
+            + LikePatterns.ESCAPE + " ORDER BY p.name";
+    private static final String ADJUST_STOCK = "UPDATE products SET quantity = quantity + ?, version = version + 1, "
+            + "updated_at = ? WHERE id = ? AND quantity + ? >= 0";
+    private static final String SELECT_QUANTITY = "SELECT quantity FROM products WHERE id = ?";
+
+    // Taille des listes IN lors de la relecture des produits trouvés par l'index
+    private static final int IDS_PER_QUERY = 1000;
+    private static final int MAX_TEXT_WORDS = 10;
+
+    private static final Comparator<Product> BY_ID = Comparator.comparing(Product::getId);
+    private static final Comparator<Product> BY_PRICE = Comparator.comparing(Product::getPrice)
+            .thenComparing(Product::getId);
+
+    private final ShardRouter shards;
+    private final PriceIndex priceIndex;
+    private final ChangeFeed changeFeed;
+    // Au-delà, relire les produits par identifiant coûte plus cher que la requête SQL triée
+    private final int priceIndexMaxResults = Integer.getInteger("product.price.index.max.results", 10_000);
+
+    public ProductRepository() {
+        this(ShardRouter.getInstance(), PriceIndex.getInstance(), ChangeFeed.getInstance());
+    }
+
+    public ProductRepository(ShardRouter shards, PriceIndex priceIndex, ChangeFeed changeFeed) {
+        this.shards = shards;
+        this.priceIndex = priceIndex;
+        this.changeFeed = changeFeed;
+    }
+
     /**
-     * Enregistre un nouveau produit
+     * Enregistre un nouveau produit ; son identifiant, toujours attribué ici (ShardIds), détermine son shard
      */
     public Product save(Product product) {
-        EntityManager em = JPAUtil.getEntityManager();
-        EntityTransaction transaction = em.getTransaction();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.save", null);
         try {
-            transaction.begin();
-            em.persist(product);
-            transaction.commit();
+            product.setId(ShardIds.getInstance().next());
+            shards.write(product.getId(), em -> {
+                em.persist(product);
+                changeFeed.record(em, Change.PRODUCT, product.getId(), Change.CREATE);
+                return product;
+            });
+            priceIndex.put(product);
+            call.rows(1);
             return product;
         } catch (Exception e) {
-            if (transaction.isActive()) {
-                transaction.rollback();
-            }
             throw new RuntimeException("Erreur lors de l'enregistrement du produit", e);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Trouve un produit par son ID
      */
     public Optional<Product> findById(Long id) {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.findById", null);
         try {
-            Product product = em.find(Product.class, id);
-            return Optional.ofNullable(product);
+            Product product = shards.read(id, em -> em.find(Product.class, id));
+            return call.rows(Optional.ofNullable(product));
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Récupère tous les produits
      */
     public List<Product> findAll() {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.findAll", FIND_ALL);
         try {
-            TypedQuery<Product> query = em.createQuery("SELECT p FROM Product p", Product.class);
-            return query.getResultList();
+            List<Product> results = ShardRouter.concat(shards.scatter(
+                    em -> em.createQuery(FIND_ALL, Product.class).getResultList()));
+            return call.rows(results);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Trouve les produits par catégorie
      */
     public List<Product> findByCategory(String category) {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.findByCategory", FIND_BY_CATEGORY);
         try {
-            TypedQuery<Product> query = em.createQuery(
-                "SELECT p FROM Product p WHERE p.category = :category", Product.class);
-            query.setParameter("category", category);
-            return query.getResultList();
+            List<Product> results = ShardRouter.concat(shards.scatter(em -> {
+                TypedQuery<Product> query = em.createQuery(FIND_BY_CATEGORY, Product.class);
+                query.setParameter("category", category);
+                return query.getResultList();
+            }));
+            return call.rows(results);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
-     * Trouve les produits dont le prix est inférieur ou égal à un montant donné
+     * Trouve les produits dont le prix est inférieur ou égal à un montant donné, triés par prix
      */
     public List<Product> findByPriceLessThanOrEqual(BigDecimal price) {
-        EntityManager em = JPAUtil.getEntityManager();
+        return findByPriceLessThanOrEqual(price, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Trouve les limit produits les moins chers de prix inférieur ou égal à un montant donné, triés
+     * par prix : identifiants lus dans l'index des prix s'il est prêt et que le résultat est assez
+     * petit, sinon fusion des résultats triés de chaque shard
+     */
+    public List<Product> findByPriceLessThanOrEqual(BigDecimal price, int limit) {
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.findByPriceLessThanOrEqual", FIND_BY_MAX_PRICE);
         try {
-            TypedQuery<Product> query = em.createQuery(
-                "SELECT p FROM Product p WHERE p.price <= :price ORDER BY p.price", Product.class);
-            query.setParameter("price", price);
-            return query.getResultList();
+            if (priceIndex.isReady()) {
+                long[] ids = priceIndex.atMost(PriceIndex.cents(price, RoundingMode.FLOOR),
+                        Math.min(limit, priceIndexMaxResults + 1));
+                if (ids.length <= priceIndexMaxResults) {
+                    List<Product> results = findByIds(ids);
+                    // Un produit modifié par une autre instance peut ne plus correspondre
+                    results.removeIf(product -> product.getPrice().compareTo(price) > 0);
+                    return call.rows(results);
+                }
+            }
+            List<Product> results = ShardRouter.mergeSorted(shards.scatter(em -> {
+                TypedQuery<Product> query = em.createQuery(FIND_BY_MAX_PRICE, Product.class);
+                query.setParameter("price", price);
+                if (limit < Integer.MAX_VALUE) {
+                    query.setMaxResults(limit);
+                }
+                return query.getResultList();
+            }), BY_PRICE);
+            return call.rows(results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
+    /**
+     * Recherche multicritère (critères null ignorés), triée par identifiant
+     */
+    public List<Product> search(String category, Boolean inStock, BigDecimal minPrice, BigDecimal maxPrice) {
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Product p WHERE 1 = 1");
+        if (category != null) {
+            jpql.append(" AND p.category = :category");
+        }
+        if (inStock != null) {
+            jpql.append(inStock ? " AND p.quantity > 0" : " AND p.quantity <= 0");
+        }
+        if (minPrice != null) {
+            jpql.append(" AND p.price >= :minPrice");
+        }
+        if (maxPrice != null) {
+            jpql.append(" AND p.price <= :maxPrice");
+        }
+        String search = jpql.append(" ORDER BY p.id").toString();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.search", search);
+        try {
+            List<Product> results = ShardRouter.mergeSorted(shards.scatter(em -> {
+                TypedQuery<Product> query = em.createQuery(search, Product.class);
+                if (category != null) {
+                    query.setParameter("category", category);
+                }
+                if (minPrice != null) {
+                    query.setParameter("minPrice", minPrice);
+                }
+                if (maxPrice != null) {
+                    query.setParameter("maxPrice", maxPrice);
+                }
+                return query.getResultList();
+            }), BY_ID);
+            return call.rows(results);
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Recherche textuelle sans index (index plein texte désactivé ou en construction) : produits
+     * dont le nom ou la description contient l'un des mots (LIKE, sans repli des accents), triés
+     * par identifiant, au plus limit
+     */
+    public List<Product> searchText(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty() && words.size() < MAX_TEXT_WORDS) {
+                words.add(word);
+            }
+        }
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Product p WHERE ");
+        for (int i = 0; i < words.size(); i++) {
+            jpql.append(i > 0 ? " OR " : "")
+                    .append("LOWER(p.name) LIKE :w").append(i).append(" OR LOWER(p.description) LIKE :w").append(i);
+        }
+        String search = jpql.append(" ORDER BY p.id").toString();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.searchText", search);
+        try {
+            List<Product> results = ShardRouter.mergeSorted(shards.scatter(em -> {
+                TypedQuery<Product> typedQuery = em.createQuery(search, Product.class).setMaxResults(limit);
+                for (int i = 0; i < words.size(); i++) {
+                    typedQuery.setParameter("w" + i, "%" + words.get(i) + "%");
+                }
+                return typedQuery.getResultList();
+            }), BY_ID);
+            return call.rows(results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results);
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Noms de produits distincts commençant par le préfixe (casse ignorée), par ordre alphabétique,
+     * au plus limit
+     */
+    public List<String> suggestNames(String prefix, int limit) {
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.suggestNames", SUGGEST_NAMES);
+        try {
+            List<String> names = ShardRouter.mergeSorted(shards.scatter(em -> em.createQuery(SUGGEST_NAMES, String.class)
+                    .setParameter("prefix", LikePatterns.startsWith(prefix))
+                    .setMaxResults(limit)
+                    .getResultList()), Comparator.naturalOrder());
+            return call.rows(names.stream().distinct().limit(limit).toList());
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Relit les produits par identifiant sur leurs shards, dans l'ordre des identifiants donnés ;
+     * les identifiants absents de la base sont ignorés
+     */
+    public List<Product> findAllById(long[] ids) {
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.findAllById", FIND_BY_IDS);
+        try {
+            return call.rows(findByIds(ids));
+        } finally {
+            call.end();
+        }
+    }
+
+    private List<Product> findByIds(long[] ids) {
+        Map<Integer, List<Long>> idsByShard = new HashMap<>();
+        for (long id : ids) {
+            idsByShard.computeIfAbsent(shards.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, Product> found = new HashMap<>(ids.length * 2);
+        idsByShard.forEach((shard, shardIds) -> {
+            for (int from = 0; from < shardIds.size(); from += IDS_PER_QUERY) {
+                List<Long> chunk = shardIds.subList(from, Math.min(from + IDS_PER_QUERY, shardIds.size()));
+                shards.readOnShard(shard, em -> em.createQuery(FIND_BY_IDS, Product.class)
+                                .setParameter("ids", chunk)
+                                .getResultList())
+                        .forEach(product -> found.put(product.getId(), product));
+            }
+        });
+        List<Product> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Product product = found.get(id);
+            if (product != null) {
+                ordered.add(product);
+            }
+        }
+        return ordered;
+    }
+
     /**
      * Trouve les produits en stock (quantity > 0)
      */
     public List<Product> findInStock() {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.findInStock", FIND_IN_STOCK);
         try {
-            TypedQuery<Product> query = em.createQuery(
-                "SELECT p FROM Product p WHERE p.quantity > 0", Product.class);
-            return query.getResultList();
+            List<Product> results = ShardRouter.concat(shards.scatter(
+                    em -> em.createQuery(FIND_IN_STOCK, Product.class).getResultList()));
+            return call.rows(results);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Met à jour un produit
      */
     public Product update(Product product) {
-        EntityManager em = JPAUtil.getEntityManager();
-        EntityTransaction transaction = em.getTransaction();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.update", null);
         try {
-            transaction.begin();
-            Product mergedProduct = em.merge(product);
-            transaction.commit();
+            Product mergedProduct = shards.write(product.getId(), em -> {
+                Product merged = em.merge(product);
+                changeFeed.record(em, Change.PRODUCT, product.getId(), Change.UPDATE);
+                return merged;
+            });
+            priceIndex.put(mergedProduct);
+            call.rows(1);
             return mergedProduct;
         } catch (Exception e) {
-            if (transaction.isActive()) {
-                transaction.rollback();
+            OptimisticLockException conflict = optimisticLockCause(e);
+            if (conflict != null) {
+                throw new OptimisticLockException("Le produit " + product.getId()
+                        + " a été modifié entre-temps, relisez-le avant de le mettre à jour", conflict);
             }
             throw new RuntimeException("Erreur lors de la mise à jour du produit", e);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
+        }
+    }
+
+    /**
+     * Ajuste le stock d'un produit par un UPDATE conditionnel, sans lecture préalable : la quantité ne
+     * devient jamais négative, même avec des ajustements concurrents. unwritten compte dans la condition
+     * des variations pas encore écrites (écriture différée). Retourne la nouvelle quantité en base,
+     * ou vide si le produit n'existe pas ou si le stock serait insuffisant.
+     */
+    public OptionalInt adjustStock(Long id, int delta, long unwritten) {
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.adjustStock", ADJUST_STOCK);
+        try {
+            Integer quantity = shards.write(id, em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                Integer adjusted = adjust(connection, id, delta, unwritten);
+                if (adjusted != null) {
+                    changeFeed.record(connection, Change.PRODUCT, List.of(id), Change.UPDATE);
+                }
+                return adjusted;
+            }));
+            call.rows(quantity != null ? 1 : 0);
+            return quantity != null ? OptionalInt.of(quantity) : OptionalInt.empty();
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur lors de l'ajustement du stock du produit", e);
+        } finally {
+            call.end();
         }
     }
-    
+
+    private static Integer adjust(Connection connection, long id, int delta, long unwritten) throws SQLException {
+        // PostgreSQL renvoie la nouvelle quantité dans la même instruction
+        boolean returning = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        try (PreparedStatement update = connection.prepareStatement(
+                returning ? ADJUST_STOCK + " RETURNING quantity" : ADJUST_STOCK)) {
+            update.setInt(1, delta);
+            update.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            update.setLong(3, id);
+            update.setLong(4, delta + unwritten);
+            if (returning) {
+                try (ResultSet resultSet = update.executeQuery()) {
+                    return resultSet.next() ? resultSet.getInt(1) : null;
+                }
+            }
+            if (update.executeUpdate() == 0) {
+                return null;
+            }
+        }
+        try (PreparedStatement select = connection.prepareStatement(SELECT_QUANTITY)) {
+            select.setLong(1, id);
+            try (ResultSet resultSet = select.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    private static OptimisticLockException optimisticLockCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException conflict) {
+                return conflict;
+            }
+        }
+        return null;
+    }
+
     /**
      * Supprime un produit par son ID
      */
     public void deleteById(Long id) {
-        EntityManager em = JPAUtil.getEntityManager();
-        EntityTransaction transaction = em.getTransaction();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.deleteById", null);
         try {
-            transaction.begin();
-            Product product = em.find(Product.class, id);
-            if (product != null) {
-                em.remove(product);
+            boolean deleted = shards.write(id, em -> {
+                Product product = em.find(Product.class, id);
+                if (product != null) {
+                    em.remove(product);
+                    changeFeed.record(em, Change.PRODUCT, id, Change.DELETE);
+                }
+                return product != null;
+            });
+            if (deleted) {
+                priceIndex.remove(id);
             }
-            transaction.commit();
+            call.rows(deleted ? 1 : 0);
         } catch (Exception e) {
-            if (transaction.isActive()) {
-                transaction.rollback();
-            }
             throw new RuntimeException("Erreur lors de la suppression du produit", e);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Compte le nombre total de produits
      */
     public long count() {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.count", COUNT);
+        try {
+            long count = shards.scatter(em -> em.createQuery(COUNT, Long.class).getSingleResult())
+                    .stream().mapToLong(Long::longValue).sum();
+            call.rows(1);
+            return count;
+        } finally {
+            call.end();
+        }
+    }
+
+    /**
+     * Compte les produits d'une catégorie et/ou en stock (true) ou épuisés (false), critères null ignorés
+     */
+    public long count(String category, Boolean inStock) {
+        StringBuilder jpql = new StringBuilder(COUNT).append(" WHERE 1 = 1");
+        if (category != null) {
+            jpql.append(" AND p.category = :category");
+        }
+        if (inStock != null) {
+            jpql.append(inStock ? " AND p.quantity > 0" : " AND p.quantity <= 0");
+        }
+        String count = jpql.toString();
+        RepositoryCall call = RepositoryCall.begin("ProductRepository.count", count);
         try {
-            TypedQuery<Long> query = em.createQuery(
-                "SELECT COUNT(p) FROM Product p", Long.class);
-            return query.getSingleResult();
+            long total = shards.scatter(em -> {
+                TypedQuery<Long> query = em.createQuery(count, Long.class);
+                if (category != null) {
+                    query.setParameter("category", category);
+                }
+                return query.getSingleResult();
+            }).stream().mapToLong(Long::longValue).sum();
+            call.rows(1);
+            return total;
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
 }
@@ -1,6 +1,9 @@
 package com.example.repository;
 
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
 import com.example.model.User;
+import com.example.monitoring.RepositoryCall;
 import com.example.util.JPAUtil;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
@@ -9,20 +12,42 @@ import java.util.List;
 import java.util.Optional;
 
 /**
- * Repository pour gérer les opérations CRUD sur l'entité User
+ * Repository pour gérer les opérations CRUD sur l'entité User ; sans état, un EntityManager par appel.
+ * Les lectures passent par JPAUtil.read(...) et peuvent être servies par la réplique.
+ * Chaque écriture ajoute son changement au flux (ChangeFeed) dans sa propre transaction.
  */
 public class UserRepository {
-    
+
+    private static final String FIND_BY_USERNAME = "SELECT u FROM User u WHERE u.username = :username";
+    private static final String FIND_BY_EMAIL = "SELECT u FROM User u WHERE u.email = :email";
+    private static final String FIND_ALL = "SELECT u FROM User u";
+    private static final String COUNT = "SELECT COUNT(u) FROM User u";
+    private static final String SUGGEST_USERNAMES = "SELECT u.username FROM User u WHERE LOWER(u.username) LIKE :prefix"
+            + LikePatterns.ESCAPE + " ORDER BY u.username";
+
+    private final ChangeFeed changeFeed;
+
+    public UserRepository() {
+        this(ChangeFeed.getInstance());
+    }
+
+    public UserRepository(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
     /**
      * Enregistre un nouvel utilisateur
      */
     public User save(User user) {
         EntityManager em = JPAUtil.getEntityManager();
-        EntityTransaction transaction = em.getTransaction();
+        EntityTransaction transaction = JPAUtil.getTransaction(em);
+        RepositoryCall call = RepositoryCall.begin("UserRepository.save", null);
         try {
             transaction.begin();
             em.persist(user);
+            changeFeed.record(em, Change.USER, user.getId(), Change.CREATE);
             transaction.commit();
+            call.rows(1);
             return user;
         } catch (Exception e) {
             if (transaction.isActive()) {
@@ -30,78 +55,100 @@ public class UserRepository {
             }
             throw new RuntimeException("Erreur lors de l'enregistrement de l'utilisateur", e);
         } finally {
+            call.end();
             JPAUtil.closeEntityManager(em);
         }
     }
-    
+
     /**
      * Trouve un utilisateur par son ID
      */
     public Optional<User> findById(Long id) {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("UserRepository.findById", null);
         try {
-            User user = em.find(User.class, id);
-            return Optional.ofNullable(user);
+            User user = JPAUtil.read(em -> em.find(User.class, id));
+            return call.rows(Optional.ofNullable(user));
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Trouve un utilisateur par son username
      */
     public Optional<User> findByUsername(String username) {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("UserRepository.findByUsername", FIND_BY_USERNAME);
         try {
-            TypedQuery<User> query = em.createQuery(
-                "SELECT u FROM User u WHERE u.username = :username", User.class);
-            query.setParameter("username", username);
-            List<User> results = query.getResultList();
-            return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
+            List<User> results = JPAUtil.read(em -> {
+                TypedQuery<User> query = em.createQuery(FIND_BY_USERNAME, User.class);
+                query.setParameter("username", username);
+                return query.getResultList();
+            });
+            return call.rows(results.isEmpty() ? Optional.empty() : Optional.of(results.get(0)));
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Trouve un utilisateur par son email
      */
     public Optional<User> findByEmail(String email) {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("UserRepository.findByEmail", FIND_BY_EMAIL);
         try {
-            TypedQuery<User> query = em.createQuery(
-                "SELECT u FROM User u WHERE u.email = :email", User.class);
-            query.setParameter("email", email);
-            List<User> results = query.getResultList();
-            return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
+            List<User> results = JPAUtil.read(em -> {
+                TypedQuery<User> query = em.createQuery(FIND_BY_EMAIL, User.class);
+                query.setParameter("email", email);
+                return query.getResultList();
+            });
+            return call.rows(results.isEmpty() ? Optional.empty() : Optional.of(results.get(0)));
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
+        }
+    }
+
+    /**
+     * Noms d'utilisateur commençant par le préfixe (casse ignorée), par ordre alphabétique, au plus limit
+     */
+    public List<String> suggestUsernames(String prefix, int limit) {
+        RepositoryCall call = RepositoryCall.begin("UserRepository.suggestUsernames", SUGGEST_USERNAMES);
+        try {
+            List<String> results = JPAUtil.read(em -> em.createQuery(SUGGEST_USERNAMES, String.class)
+                    .setParameter("prefix", LikePatterns.startsWith(prefix))
+                    .setMaxResults(limit)
+                    .getResultList());
+            return call.rows(results);
+        } finally {
+            call.end();
         }
     }
-    
+
     /**
      * Récupère tous les utilisateurs
      */
     public List<User> findAll() {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("UserRepository.findAll", FIND_ALL);
         try {
-            TypedQuery<User> query = em.createQuery("SELECT u FROM User u", User.class);
-            return query.getResultList();
+            List<User> results = JPAUtil.read(em -> em.createQuery(FIND_ALL, User.class).getResultList());
+            return call.rows(results);
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
-    
+
     /**
      * Met à jour un utilisateur
      */
     public User update(User user) {
         EntityManager em = JPAUtil.getEntityManager();
-        EntityTransaction transaction = em.getTransaction();
+        EntityTransaction transaction = JPAUtil.getTransaction(em);
+        RepositoryCall call = RepositoryCall.begin("UserRepository.update", null);
         try {
             transaction.begin();
             User mergedUser = em.merge(user);
+            changeFeed.record(em, Change.USER, user.getId(), Change.UPDATE);
             transaction.commit();
+            call.rows(1);
             return mergedUser;
         } catch (Exception e) {
             if (transaction.isActive()) {
@@ -109,44 +156,49 @@ public class UserRepository {
             }
             throw new RuntimeException("Erreur lors de la mise à jour de l'utilisateur", e);
         } finally {
+            call.end();
             JPAUtil.closeEntityManager(em);
         }
     }
-    
+
     /**
      * Supprime un utilisateur par son ID
      */
     public void deleteById(Long id) {
         EntityManager em = JPAUtil.getEntityManager();
-        EntityTransaction transaction = em.getTransaction();
+        EntityTransaction transaction = JPAUtil.getTransaction(em);
+        RepositoryCall call = RepositoryCall.begin("UserRepository.deleteById", null);
         try {
             transaction.begin();
             User user = em.find(User.class, id);
             if (user != null) {
                 em.remove(user);
+                changeFeed.record(em, Change.USER, id, Change.DELETE);
             }
             transaction.commit();
+            call.rows(user != null ? 1 : 0);
         } catch (Exception e) {
             if (transaction.isActive()) {
                 transaction.rollback();
             }
             throw new RuntimeException("Erreur lors de la suppression de l'utilisateur", e);
         } finally {
+            call.end();
             JPAUtil.closeEntityManager(em);
         }
     }
-    
+
     /**
      * Compte le nombre total d'utilisateurs
      */
     public long count() {
-        EntityManager em = JPAUtil.getEntityManager();
+        RepositoryCall call = RepositoryCall.begin("UserRepository.count", COUNT);
         try {
-            TypedQuery<Long> query = em.createQuery(
-                "SELECT COUNT(u) FROM User u", Long.class);
-            return query.getSingleResult();
+            long count = JPAUtil.read(em -> em.createQuery(COUNT, Long.class).getSingleResult());
+            call.rows(1);
+            return count;
         } finally {
-            JPAUtil.closeEntityManager(em);
+            call.end();
         }
     }
 }
@@ -0,0 +1,58 @@
+package com.example.security;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Authentifie les ressources @AdminOnly par un jeton porteur (Authorization: Bearer ...).
+ * Le jeton est lu dans la variable d'environnement ADMIN_TOKEN ou la propriété système admin.token ;
+ * sans jeton configuré, ces ressources sont désactivées.
+ */
+@Provider
+@AdminOnly
+@Priority(Priorities.AUTHENTICATION)
+public class AdminTokenFilter implements ContainerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final byte[] expectedToken;
+
+    public AdminTokenFilter() {
+        this(System.getenv().getOrDefault("ADMIN_TOKEN", System.getProperty("admin.token")));
+    }
+
+    public AdminTokenFilter(String expectedToken) {
+        this.expectedToken = expectedToken == null || expectedToken.isBlank()
+                ? null
+                : expectedToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (expectedToken == null) {
+            requestContext.abortWith(error(Response.Status.FORBIDDEN, "Endpoints d'administration désactivés"));
+            return;
+        }
+        String authorization = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)
+                || !MessageDigest.isEqual(expectedToken,
+                        authorization.substring(BEARER_PREFIX.length()).getBytes(StandardCharsets.UTF_8))) {
+            requestContext.abortWith(error(Response.Status.UNAUTHORIZED, "Jeton d'administration invalide"));
+        }
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response.status(status)
+                .type(MediaType.APPLICATION_JSON)
+                .entity("{\"error\": \"" + message + "\"}").build();
+    }
+}
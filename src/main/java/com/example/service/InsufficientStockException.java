@@ -0,0 +1,18 @@
+package com.example.service;
+
+/**
+ * Ajustement refusé : le stock du produit deviendrait négatif
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final long productId;
+
+    public InsufficientStockException(long productId) {
+        super("Stock insuffisant pour le produit " + productId);
+        this.productId = productId;
+    }
+
+    public long getProductId() {
+        return productId;
+    }
+}
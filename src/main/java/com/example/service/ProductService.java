@@ -1,31 +1,77 @@
 package com.example.service;
 
+import com.example.feed.ChangeFeed;
+import com.example.index.CompactProductStore;
+import com.example.index.FullTextIndex;
+import com.example.index.InventoryStats;
+import com.example.index.ProductSearchIndex;
+import com.example.index.RowCounts;
+import com.example.index.SuggestIndex;
+import com.example.inventory.StockWriteBehind;
 import com.example.model.Product;
 import com.example.repository.ProductRepository;
+import com.example.util.ReadRouting;
+import jakarta.persistence.OptimisticLockException;
 
 import java.math.BigDecimal;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 /**
- * Service pour gérer les opérations métier sur les produits
+ * Service pour gérer les opérations métier sur les produits ; sans état, partagé par toutes les requêtes.
+ * Quand l'écriture différée des stocks est active, une mise à jour qui ne change que la quantité
+ * est mise en attente (StockWriteBehind) et les lectures incluent les variations non écrites.
+ * Une mise à jour portant une version différente de celle en base est refusée (OptimisticLockException).
+ * Chaque écriture met à jour l'index de recherche (ProductSearchIndex), l'index plein texte
+ * (FullTextIndex), l'autocomplétion des noms (SuggestIndex), les comptages par catégorie et en
+ * stock (RowCounts) et les statistiques d'inventaire (InventoryStats) s'ils sont activés.
+ * La lecture par identifiant passe par le cache compact (CompactProductStore) s'il est activé,
+ * sauf pendant l'écriture différée des stocks : ses flushs changent la quantité en base sans passer
+ * par le service, le cache n'y est donc ni lu ni alimenté.
+ * Chaque écriture réussie est enfin ajoutée au flux des changements (ChangeFeed) s'il est activé.
  */
 public class ProductService {
     
     private final ProductRepository productRepository;
+    private final StockWriteBehind stockWriteBehind;
+    private final ProductSearchIndex searchIndex;
+    private final FullTextIndex fullTextIndex;
+    private final SuggestIndex nameSuggestions;
+    private final RowCounts productCounts;
+    private final InventoryStats inventoryStats;
+    private final CompactProductStore productCache;
+    private final ChangeFeed changeFeed;
     
-    public ProductService() {
-        this.productRepository = new ProductRepository();
+    public ProductService(ProductRepository productRepository) {
+        this(productRepository, null, null, null, null, null, null, null, null);
     }
     
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, StockWriteBehind stockWriteBehind,
+                          ProductSearchIndex searchIndex, FullTextIndex fullTextIndex, SuggestIndex nameSuggestions,
+                          RowCounts productCounts, InventoryStats inventoryStats, CompactProductStore productCache,
+                          ChangeFeed changeFeed) {
         this.productRepository = productRepository;
+        this.stockWriteBehind = stockWriteBehind;
+        this.searchIndex = searchIndex;
+        this.fullTextIndex = fullTextIndex;
+        this.nameSuggestions = nameSuggestions;
+        this.productCounts = productCounts;
+        this.inventoryStats = inventoryStats;
+        this.productCache = productCache;
+        this.changeFeed = changeFeed;
     }
     
     /**
      * Crée un nouveau produit
      */
     public Product createProduct(Product product) {
+        if (product.getId() != null) {
+            throw new IllegalArgumentException("L'identifiant d'un nouveau produit est attribué par le serveur");
+        }
         if (product.getName() == null || product.getName().trim().isEmpty()) {
             throw new IllegalArgumentException("Le nom du produit est requis");
         }
@@ -36,54 +82,103 @@ public class ProductService {
             throw new IllegalArgumentException("La quantité doit être positive ou nulle");
         }
         
-        return productRepository.save(product);
+        Product createdProduct = indexed(productRepository.save(product));
+        if (nameSuggestions != null) {
+            nameSuggestions.add(createdProduct.getName());
+        }
+        if (productCounts != null) {
+            productCounts.add(createdProduct.getCategory(), createdProduct.getQuantity() > 0);
+        }
+        changed();
+        return createdProduct;
     }
     
     /**
-     * Récupère un produit par son ID
+     * Récupère un produit par son ID : depuis le cache compact s'il l'a, sinon en base (puis mis en cache) ;
+     * le cache est alimenté depuis la base primaire, jamais depuis la réplique en retard
      */
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        if (!isCacheUsable()) {
+            return productRepository.findById(id).map(this::withPendingStock);
+        }
+        Optional<Product> cached = productCache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long generation = productCache.generation();
+        Optional<Product> product = ReadRouting.onPrimary(() -> productRepository.findById(id));
+        product.ifPresent(found -> productCache.putIfUnchanged(found, generation));
+        return product;
     }
     
     /**
      * Récupère tous les produits
      */
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return withPendingStock(productRepository.findAll());
     }
     
     /**
      * Récupère les produits par catégorie
      */
     public List<Product> getProductsByCategory(String category) {
-        return productRepository.findByCategory(category);
+        return withPendingStock(productRepository.findByCategory(category));
     }
     
     /**
      * Récupère les produits dont le prix est inférieur ou égal au prix donné
      */
     public List<Product> getProductsByMaxPrice(BigDecimal maxPrice) {
-        return productRepository.findByPriceLessThanOrEqual(maxPrice);
+        return withPendingStock(productRepository.findByPriceLessThanOrEqual(maxPrice));
+    }
+    
+    /**
+     * Récupère les limit produits les moins chers dont le prix est inférieur ou égal au prix donné
+     */
+    public List<Product> getProductsByMaxPrice(BigDecimal maxPrice, int limit) {
+        return withPendingStock(productRepository.findByPriceLessThanOrEqual(maxPrice, limit));
     }
     
     /**
      * Récupère les produits en stock
      */
     public List<Product> getProductsInStock() {
-        return productRepository.findInStock();
+        List<Product> products = withPendingStock(productRepository.findInStock());
+        if (isWriteBehindActive()) {
+            // Un produit épuisé par des variations non écrites n'est plus en stock
+            products.removeIf(product -> product.getQuantity() <= 0);
+        }
+        return products;
     }
     
     /**
      * Met à jour un produit
      */
     public Product updateProduct(Long id, Product product) {
+        Product updatedProduct = isWriteBehindActive()
+                ? stockWriteBehind.withStableView(id, () -> applyUpdate(id, product))
+                : applyUpdate(id, product);
+        changed();
+        return updatedProduct;
+    }
+    
+    private Product applyUpdate(Long id, Product product) {
         Optional<Product> existingProduct = productRepository.findById(id);
         if (existingProduct.isEmpty()) {
             throw new IllegalArgumentException("Produit non trouvé avec l'ID: " + id);
         }
         
         Product productToUpdate = existingProduct.get();
+        if (product.getVersion() != null && !product.getVersion().equals(productToUpdate.getVersion())) {
+            throw new OptimisticLockException("Le produit " + id + " a été modifié entre-temps (version "
+                    + productToUpdate.getVersion() + "), relisez-le avant de le mettre à jour");
+        }
+        long pendingStock = isWriteBehindActive() ? stockWriteBehind.pendingDelta(id) : 0L;
+        boolean stockOnly = isWriteBehindActive() && changesOnlyQuantity(productToUpdate, product);
+        int storedQuantity = productToUpdate.getQuantity();
+        String previousName = productToUpdate.getName();
+        String previousCategory = productToUpdate.getCategory();
+        boolean previouslyInStock = storedQuantity + pendingStock > 0;
         
         // Mettre à jour les champs non nuls
         if (product.getName() != null && !product.getName().trim().isEmpty()) {
@@ -112,7 +207,72 @@ public class ProductService {
             productToUpdate.setCategory(product.getCategory());
         }
         
-        return productRepository.update(productToUpdate);
+        if (stockOnly) {
+            // Seule la quantité change : delta mis en attente, sans écriture immédiate
+            stockWriteBehind.add(id, product.getQuantity() - (storedQuantity + pendingStock));
+            return recounted(previousCategory, previouslyInStock, indexed(productToUpdate));
+        }
+        if (pendingStock == 0) {
+            return recounted(previousCategory, previouslyInStock,
+                    renamed(previousName, indexed(productRepository.update(productToUpdate))));
+        }
+        // Les variations en attente s'ajouteront au flush : la quantité écrite les exclut
+        int quantity = product.getQuantity() != null ? product.getQuantity() : (int) (storedQuantity + pendingStock);
+        productToUpdate.setQuantity((int) (quantity - pendingStock));
+        Product updatedProduct = productRepository.update(productToUpdate);
+        updatedProduct.setQuantity(quantity);
+        return recounted(previousCategory, previouslyInStock, renamed(previousName, indexed(updatedProduct)));
+    }
+    
+    /**
+     * Ajuste le stock d'un produit d'un delta signé en une seule mise à jour conditionnelle ;
+     * retourne la nouvelle quantité (variations en attente comprises)
+     */
+    public int adjustStock(Long id, int delta) {
+        int quantity = isWriteBehindActive()
+                ? stockWriteBehind.withStableView(id, () -> applyAdjustment(id, delta, stockWriteBehind.pendingDelta(id)))
+                : applyAdjustment(id, delta, 0L);
+        changed();
+        return quantity;
+    }
+    
+    private int applyAdjustment(Long id, int delta, long pendingStock) {
+        OptionalInt quantity = productRepository.adjustStock(id, delta, pendingStock);
+        if (quantity.isPresent()) {
+            int current = (int) (quantity.getAsInt() + pendingStock);
+            if (searchIndex != null) {
+                searchIndex.updateStock(id, current);
+            }
+            if (inventoryStats != null) {
+                inventoryStats.updateStock(id, current);
+            }
+            if (productCache != null) {
+                // Nouvelle version attribuée par la base : relue au prochain accès
+                productCache.remove(id);
+            }
+            if (productCounts != null && (current - delta > 0) != (current > 0)) {
+                // Passage en rupture ou retour en stock : seule la catégorie manque
+                productRepository.findById(id).ifPresent(product -> productCounts.move(
+                        product.getCategory(), current - delta > 0, product.getCategory(), current > 0));
+            }
+            return current;
+        }
+        if (productRepository.findById(id).isEmpty()) {
+            throw new NoSuchElementException("Produit non trouvé avec l'ID: " + id);
+        }
+        throw new InsufficientStockException(id);
+    }
+    
+    /**
+     * Vrai si la requête fixe la quantité et ne modifie aucun autre champ
+     */
+    private static boolean changesOnlyQuantity(Product stored, Product product) {
+        return product.getQuantity() != null
+                && (product.getName() == null || product.getName().trim().isEmpty()
+                        || product.getName().equals(stored.getName()))
+                && (product.getDescription() == null || product.getDescription().equals(stored.getDescription()))
+                && (product.getPrice() == null || product.getPrice().compareTo(stored.getPrice()) == 0)
+                && (product.getCategory() == null || product.getCategory().equals(stored.getCategory()));
     }
     
     /**
@@ -125,13 +285,167 @@ public class ProductService {
         }
         
         productRepository.deleteById(id);
+        if (searchIndex != null) {
+            searchIndex.remove(id);
+        }
+        if (fullTextIndex != null) {
+            fullTextIndex.remove(id);
+        }
+        if (inventoryStats != null) {
+            inventoryStats.remove(id);
+        }
+        if (productCache != null) {
+            productCache.remove(id);
+        }
+        if (nameSuggestions != null) {
+            nameSuggestions.remove(product.get().getName());
+        }
+        if (productCounts != null) {
+            productCounts.remove(product.get().getCategory(), withPendingStock(product.get()).getQuantity() > 0);
+        }
+        changed();
         return true;
     }
     
+    /**
+     * Recherche multicritère (critères null ignorés), triée par identifiant : ordinaux candidats
+     * de l'index de recherche s'il est prêt, sinon requête SQL ; les critères sont revérifiés sur
+     * les produits relus, variations de stock en attente comprises
+     */
+    public List<Product> searchProducts(String category, Boolean inStock, BigDecimal minPrice, BigDecimal maxPrice) {
+        if ((minPrice != null && minPrice.signum() < 0) || (maxPrice != null && maxPrice.signum() < 0)) {
+            throw new IllegalArgumentException("Les bornes de prix doivent être positives ou nulles");
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("minPrice doit être inférieur ou égal à maxPrice");
+        }
+        List<Product> products = searchIndex != null && searchIndex.isReady()
+                ? productRepository.findAllById(searchIndex.search(category, inStock, minPrice, maxPrice))
+                : productRepository.search(category, inStock, minPrice, maxPrice);
+        withPendingStock(products);
+        products.removeIf(product -> (category != null && !category.equals(product.getCategory()))
+                || (inStock != null && inStock != (product.getQuantity() > 0))
+                || (minPrice != null && product.getPrice().compareTo(minPrice) < 0)
+                || (maxPrice != null && product.getPrice().compareTo(maxPrice) > 0));
+        products.sort(Comparator.comparing(Product::getId));
+        return products;
+    }
+    
+    /**
+     * Recherche plein texte dans le nom et la description, les limit produits les plus pertinents
+     * d'abord ; sans index prêt, recherche SQL par mots triée par identifiant
+     */
+    public List<Product> fullTextSearch(String query, int limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Le paramètre q est requis");
+        }
+        List<Product> products = fullTextIndex != null && fullTextIndex.isReady()
+                ? productRepository.findAllById(fullTextIndex.search(query, limit))
+                : productRepository.searchText(query, limit);
+        return withPendingStock(products);
+    }
+    
+    /**
+     * Noms de produits commençant par le préfixe (accents et casse ignorés) : arbre en mémoire
+     * s'il est prêt (au plus suggest.index.k noms, les plus fréquents d'abord), sinon requête SQL
+     * par ordre alphabétique
+     */
+    public List<String> suggestProductNames(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new IllegalArgumentException("Le paramètre prefix est requis");
+        }
+        return nameSuggestions != null && nameSuggestions.isReady()
+                ? nameSuggestions.suggest(prefix, limit)
+                : productRepository.suggestNames(prefix, limit);
+    }
+    
+    private Product renamed(String previousName, Product product) {
+        if (nameSuggestions != null) {
+            nameSuggestions.replace(previousName, product.getName());
+        }
+        return product;
+    }
+    
+    /**
+     * Statistiques d'inventaire : agrégats tenus à jour s'ils sont prêts, sinon calculés par une
+     * lecture en flux des produits de chaque shard
+     */
+    public Map<String, Object> getInventoryStats() {
+        if (inventoryStats != null && inventoryStats.isReady()) {
+            return inventoryStats.snapshot();
+        }
+        try {
+            return InventoryStats.fromDatabase();
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur lors du calcul des statistiques d'inventaire", e);
+        }
+    }
+    
+    private Product recounted(String previousCategory, boolean previouslyInStock, Product product) {
+        if (productCounts != null) {
+            productCounts.move(previousCategory, previouslyInStock, product.getCategory(), product.getQuantity() > 0);
+        }
+        return product;
+    }
+    
+    private Product indexed(Product product) {
+        if (searchIndex != null) {
+            searchIndex.put(product);
+        }
+        if (fullTextIndex != null) {
+            fullTextIndex.put(product);
+        }
+        if (inventoryStats != null) {
+            inventoryStats.put(product);
+        }
+        if (isCacheUsable()) {
+            productCache.put(product);
+        }
+        return product;
+    }
+    
+    private void changed() {
+        if (changeFeed != null) {
+            changeFeed.committed();
+        }
+    }
+    
+    private boolean isCacheUsable() {
+        return productCache != null && productCache.isEnabled() && !isWriteBehindActive();
+    }
+    
+    private boolean isWriteBehindActive() {
+        return stockWriteBehind != null && stockWriteBehind.isActive();
+    }
+    
+    private Product withPendingStock(Product product) {
+        return isWriteBehindActive() ? stockWriteBehind.merge(product) : product;
+    }
+    
+    private List<Product> withPendingStock(List<Product> products) {
+        if (isWriteBehindActive()) {
+            products.forEach(stockWriteBehind::merge);
+        }
+        return products;
+    }
+    
     /**
      * Compte le nombre de produits
      */
     public long countProducts() {
-        return productRepository.count();
+        return countProducts(null, null, false);
+    }
+    
+    /**
+     * Compte les produits d'une catégorie et/ou en stock (critères null ignorés) : compteurs en
+     * mémoire s'ils sont prêts, sinon (ou en mode exact) requête COUNT sur chaque shard
+     */
+    public long countProducts(String category, Boolean inStock, boolean exact) {
+        if (!exact && productCounts != null && productCounts.isReady()) {
+            return productCounts.count(category, inStock);
+        }
+        return category == null && inStock == null
+                ? productRepository.count()
+                : productRepository.count(category, inStock);
     }
 }
@@ -1,24 +1,47 @@
 package com.example.service;
 
+import com.example.feed.ChangeFeed;
+import com.example.index.CountingBloomFilter;
+import com.example.index.RowCounts;
+import com.example.index.SuggestIndex;
 import com.example.model.User;
 import com.example.repository.UserRepository;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
- * Service pour gérer les opérations métier sur les utilisateurs
+ * Service pour gérer les opérations métier sur les utilisateurs ; sans état, partagé par toutes
+ * les requêtes. Chaque écriture met à jour, s'ils sont activés, l'autocomplétion des noms
+ * d'utilisateur (SuggestIndex), les filtres d'unicité (CountingBloomFilter) et le nombre
+ * d'utilisateurs (RowCounts). Un nom ou un email absent à coup sûr du filtre n'est pas relu avant
+ * l'insertion : la contrainte d'unicité tranche, et son échec est reconnu. Chaque écriture réussie
+ * est ajoutée au flux des changements (ChangeFeed) s'il est activé.
  */
 public class UserService {
     
     private final UserRepository userRepository;
+    private final SuggestIndex usernameSuggestions;
+    private final CountingBloomFilter usernameFilter;
+    private final CountingBloomFilter emailFilter;
+    private final RowCounts userCounts;
+    private final ChangeFeed changeFeed;
     
-    public UserService() {
-        this.userRepository = new UserRepository();
+    public UserService(UserRepository userRepository) {
+        this(userRepository, null, null, null, null, null);
     }
     
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, SuggestIndex usernameSuggestions,
+                       CountingBloomFilter usernameFilter, CountingBloomFilter emailFilter, RowCounts userCounts,
+                       ChangeFeed changeFeed) {
         this.userRepository = userRepository;
+        this.usernameSuggestions = usernameSuggestions;
+        this.usernameFilter = usernameFilter;
+        this.emailFilter = emailFilter;
+        this.userCounts = userCounts;
+        this.changeFeed = changeFeed;
     }
     
     /**
@@ -33,16 +56,35 @@ public class UserService {
         }
         
         // Vérifier si l'username existe déjà
-        if (userRepository.findByUsername(user.getUsername()).isPresent()) {
+        if (taken(usernameFilter, user.getUsername(), userRepository::findByUsername)) {
             throw new IllegalArgumentException("Le username existe déjà");
         }
         
         // Vérifier si l'email existe déjà
-        if (userRepository.findByEmail(user.getEmail()).isPresent()) {
+        if (taken(emailFilter, user.getEmail(), userRepository::findByEmail)) {
             throw new IllegalArgumentException("L'email existe déjà");
         }
         
-        return userRepository.save(user);
+        User createdUser;
+        try {
+            createdUser = userRepository.save(user);
+        } catch (RuntimeException e) {
+            throw uniquenessFailure(e, null, user.getUsername(), user.getEmail());
+        }
+        if (usernameSuggestions != null) {
+            usernameSuggestions.add(createdUser.getUsername());
+        }
+        if (usernameFilter != null) {
+            usernameFilter.add(createdUser.getUsername());
+        }
+        if (emailFilter != null) {
+            emailFilter.add(createdUser.getEmail());
+        }
+        if (userCounts != null) {
+            userCounts.add(null, false);
+        }
+        changed();
+        return createdUser;
     }
     
     /**
@@ -76,12 +118,14 @@ public class UserService {
         }
         
         User userToUpdate = existingUser.get();
+        String previousUsername = userToUpdate.getUsername();
+        String previousEmail = userToUpdate.getEmail();
         
         // Mettre à jour les champs non nuls
         if (user.getUsername() != null && !user.getUsername().trim().isEmpty()) {
             // Vérifier l'unicité si le username a changé
             if (!user.getUsername().equals(userToUpdate.getUsername())) {
-                if (userRepository.findByUsername(user.getUsername()).isPresent()) {
+                if (taken(usernameFilter, user.getUsername(), userRepository::findByUsername)) {
                     throw new IllegalArgumentException("Le username existe déjà");
                 }
             }
@@ -91,7 +135,7 @@ public class UserService {
         if (user.getEmail() != null && !user.getEmail().trim().isEmpty()) {
             // Vérifier l'unicité si l'email a changé
             if (!user.getEmail().equals(userToUpdate.getEmail())) {
-                if (userRepository.findByEmail(user.getEmail()).isPresent()) {
+                if (taken(emailFilter, user.getEmail(), userRepository::findByEmail)) {
                     throw new IllegalArgumentException("L'email existe déjà");
                 }
             }
@@ -106,7 +150,23 @@ public class UserService {
             userToUpdate.setLastName(user.getLastName());
         }
         
-        return userRepository.update(userToUpdate);
+        User updatedUser;
+        try {
+            updatedUser = userRepository.update(userToUpdate);
+        } catch (RuntimeException e) {
+            throw uniquenessFailure(e, id, userToUpdate.getUsername(), userToUpdate.getEmail());
+        }
+        if (usernameSuggestions != null) {
+            usernameSuggestions.replace(previousUsername, updatedUser.getUsername());
+        }
+        if (usernameFilter != null) {
+            usernameFilter.replace(previousUsername, updatedUser.getUsername());
+        }
+        if (emailFilter != null) {
+            emailFilter.replace(previousEmail, updatedUser.getEmail());
+        }
+        changed();
+        return updatedUser;
     }
     
     /**
@@ -119,13 +179,87 @@ public class UserService {
         }
         
         userRepository.deleteById(id);
+        if (usernameSuggestions != null) {
+            usernameSuggestions.remove(user.get().getUsername());
+        }
+        if (usernameFilter != null) {
+            usernameFilter.remove(user.get().getUsername());
+        }
+        if (emailFilter != null) {
+            emailFilter.remove(user.get().getEmail());
+        }
+        if (userCounts != null) {
+            userCounts.remove(null, false);
+        }
+        changed();
         return true;
     }
     
+    /**
+     * Noms d'utilisateur commençant par le préfixe (accents et casse ignorés) : arbre en mémoire
+     * s'il est prêt, sinon requête SQL par ordre alphabétique
+     */
+    public List<String> suggestUsernames(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new IllegalArgumentException("Le paramètre prefix est requis");
+        }
+        return usernameSuggestions != null && usernameSuggestions.isReady()
+                ? usernameSuggestions.suggest(prefix, limit)
+                : userRepository.suggestUsernames(prefix, limit);
+    }
+    
+    /**
+     * Vrai si la valeur est déjà prise ; sans lecture en base quand le filtre la sait absente
+     */
+    private boolean taken(CountingBloomFilter filter, String value, Function<String, Optional<User>> lookup) {
+        if (filter != null && !filter.mightContain(value)) {
+            return false;
+        }
+        boolean found = lookup.apply(value).isPresent();
+        if (filter != null) {
+            filter.recordLookup(found);
+        }
+        return found;
+    }
+    
+    private void changed() {
+        if (changeFeed != null) {
+            changeFeed.committed();
+        }
+    }
+    
+    /**
+     * Échec d'écriture : doublon (valeur prise entre la vérification et l'écriture, ou faux négatif
+     * du filtre) si la base contient la valeur chez un autre utilisateur, sinon l'erreur d'origine
+     */
+    private RuntimeException uniquenessFailure(RuntimeException failure, Long id, String username, String email) {
+        try {
+            if (userRepository.findByUsername(username).filter(other -> !Objects.equals(other.getId(), id)).isPresent()) {
+                return new IllegalArgumentException("Le username existe déjà");
+            }
+            if (userRepository.findByEmail(email).filter(other -> !Objects.equals(other.getId(), id)).isPresent()) {
+                return new IllegalArgumentException("L'email existe déjà");
+            }
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+    
     /**
      * Compte le nombre d'utilisateurs
      */
     public long countUsers() {
+        return countUsers(false);
+    }
+    
+    /**
+     * Compte les utilisateurs : compteur en mémoire s'il est prêt, sinon (ou en mode exact) requête COUNT
+     */
+    public long countUsers(boolean exact) {
+        if (!exact && userCounts != null && userCounts.isReady()) {
+            return userCounts.count(null, null);
+        }
         return userRepository.count();
     }
 }
@@ -0,0 +1,97 @@
+package com.example.sharding;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Générateur d'identifiants de produits indépendant des shards : 41 bits de millisecondes depuis
+ * le 01/01/2024, 7 bits de nœud (-Dshard.node.id, 0 à 127) et 5 bits de séquence. Les identifiants
+ * sont uniques entre instances sans accès à la base, croissants, et tiennent sur 53 bits (exacts en JSON).
+ * Le shard d'un produit est déduit de son identifiant (ShardMap) : un rééquilibrage ne le renumérote pas.
+ * Sans -Dshard.node.id, aucun identifiant n'est généré (deux instances pourraient partager un nœud)
+ * et le serveur refuse de démarrer.
+ */
+public final class ShardIds {
+
+    static final String NODE_PROPERTY = "shard.node.id";
+    static final long EPOCH_MILLIS = 1704067200000L;
+    static final int NODE_BITS = 7;
+    static final int SEQUENCE_BITS = 5;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final ShardIds INSTANCE = new ShardIds(null, System::currentTimeMillis);
+
+    // Lu à la première utilisation pour l'instance partagée
+    private Integer node;
+    private final LongSupplier clock;
+    private long lastMillis = -1L;
+    private long sequence;
+
+    ShardIds(int node, LongSupplier clock) {
+        this(Integer.valueOf(checked(node)), clock);
+    }
+
+    private ShardIds(Integer node, LongSupplier clock) {
+        this.node = node;
+        this.clock = clock;
+    }
+
+    public static ShardIds getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Identifiant suivant ; au-delà de 32 identifiants dans la même milliseconde, la milliseconde
+     * suivante est empruntée plutôt que d'attendre, et une horloge qui recule est ignorée
+     */
+    public synchronized long next() {
+        long nodeId = node();
+        long now = Math.max(clock.getAsLong() - EPOCH_MILLIS, lastMillis);
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                now++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = now;
+        return (now << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * Nœud de l'instance ; IllegalStateException si -Dshard.node.id n'est pas défini ou invalide
+     */
+    public synchronized int node() {
+        if (node == null) {
+            Integer configured = Integer.getInteger(NODE_PROPERTY);
+            if (configured == null) {
+                throw new IllegalStateException("-D" + NODE_PROPERTY + " non défini : à fixer par instance entre 0 et "
+                        + MAX_NODE + " pour générer des identifiants de produits uniques");
+            }
+            try {
+                node = checked(configured);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Nœud 0 si -Dshard.node.id n'est pas défini : réservé aux bases embarquées ou de test,
+     * alimentées par ce seul processus
+     */
+    public static void useSingleNodeUnlessConfigured() {
+        if (System.getProperty(NODE_PROPERTY) == null) {
+            System.setProperty(NODE_PROPERTY, "0");
+        }
+    }
+
+    private static int checked(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException(NODE_PROPERTY + " doit être compris entre 0 et " + MAX_NODE + " : " + node);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.sharding;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Répartition des produits : l'identifiant est haché vers l'un des BUCKETS buckets virtuels,
+ * et chaque bucket appartient à un shard. Ajouter ou retirer un shard ne déplace que des buckets
+ * entiers (ShardRebalancer) ; la table bucket → shard est persistée dans un fichier properties.
+ */
+public final class ShardMap {
+
+    public static final int BUCKETS = 256;
+
+    private final int shardCount;
+    private final int[] owners;
+
+    /**
+     * Répartition par défaut : le bucket b appartient au shard b % shardCount
+     */
+    public ShardMap(int shardCount) {
+        this(shardCount, defaultOwners(shardCount));
+    }
+
+    ShardMap(int shardCount, int[] owners) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Au moins un shard est requis : " + shardCount);
+        }
+        if (owners.length != BUCKETS) {
+            throw new IllegalArgumentException("Table de " + owners.length + " buckets, " + BUCKETS + " attendus");
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (owners[bucket] < 0 || owners[bucket] >= shardCount) {
+                throw new IllegalStateException("Bucket " + bucket + " attribué au shard " + owners[bucket]
+                        + " absent de la configuration (" + shardCount + " shards)");
+            }
+        }
+        this.shardCount = shardCount;
+        this.owners = owners.clone();
+    }
+
+    /**
+     * Bucket d'un identifiant ; le mélange (finaliseur de MurmurHash3) répartit uniformément
+     * des identifiants consécutifs
+     */
+    public static int bucketOf(long id) {
+        long hash = id;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) Long.remainderUnsigned(hash, BUCKETS);
+    }
+
+    public int shardOf(long id) {
+        return owners[bucketOf(id)];
+    }
+
+    public int ownerOf(int bucket) {
+        return owners[bucket];
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Répartition équilibrée sur targetShards shards déplaçant le moins de buckets possible :
+     * chaque shard garde ses buckets dans la limite de sa part, le surplus comble les shards en déficit
+     */
+    public ShardMap rebalanced(int targetShards) {
+        int[] counts = new int[targetShards];
+        int[] result = new int[BUCKETS];
+        int[] unassigned = new int[BUCKETS];
+        int unassignedCount = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            int owner = owners[bucket];
+            if (owner < targetShards && counts[owner] < capacity(owner, targetShards)) {
+                result[bucket] = owner;
+                counts[owner]++;
+            } else {
+                unassigned[unassignedCount++] = bucket;
+            }
+        }
+        int shard = 0;
+        for (int i = 0; i < unassignedCount; i++) {
+            while (counts[shard] >= capacity(shard, targetShards)) {
+                shard++;
+            }
+            result[unassigned[i]] = shard;
+            counts[shard]++;
+        }
+        return new ShardMap(targetShards, result);
+    }
+
+    /**
+     * Copie de cette répartition où les buckets donnés sont attribués comme dans target
+     */
+    ShardMap withOwners(ShardMap target, boolean[] buckets) {
+        int[] result = owners.clone();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (buckets[bucket]) {
+                result[bucket] = target.owners[bucket];
+            }
+        }
+        return new ShardMap(Math.max(shardCount, target.shardCount), result);
+    }
+
+    private static int capacity(int shard, int shardCount) {
+        return BUCKETS / shardCount + (shard < BUCKETS % shardCount ? 1 : 0);
+    }
+
+    private static int[] defaultOwners(int shardCount) {
+        int[] owners = new int[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            owners[bucket] = bucket % Math.max(1, shardCount);
+        }
+        return owners;
+    }
+
+    /**
+     * Charge la répartition (lignes "bucket.N=shard") ; un fichier absent donne la répartition par
+     * défaut, qui est alors écrite pour que les démarrages suivants ne dépendent plus du nombre de shards
+     */
+    public static ShardMap load(Path file, int shardCount) throws IOException {
+        if (!Files.exists(file)) {
+            ShardMap map = new ShardMap(shardCount);
+            if (shardCount > 1) {
+                map.save(file);
+            }
+            return map;
+        }
+        Properties properties = new Properties();
+        try (Reader input = Files.newBufferedReader(file)) {
+            properties.load(input);
+        }
+        int[] owners = new int[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            String owner = properties.getProperty("bucket." + bucket);
+            if (owner == null) {
+                throw new IllegalStateException("Bucket " + bucket + " absent de " + file);
+            }
+            owners[bucket] = Integer.parseInt(owner.trim());
+        }
+        return new ShardMap(shardCount, owners);
+    }
+
+    /**
+     * Écrit la répartition dans un fichier temporaire puis le renomme atomiquement
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            properties.setProperty("bucket." + bucket, Integer.toString(owners[bucket]));
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (Writer output = Files.newBufferedWriter(temporary)) {
+            properties.store(output, "Répartition bucket -> shard des produits (" + shardCount + " shards)");
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Nombre de buckets par shard
+     */
+    public Map<String, Object> describe() {
+        int[] counts = new int[shardCount];
+        Arrays.stream(owners).forEach(owner -> counts[owner]++);
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            result.put("shard" + shard, counts[shard]);
+        }
+        return result;
+    }
+}
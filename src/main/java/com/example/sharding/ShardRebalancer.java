@@ -0,0 +1,218 @@
+package com.example.sharding;
+
+import com.example.util.JPAUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rééquilibrage des produits entre shards, en JDBC, à exécuter pendant une fenêtre sans écriture
+ * sur les produits (les instances lisent la répartition au démarrage). Pour chaque shard source :
+ * 1. copie des lignes des buckets qui le quittent vers leur nouveau shard (remplace une copie antérieure)
+ * 2. enregistrement de la répartition, qui désigne désormais les nouveaux shards
+ * 3. suppression des lignes copiées, et des lignes laissées par une exécution interrompue
+ * Une exécution interrompue peut être relancée : chaque étape est rejouable.
+ */
+public class ShardRebalancer {
+
+    private static final Logger logger = Logger.getLogger(ShardRebalancer.class.getName());
+
+    private static final String COLUMNS = "id, name, description, price, quantity, category, created_at, updated_at, version";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM products";
+    private static final String INSERT = "INSERT INTO products (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE = "DELETE FROM products WHERE id = ?";
+    private static final int COLUMN_COUNT = 9;
+
+    /**
+     * Fournit une connexion JDBC vers un shard, fermée par le rééquilibrage
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection open(int shard) throws SQLException;
+    }
+
+    private final ConnectionSource connections;
+    private final int batchSize;
+
+    public ShardRebalancer(ConnectionSource connections, int batchSize) {
+        this.connections = connections;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Outil en ligne de commande (RestServer --rebalance-shards) : initialise JPA et les shards de
+     * -Dshard.config, puis répartit les produits sur -Dshard.rebalance.shards shards (par défaut tous
+     * ceux configurés ; pour retirer un shard, le garder configuré le temps du rééquilibrage).
+     * Retourne le code de sortie.
+     */
+    public static int run() {
+        try {
+            JPAUtil.init("example-pu", System.getProperty("flyway.config", "/app/config/flyway.conf"));
+            Path mapFile = JPAUtil.getShardMapFile();
+            if (mapFile == null) {
+                logger.severe("Aucun shard configuré (-Dshard.config)");
+                return 1;
+            }
+            int targetShards = Integer.getInteger("shard.rebalance.shards", JPAUtil.getShardCount());
+            new ShardRebalancer(JPAUtil::openConnection, Integer.getInteger("shard.rebalance.batch.size", 500))
+                    .rebalance(JPAUtil.getShardMap(), targetShards, mapFile);
+            return 0;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Échec du rééquilibrage des shards", e);
+            return 1;
+        } finally {
+            JPAUtil.closeEntityManagerFactory();
+        }
+    }
+
+    /**
+     * Répartit les buckets équitablement sur targetShards shards et y déplace les produits ;
+     * mapFile est réécrit après la copie de chaque shard source. Retourne la nouvelle répartition.
+     */
+    public ShardMap rebalance(ShardMap current, int targetShards, Path mapFile) throws SQLException, IOException {
+        ShardMap target = current.rebalanced(targetShards);
+        int shardCount = Math.max(current.getShardCount(), targetShards);
+        ShardMap applied = current;
+        long movedTotal = 0;
+        for (int source = 0; source < shardCount; source++) {
+            boolean[] leaving = new boolean[ShardMap.BUCKETS];
+            for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+                leaving[bucket] = applied.ownerOf(bucket) == source && target.ownerOf(bucket) != source;
+            }
+            // La répartition déjà appliquée : les copies reçues des shards précédents ne sont pas des restes
+            List<Long> moved = copyLeavingRows(source, applied, target, leaving);
+            applied = applied.withOwners(target, leaving);
+            applied.save(mapFile);
+            deleteRows(source, moved);
+            movedTotal += moved.size();
+        }
+        logger.log(Level.INFO, "Rééquilibrage terminé : {0} produit(s) traité(s), répartition {1}",
+                new Object[]{movedTotal, target.describe()});
+        return target;
+    }
+
+    /**
+     * Copie les lignes des buckets quittant le shard source ; retourne les identifiants à supprimer
+     * de la source (lignes copiées, et restes d'une exécution interrompue dont le bucket appartient
+     * déjà à un autre shard)
+     */
+    private List<Long> copyLeavingRows(int source, ShardMap applied, ShardMap target, boolean[] leaving)
+            throws SQLException {
+        List<Long> removable = new ArrayList<>();
+        Map<Integer, Connection> targets = new HashMap<>();
+        Map<Integer, List<Object[]>> pending = new HashMap<>();
+        int copied = 0;
+        try (Connection connection = connections.open(source)) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.setFetchSize(batchSize);
+                try (ResultSet rows = statement.executeQuery(SELECT)) {
+                    while (rows.next()) {
+                        long id = rows.getLong(1);
+                        int bucket = ShardMap.bucketOf(id);
+                        if (leaving[bucket]) {
+                            int destination = target.ownerOf(bucket);
+                            List<Object[]> batch = pending.computeIfAbsent(destination, shard -> new ArrayList<>());
+                            batch.add(row(rows));
+                            if (batch.size() >= batchSize) {
+                                copied += flush(targets, destination, batch);
+                            }
+                            removable.add(id);
+                        } else if (applied.ownerOf(bucket) != source) {
+                            removable.add(id);
+                        }
+                    }
+                }
+            }
+            connection.commit();
+            for (Map.Entry<Integer, List<Object[]>> batch : pending.entrySet()) {
+                copied += flush(targets, batch.getKey(), batch.getValue());
+            }
+        } finally {
+            for (Connection connection : targets.values()) {
+                connection.close();
+            }
+        }
+        if (!removable.isEmpty()) {
+            logger.log(Level.INFO, "Shard {0} : {1} produit(s) copié(s), {2} ligne(s) à supprimer",
+                    new Object[]{source, copied, removable.size()});
+        }
+        return removable;
+    }
+
+    private static Object[] row(ResultSet rows) throws SQLException {
+        Object[] values = new Object[COLUMN_COUNT];
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            values[column] = rows.getObject(column + 1);
+        }
+        return values;
+    }
+
+    /**
+     * Insère un lot dans son shard de destination (après suppression d'une éventuelle copie antérieure)
+     */
+    private int flush(Map<Integer, Connection> targets, int destination, List<Object[]> batch) throws SQLException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Connection connection = targets.get(destination);
+        if (connection == null) {
+            connection = connections.open(destination);
+            connection.setAutoCommit(false);
+            targets.put(destination, connection);
+        }
+        try (PreparedStatement delete = connection.prepareStatement(DELETE);
+             PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            for (Object[] values : batch) {
+                delete.setObject(1, values[0]);
+                delete.addBatch();
+                for (int column = 0; column < COLUMN_COUNT; column++) {
+                    insert.setObject(column + 1, values[column]);
+                }
+                insert.addBatch();
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private void deleteRows(int source, List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (Connection connection = connections.open(source)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement delete = connection.prepareStatement(DELETE)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    delete.setLong(1, ids.get(i));
+                    delete.addBatch();
+                    if ((i + 1) % batchSize == 0 || i == ids.size() - 1) {
+                        delete.executeBatch();
+                        connection.commit();
+                    }
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.sharding;
+
+import com.example.util.JPAUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Routage des opérations sur les produits : par identifiant vers le shard propriétaire (ShardMap),
+ * ou en scatter-gather sur tous les shards en parallèle. Le shard 0 est interrogé par le thread
+ * appelant, les autres par le pool "shard-query" (-Dshard.query.threads, 4 par shard supplémentaire),
+ * au plus -Dshard.query.timeout.ms (10000). Avec un seul shard, tout s'exécute sur le thread appelant.
+ */
+public final class ShardRouter {
+
+    private static final ShardRouter INSTANCE = new ShardRouter();
+
+    private final long timeoutMillis = Long.getLong("shard.query.timeout.ms", 10_000L);
+    private volatile ExecutorService executor;
+
+    private ShardRouter() {
+    }
+
+    public static ShardRouter getInstance() {
+        return INSTANCE;
+    }
+
+    public int shardOf(long id) {
+        return JPAUtil.getShardMap().shardOf(id);
+    }
+
+    /**
+     * Lecture sur le shard propriétaire de l'identifiant
+     */
+    public <T> T read(long id, Function<EntityManager, T> work) {
+        return JPAUtil.read(shardOf(id), work);
+    }
+
+    /**
+     * Lecture sur un shard donné
+     */
+    public <T> T readOnShard(int shard, Function<EntityManager, T> work) {
+        return JPAUtil.read(shard, work);
+    }
+
+    /**
+     * Écriture transactionnelle sur le shard propriétaire de l'identifiant ; annulée en cas d'erreur
+     */
+    public <T> T write(long id, Function<EntityManager, T> work) {
+        return writeOnShard(shardOf(id), work);
+    }
+
+    /**
+     * Écriture transactionnelle sur un shard donné ; annulée en cas d'erreur
+     */
+    public <T> T writeOnShard(int shard, Function<EntityManager, T> work) {
+        EntityManager em = JPAUtil.getEntityManager(shard);
+        EntityTransaction transaction = JPAUtil.getTransaction(em);
+        try {
+            transaction.begin();
+            T result = work.apply(em);
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            JPAUtil.closeEntityManager(em);
+        }
+    }
+
+    /**
+     * Exécute la lecture sur chaque shard en parallèle ; un résultat par shard, dans l'ordre des shards.
+     * L'échec ou le dépassement de délai d'un shard fait échouer l'ensemble (pas de résultat partiel).
+     */
+    public <T> List<T> scatter(Function<EntityManager, T> work) {
+        int shardCount = JPAUtil.getShardCount();
+        if (shardCount == 1) {
+            return List.of(JPAUtil.read(0, work));
+        }
+        ExecutorService pool = executor(shardCount);
+        List<Future<T>> futures = new ArrayList<>(shardCount - 1);
+        for (int shard = 1; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(pool.submit(() -> JPAUtil.read(target, work)));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        try {
+            results.add(JPAUtil.read(0, work));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(await(futures.get(i), i + 1, deadline));
+            }
+            return results;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static <T> T await(Future<T> future, int shard, long deadline) {
+        try {
+            return future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Requête sur le shard " + shard + " interrompue", e);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Délai dépassé pour la requête sur le shard " + shard, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime
+                    ? runtime
+                    : new RuntimeException("Échec de la requête sur le shard " + shard, e.getCause());
+        }
+    }
+
+    private ExecutorService executor(int shardCount) {
+        ExecutorService pool = executor;
+        if (pool == null) {
+            synchronized (this) {
+                pool = executor;
+                if (pool == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    pool = Executors.newFixedThreadPool(Integer.getInteger("shard.query.threads", 4 * (shardCount - 1)),
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "shard-query-" + counter.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    executor = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Concatène les résultats des shards
+     */
+    public static <T> List<T> concat(List<List<T>> results) {
+        List<T> merged = new ArrayList<>(results.stream().mapToInt(List::size).sum());
+        results.forEach(merged::addAll);
+        return merged;
+    }
+
+    /**
+     * Fusion k-voies de résultats déjà triés par chaque shard selon le même ordre
+     */
+    public static <T> List<T> mergeSorted(List<List<T>> results, Comparator<? super T> order) {
+        record Cursor<T>(List<T> rows, int index) {
+            T current() {
+                return rows.get(index);
+            }
+        }
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(Math.max(1, results.size()),
+                (left, right) -> order.compare(left.current(), right.current()));
+        results.stream().filter(rows -> !rows.isEmpty()).forEach(rows -> heads.add(new Cursor<>(rows, 0)));
+        List<T> merged = new ArrayList<>(results.stream().mapToInt(List::size).sum());
+        while (!heads.isEmpty()) {
+            Cursor<T> head = heads.poll();
+            merged.add(head.current());
+            if (head.index() + 1 < head.rows().size()) {
+                heads.add(new Cursor<>(head.rows(), head.index() + 1));
+            }
+        }
+        return merged;
+    }
+}
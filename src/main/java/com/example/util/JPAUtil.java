@@ -1,13 +1,45 @@
 package com.example.util;
 
+import com.example.config.RuntimeSettings;
+import com.example.monitoring.RequestTiming;
+import com.example.monitoring.StartupTimings;
+import com.example.sharding.ShardMap;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.NonUniqueResultException;
+import jakarta.persistence.PersistenceException;
 import jakarta.persistence.Persistence;
 import org.flywaydb.core.Flyway;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -15,36 +47,318 @@ import java.util.logging.Logger;
  */
 public class JPAUtil {
 
-    private static EntityManagerFactory entityManagerFactory;
+    // Publiée par le thread d'initialisation en arrière-plan, lue par les threads de requête
+    private static volatile EntityManagerFactory entityManagerFactory;
+    private static volatile ReadReplica readReplica;
+    private static volatile List<EntityManagerFactory> shardFactories = List.of();
+    private static volatile ShardMap shardMap = new ShardMap(1);
+    private static volatile Path shardMapFile;
+    private static volatile Flyway flyway;
+    private static volatile Flyway pooledFlyway;
+    private static final AtomicInteger openEntityManagers = new AtomicInteger();
+    private static final AtomicInteger activeTransactions = new AtomicInteger();
     private static final Logger logger = Logger.getLogger(JPAUtil.class.getName());
 
     /**
      * Initialise Flyway et JPA pour une persistence-unit donnée.
+     * Avec -Djpa.boot.mode=fast, les migrations et la construction de l'EntityManagerFactory
+     * s'exécutent en parallèle et Flyway est sauté si l'empreinte des migrations n'a pas changé.
      */
     public static void init(String persistenceUnitName, String flywayConfigPath) {
-        runFlywayMigrations(flywayConfigPath);
-        entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName);
+        init(persistenceUnitName, flywayConfigPath, Map.of());
     }
 
     /**
-     * Exécute les migrations Flyway à partir d'un fichier de configuration
-     * Le fichier peut être chargé depuis le classpath (pour la production) ou depuis le système de fichiers (pour les tests)
+     * Variante dont les propriétés JPA remplacent celles de persistence.xml (base embarquée par exemple).
+     * flywayConfigPath peut désigner une ressource du classpath avec le préfixe "classpath:".
      */
-private static void runFlywayMigrations(String configFilePath) {
-    Properties props = new Properties();
+    public static void init(String persistenceUnitName, String flywayConfigPath, Map<String, Object> overrides) {
+        long start = System.nanoTime();
+        Properties flywayProperties = loadFlywayConfig(flywayConfigPath);
+        if ("fast".equalsIgnoreCase(System.getProperty("jpa.boot.mode", "sequential"))) {
+            initFast(persistenceUnitName, flywayProperties, fingerprintFile(flywayConfigPath), overrides);
+        } else {
+            long phaseStart = System.nanoTime();
+            runFlywayMigrations(flywayProperties);
+            StartupTimings.record("flyway.migrate", phaseStart);
+            phaseStart = System.nanoTime();
+            entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName, overrides);
+            StartupTimings.record("jpa.emf", phaseStart);
+        }
+        initShards(persistenceUnitName, flywayProperties, overrides);
+        StartupTimings.record("jpa.init", start);
+        startReadReplica(overrides);
+    }
 
-    try (InputStream inputStream = new FileInputStream(configFilePath)) {
+    /**
+     * Avec -Dshard.config, fichier déclarant les shards supplémentaires des produits (shard.N.url,
+     * shard.N.user, shard.N.password pour N >= 1 ; le shard 0 est la base primaire) et le fichier de
+     * répartition shard.map.file (par défaut shard-map.properties à côté). Chaque shard est migré
+     * par Flyway et reçoit sa propre EntityManagerFactory ; les shards sont initialisés en parallèle.
+     */
+    private static void initShards(String persistenceUnitName, Properties flywayProperties,
+                                   Map<String, Object> overrides) {
+        String configPath = System.getProperty("shard.config", "");
+        if (configPath.isBlank() || !shardFactories.isEmpty()) {
+            return;
+        }
+        long phaseStart = System.nanoTime();
+        Path configFile = Path.of(configPath);
+        Properties config = new Properties();
+        try (InputStream inputStream = Files.newInputStream(configFile)) {
+            config.load(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException("Impossible de lire la configuration des shards " + configFile, e);
+        }
+        List<FutureTask<EntityManagerFactory>> tasks = new ArrayList<>();
+        for (int shard = 1; config.getProperty("shard." + shard + ".url") != null; shard++) {
+            FutureTask<EntityManagerFactory> task = new FutureTask<>(
+                    shardFactory(shard, config, persistenceUnitName, flywayProperties, overrides));
+            Thread thread = new Thread(task, "shard-init-" + shard);
+            thread.setDaemon(true);
+            thread.start();
+            tasks.add(task);
+        }
+        List<EntityManagerFactory> factories = new ArrayList<>();
+        try {
+            for (FutureTask<EntityManagerFactory> task : tasks) {
+                factories.add(task.get());
+            }
+            Path mapFile = Path.of(config.getProperty("shard.map.file",
+                    configFile.toAbsolutePath().resolveSibling("shard-map.properties").toString()));
+            shardMap = ShardMap.load(mapFile, factories.size() + 1);
+            shardMapFile = mapFile;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            factories.forEach(EntityManagerFactory::close);
+            throw new RuntimeException("Initialisation des shards interrompue", e);
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            factories.forEach(EntityManagerFactory::close);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new RuntimeException("Échec de l'initialisation des shards", cause);
+        }
+        shardFactories = List.copyOf(factories);
+        StartupTimings.record("jpa.shards", phaseStart);
+        logger.log(Level.INFO, "{0} shards de produits, répartition : {1}",
+                new Object[]{getShardCount(), shardMap.describe()});
+    }
 
-        logger.info("Chargement du fichier Flyway: " + configFilePath);
+    private static Callable<EntityManagerFactory> shardFactory(
+            int shard, Properties config, String persistenceUnitName, Properties flywayProperties,
+            Map<String, Object> overrides) {
+        String prefix = "shard." + shard + ".";
+        String url = config.getProperty(prefix + "url");
+        String user = config.getProperty(prefix + "user", flywayProperties.getProperty("flyway.user"));
+        String password = config.getProperty(prefix + "password", flywayProperties.getProperty("flyway.password"));
+        return () -> {
+            Properties shardFlyway = new Properties();
+            shardFlyway.putAll(flywayProperties);
+            shardFlyway.setProperty("flyway.url", url);
+            shardFlyway.setProperty("flyway.user", user);
+            shardFlyway.setProperty("flyway.password", password);
+            configureFlyway(shardFlyway).migrate();
+            Map<String, Object> properties = new HashMap<>(overrides);
+            properties.put("jakarta.persistence.jdbc.url", url);
+            properties.put("jakarta.persistence.jdbc.user", user);
+            properties.put("jakarta.persistence.jdbc.password", password);
+            properties.put("hibernate.hbm2ddl.auto", "none");
+            properties.put("hibernate.hikari.poolName", "example-shard-" + shard);
+            EntityManagerFactory factory = Persistence.createEntityManagerFactory(persistenceUnitName, properties);
+            logger.log(Level.INFO, "Shard {0} prêt : {1}", new Object[]{shard, url});
+            return factory;
+        };
+    }
 
-        props.load(inputStream);
+    /**
+     * Avec -Djpa.replica.url, construit en arrière-plan l'unité en lecture seule
+     * (jpa.replica.unit, par défaut "example-replica-pu") ; les lectures restent sur la base
+     * primaire tant qu'elle n'est pas prête ou si elle est injoignable ou en retard.
+     */
+    private static void startReadReplica(Map<String, Object> overrides) {
+        String url = System.getProperty("jpa.replica.url", "");
+        if (url.isBlank() || readReplica != null) {
+            return;
+        }
+        Map<String, Object> properties = new HashMap<>(overrides);
+        properties.put("jakarta.persistence.jdbc.url", url);
+        properties.put("hibernate.hbm2ddl.auto", "none");
+        properties.remove("hibernate.hikari.poolName");
+        String user = System.getProperty("jpa.replica.user");
+        if (user != null) {
+            properties.put("jakarta.persistence.jdbc.user", user);
+            properties.put("jakarta.persistence.jdbc.password", System.getProperty("jpa.replica.password", ""));
+        }
+        String lagQuery = System.getProperty("jpa.replica.lag.query",
+                url.startsWith("jdbc:postgresql:") ? ReadReplica.POSTGRES_LAG_QUERY : "");
+        Thread thread = new Thread(() -> {
+            long phaseStart = System.nanoTime();
+            try {
+                EntityManagerFactory factory = Persistence.createEntityManagerFactory(
+                        System.getProperty("jpa.replica.unit", "example-replica-pu"), properties);
+                ReadReplica replica = new ReadReplica(factory, lagQuery.isBlank() ? null : lagQuery,
+                        Long.getLong("jpa.replica.max.lag.ms", 1000L), Long.getLong("jpa.replica.retry.ms", 5000L));
+                replica.check(Integer.getInteger("health.check.timeout.seconds", 2));
+                replica.start(Long.getLong("jpa.replica.check.interval.ms", 1000L),
+                        Integer.getInteger("health.check.timeout.seconds", 2));
+                readReplica = replica;
+                StartupTimings.record("jpa.replica", phaseStart);
+                logger.log(Level.INFO, "Réplique en lecture seule prête : {0}", url);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Réplique indisponible, lectures sur la base primaire", e);
+            }
+        }, "replica-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-        logger.info("Flyway DB URL: " + props.getProperty("flyway.url"));
-        logger.info("Flyway DB User: " + props.getProperty("flyway.user"));
-        logger.info("Flyway DB password: " + props.getProperty("flyway.password"));
-                logger.info("Flyway DB location: " + props.getProperty("flyway.locations"));
+    /**
+     * Fichier d'empreinte des migrations : -Dflyway.fingerprint.file, sinon flyway.fingerprint à côté
+     * du fichier de configuration Flyway (répertoire monté, qui survit au conteneur) ; aucun pour
+     * une configuration du classpath, Flyway est alors toujours exécuté
+     */
+    static Path fingerprintFile(String flywayConfigPath) {
+        String configured = System.getProperty("flyway.fingerprint.file", "");
+        if (!configured.isBlank()) {
+            return Path.of(configured);
+        }
+        if (flywayConfigPath.startsWith("classpath:")) {
+            return null;
+        }
+        return Path.of(flywayConfigPath).toAbsolutePath().resolveSibling("flyway.fingerprint");
+    }
+
+    /**
+     * Démarrage rapide : Flyway sur un thread dédié pendant que Hibernate construit son métamodèle
+     * (sans validation du schéma), puis validation du schéma une fois les migrations terminées.
+     */
+    private static void initFast(String persistenceUnitName, Properties flywayProperties, Path fingerprintFile,
+                                 Map<String, Object> overrides) {
+        FutureTask<Boolean> migrations = new FutureTask<>(() -> {
+            long phaseStart = System.nanoTime();
+            boolean skipped = migrateUnlessUnchanged(flywayProperties, fingerprintFile);
+            StartupTimings.record("flyway", phaseStart);
+            return skipped;
+        });
+        Thread flywayThread = new Thread(migrations, "flyway-boot");
+        flywayThread.setDaemon(true);
+        flywayThread.start();
+
+        long phaseStart = System.nanoTime();
+        Map<String, Object> properties = new HashMap<>(overrides);
+        properties.put("hibernate.hbm2ddl.auto", "none");
+        EntityManagerFactory factory = Persistence.createEntityManagerFactory(persistenceUnitName, properties);
+        StartupTimings.record("jpa.emf", phaseStart);
+        try {
+            boolean skipped = migrations.get();
+            if (Boolean.parseBoolean(System.getProperty("jpa.boot.validate", "true"))
+                    && !"none".equals(overrides.get("hibernate.hbm2ddl.auto"))) {
+                phaseStart = System.nanoTime();
+                try {
+                    factory.unwrap(SessionFactory.class).getSchemaManager().validateMappedObjects();
+                } catch (RuntimeException e) {
+                    if (!skipped) {
+                        throw e;
+                    }
+                    // Empreinte trompeuse (base modifiée hors de Flyway) : une migration, puis validation
+                    logger.log(Level.WARNING, "Schéma invalide alors que Flyway a été sauté, migrations exécutées", e);
+                    migrate(flywayProperties, fingerprintFile);
+                    factory.unwrap(SessionFactory.class).getSchemaManager().validateMappedObjects();
+                }
+                StartupTimings.record("jpa.schema.validate", phaseStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            factory.close();
+            throw new RuntimeException("Démarrage JPA interrompu", e);
+        } catch (ExecutionException e) {
+            factory.close();
+            throw e.getCause() instanceof RuntimeException runtime
+                    ? runtime
+                    : new RuntimeException("Échec des migrations Flyway", e.getCause());
+        } catch (IOException e) {
+            factory.close();
+            throw new RuntimeException("Échec des migrations Flyway", e);
+        } catch (RuntimeException e) {
+            factory.close();
+            throw e;
+        }
+        entityManagerFactory = factory;
+    }
+
+    /**
+     * Saute Flyway si l'empreinte des migrations et la dernière ligne de l'historique de la base sont
+     * identiques à celles enregistrées après la dernière migration réussie ; vrai si Flyway a été sauté
+     */
+    private static boolean migrateUnlessUnchanged(Properties flywayProperties, Path fingerprintFile) throws IOException {
+        if (usesFingerprint(flywayProperties, fingerprintFile)) {
+            long phaseStart = System.nanoTime();
+            String fingerprint = MigrationFingerprint.compute(flywayProperties) + " "
+                    + MigrationFingerprint.lastApplied(flywayProperties);
+            StartupTimings.record("flyway.fingerprint", phaseStart);
+            if (fingerprint.equals(MigrationFingerprint.read(fingerprintFile))) {
+                // Configuré mais non exécuté : le moniteur de santé pourra toujours interroger l'historique
+                flyway = configureFlyway(flywayProperties);
+                logger.log(Level.INFO, "Empreinte des migrations inchangée ({0}), Flyway sauté", fingerprintFile);
+                return true;
+            }
+        }
+        migrate(flywayProperties, fingerprintFile);
+        return false;
+    }
 
-        Flyway flyway = Flyway.configure()
+    /**
+     * Exécute Flyway puis enregistre l'empreinte (scripts et dernière ligne de l'historique) s'il y a un fichier
+     */
+    private static void migrate(Properties flywayProperties, Path fingerprintFile) throws IOException {
+        long phaseStart = System.nanoTime();
+        runFlywayMigrations(flywayProperties);
+        StartupTimings.record("flyway.migrate", phaseStart);
+        if (usesFingerprint(flywayProperties, fingerprintFile)) {
+            MigrationFingerprint.write(fingerprintFile, MigrationFingerprint.compute(flywayProperties) + " "
+                    + MigrationFingerprint.lastApplied(flywayProperties));
+        }
+    }
+
+    private static boolean usesFingerprint(Properties flywayProperties, Path fingerprintFile) {
+        // Une base en mémoire est vide à chaque démarrage : l'empreinte ne prouve rien
+        return fingerprintFile != null && !flywayProperties.getProperty("flyway.url", "").startsWith("jdbc:h2:mem:");
+    }
+
+    /**
+     * Charge le fichier de configuration Flyway depuis le système de fichiers ou le classpath ("classpath:...")
+     */
+    private static Properties loadFlywayConfig(String configFilePath) {
+        long phaseStart = System.nanoTime();
+        Properties props = new Properties();
+        try (InputStream inputStream = openFlywayConfig(configFilePath)) {
+            logger.log(Level.INFO, "Chargement du fichier Flyway: {0}", configFilePath);
+            props.load(inputStream);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Impossible de lire la configuration Flyway", e);
+            throw new RuntimeException("Échec des migrations Flyway", e);
+        }
+        logger.log(Level.INFO, "Flyway DB URL: {0}, utilisateur: {1}, emplacements: {2}", new Object[]{
+                props.getProperty("flyway.url"),
+                props.getProperty("flyway.user"),
+                props.getProperty("flyway.locations")});
+        StartupTimings.record("flyway.config", phaseStart);
+        return props;
+    }
+
+    private static InputStream openFlywayConfig(String configFilePath) throws IOException {
+        if (!configFilePath.startsWith("classpath:")) {
+            return new FileInputStream(configFilePath);
+        }
+        String resource = configFilePath.substring("classpath:".length());
+        InputStream inputStream = JPAUtil.class.getResourceAsStream(resource.startsWith("/") ? resource : "/" + resource);
+        if (inputStream == null) {
+            throw new FileNotFoundException(configFilePath);
+        }
+        return inputStream;
+    }
+
+    private static Flyway configureFlyway(Properties props) {
+        return Flyway.configure()
                 .dataSource(
                         props.getProperty("flyway.url"),
                         props.getProperty("flyway.user"),
@@ -53,31 +367,278 @@ private static void runFlywayMigrations(String configFilePath) {
                 .locations(props.getProperty("flyway.locations"))
                 .baselineOnMigrate(Boolean.parseBoolean(props.getProperty("flyway.baselineOnMigrate", "true")))
                 .load();
-
-        flyway.migrate();
-        logger.info("Migrations Flyway exécutées avec succès.");
-
-    } catch (Exception e) {
-        logger.severe("Échec des migrations Flyway: " + e.getMessage());
-        throw new RuntimeException("Échec des migrations Flyway", e);
     }
-}
-
 
+    /**
+     * Exécute les migrations Flyway (la validation des checksums est faite par migrate())
+     */
+    private static void runFlywayMigrations(Properties props) {
+        try {
+            flyway = configureFlyway(props);
+            flyway.migrate();
+            logger.info("Migrations Flyway exécutées avec succès.");
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Échec des migrations Flyway", e);
+            throw new RuntimeException("Échec des migrations Flyway", e);
+        }
+    }
 
+    /**
+     * Propriétés JPA remplaçant la base PostgreSQL de persistence.xml par la base H2 en mémoire
+     * de classpath:vars/flyway_train.conf (exécution d'entraînement, benchmark)
+     */
+    public static Map<String, Object> embeddedDatabase() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("jakarta.persistence.jdbc.driver", "org.h2.Driver");
+        overrides.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:train;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        overrides.put("jakarta.persistence.jdbc.user", "sa");
+        overrides.put("jakarta.persistence.jdbc.password", "");
+        overrides.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        // Les colonnes SERIAL (integer) ne correspondent pas aux identifiants Long sous H2
+        overrides.put("hibernate.hbm2ddl.auto", "none");
+        overrides.put("hibernate.show_sql", "false");
+        return overrides;
+    }
 
     public static EntityManagerFactory getEntityManagerFactory() {
-        if (entityManagerFactory == null || !entityManagerFactory.isOpen()) {
+        EntityManagerFactory factory = entityManagerFactory;
+        if (factory == null || !factory.isOpen()) {
             throw new IllegalStateException("EntityManagerFactory non initialisée. Appeler JPAUtil.init(...) d'abord.");
         }
-        return entityManagerFactory;
+        return factory;
     }
 
     public static EntityManager getEntityManager() {
-        return getEntityManagerFactory().createEntityManager();
+        long start = RequestTiming.start();
+        EntityManager entityManager = getEntityManagerFactory().createEntityManager();
+        openEntityManagers.incrementAndGet();
+        RequestTiming.stop(RequestTiming.Phase.ENTITY_MANAGER, start);
+        return entityManager;
+    }
+
+    /**
+     * Exécute une lecture sur la réplique si elle est utilisable et que le thread n'exige pas la
+     * base primaire (ReadRouting), sinon sur la base primaire ; une erreur de la réplique
+     * l'écarte et la lecture est rejouée sur la base primaire. L'EntityManager est fermé ensuite.
+     */
+    public static <T> T read(Function<EntityManager, T> work) {
+        ReadReplica replica = readReplica;
+        if (replica != null && !ReadRouting.isPrimaryRequired() && replica.isUsable()) {
+            try {
+                return replica.read(work);
+            } catch (NoResultException | NonUniqueResultException e) {
+                throw e;
+            } catch (PersistenceException e) {
+                replica.markFailed(e);
+            }
+        }
+        EntityManager entityManager = getEntityManager();
+        try {
+            return work.apply(entityManager);
+        } finally {
+            closeEntityManager(entityManager);
+        }
+    }
+
+    /**
+     * Lecture sur un shard des produits ; le shard 0 (base primaire) peut être servi par la réplique
+     */
+    public static <T> T read(int shard, Function<EntityManager, T> work) {
+        if (shard == 0) {
+            return read(work);
+        }
+        EntityManager entityManager = getEntityManager(shard);
+        try {
+            return work.apply(entityManager);
+        } finally {
+            closeEntityManager(entityManager);
+        }
+    }
+
+    /**
+     * EntityManager d'un shard des produits ; le shard 0 est la base primaire
+     */
+    public static EntityManager getEntityManager(int shard) {
+        if (shard == 0) {
+            return getEntityManager();
+        }
+        long start = RequestTiming.start();
+        EntityManager entityManager = shardFactories.get(shard - 1).createEntityManager();
+        openEntityManagers.incrementAndGet();
+        RequestTiming.stop(RequestTiming.Phase.ENTITY_MANAGER, start);
+        return entityManager;
+    }
+
+    /**
+     * Connexion JDBC du pool d'un shard, à fermer par l'appelant (outil de rééquilibrage)
+     */
+    public static Connection openConnection(int shard) throws SQLException {
+        EntityManagerFactory factory = shard == 0 ? getEntityManagerFactory() : shardFactories.get(shard - 1);
+        return factory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+                .getService(ConnectionProvider.class).getConnection();
+    }
+
+    /**
+     * Nombre de shards des produits, base primaire comprise (1 sans -Dshard.config)
+     */
+    public static int getShardCount() {
+        return shardFactories.size() + 1;
+    }
+
+    public static ShardMap getShardMap() {
+        return shardMap;
+    }
+
+    /**
+     * Fichier de répartition des shards, ou null sans -Dshard.config
+     */
+    public static Path getShardMapFile() {
+        return shardMapFile;
+    }
+
+    /**
+     * État de la réplique (utilisable, retard, dernière erreur), ou null si aucune n'est configurée
+     */
+    public static Map<String, Object> describeReadReplica() {
+        ReadReplica replica = readReplica;
+        return replica != null ? replica.describe() : null;
+    }
+
+    /**
+     * Transaction de l'EntityManager, instrumentée (événements JFR de begin/commit/rollback)
+     */
+    public static EntityTransaction getTransaction(EntityManager entityManager) {
+        return new MonitoredTransaction(entityManager.getTransaction());
+    }
+
+    /**
+     * Retourne l'instance Flyway configurée par init(...), ou null si les migrations n'ont pas été exécutées
+     */
+    public static Flyway getFlyway() {
+        return flyway;
+    }
+
+    /**
+     * Flyway de getFlyway() lisant l'historique par le pool HikariCP de la base primaire (vérifications
+     * répétées) ; getFlyway() tant que le pool n'existe pas, null avant les migrations
+     */
+    public static Flyway getPooledFlyway() {
+        Flyway configured = flyway;
+        Flyway pooled = pooledFlyway;
+        if (configured == null || pooled != null) {
+            return configured == null ? null : pooled;
+        }
+        HikariDataSource dataSource = getHikariDataSource();
+        if (dataSource == null) {
+            return configured;
+        }
+        pooled = Flyway.configure().configuration(configured.getConfiguration()).dataSource(dataSource).load();
+        pooledFlyway = pooled;
+        return pooled;
+    }
+
+    /**
+     * Nombre d'EntityManager actuellement ouverts par l'application
+     */
+    public static int getOpenEntityManagerCount() {
+        return openEntityManagers.get();
+    }
+
+    /**
+     * Nombre de transactions commencées via getTransaction(...) et pas encore terminées
+     */
+    public static int getActiveTransactionCount() {
+        return activeTransactions.get();
+    }
+
+    static void transactionStarted() {
+        activeTransactions.incrementAndGet();
+    }
+
+    static void transactionEnded() {
+        activeTransactions.decrementAndGet();
+    }
+
+    /**
+     * Vérifie qu'une connexion JDBC du pool est valide dans le délai donné (en secondes)
+     */
+    public static boolean isDatabaseReachable(int timeoutSeconds) {
+        EntityManager em = getEntityManager();
+        try {
+            return em.unwrap(Session.class).doReturningWork(connection -> connection.isValid(timeoutSeconds));
+        } finally {
+            closeEntityManager(em);
+        }
+    }
+
+    /**
+     * Retourne les statistiques du pool HikariCP, ou null si un autre fournisseur de connexions est utilisé
+     */
+    public static HikariPoolMXBean getConnectionPool() {
+        HikariDataSource dataSource = getHikariDataSource();
+        return dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+    }
+
+    /**
+     * Taille maximale configurée du pool HikariCP, ou -1 si inconnue
+     */
+    public static int getMaximumPoolSize() {
+        HikariDataSource dataSource = getHikariDataSource();
+        return dataSource != null ? dataSource.getMaximumPoolSize() : -1;
+    }
+
+    /**
+     * Rend la taille et le délai d'attente du pool HikariCP modifiables via RuntimeSettings ;
+     * ils ne sont disponibles qu'une fois l'EntityManagerFactory construite
+     */
+    public static void registerRuntimeSettings(RuntimeSettings settings) {
+        settings.register("db.pool.max", 1, 500,
+                () -> poolSetting(HikariConfigMXBean::getMaximumPoolSize),
+                value -> requireConnectionPool().setMaximumPoolSize(value));
+        settings.register("db.pool.minIdle", 0, 500,
+                () -> poolSetting(HikariConfigMXBean::getMinimumIdle),
+                value -> requireConnectionPool().setMinimumIdle(value));
+        settings.register("db.pool.connectionTimeoutMs", 250, 600_000,
+                () -> poolSetting(config -> (int) config.getConnectionTimeout()),
+                value -> requireConnectionPool().setConnectionTimeout(value));
+        settings.requireAtMost("db.pool.minIdle", "db.pool.max");
+    }
+
+    private static int poolSetting(ToIntFunction<HikariConfigMXBean> getter) {
+        HikariDataSource dataSource = getHikariDataSource();
+        return dataSource != null ? getter.applyAsInt(dataSource.getHikariConfigMXBean()) : RuntimeSettings.UNAVAILABLE;
+    }
+
+    private static HikariConfigMXBean requireConnectionPool() {
+        HikariDataSource dataSource = getHikariDataSource();
+        if (dataSource == null) {
+            throw new IllegalStateException("Pool de connexions indisponible (JPA non initialisé)");
+        }
+        return dataSource.getHikariConfigMXBean();
+    }
+
+    private static HikariDataSource getHikariDataSource() {
+        EntityManagerFactory factory = entityManagerFactory;
+        if (factory == null || !factory.isOpen()) {
+            return null;
+        }
+        ConnectionProvider provider = factory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (provider != null && provider.isUnwrappableAs(HikariDataSource.class)) {
+            return provider.unwrap(HikariDataSource.class);
+        }
+        return null;
     }
 
     public static void closeEntityManagerFactory() {
+        ReadReplica replica = readReplica;
+        if (replica != null) {
+            readReplica = null;
+            replica.close();
+        }
+        List<EntityManagerFactory> shards = shardFactories;
+        shardFactories = List.of();
+        shards.stream().filter(EntityManagerFactory::isOpen).forEach(EntityManagerFactory::close);
         if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
             entityManagerFactory.close();
         }
@@ -86,6 +647,7 @@ private static void runFlywayMigrations(String configFilePath) {
     public static void closeEntityManager(EntityManager entityManager) {
         if (entityManager != null && entityManager.isOpen()) {
             entityManager.close();
+            openEntityManagers.decrementAndGet();
         }
     }
 }
@@ -0,0 +1,162 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Empreinte SHA-256 de la base cible (URL, utilisateur) et du contenu des scripts de migration,
+ * suivie de la dernière ligne de l'historique Flyway de la base. Si elle est identique à celle
+ * enregistrée après la dernière migration réussie, Flyway n'a rien à appliquer et peut être sauté
+ * au démarrage ; une base restaurée ou recréée depuis a un autre historique.
+ */
+final class MigrationFingerprint {
+
+    private MigrationFingerprint() {
+    }
+
+    static String compute(Properties flywayProperties) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, flywayProperties.getProperty("flyway.url"));
+        update(digest, flywayProperties.getProperty("flyway.user"));
+        String locations = flywayProperties.getProperty("flyway.locations", "classpath:db/migration");
+        for (String location : locations.split(",")) {
+            update(digest, location.trim());
+            for (Script script : listScripts(location.trim())) {
+                update(digest, script.name);
+                digest.update(script.content);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Dernière migration appliquée (rang, version, somme de contrôle, succès), lue dans l'historique
+     * Flyway de la base ; null si la table n'existe pas ou que la base est injoignable
+     */
+    static String lastApplied(Properties flywayProperties) {
+        String table = flywayProperties.getProperty("flyway.table", "flyway_schema_history");
+        try (Connection connection = DriverManager.getConnection(flywayProperties.getProperty("flyway.url"),
+                flywayProperties.getProperty("flyway.user"), flywayProperties.getProperty("flyway.password"));
+             Statement statement = connection.createStatement();
+             // Noms entre guillemets : Flyway les crée en minuscules, y compris sous H2
+             ResultSet resultSet = statement.executeQuery("SELECT \"installed_rank\", \"version\", \"checksum\", "
+                     + "\"success\" FROM \"" + table + "\" ORDER BY \"installed_rank\" DESC LIMIT 1")) {
+            return resultSet.next()
+                    ? resultSet.getInt(1) + ":" + resultSet.getString(2) + ":" + resultSet.getObject(3) + ":" + resultSet.getBoolean(4)
+                    : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Empreinte enregistrée, ou null si le fichier n'existe pas ou est illisible
+     */
+    static String read(Path file) {
+        try {
+            return Files.exists(file) ? Files.readString(file, StandardCharsets.UTF_8).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static void write(Path file, String fingerprint) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        Files.writeString(temporary, fingerprint, StandardCharsets.UTF_8);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<Script> listScripts(String location) throws IOException {
+        List<Script> scripts = new ArrayList<>();
+        if (location.startsWith("filesystem:")) {
+            addDirectory(Path.of(location.substring("filesystem:".length())), scripts);
+        } else {
+            String path = location.startsWith("classpath:") ? location.substring("classpath:".length()) : location;
+            path = path.startsWith("/") ? path.substring(1) : path;
+            Enumeration<URL> roots = MigrationFingerprint.class.getClassLoader().getResources(path);
+            while (roots.hasMoreElements()) {
+                addClasspathRoot(roots.nextElement(), path, scripts);
+            }
+        }
+        scripts.sort((left, right) -> left.name.compareTo(right.name));
+        return scripts;
+    }
+
+    private static void addDirectory(Path directory, List<Script> scripts) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                scripts.add(new Script(directory.relativize(file).toString().replace('\\', '/'),
+                        Files.readAllBytes(file)));
+            }
+        }
+    }
+
+    private static void addClasspathRoot(URL root, String path, List<Script> scripts) throws IOException {
+        if ("file".equals(root.getProtocol())) {
+            try {
+                addDirectory(Path.of(root.toURI()), scripts);
+            } catch (URISyntaxException e) {
+                throw new IOException("Emplacement de migrations invalide: " + root, e);
+            }
+        } else if ("jar".equals(root.getProtocol())) {
+            JarURLConnection connection = (JarURLConnection) root.openConnection();
+            connection.setUseCaches(false);
+            String prefix = path.endsWith("/") ? path : path + "/";
+            try (JarFile jar = connection.getJarFile()) {
+                for (JarEntry entry : Collections.list(jar.entries())) {
+                    if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+                        try (InputStream content = jar.getInputStream(entry)) {
+                            scripts.add(new Script(entry.getName().substring(prefix.length()), content.readAllBytes()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Script(String name, byte[] content) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.util;
+
+import com.example.monitoring.events.TransactionEvent;
+import jakarta.persistence.EntityTransaction;
+
+/**
+ * EntityTransaction qui émet un événement JFR de begin() jusqu'au commit ou rollback.
+ * Obtenue via JPAUtil.getTransaction(em) ; comptée dans JPAUtil.getActiveTransactionCount()
+ * pour que l'arrêt attende la fin des transactions en cours.
+ */
+class MonitoredTransaction implements EntityTransaction {
+
+    private final EntityTransaction delegate;
+    private TransactionEvent event;
+    private boolean counted;
+
+    MonitoredTransaction(EntityTransaction delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void begin() {
+        delegate.begin();
+        counted = true;
+        JPAUtil.transactionStarted();
+        if (TransactionEvent.TYPE.isEnabled()) {
+            event = new TransactionEvent();
+            event.begin();
+        }
+    }
+
+    @Override
+    public void commit() {
+        long start = System.nanoTime();
+        try {
+            delegate.commit();
+            complete("commit", System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            complete("commit_failed", System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void rollback() {
+        try {
+            delegate.rollback();
+        } finally {
+            complete("rollback", 0L);
+        }
+    }
+
+    @Override
+    public void setRollbackOnly() {
+        delegate.setRollbackOnly();
+    }
+
+    @Override
+    public boolean getRollbackOnly() {
+        return delegate.getRollbackOnly();
+    }
+
+    @Override
+    public boolean isActive() {
+        return delegate.isActive();
+    }
+
+    private void complete(String outcome, long commitNanos) {
+        if (counted) {
+            counted = false;
+            JPAUtil.transactionEnded();
+        }
+        TransactionEvent current = event;
+        event = null;
+        if (current != null) {
+            current.end();
+            if (current.shouldCommit()) {
+                current.outcome = outcome;
+                current.commitDuration = commitNanos;
+                current.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.util;
+
+import com.example.monitoring.RequestTiming;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Réplique en lecture seule : sondée périodiquement (connexion valide et retard de réplication),
+ * elle n'est utilisée que si elle est joignable et en retard de moins de maxLagMillis.
+ * Une erreur lors d'une lecture l'écarte pendant jpa.replica.retry.ms (5000 par défaut).
+ */
+class ReadReplica {
+
+    private static final Logger logger = Logger.getLogger(ReadReplica.class.getName());
+
+    /** Retard de réplication PostgreSQL en millisecondes ; 0 si tout le WAL reçu est rejoué */
+    static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private final EntityManagerFactory factory;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final long retryMillis;
+    private volatile boolean reachable = true;
+    private volatile long failedUntil;
+    private volatile long lagMillis;
+    private volatile String lastError;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param lagQuery requête retournant le retard en millisecondes, ou null pour ne vérifier que la connexion
+     */
+    ReadReplica(EntityManagerFactory factory, String lagQuery, long maxLagMillis, long retryMillis) {
+        this.factory = factory;
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLagMillis;
+        this.retryMillis = retryMillis;
+    }
+
+    boolean isUsable() {
+        return reachable && lagMillis <= maxLagMillis;
+    }
+
+    /**
+     * Exécute une lecture sur un EntityManager de la réplique, fermé ensuite
+     */
+    <T> T read(Function<EntityManager, T> work) {
+        long start = RequestTiming.start();
+        EntityManager entityManager = factory.createEntityManager();
+        RequestTiming.stop(RequestTiming.Phase.ENTITY_MANAGER, start);
+        try {
+            return work.apply(entityManager);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    void markFailed(RuntimeException error) {
+        if (reachable) {
+            logger.log(Level.WARNING, "Réplique écartée, lectures sur la base primaire : {0}", error.getMessage());
+        }
+        lastError = error.getMessage();
+        failedUntil = System.currentTimeMillis() + retryMillis;
+        reachable = false;
+    }
+
+    /**
+     * Sonde la réplique : connexion valide et retard de réplication
+     */
+    void check(int timeoutSeconds) {
+        if (System.currentTimeMillis() < failedUntil) {
+            return;
+        }
+        EntityManager entityManager = null;
+        try {
+            entityManager = factory.createEntityManager();
+            long lag = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+                if (!connection.isValid(timeoutSeconds)) {
+                    throw new IllegalStateException("Connexion à la réplique invalide");
+                }
+                if (lagQuery == null) {
+                    return 0L;
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.setQueryTimeout(timeoutSeconds);
+                    try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                        return resultSet.next() ? resultSet.getLong(1) : 0L;
+                    }
+                }
+            });
+            boolean wasUsable = isUsable();
+            lagMillis = lag;
+            reachable = true;
+            lastError = null;
+            if (!wasUsable && isUsable()) {
+                logger.info("Réplique de nouveau utilisée pour les lectures");
+            } else if (wasUsable && !isUsable()) {
+                logger.log(Level.WARNING, "Réplique en retard de {0} ms, lectures sur la base primaire", lag);
+            }
+        } catch (RuntimeException e) {
+            markFailed(e);
+        } finally {
+            if (entityManager != null) {
+                entityManager.close();
+            }
+        }
+    }
+
+    synchronized void start(long intervalMillis, int timeoutSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> check(timeoutSeconds), 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (factory.isOpen()) {
+            factory.close();
+        }
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("usable", isUsable());
+        result.put("reachable", reachable);
+        result.put("lagMs", lagMillis);
+        result.put("maxLagMs", maxLagMillis);
+        if (lastError != null) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+}
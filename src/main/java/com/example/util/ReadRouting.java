@@ -0,0 +1,40 @@
+package com.example.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Choix de la base pour les lectures du thread courant : la réplique par défaut, la base primaire
+ * pendant une requête d'écriture ou peu après une écriture du même client (voir ReadYourWritesFilter).
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private ReadRouting() {
+    }
+
+    public static void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get();
+    }
+
+    public static void reset() {
+        PRIMARY_REQUIRED.remove();
+    }
+
+    /**
+     * Exécute work avec les lectures sur la base primaire, puis rétablit le routage du thread
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        boolean required = isPrimaryRequired();
+        requirePrimary();
+        try {
+            return work.get();
+        } finally {
+            PRIMARY_REQUIRED.set(required);
+        }
+    }
+}
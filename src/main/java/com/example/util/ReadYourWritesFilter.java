@@ -0,0 +1,73 @@
+package com.example.util;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Cookie;
+import jakarta.ws.rs.core.NewCookie;
+import jakarta.ws.rs.ext.Provider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lecture de ses propres écritures malgré le retard de la réplique : une requête d'écriture lit
+ * sur la base primaire, et sa réponse pose un cookie qui y renvoie les lectures du même client
+ * pendant jpa.replica.sticky.ms (5000 par défaut).
+ */
+@Provider
+@Priority(Priorities.USER)
+public class ReadYourWritesFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    static final String COOKIE_NAME = "read-primary-until";
+
+    private final long stickyMillis;
+
+    public ReadYourWritesFilter() {
+        this(Long.getLong("jpa.replica.sticky.ms", 5000L));
+    }
+
+    public ReadYourWritesFilter(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        ReadRouting.reset();
+        if (isWrite(requestContext.getMethod()) || isSticky(requestContext.getCookies().get(COOKIE_NAME))) {
+            ReadRouting.requirePrimary();
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (isWrite(requestContext.getMethod()) && responseContext.getStatus() < 400 && stickyMillis > 0) {
+            long until = System.currentTimeMillis() + stickyMillis;
+            responseContext.getHeaders().add("Set-Cookie", new NewCookie.Builder(COOKIE_NAME)
+                    .value(Long.toString(until))
+                    .path("/")
+                    .maxAge((int) Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(stickyMillis + 999)))
+                    .httpOnly(true)
+                    .build());
+        }
+        ReadRouting.reset();
+    }
+
+    private static boolean isWrite(String method) {
+        return !HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method) && !HttpMethod.OPTIONS.equals(method);
+    }
+
+    private static boolean isSticky(Cookie cookie) {
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
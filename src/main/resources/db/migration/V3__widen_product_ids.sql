@@ -0,0 +1,2 @@
+-- Identifiants de produits générés par l'application (ShardIds) sur 53 bits : BIGINT requis
+ALTER TABLE products ALTER COLUMN id SET DATA TYPE BIGINT;
@@ -0,0 +1,5 @@
+-- Dernier segment du journal d'écriture différée des stocks appliqué, par instance (StockWriteBehind)
+CREATE TABLE IF NOT EXISTS stock_journal_checkpoints (
+    journal VARCHAR(100) PRIMARY KEY,
+    segment BIGINT NOT NULL
+);
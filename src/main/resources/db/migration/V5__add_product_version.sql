@@ -0,0 +1,2 @@
+-- Version du produit pour le verrouillage optimiste (@Version), incrémentée à chaque écriture
+ALTER TABLE products ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,11 @@
+-- Journal des écritures sur les produits et les utilisateurs, numérotées par seq (ChangeFeed) ;
+-- alimenté sur la base primaire uniquement, la table reste vide sur les autres shards
+CREATE TABLE IF NOT EXISTS change_feed (
+    seq BIGSERIAL PRIMARY KEY,
+    entity VARCHAR(20) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_feed_changed_at ON change_feed (changed_at);
@@ -0,0 +1,19 @@
+-- Changements écrits dans la transaction de l'écriture, sur le shard de l'entité, pas encore
+-- numérotés ; déplacés vers change_feed (base primaire), qui leur attribue seq (ChangeFeed)
+CREATE TABLE IF NOT EXISTS change_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    entity VARCHAR(20) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Dernier seq attribué ; sa ligne, verrouillée pendant un déplacement, n'en laisse passer qu'un à la fois
+CREATE TABLE IF NOT EXISTS change_feed_head (
+    id INT PRIMARY KEY,
+    seq BIGINT NOT NULL
+);
+
+INSERT INTO change_feed_head (id, seq)
+SELECT 1, COALESCE(MAX(seq), 0) FROM change_feed
+WHERE NOT EXISTS (SELECT 1 FROM change_feed_head WHERE id = 1);
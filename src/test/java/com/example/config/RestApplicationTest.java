@@ -0,0 +1,30 @@
+package com.example.config;
+
+import com.example.controller.HealthCheckController;
+import com.example.controller.ProductController;
+import com.example.controller.UserController;
+import com.example.security.AdminTokenFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour RestApplication
+ */
+class RestApplicationTest {
+
+    @Test
+    @DisplayName("Test contrôleurs enregistrés comme instances uniques")
+    void testControllersAreSingletons() {
+        // Act
+        RestApplication application = new RestApplication();
+
+        // Assert : les contrôleurs sont des instances, les filtres restent des classes
+        assertTrue(application.getInstances().stream().anyMatch(UserController.class::isInstance));
+        assertTrue(application.getInstances().stream().anyMatch(ProductController.class::isInstance));
+        assertTrue(application.getInstances().stream().anyMatch(HealthCheckController.class::isInstance));
+        assertFalse(application.getClasses().contains(UserController.class));
+        assertTrue(application.getClasses().contains(AdminTokenFilter.class));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour RuntimeSettings et RuntimeSettingsWatcher
+ */
+class RuntimeSettingsTest {
+
+    @Test
+    @DisplayName("Test modification validée, appliquée et rapportée")
+    @SuppressWarnings("unchecked")
+    void testApplyReportsChanges() {
+        // Arrange
+        RuntimeSettings settings = new RuntimeSettings();
+        AtomicInteger workers = new AtomicInteger(8);
+        settings.register("server.workers.max", 1, 64, workers::get, workers::set);
+
+        // Act
+        Map<String, Object> report = settings.apply(Map.of("server.workers.max", "32"));
+        Map<String, Object> again = settings.apply(Map.of("server.workers.max", "32"));
+
+        // Assert
+        assertEquals(32, workers.get());
+        Map<String, Object> entry = (Map<String, Object>) report.get("server.workers.max");
+        assertEquals(8, entry.get("previous"));
+        assertEquals(32, entry.get("value"));
+        assertEquals(Map.of("unchanged", 32), again.get("server.workers.max"));
+    }
+
+    @Test
+    @DisplayName("Test rejet complet si une valeur est invalide ; ordre d'application des bornes")
+    void testValidationAndOrdering() {
+        // Arrange : minIdle <= max, les deux diminuent
+        RuntimeSettings settings = new RuntimeSettings();
+        AtomicInteger max = new AtomicInteger(10);
+        AtomicInteger minIdle = new AtomicInteger(8);
+        List<String> applied = new ArrayList<>();
+        settings.register("db.pool.max", 1, 100, max::get, value -> {
+            assertTrue(minIdle.get() <= value, "minIdle doit diminuer d'abord");
+            applied.add("max");
+            max.set(value);
+        });
+        settings.register("db.pool.minIdle", 0, 100, minIdle::get, value -> {
+            applied.add("minIdle");
+            minIdle.set(value);
+        });
+        settings.requireAtMost("db.pool.minIdle", "db.pool.max");
+
+        // Act & Assert : inconnu, hors bornes et contrainte violée -> rien n'est appliqué
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> settings.apply(Map.of("db.pool.max", "200", "cache.size", "10")));
+        assertTrue(error.getMessage().contains("cache.size"));
+        assertThrows(IllegalArgumentException.class, () -> settings.apply(Map.of("db.pool.max", "5")));
+        assertTrue(applied.isEmpty());
+
+        settings.apply(Map.of("db.pool.max", "4", "db.pool.minIdle", "2"));
+        assertEquals(List.of("minIdle", "max"), applied);
+        assertEquals(4, max.get());
+    }
+
+    @Test
+    @DisplayName("Test rechargement du fichier de paramètres")
+    void testWatcherReload(@TempDir Path directory) throws Exception {
+        RuntimeSettings settings = new RuntimeSettings();
+        AtomicInteger queueLimit = new AtomicInteger(-1);
+        settings.register("server.workers.queueLimit", -1, 10_000, queueLimit::get, queueLimit::set);
+        Path file = directory.resolve("runtime.properties");
+        Files.writeString(file, "server.workers.queueLimit=500\n");
+        RuntimeSettingsWatcher watcher = new RuntimeSettingsWatcher(file, settings);
+
+        assertNotNull(watcher.reload());
+        assertEquals(500, queueLimit.get());
+
+        Files.writeString(file, "server.workers.queueLimit=abc\n");
+        assertNull(watcher.reload());
+        assertEquals(500, queueLimit.get());
+    }
+}
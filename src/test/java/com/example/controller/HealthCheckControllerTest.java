@@ -0,0 +1,143 @@
+package com.example.controller;
+
+import com.example.lifecycle.ApplicationLifecycle;
+import com.example.monitoring.HealthMonitor;
+import com.example.monitoring.HealthReport;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour HealthCheckController
+ */
+@ExtendWith(MockitoExtension.class)
+class HealthCheckControllerTest {
+
+    @Mock
+    private HealthMonitor healthMonitor;
+
+    @Mock
+    private ApplicationLifecycle lifecycle;
+
+    @InjectMocks
+    private HealthCheckController healthCheckController;
+
+    private static HealthReport report(HealthReport.Status status) {
+        return new HealthReport(status, System.currentTimeMillis(), 1.5, Collections.emptyMap());
+    }
+
+    @Test
+    @DisplayName("Test GET /actuator/health - Rapport en cache servi sans vérification")
+    void testHealth_ServesCachedReport() {
+        // Arrange
+        HealthReport report = report(HealthReport.Status.DOWN);
+        when(healthMonitor.isStale()).thenReturn(false);
+        when(healthMonitor.getLastReport()).thenReturn(report);
+
+        // Act
+        Response response = healthCheckController.health();
+
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertSame(report.toMap(), response.getEntity());
+        assertEquals(1.5, ((Map<?, ?>) response.getEntity()).get("latencyMs"));
+    }
+
+    @Test
+    @DisplayName("Test GET /actuator/health - Moniteur bloqué")
+    void testHealth_StaleMonitor() {
+        // Arrange
+        when(healthMonitor.isStale()).thenReturn(true);
+
+        // Act
+        Response response = healthCheckController.health();
+
+        // Assert
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        verify(healthMonitor, never()).getLastReport();
+    }
+
+    @Test
+    @DisplayName("Test GET /actuator/health/readiness - Service prêt")
+    void testReadiness_Up() {
+        // Arrange
+        when(lifecycle.isReady()).thenReturn(true);
+        when(healthMonitor.getLastReport()).thenReturn(report(HealthReport.Status.DEGRADED));
+        when(healthMonitor.isStale()).thenReturn(false);
+
+        // Act
+        Response response = healthCheckController.readiness();
+
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Test GET /actuator/health/readiness - Base indisponible")
+    void testReadiness_Down() {
+        // Arrange
+        when(lifecycle.isReady()).thenReturn(true);
+        when(healthMonitor.getLastReport()).thenReturn(report(HealthReport.Status.DOWN));
+
+        // Act
+        Response response = healthCheckController.readiness();
+
+        // Assert
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Test GET /actuator/health/readiness - Avant la première vérification")
+    void testReadiness_Unknown() {
+        // Arrange
+        when(lifecycle.isReady()).thenReturn(true);
+        when(healthMonitor.getLastReport()).thenReturn(HealthReport.unknown());
+
+        // Act
+        Response response = healthCheckController.readiness();
+
+        // Assert
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Test GET /actuator/health/readiness - JPA en cours d'initialisation")
+    void testReadiness_Starting() {
+        // Arrange
+        when(lifecycle.isReady()).thenReturn(false);
+        when(lifecycle.getRetryAfterSeconds()).thenReturn(3L);
+        when(lifecycle.describe()).thenReturn(Map.of("state", "STARTING"));
+
+        // Act
+        Response response = healthCheckController.readiness();
+
+        // Assert
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertEquals("3", response.getHeaderString("Retry-After"));
+        verify(healthMonitor, never()).getLastReport();
+    }
+
+    @Test
+    @DisplayName("Test GET /actuator/health - Initialisation abandonnée")
+    void testHealth_Failed() {
+        // Arrange
+        when(lifecycle.getState()).thenReturn(ApplicationLifecycle.State.FAILED);
+        when(lifecycle.describe()).thenReturn(Map.of("state", "FAILED"));
+
+        // Act
+        Response response = healthCheckController.health();
+
+        // Assert
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+    }
+}
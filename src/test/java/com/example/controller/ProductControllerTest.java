@@ -1,12 +1,17 @@
 package com.example.controller;
 
+import com.example.feed.ChangeFeed;
 import com.example.model.Product;
+import com.example.service.InsufficientStockException;
 import com.example.service.ProductService;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.core.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -15,11 +20,14 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -31,6 +39,9 @@ class ProductControllerTest {
     @Mock
     private ProductService productService;
     
+    @Mock
+    private ChangeFeed changeFeed;
+    
     @InjectMocks
     private ProductController productController;
     
@@ -227,7 +238,7 @@ class ProductControllerTest {
         when(productService.getProductsByMaxPrice(maxPrice)).thenReturn(products);
         
         // Act
-        Response response = productController.getProductsByMaxPrice(maxPrice);
+        Response response = productController.getProductsByMaxPrice(maxPrice, null);
         
         // Assert
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
@@ -235,18 +246,196 @@ class ProductControllerTest {
         verify(productService, times(1)).getProductsByMaxPrice(maxPrice);
     }
     
+    @Test
+    @DisplayName("Test GET /api/products/price/{maxPrice}?limit=N - Produits les moins chers")
+    void testGetCheapestProductsByMaxPrice() {
+        // Arrange
+        BigDecimal maxPrice = new BigDecimal("1000.00");
+        when(productService.getProductsByMaxPrice(maxPrice, 5)).thenReturn(List.of(testProduct));
+        
+        // Act
+        Response response = productController.getProductsByMaxPrice(maxPrice, 5);
+        Response invalid = productController.getProductsByMaxPrice(maxPrice, 0);
+        
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), invalid.getStatus());
+        verify(productService, times(1)).getProductsByMaxPrice(maxPrice, 5);
+    }
+
+    @Test
+    @DisplayName("Test GET /api/products/fulltext - Recherche plein texte")
+    void testFullTextSearch() {
+        // Arrange
+        when(productService.fullTextSearch("clavier", 20)).thenReturn(List.of(testProduct));
+        when(productService.fullTextSearch(null, 20))
+                .thenThrow(new IllegalArgumentException("Le paramètre q est requis"));
+
+        // Act
+        Response response = productController.fullTextSearch("clavier", null);
+        Response missingQuery = productController.fullTextSearch(null, null);
+        Response invalidLimit = productController.fullTextSearch("clavier", 0);
+
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(List.of(testProduct), response.getEntity());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), missingQuery.getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), invalidLimit.getStatus());
+        verify(productService, never()).fullTextSearch("clavier", 0);
+    }
+
+    @Test
+    @DisplayName("Test GET /api/products/suggest - Autocomplétion des noms")
+    void testSuggestProductNames() {
+        // Arrange
+        when(productService.suggestProductNames("cla", 10)).thenReturn(List.of("Clavier", "Clavier mécanique"));
+        when(productService.suggestProductNames(" ", 10))
+                .thenThrow(new IllegalArgumentException("Le paramètre prefix est requis"));
+
+        // Act
+        Response response = productController.suggestProductNames("cla", null);
+        Response blankPrefix = productController.suggestProductNames(" ", null);
+        Response invalidLimit = productController.suggestProductNames("cla", 0);
+
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(List.of("Clavier", "Clavier mécanique"), response.getEntity());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), blankPrefix.getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), invalidLimit.getStatus());
+        verify(productService, never()).suggestProductNames("cla", 0);
+    }
+
+    @Test
+    @DisplayName("Test GET /api/products/search - Recherche multicritère")
+    void testSearchProducts() {
+        // Arrange
+        BigDecimal minPrice = new BigDecimal("10");
+        BigDecimal maxPrice = new BigDecimal("5");
+        when(productService.searchProducts("Electronics", true, minPrice, null)).thenReturn(List.of(testProduct));
+        when(productService.searchProducts(null, null, minPrice, maxPrice))
+                .thenThrow(new IllegalArgumentException("minPrice doit être inférieur ou égal à maxPrice"));
+
+        // Act
+        Response response = productController.searchProducts("Electronics", true, minPrice, null);
+        Response invalid = productController.searchProducts(null, null, minPrice, maxPrice);
+
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(List.of(testProduct), response.getEntity());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), invalid.getStatus());
+    }
+
+    @Test
+    @DisplayName("Test GET /api/products/stats - Statistiques d'inventaire")
+    void testGetInventoryStats() {
+        // Arrange
+        Map<String, Object> stats = Map.of("products", 1L, "totalValue", new BigDecimal("99.90"));
+        when(productService.getInventoryStats()).thenReturn(stats);
+
+        // Act
+        Response response = productController.getInventoryStats();
+
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(stats, response.getEntity());
+        verify(productService, times(1)).getInventoryStats();
+    }
+
     @Test
     @DisplayName("Test GET /api/products/count - Compter les produits")
     void testCountProducts() {
         // Arrange
-        when(productService.countProducts()).thenReturn(10L);
+        when(productService.countProducts(null, null, false)).thenReturn(10L);
+        when(productService.countProducts("Electronics", true, true)).thenReturn(4L);
         
         // Act
-        Response response = productController.countProducts();
+        Response response = productController.countProducts(null, null, null);
+        Response filtered = productController.countProducts("Electronics", true, true);
         
         // Assert
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
         assertNotNull(response.getEntity());
-        verify(productService, times(1)).countProducts();
+        assertEquals("{\"count\": 4}", filtered.getEntity());
+        verify(productService, times(1)).countProducts(null, null, false);
+    }
+    
+    @Test
+    @DisplayName("Test PUT /api/products/{id} - Version périmée refusée (409)")
+    void testUpdateProduct_Conflict() {
+        // Arrange
+        when(productService.updateProduct(eq(1L), any(Product.class)))
+                .thenThrow(new OptimisticLockException("Le produit 1 a été modifié entre-temps"));
+        
+        // Act
+        Response response = productController.updateProduct(1L, testProduct);
+        
+        // Assert
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), response.getStatus());
+    }
+    
+    @Test
+    @DisplayName("Test PATCH /api/products/{id}/stock - Ajustement du stock")
+    void testAdjustStock_Success() {
+        // Arrange
+        when(productService.adjustStock(1L, -3)).thenReturn(7);
+        
+        // Act
+        Response response = productController.adjustStock(1L, Map.of("delta", -3));
+        
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals("{\"id\": 1, \"quantity\": 7}", response.getEntity());
+    }
+    
+    @Test
+    @DisplayName("Test PATCH /api/products/{id}/stock - Stock insuffisant (409), produit absent (404), autre erreur (500)")
+    void testAdjustStock_Rejected() {
+        // Arrange
+        when(productService.adjustStock(1L, -20)).thenThrow(new InsufficientStockException(1L));
+        when(productService.adjustStock(999L, 1)).thenThrow(new NoSuchElementException("Produit non trouvé avec l'ID: 999"));
+        when(productService.adjustStock(2L, 1)).thenThrow(new IllegalStateException("Pool de connexions fermé"));
+        
+        // Act
+        Response insufficient = productController.adjustStock(1L, Map.of("delta", -20));
+        Response missing = productController.adjustStock(999L, Map.of("delta", 1));
+        Response invalid = productController.adjustStock(1L, Map.of("delta", "beaucoup"));
+        Response failed = productController.adjustStock(2L, Map.of("delta", 1));
+        
+        // Assert
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), insufficient.getStatus());
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), missing.getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), invalid.getStatus());
+        assertEquals(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), failed.getStatus());
+        verify(productService, never()).adjustStock(eq(1L), eq(0));
+    }
+    
+    @Test
+    @DisplayName("Test GET /api/products/changes - Flux indisponible (503), seq courant sans since, since invalide (400)")
+    void testGetProductChanges_ImmediateAnswers() {
+        // Arrange
+        AsyncResponse unavailable = mock(AsyncResponse.class);
+        AsyncResponse current = mock(AsyncResponse.class);
+        AsyncResponse invalid = mock(AsyncResponse.class);
+        when(changeFeed.isReady()).thenReturn(false, true, true);
+        when(changeFeed.lastSeq()).thenReturn(42L);
+        
+        // Act
+        productController.getProductChanges(0L, null, null, unavailable);
+        productController.getProductChanges(null, null, null, current);
+        productController.getProductChanges(-1L, null, null, invalid);
+        
+        // Assert
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), resumed(unavailable).getStatus());
+        Response page = resumed(current);
+        assertEquals(Response.Status.OK.getStatusCode(), page.getStatus());
+        assertEquals(Map.of("changes", List.of(), "next", 42L), page.getEntity());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), resumed(invalid).getStatus());
+        verifyNoInteractions(productService);
+    }
+    
+    private static Response resumed(AsyncResponse asyncResponse) {
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(asyncResponse).resume(response.capture());
+        return response.getValue();
     }
 }
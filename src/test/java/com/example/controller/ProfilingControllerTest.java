@@ -0,0 +1,96 @@
+package com.example.controller;
+
+import com.example.monitoring.Profiler;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour ProfilingController
+ */
+@ExtendWith(MockitoExtension.class)
+class ProfilingControllerTest {
+
+    @Mock
+    private AsyncResponse asyncResponse;
+
+    private Response resumedResponse(AsyncResponse response) {
+        ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    @DisplayName("Test GET /admin/profiling/threads - Dump des threads")
+    void testThreadDump() {
+        // Arrange
+        ProfilingController controller = new ProfilingController(new Profiler(Runnable::run));
+
+        // Act
+        controller.getThreadDump(asyncResponse);
+
+        // Assert
+        Response response = resumedResponse(asyncResponse);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertTrue(response.getEntity().toString().contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    @DisplayName("Test capture concurrente - Une seule capture à la fois")
+    void testCaptureRejectedWhenBusy() {
+        // Arrange : le thread du profiler n'exécute pas encore la première capture
+        List<Runnable> pending = new ArrayList<>();
+        ProfilingController controller = new ProfilingController(new Profiler(pending::add));
+        AsyncResponse secondResponse = mock(AsyncResponse.class);
+
+        // Act
+        controller.getThreadDump(asyncResponse);
+        controller.getThreadDump(secondResponse);
+
+        // Assert
+        assertEquals(429, resumedResponse(secondResponse).getStatus());
+        verify(asyncResponse, never()).resume(any(Response.class));
+
+        pending.get(0).run();
+        assertEquals(Response.Status.OK.getStatusCode(), resumedResponse(asyncResponse).getStatus());
+    }
+
+    @Test
+    @DisplayName("Test POST /admin/profiling/recording - Durée invalide")
+    void testStartRecording_InvalidDuration() {
+        // Arrange
+        ProfilingController controller = new ProfilingController(new Profiler(Runnable::run));
+
+        // Act
+        controller.startRecording(3600, asyncResponse);
+
+        // Assert
+        Response response = resumedResponse(asyncResponse);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        assertTrue(response.getEntity().toString().contains("error"));
+    }
+
+    @Test
+    @DisplayName("Test DELETE /admin/profiling/recording - Aucun enregistrement")
+    void testStopRecording_NoRecording() {
+        // Arrange
+        ProfilingController controller = new ProfilingController(new Profiler(Runnable::run));
+
+        // Act
+        controller.stopRecording(asyncResponse);
+
+        // Assert
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), resumedResponse(asyncResponse).getStatus());
+    }
+}
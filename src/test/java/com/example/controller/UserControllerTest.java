@@ -181,18 +181,39 @@ class UserControllerTest {
         verify(userService, times(1)).deleteUser(999L);
     }
     
+    @Test
+    @DisplayName("Test GET /api/users/suggest - Autocomplétion des noms d'utilisateur")
+    void testSuggestUsernames() {
+        // Arrange
+        when(userService.suggestUsernames("jo", 5)).thenReturn(List.of("johndoe"));
+        when(userService.suggestUsernames(null, 10))
+                .thenThrow(new IllegalArgumentException("Le paramètre prefix est requis"));
+        
+        // Act
+        Response response = userController.suggestUsernames("jo", 5);
+        Response missingPrefix = userController.suggestUsernames(null, null);
+        Response invalidLimit = userController.suggestUsernames("jo", 101);
+        
+        // Assert
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(List.of("johndoe"), response.getEntity());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), missingPrefix.getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), invalidLimit.getStatus());
+        verify(userService, never()).suggestUsernames("jo", 101);
+    }
+    
     @Test
     @DisplayName("Test GET /api/users/count - Compter les utilisateurs")
     void testCountUsers() {
         // Arrange
-        when(userService.countUsers()).thenReturn(5L);
+        when(userService.countUsers(false)).thenReturn(5L);
         
         // Act
-        Response response = userController.countUsers();
+        Response response = userController.countUsers(null);
         
         // Assert
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
         assertNotNull(response.getEntity());
-        verify(userService, times(1)).countUsers();
+        verify(userService, times(1)).countUsers(false);
     }
 }
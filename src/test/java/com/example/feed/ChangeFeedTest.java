@@ -0,0 +1,268 @@
+package com.example.feed;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour ChangeFeed
+ */
+class ChangeFeedTest {
+
+    @Test
+    @DisplayName("Test diffusion : tampon partagé, une seule lecture en base par passage pour tous les clients")
+    void testFanOutFromSharedBuffer() throws Exception {
+        // Arrange
+        MemoryLog log = new MemoryLog();
+        ChangeFeed feed = feed(log, 16);
+        feed.initialize();
+        List<RecordingSubscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            feed.subscribe(Change.PRODUCT, 0L, subscriber);
+            subscribers.add(subscriber);
+        }
+        List<ChangeFeed.Page> pages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            feed.await(Change.USER, 0L, 10, pages::add);
+        }
+        log.append(Change.PRODUCT, 1L, Change.CREATE);
+        log.append(Change.PRODUCT, 1L, Change.UPDATE);
+        log.append(Change.USER, 7L, Change.CREATE);
+        log.append(Change.PRODUCT, 2L, Change.DELETE);
+        log.reads = 0;
+
+        // Act
+        feed.poll();
+        feed.dispatch();
+
+        // Assert
+        assertEquals(1, log.reads);
+        for (RecordingSubscriber subscriber : subscribers) {
+            assertEquals(List.of(1L, 2L, 4L), subscriber.seqs);
+        }
+        assertEquals(10, pages.size());
+        for (ChangeFeed.Page page : pages) {
+            assertEquals(1, page.getChanges().size());
+            assertEquals(7L, page.getChanges().get(0).getId());
+            assertEquals(4L, page.getNext());
+        }
+        assertEquals(0, feed.describe().get("waiters"));
+    }
+
+    @Test
+    @DisplayName("Test attente longue : réponse au prochain changement de l'entité, page vide à l'expiration du délai")
+    void testLongPoll() throws Exception {
+        // Arrange
+        MemoryLog log = new MemoryLog();
+        ChangeFeed feed = feed(log, 16);
+        feed.initialize();
+        List<ChangeFeed.Page> first = new ArrayList<>();
+        List<ChangeFeed.Page> second = new ArrayList<>();
+
+        // Act
+        feed.await(Change.PRODUCT, 0L, 10, first::add);
+        boolean answeredEarly = !first.isEmpty();
+        log.append(Change.PRODUCT, 3L, Change.UPDATE);
+        feed.poll();
+        feed.dispatch();
+        Runnable timeout = feed.await(Change.PRODUCT, 1L, 10, second::add);
+        log.append(Change.USER, 9L, Change.DELETE);
+        feed.poll();
+        feed.dispatch();
+        boolean wokenByOtherEntity = !second.isEmpty();
+        timeout.run();
+        timeout.run();
+
+        // Assert
+        assertFalse(answeredEarly);
+        assertEquals(1, first.size());
+        assertEquals(1L, first.get(0).getChanges().get(0).getSeq());
+        assertEquals(1L, first.get(0).getNext());
+        assertFalse(wokenByOtherEntity);
+        assertEquals(1, second.size());
+        assertTrue(second.get(0).getChanges().isEmpty());
+        assertEquals(2L, second.get(0).getNext());
+    }
+
+    @Test
+    @DisplayName("Test retard : rattrapage en base au-delà du tampon, rétention dépassée")
+    void testCatchUpAndExpiry() throws Exception {
+        // Arrange : tampon de 2 changements
+        MemoryLog log = new MemoryLog();
+        ChangeFeed feed = feed(log, 2);
+        feed.initialize();
+        for (long id = 1; id <= 5; id++) {
+            log.append(Change.PRODUCT, id, Change.CREATE);
+        }
+        feed.poll();
+
+        // Act
+        ChangeFeed.Page fromDatabase = feed.read(Change.PRODUCT, 0L, 10);
+        log.append(Change.PRODUCT, 6L, Change.CREATE);
+        log.append(Change.PRODUCT, 7L, Change.CREATE);
+        feed.poll();
+        ChangeFeed.Page fromBuffer = feed.read(null, 5L, 10);
+
+        MemoryLog purged = new MemoryLog();
+        purged.insert(10L, Change.USER, 1L, Change.UPDATE);
+        ChangeFeed late = feed(purged, 16);
+        late.initialize();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        late.subscribe(Change.USER, 3L, subscriber);
+        purged.append(Change.USER, 1L, Change.DELETE);
+        late.poll();
+        late.dispatch();
+
+        // Assert
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), fromDatabase.getChanges().stream().map(Change::getSeq).toList());
+        assertEquals(5L, fromDatabase.getNext());
+        assertEquals(List.of(6L, 7L), fromBuffer.getChanges().stream().map(Change::getSeq).toList());
+        assertTrue(late.read(Change.USER, 3L, 10).isExpired());
+        assertEquals(10L, subscriber.expiredAt);
+        assertTrue(subscriber.closed);
+        assertTrue(subscriber.seqs.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test relais : changements écrits sur les shards numérotés sur la base primaire puis diffusés")
+    void testRelaysOutbox() throws Exception {
+        // Arrange : lots de 100, 150 changements pas encore numérotés
+        MemoryLog log = new MemoryLog();
+        ChangeFeed feed = feed(log, 256);
+        feed.initialize();
+        log.append(Change.USER, 1L, Change.CREATE);
+        for (long id = 1; id <= 150; id++) {
+            log.outbox.add(new Change(0L, Change.PRODUCT, id, Change.UPDATE, LocalDateTime.now()));
+        }
+
+        // Act
+        boolean more = feed.poll();
+        feed.poll();
+        feed.poll();
+
+        // Assert
+        assertTrue(more);
+        assertTrue(log.outbox.isEmpty());
+        assertEquals(151L, feed.lastSeq());
+        assertEquals(150L, feed.describe().get("relayed"));
+        assertEquals(150, feed.read(Change.PRODUCT, 0L, 1000).getChanges().size());
+    }
+
+    @Test
+    @DisplayName("Test abonnés : chaque nouveau changement leur est passé une fois, malgré un abonné en échec")
+    void testListeners() throws Exception {
+        // Arrange : un changement antérieur à l'initialisation
+        MemoryLog log = new MemoryLog();
+        ChangeFeed feed = feed(log, 16);
+        log.append(Change.PRODUCT, 1L, Change.CREATE);
+        feed.initialize();
+        List<Long> seen = new ArrayList<>();
+        feed.listen(change -> {
+            throw new IllegalStateException("abonné en échec");
+        });
+        feed.listen(change -> seen.add(change.getId()));
+        log.append(Change.PRODUCT, 2L, Change.UPDATE);
+        log.outbox.add(new Change(0L, Change.PRODUCT, 3L, Change.DELETE, LocalDateTime.now()));
+
+        // Act
+        feed.poll();
+        feed.poll();
+
+        // Assert
+        assertEquals(List.of(2L, 3L), seen);
+    }
+
+    private static ChangeFeed feed(MemoryLog log, int capacity) {
+        return new ChangeFeed(true, log, () -> false, capacity, 100, 1L, 24L, 15L);
+    }
+
+    /**
+     * Table des changements simulée
+     */
+    private static final class MemoryLog implements ChangeFeed.Log {
+        final TreeMap<Long, Change> rows = new TreeMap<>();
+        // Changements écrits, pas encore numérotés
+        final List<Change> outbox = new ArrayList<>();
+        long nextSeq = 1;
+        int reads;
+
+        void insert(long seq, String entity, long id, String operation) {
+            rows.put(seq, new Change(seq, entity, id, operation, LocalDateTime.now()));
+            nextSeq = Math.max(nextSeq, seq + 1);
+        }
+
+        void append(String entity, long id, String operation) {
+            insert(nextSeq, entity, id, operation);
+        }
+
+        @Override
+        public int relay(int limit) {
+            int moved = 0;
+            while (!outbox.isEmpty() && moved < limit) {
+                Change change = outbox.remove(0);
+                append(change.getEntity(), change.getId(), change.getOperation());
+                moved++;
+            }
+            return moved;
+        }
+
+        @Override
+        public long firstSeq() {
+            return rows.isEmpty() ? 0L : rows.firstKey();
+        }
+
+        @Override
+        public long lastSeq() {
+            return rows.isEmpty() ? 0L : rows.lastKey();
+        }
+
+        @Override
+        public void readAfter(long after, long until, String entity, int limit, Consumer<Change> row) {
+            reads++;
+            rows.subMap(after, false, until, true).values().stream()
+                    .filter(change -> entity == null || entity.equals(change.getEntity()))
+                    .limit(limit)
+                    .forEach(row);
+        }
+
+        @Override
+        public int purge(LocalDateTime before) {
+            return 0;
+        }
+    }
+
+    private static final class RecordingSubscriber implements ChangeFeed.Subscriber {
+        final List<Long> seqs = new ArrayList<>();
+        long expiredAt = -1L;
+        boolean closed;
+
+        @Override
+        public boolean send(Change change) {
+            seqs.add(change.getSeq());
+            return true;
+        }
+
+        @Override
+        public boolean heartbeat() {
+            return true;
+        }
+
+        @Override
+        public void expired(long firstSeq) {
+            expiredAt = firstSeq;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.index;
+
+import com.example.config.RuntimeSettings;
+import com.example.feed.Change;
+import com.example.feed.ChangeFeed;
+import com.example.model.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests unitaires pour CompactProductStore
+ */
+class CompactProductStoreTest {
+
+    @Test
+    @DisplayName("Test cache compact : champs restitués à l'identique, catégories internées, valeurs nulles")
+    void testRoundTrip() {
+        // Arrange
+        CompactProductStore store = new CompactProductStore(true, 100);
+        Product laptop = product(1L, "Ordinateur portable « Été » 15″ 🚀", "Écran mat\nclavier rétroéclairé",
+                "1299.99", 7, "Électronique", 3L);
+        laptop.setCreatedAt(LocalDateTime.of(2024, 2, 29, 23, 59, 59, 123_456_000));
+        laptop.setUpdatedAt(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000));
+        Product phone = product(2L, "Téléphone", null, "0.00", 0, new String("Électronique"), 0L);
+        Product cable = product(3L, "Câble", "", "0.01", 12, null, 1L);
+
+        // Act
+        store.put(laptop);
+        store.put(phone);
+        store.put(cable);
+
+        // Assert
+        assertSameProduct(laptop, store.get(1L).orElseThrow());
+        assertSameProduct(phone, store.get(2L).orElseThrow());
+        assertSameProduct(cable, store.get(3L).orElseThrow());
+        assertTrue(store.get(4L).isEmpty());
+        assertEquals(129_999L, store.read(1L, CompactProductStore.View::priceCents).orElseThrow());
+        assertSame(store.read(1L, CompactProductStore.View::category).orElseThrow(),
+                store.read(2L, CompactProductStore.View::category).orElseThrow());
+        assertEquals(1, store.describe().get("categories"));
+    }
+
+    @Test
+    @DisplayName("Test prix à plus de deux décimales : arrondi au centime comme la colonne NUMERIC(10,2)")
+    void testPriceRoundedToCents() {
+        // Arrange
+        CompactProductStore store = new CompactProductStore(true, 100);
+
+        // Act
+        store.put(product(1L, "Gomme", null, "9.999", 1, null, 0L));
+        store.put(product(2L, "Crayon", null, "0.125", 1, null, 0L));
+
+        // Assert
+        assertEquals(1_000L, store.read(1L, CompactProductStore.View::priceCents).orElseThrow());
+        assertEquals(0, new BigDecimal("10.00").compareTo(store.get(1L).orElseThrow().getPrice()));
+        assertEquals(13L, store.read(2L, CompactProductStore.View::priceCents).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Test expiration : entrée relue après la durée de vie, même à version égale")
+    void testEntriesExpireAfterTtl() {
+        // Arrange : durée de vie de 30 s, horloge manuelle
+        AtomicLong clock = new AtomicLong();
+        CompactProductStore store = new CompactProductStore(true, 100, null, 300L, 60L, 30L, clock::get);
+        store.put(product(1L, "Agrafeuse", null, "12.50", 4, null, 2L));
+
+        // Act
+        boolean freshHit = store.get(1L).isPresent();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        boolean expiredHit = store.get(1L).isPresent();
+        store.putIfUnchanged(product(1L, "Agrafeuse", null, "12.50", 9, null, 2L), store.generation());
+
+        // Assert
+        assertTrue(freshHit);
+        assertFalse(expiredHit);
+        assertEquals(9, store.get(1L).orElseThrow().getQuantity());
+        assertEquals(1L, store.describe().get("expired"));
+    }
+
+    @Test
+    @DisplayName("Test paramètres à chaud : capacité réduite (produits en trop retirés), durée de vie modifiée")
+    void testRuntimeSettings() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        CompactProductStore store = new CompactProductStore(true, 100, null, 300L, 60L, 0L, clock::get);
+        RuntimeSettings settings = new RuntimeSettings();
+        store.registerRuntimeSettings(settings);
+        for (long id = 1; id <= 5; id++) {
+            store.put(product(id, "Produit " + id, null, "1.00", 1, null, 0L));
+        }
+
+        // Act
+        settings.apply(Map.of("product.cache.max", "2", "product.cache.ttl.seconds", "10"));
+        store.put(product(6L, "Produit 6", null, "1.00", 1, null, 0L));
+        long cached = LongStream.rangeClosed(1, 6).filter(id -> store.get(id).isPresent()).count();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        long afterTtl = LongStream.rangeClosed(1, 6).filter(id -> store.get(id).isPresent()).count();
+
+        // Assert
+        assertEquals(2, store.describe().get("products"));
+        assertEquals(2, store.describe().get("maxProducts"));
+        assertEquals(2L, cached);
+        assertEquals(0L, afterTtl);
+        assertEquals(10L, store.describe().get("ttlSeconds"));
+    }
+
+    @Test
+    @DisplayName("Test versions : version périmée ignorée, suppression, chargement concurrent d'une suppression")
+    void testVersionsAndRemovals() {
+        // Arrange
+        CompactProductStore store = new CompactProductStore(true, 2);
+        store.put(product(1L, "Lampe", null, "20.00", 5, "Maison", 2L));
+
+        // Act
+        store.put(product(1L, "Lampe (ancienne)", null, "18.00", 5, "Maison", 1L));
+        long generation = store.generation();
+        store.remove(1L);
+        store.putIfUnchanged(product(1L, "Lampe", null, "20.00", 5, "Maison", 2L), generation);
+        store.putIfUnchanged(product(2L, "Vase", null, "9.90", 1, "Maison", 0L), store.generation());
+        store.put(product(3L, "Tapis", null, "49.00", 2, "Maison", 0L));
+        store.put(product(4L, "Coussin", null, "12.00", 3, "Maison", 0L));
+
+        // Assert : le 4e produit dépasse la capacité (2)
+        assertTrue(store.get(1L).isEmpty());
+        assertEquals("Vase", store.get(2L).orElseThrow().getName());
+        assertEquals("Tapis", store.get(3L).orElseThrow().getName());
+        assertTrue(store.get(4L).isEmpty());
+        assertEquals(2, store.describe().get("products"));
+    }
+
+    @Test
+    @DisplayName("Test mises à jour aléatoires : contenu identique à une Map de Product, arène recompactée")
+    void testRandomUpdatesMatchMap() {
+        // Arrange
+        CompactProductStore store = new CompactProductStore(true, Integer.MAX_VALUE);
+        Map<Long, Product> expected = new HashMap<>();
+        Map<Long, Long> versions = new HashMap<>();
+        Random random = new Random(5);
+
+        // Act : assez de réécritures pour dépasser le seuil de recompactage (1 Mo inutilisé)
+        for (int step = 0; step < 30_000; step++) {
+            long id = 1 + random.nextInt(500);
+            if (random.nextInt(8) == 0) {
+                store.remove(id);
+                expected.remove(id);
+            } else {
+                long version = versions.merge(id, 1L, Long::sum);
+                Product product = product(id, "Produit " + id + " " + "é".repeat(random.nextInt(120)),
+                        random.nextBoolean() ? null : "Description " + "x".repeat(random.nextInt(300)),
+                        BigDecimal.valueOf(random.nextInt(10_000_000), 2).toPlainString(), random.nextInt(50),
+                        random.nextInt(5) == 0 ? null : "Catégorie " + random.nextInt(10), version);
+                store.put(product);
+                expected.put(id, product);
+            }
+        }
+
+        // Assert
+        Map<String, Object> state = store.describe();
+        assertEquals(expected.size(), state.get("products"));
+        assertTrue((Long) state.get("arenaGarbageBytes") * 2 <= (Integer) state.get("arenaBytes") + (1 << 20));
+        for (long id = 1; id <= 500; id++) {
+            Product product = expected.get(id);
+            if (product == null) {
+                assertTrue(store.get(id).isEmpty());
+            } else {
+                assertSameProduct(product, store.get(id).orElseThrow());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test flux des changements : produit écrit retiré du cache, cache inutilisable avant le flux")
+    @SuppressWarnings("unchecked")
+    void testFollowsChangeFeed() {
+        // Arrange
+        CompactProductStore store = new CompactProductStore(true, 100);
+        ChangeFeed feed = mock(ChangeFeed.class);
+        ArgumentCaptor<Consumer<Change>> listener = ArgumentCaptor.forClass(Consumer.class);
+        store.follow(feed);
+        verify(feed).listen(listener.capture());
+        boolean readyBeforeFeed = store.isReady();
+        // Chargé avant que le flux soit prêt : une écriture d'une autre instance a pu lui échapper
+        store.put(product(1L, "Produit 1", null, "1.00", 1, null, 1L));
+        store.restore(source(new TreeMap<>()));
+        boolean keptEarlyLoad = store.get(1L).isPresent();
+        store.put(product(1L, "Produit 1", null, "1.00", 1, null, 1L));
+        store.put(product(2L, "Produit 2", null, "2.00", 2, null, 1L));
+
+        // Act
+        listener.getValue().accept(new Change(8L, Change.PRODUCT, 1L, Change.UPDATE, LocalDateTime.now()));
+        listener.getValue().accept(new Change(9L, Change.USER, 2L, Change.DELETE, LocalDateTime.now()));
+
+        // Assert
+        assertFalse(readyBeforeFeed);
+        assertFalse(keptEarlyLoad);
+        assertTrue(store.isReady());
+        assertTrue(store.get(1L).isEmpty());
+        assertTrue(store.get(2L).isPresent());
+        assertEquals(1L, store.describe().get("invalidated"));
+    }
+
+    @Test
+    @DisplayName("Test instantané : restauration, rattrapage des produits modifiés, créés et supprimés")
+    void testSnapshotRestoreReplaysDelta(@TempDir Path directory) throws IOException {
+        // Arrange : cache écrit dans un instantané, puis base modifiée pendant l'arrêt
+        Path file = directory.resolve("products.snapshot");
+        Map<Long, Product> database = new TreeMap<>();
+        for (long id = 1; id <= 5; id++) {
+            database.put(id, product(id, "Produit " + id, "Description " + id, id + ".50", (int) id, "Maison", 1L));
+        }
+        CompactProductStore before = new CompactProductStore(true, 100, file, 300, 0);
+        before.restore(source(database));
+        database.values().forEach(before::put);
+        before.snapshot(source(database));
+        Product updated = product(2L, "Produit 2 (nouveau)", null, "9.99", 0, "Jardin", 2L);
+        updated.setUpdatedAt(LocalDateTime.of(2025, 1, 2, 8, 0));
+        database.put(2L, updated);
+        database.remove(3L);
+        database.put(6L, product(6L, "Produit 6", null, "6.00", 6, null, 1L));
+
+        // Act
+        CompactProductStore after = new CompactProductStore(true, 100, file, 300, 0);
+        assertFalse(after.isReady());
+        after.restore(source(database));
+
+        // Assert
+        assertTrue(after.isReady());
+        assertEquals(5, after.describe().get("restored"));
+        assertEquals(1, after.describe().get("dropped"));
+        assertEquals(5, after.describe().get("products"));
+        for (Product product : database.values()) {
+            assertSameProduct(product, after.get(product.getId()).orElseThrow());
+        }
+        assertTrue(after.get(3L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test instantané ignoré : base plus ancienne que l'instantané, fichier corrompu")
+    void testSnapshotRejected(@TempDir Path directory) throws IOException {
+        // Arrange
+        Path file = directory.resolve("products.snapshot");
+        Map<Long, Product> database = new TreeMap<>();
+        Product product = product(1L, "Produit 1", null, "1.00", 1, "Maison", 1L);
+        product.setUpdatedAt(LocalDateTime.of(2025, 6, 1, 0, 0));
+        database.put(1L, product);
+        CompactProductStore before = new CompactProductStore(true, 100, file, 300, 0);
+        before.restore(source(database));
+        before.put(product);
+        before.snapshot(source(database));
+        byte[] written = Files.readAllBytes(file);
+
+        // Act : base restaurée à une date antérieure
+        product.setUpdatedAt(LocalDateTime.of(2025, 5, 1, 0, 0));
+        CompactProductStore olderDatabase = new CompactProductStore(true, 100, file, 300, 0);
+        olderDatabase.restore(source(database));
+        written[written.length / 2] ^= 1;
+        Files.write(file, written);
+        CompactProductStore corrupted = new CompactProductStore(true, 100, file, 300, 0);
+        corrupted.restore(source(database));
+
+        // Assert : démarrage à froid, le cache reste utilisable
+        assertTrue(olderDatabase.isReady());
+        assertEquals(0, olderDatabase.describe().get("products"));
+        assertTrue(corrupted.isReady());
+        assertEquals(0, corrupted.describe().get("products"));
+        assertNotNull(corrupted.describe().get("error"));
+        corrupted.put(product);
+        assertEquals("Produit 1", corrupted.get(1L).orElseThrow().getName());
+    }
+
+    /**
+     * Base simulée à un shard
+     */
+    private static CompactProductStore.Source source(Map<Long, Product> database) {
+        return new CompactProductStore.Source() {
+            @Override
+            public int shardCount() {
+                return 1;
+            }
+
+            @Override
+            public void scanHighWater(int shard, CompactProductStore.HighWaterRow row) {
+                row.accept(database.values().stream().map(Product::getUpdatedAt)
+                                .max(LocalDateTime::compareTo).orElse(null),
+                        database.keySet().stream().mapToLong(Long::longValue).max().orElse(0L));
+            }
+
+            @Override
+            public void scanChanged(int shard, LocalDateTime since, long afterId, Consumer<Product> row) {
+                database.values().stream()
+                        .filter(product -> since == null || product.getUpdatedAt() == null
+                                || !product.getUpdatedAt().isBefore(since) || product.getId() > afterId)
+                        .forEach(row);
+            }
+
+            @Override
+            public void scanIds(int shard, LongConsumer row) {
+                database.keySet().forEach(row::accept);
+            }
+        };
+    }
+
+    private static Product product(long id, String name, String description, String price, int quantity,
+                                   String category, long version) {
+        Product product = new Product(name, description, new BigDecimal(price), quantity, category);
+        product.setId(id);
+        product.setVersion(version);
+        product.setCreatedAt(LocalDateTime.of(2025, 1, 1, 8, 0).plusSeconds(id));
+        product.setUpdatedAt(product.getCreatedAt());
+        return product;
+    }
+
+    private static void assertSameProduct(Product expected, Product actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(0, expected.getPrice().compareTo(actual.getPrice()));
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+        assertEquals(expected.getVersion(), actual.getVersion());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour CountingBloomFilter
+ */
+class CountingBloomFilterTest {
+
+    @Test
+    @DisplayName("Test filtre : aucun faux négatif, taux de faux positifs proche de la cible, suppressions")
+    void testNoFalseNegativesAndBoundedFalsePositives() {
+        // Arrange
+        CountingBloomFilter filter = new CountingBloomFilter("test", true, 10_000, 0.01, null);
+        filter.rebuild(row -> {
+            for (int i = 0; i < 10_000; i++) {
+                row.accept("user" + i);
+            }
+        });
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i), "user" + i);
+        }
+        assertTrue(falsePositives < 2_000, "faux positifs : " + falsePositives);
+        double estimated = (Double) filter.describe().get("estimatedFalsePositiveRate");
+        assertTrue(estimated > 0.005 && estimated < 0.02, "taux estimé : " + estimated);
+
+        // Act : suppressions
+        for (int i = 0; i < 10_000; i++) {
+            filter.remove("user" + i);
+        }
+
+        // Assert : compteurs revenus à zéro
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(filter.mightContain("user" + i), "user" + i);
+        }
+        assertEquals(0.0, filter.describe().get("estimatedFalsePositiveRate"));
+    }
+
+    @Test
+    @DisplayName("Test chargement : ajouts concurrents conservés, taux de faux positifs mesuré")
+    void testRebuildKeepsConcurrentAddsAndMeasuresFalsePositives() {
+        // Arrange
+        CountingBloomFilter filter = new CountingBloomFilter("test", true, 1_000, 0.01, null);
+        assertTrue(filter.mightContain("alice"), "non chargé : lecture en base obligatoire");
+
+        // Act : un utilisateur créé pendant la lecture de la table
+        filter.rebuild(row -> {
+            row.accept("alice");
+            filter.add("bob");
+        });
+        boolean alice = filter.mightContain("alice");
+        boolean bob = filter.mightContain("bob");
+        boolean carol = filter.mightContain("carol");
+        filter.recordLookup(true);
+        filter.recordLookup(false);
+
+        // Assert
+        assertTrue(alice);
+        assertTrue(bob);
+        assertFalse(carol);
+        Map<String, Object> state = filter.describe();
+        assertEquals(true, state.get("ready"));
+        assertEquals(1L, state.get("lookupsSkipped"));
+        assertEquals(1L, state.get("lookupsConfirmed"));
+        assertEquals(1L, state.get("falsePositives"));
+        assertEquals(0.5, state.get("falsePositiveRate"));
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour FullTextIndex
+ */
+class FullTextIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Test analyse : accents, ligatures, mots vides et pluriels")
+    void testAnalyzerFoldsAccentsAndPlurals() {
+        assertEquals(List.of("ordinateur", "portable", "ecran", "15", "oeuvre", "jeu"),
+                TextAnalyzer.terms("L'Ordinateur portable, écran 15\" — Œuvres et jeux"));
+        assertEquals(List.of(), TextAnalyzer.terms(null));
+    }
+
+    @Test
+    @DisplayName("Test classement BM25, mises à jour, suppressions et fusion des segments")
+    void testRankingAndIncrementalUpdates() {
+        // Arrange : un segment tous les 2 documents, fusions comprises
+        FullTextIndex index = new FullTextIndex(true, null, 2);
+        index.rebuild(new FakeSource());
+        index.put(1L, 0L, "Clavier sans fil", "Clavier compact pour ordinateur");
+        index.put(2L, 0L, "Souris", "Souris sans fil avec clavier assorti");
+        index.put(3L, 0L, "Écran", "Écran 27 pouces");
+        for (long id = 10; id < 30; id++) {
+            index.put(id, 0L, "Câble " + id, "Câble USB");
+        }
+
+        // Act
+        long[] claviers = index.search("claviers", 10);
+        index.put(2L, 1L, "Souris", "Souris filaire");
+        index.put(2L, 0L, "Souris", "Souris sans fil avec clavier assorti");
+        index.remove(3L);
+
+        // Assert : le nom pèse plus que la description, version ancienne ignorée
+        assertArrayEquals(new long[]{1, 2}, claviers);
+        assertArrayEquals(new long[]{1}, index.search("clavier", 10));
+        assertArrayEquals(new long[0], index.search("ecran", 10));
+        assertArrayEquals(new long[]{10, 11, 12}, index.search("cable usb", 3));
+        assertEquals(22, index.describe().get("products"));
+        assertTrue((Integer) index.describe().get("segments") < 8);
+    }
+
+    @Test
+    @DisplayName("Test segments persistés : seuls les produits modifiés sont relus au redémarrage")
+    void testRestartReindexesOnlyChangedProducts() {
+        // Arrange
+        FakeSource source = new FakeSource();
+        source.add(1L, 0L, "Chaise en chêne", "Bois massif");
+        source.add(2L, 0L, "Table en chêne", "Bois massif");
+        source.add(3L, 0L, "Lampe", "Laiton");
+        FullTextIndex first = new FullTextIndex(true, directory, 2);
+        first.rebuild(source);
+        first.put(4L, 0L, "Tabouret", "Chêne clair");
+        first.flush();
+
+        // Act : pendant l'arrêt, 1 est modifié et 3 supprimé
+        source.add(1L, 1L, "Chaise en pin", "Bois massif");
+        source.add(4L, 0L, "Tabouret", "Chêne clair");
+        source.products.remove(3L);
+        source.fetched.clear();
+        FullTextIndex second = new FullTextIndex(true, directory, 2);
+        second.rebuild(source);
+
+        // Assert
+        assertTrue(second.isReady());
+        assertEquals(List.of(1L), source.fetched);
+        assertArrayEquals(new long[]{2, 4}, second.search("chene", 10));
+        assertArrayEquals(new long[]{1}, second.search("pin", 10));
+        assertArrayEquals(new long[0], second.search("lampe", 10));
+    }
+
+    @Test
+    @DisplayName("Test segment corrompu ignoré : produits réindexés depuis la base")
+    void testCorruptSegmentIsReindexed() throws IOException {
+        // Arrange
+        FakeSource source = new FakeSource();
+        source.add(1L, 0L, "Vélo", "Cadre aluminium");
+        source.add(2L, 0L, "Casque", "Vélo de route");
+        FullTextIndex first = new FullTextIndex(true, directory, 10);
+        first.rebuild(source);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                byte[] bytes = Files.readAllBytes(file);
+                bytes[bytes.length / 2] ^= 0x55;
+                Files.write(file, bytes);
+            }
+        }
+
+        // Act
+        source.fetched.clear();
+        FullTextIndex second = new FullTextIndex(true, directory, 10);
+        second.rebuild(source);
+
+        // Assert
+        assertEquals(List.of(1L, 2L), source.fetched);
+        assertArrayEquals(new long[]{1, 2}, second.search("velo", 10));
+    }
+
+    /**
+     * Base simulée à un shard ; fetched garde les identifiants dont le texte a été relu
+     */
+    private static final class FakeSource implements FullTextIndex.Source {
+        final Map<Long, Object[]> products = new TreeMap<>();
+        final List<Long> fetched = new ArrayList<>();
+
+        void add(long id, long version, String name, String description) {
+            products.put(id, new Object[]{version, name, description});
+        }
+
+        @Override
+        public int shardCount() {
+            return 1;
+        }
+
+        @Override
+        public void scanVersions(int shard, FullTextIndex.VersionRow row) {
+            products.forEach((id, values) -> row.accept(id, (Long) values[0]));
+        }
+
+        @Override
+        public void scanTexts(int shard, long[] ids, FullTextIndex.TextRow row) {
+            products.forEach((id, values) -> {
+                boolean requested = ids == null;
+                for (int i = 0; ids != null && i < ids.length; i++) {
+                    requested |= ids[i] == id;
+                }
+                if (requested) {
+                    fetched.add(id);
+                    row.accept(id, (Long) values[0], (String) values[1], (String) values[2]);
+                }
+            });
+        }
+    }
+}
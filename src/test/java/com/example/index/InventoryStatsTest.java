@@ -0,0 +1,151 @@
+package com.example.index;
+
+import com.example.model.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour InventoryStats
+ */
+class InventoryStatsTest {
+
+    @Test
+    @DisplayName("Test statistiques : valeur du stock, totaux par catégorie, histogramme")
+    @SuppressWarnings("unchecked")
+    void testSnapshotAggregates() {
+        // Arrange
+        InventoryStats stats = new InventoryStats(true);
+        stats.rebuild(source(Map.of(
+                1L, new Object[]{"Books", 3, 1000L},
+                2L, new Object[]{"Books", 0, 2550L},
+                3L, new Object[]{"Toys", 2, 120L})));
+
+        // Act
+        stats.put(product(4L, null, 1, "5.00", 1L));
+        stats.updateStock(2L, 4);
+        stats.remove(3L);
+        Map<String, Object> snapshot = stats.snapshot();
+
+        // Assert : 3 × 10,00 + 4 × 25,50 + 1 × 5,00
+        assertEquals(3L, snapshot.get("products"));
+        assertEquals(3L, snapshot.get("inStock"));
+        assertEquals(0L, snapshot.get("outOfStock"));
+        assertEquals(new BigDecimal("137.00"), snapshot.get("totalValue"));
+        List<Map<String, Object>> categories = (List<Map<String, Object>>) snapshot.get("categories");
+        assertEquals(2, categories.size());
+        assertNull(categories.get(0).get("category"));
+        Map<String, Object> books = categories.get(1);
+        assertEquals("Books", books.get("category"));
+        assertEquals(2L, books.get("count"));
+        assertEquals(new BigDecimal("132.00"), books.get("value"));
+        assertEquals(new BigDecimal("10.00"), books.get("minPrice"));
+        assertEquals(new BigDecimal("25.50"), books.get("maxPrice"));
+        assertEquals(new BigDecimal("17.75"), books.get("avgPrice"));
+        List<Map<String, Object>> histogram = (List<Map<String, Object>>) snapshot.get("priceHistogram");
+        assertEquals(List.of(new BigDecimal("5.00"), new BigDecimal("10.00"), new BigDecimal("25.00")),
+                histogram.stream().map(range -> range.get("from")).toList());
+        assertEquals(new BigDecimal("31.50"), histogram.get(2).get("to"));
+    }
+
+    @Test
+    @DisplayName("Test écritures incrémentales identiques à un recalcul complet")
+    void testIncrementalUpdatesMatchFullRecompute() {
+        // Arrange
+        InventoryStats stats = new InventoryStats(true);
+        stats.rebuild(source(Map.of()));
+        Map<Long, Object[]> products = new HashMap<>();
+        Map<Long, Long> versions = new HashMap<>();
+        String[] categories = {"Books", "Toys", "Garden", null};
+        Random random = new Random(11);
+
+        // Act
+        for (int step = 0; step < 5_000; step++) {
+            long id = 1 + random.nextInt(200);
+            int action = random.nextInt(10);
+            if (action == 0) {
+                stats.remove(id);
+                products.remove(id);
+            } else if (action < 4 && products.containsKey(id)) {
+                int quantity = random.nextInt(4);
+                stats.updateStock(id, quantity);
+                products.get(id)[1] = quantity;
+            } else {
+                String category = categories[random.nextInt(categories.length)];
+                int quantity = random.nextInt(4);
+                long priceCents = random.nextInt(100_000);
+                long version = versions.merge(id, 1L, Long::sum);
+                stats.put(product(id, category, quantity, BigDecimal.valueOf(priceCents, 2).toPlainString(), version));
+                products.put(id, new Object[]{category, quantity, priceCents});
+            }
+        }
+
+        // Assert
+        InventoryStats recomputed = new InventoryStats(true);
+        recomputed.rebuild(source(products));
+        assertEquals(recomputed.snapshot(), stats.snapshot());
+    }
+
+    @Test
+    @DisplayName("Test reconstruction : écritures des autres instances reprises, écritures locales concurrentes rejouées")
+    void testRebuildPicksUpOtherInstances() {
+        // Arrange : la base contient un produit écrit par une autre instance
+        InventoryStats stats = new InventoryStats(true);
+        stats.rebuild(source(Map.of(1L, new Object[]{"Books", 1, 1000L})));
+        InventoryStats.Source database = new InventoryStats.Source() {
+            @Override
+            public int shardCount() {
+                return 1;
+            }
+
+            @Override
+            public void scan(int shard, InventoryStats.Row row) {
+                row.accept(1L, "Books", 1, 1000L, 0L);
+                row.accept(2L, "Toys", 5, 200L, 0L);
+                // Écriture locale validée pendant la lecture
+                stats.put(product(3L, "Toys", 1, "3.00", 1L));
+            }
+        };
+
+        // Act
+        stats.rebuild(database);
+        Map<String, Object> snapshot = stats.snapshot();
+
+        // Assert : 1 × 10,00 + 5 × 2,00 + 1 × 3,00
+        assertEquals(3L, snapshot.get("products"));
+        assertEquals(new BigDecimal("23.00"), snapshot.get("totalValue"));
+        assertTrue(stats.describe().containsKey("lastRebuildAgeSeconds"));
+    }
+
+    private static Product product(long id, String category, int quantity, String price, long version) {
+        Product product = new Product("Produit " + id, null, new BigDecimal(price), quantity, category);
+        product.setId(id);
+        product.setVersion(version);
+        return product;
+    }
+
+    /**
+     * Source simulée à un shard : identifiant → {catégorie, quantité, prix en centimes}
+     */
+    private static InventoryStats.Source source(Map<Long, Object[]> products) {
+        return new InventoryStats.Source() {
+            @Override
+            public int shardCount() {
+                return 1;
+            }
+
+            @Override
+            public void scan(int shard, InventoryStats.Row row) {
+                products.forEach((id, product) ->
+                        row.accept(id, (String) product[0], (Integer) product[1], (Long) product[2], 0L));
+            }
+        };
+    }
+}
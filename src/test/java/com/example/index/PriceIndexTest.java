@@ -0,0 +1,121 @@
+package com.example.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour PriceIndex (et IdTable)
+ */
+class PriceIndexTest {
+
+    @Test
+    @DisplayName("Test plage de prix, moins chers et mises à jour incrémentales")
+    void testRangeCheapestAndUpdates() {
+        // Arrange
+        PriceIndex index = new PriceIndex(true);
+        index.rebuild(source(new long[][]{{3, 500, 0}, {1, 1000, 0}, {2, 1000, 0}, {4, 2500, 0}}));
+
+        // Act
+        index.put(5L, 750L, 0L);
+        index.put(4L, 100L, 1L);
+        index.put(1L, 9999L, 0L);
+        index.remove(2L);
+
+        // Assert
+        assertTrue(index.isReady());
+        assertArrayEquals(new long[]{4, 3, 5}, index.atMost(1000, Integer.MAX_VALUE));
+        assertArrayEquals(new long[]{3, 5}, index.range(500, 999, Integer.MAX_VALUE));
+        assertArrayEquals(new long[]{4, 3}, index.cheapest(2));
+        assertArrayEquals(new long[]{1}, index.range(9999, 9999, 10));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    @DisplayName("Test écriture plus ancienne ignorée (version) et fusion triée de plusieurs shards")
+    void testStaleWriteIgnoredAndShardsMerged() {
+        // Arrange
+        PriceIndex index = new PriceIndex(true);
+        index.rebuild(source(
+                new long[][]{{10, 100, 3}, {12, 300, 0}},
+                new long[][]{{11, 100, 0}, {13, 200, 0}}));
+
+        // Act : la version 2 arrive après la version 3 déjà indexée
+        index.put(10L, 5000L, 2L);
+
+        // Assert
+        assertArrayEquals(new long[]{10, 11, 13, 12}, index.cheapest(10));
+    }
+
+    @Test
+    @DisplayName("Test cohérence avec un tri naïf après 20 000 écritures aléatoires")
+    void testMatchesNaiveSortAfterRandomWrites() {
+        // Arrange
+        PriceIndex index = new PriceIndex(true);
+        index.rebuild(source(new long[0][]));
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(3000);
+            if (random.nextInt(5) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                long price = random.nextInt(500);
+                index.put(id, price, i);
+                expected.put(id, price);
+            }
+        }
+
+        // Assert
+        List<Map.Entry<Long, Long>> sorted = new ArrayList<>(expected.entrySet());
+        sorted.sort(Map.Entry.<Long, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        long[] all = sorted.stream().mapToLong(Map.Entry::getKey).toArray();
+        assertArrayEquals(all, index.cheapest(Integer.MAX_VALUE));
+        long[] between = sorted.stream().filter(entry -> entry.getValue() >= 100 && entry.getValue() <= 120)
+                .mapToLong(Map.Entry::getKey).toArray();
+        assertArrayEquals(between, index.range(100, 120, Integer.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("Test source non triée : index non disponible")
+    void testUnsortedSourceLeavesIndexUnavailable() {
+        // Arrange
+        PriceIndex index = new PriceIndex(true);
+
+        // Act
+        index.rebuild(source(new long[][]{{1, 900, 0}, {2, 100, 0}}));
+
+        // Assert
+        assertFalse(index.isReady());
+        assertEquals("Produits non triés par prix puis identifiant (id 2)", index.describe().get("error"));
+    }
+
+    /**
+     * Source simulée : lignes (identifiant, prix en centimes, version) par shard
+     */
+    private static PriceIndex.Source source(long[][]... shards) {
+        return new PriceIndex.Source() {
+            @Override
+            public int shardCount() {
+                return shards.length;
+            }
+
+            @Override
+            public void scan(int shard, PriceIndex.Row row) {
+                for (long[] values : shards[shard]) {
+                    row.accept(values[0], values[1], values[2]);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour ProductSearchIndex et CompressedBitmap
+ */
+class ProductSearchIndexTest {
+
+    @Test
+    @DisplayName("Test intersection, union et différence des bitmaps, tranches creuses et denses")
+    void testBitmapOperationsMatchSets() {
+        // Arrange : valeurs denses (tranche bitmap) et creuses (tableau) sur plusieurs tranches
+        Random random = new Random(3);
+        CompressedBitmap left = new CompressedBitmap();
+        CompressedBitmap right = new CompressedBitmap();
+        TreeSet<Integer> leftValues = new TreeSet<>();
+        TreeSet<Integer> rightValues = new TreeSet<>();
+        for (int i = 0; i < 30_000; i++) {
+            int dense = random.nextInt(20_000);
+            int sparse = 65_536 * (1 + random.nextInt(3)) + random.nextInt(65_536);
+            left.add(dense);
+            leftValues.add(dense);
+            right.add(i % 3 == 0 ? dense : sparse);
+            rightValues.add(i % 3 == 0 ? dense : sparse);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            int value = random.nextInt(20_000);
+            left.remove(value);
+            leftValues.remove(value);
+        }
+
+        // Act
+        TreeSet<Integer> and = new TreeSet<>(leftValues);
+        and.retainAll(rightValues);
+        TreeSet<Integer> or = new TreeSet<>(leftValues);
+        or.addAll(rightValues);
+        TreeSet<Integer> andNot = new TreeSet<>(leftValues);
+        andNot.removeAll(rightValues);
+
+        // Assert
+        assertArrayEquals(toArray(leftValues), left.toArray());
+        assertArrayEquals(toArray(and), CompressedBitmap.and(left, right).toArray());
+        assertArrayEquals(toArray(or), CompressedBitmap.or(left, right).toArray());
+        assertArrayEquals(toArray(andNot), CompressedBitmap.andNot(left, right).toArray());
+        assertTrue(left.sizeInBytes() < leftValues.size() * 4L, "tranche dense compressée en bitmap");
+    }
+
+    @Test
+    @DisplayName("Test critères combinés, tranches de prix et mises à jour incrémentales")
+    void testCombinedCriteriaAndIncrementalUpdates() {
+        // Arrange
+        ProductSearchIndex index = new ProductSearchIndex(true);
+        index.rebuild(source(new Object[][]{
+                {1L, "Electronics", 5, 1999L, 0L},
+                {2L, "Electronics", 0, 2499L, 0L},
+                {3L, "Books", 2, 1500L, 0L},
+                {4L, null, 1, 90000L, 0L}}));
+
+        // Act
+        index.put(5L, "Electronics", 3, 2000L, 0L);
+        index.put(3L, "Electronics", 2, 1500L, 1L);
+        index.updateStock(2L, 4);
+        index.remove(1L);
+
+        // Assert : 2000 et 2499 sont dans les tranches [2000, 2500[ ; 1500 dans [1250, 1600[
+        assertTrue(index.isReady());
+        assertArrayEquals(new long[]{2, 3, 5}, index.search("Electronics", true, null, null));
+        assertArrayEquals(new long[]{2, 5}, index.search("Electronics", null, new BigDecimal("20.00"), new BigDecimal("24.99")));
+        assertArrayEquals(new long[]{4}, index.search(null, null, new BigDecimal("800"), null));
+        assertArrayEquals(new long[0], index.search("Books", null, null, null));
+        assertArrayEquals(new long[0], index.search("Inconnue", null, null, null));
+        index.updateStock(5L, 0);
+        assertArrayEquals(new long[]{5}, index.search(null, false, null, null));
+    }
+
+    @Test
+    @DisplayName("Test écriture plus ancienne ignorée et ordinal réutilisé après suppression")
+    void testStaleWriteIgnoredAndOrdinalReused() {
+        // Arrange
+        ProductSearchIndex index = new ProductSearchIndex(true);
+        index.rebuild(source(new Object[][]{{1L, "A", 1, 100L, 2L}, {2L, "B", 1, 100L, 0L}}));
+
+        // Act
+        index.put(1L, "B", 1, 100L, 1L);
+        index.remove(2L);
+        index.put(3L, "B", 0, 100L, 0L);
+
+        // Assert
+        assertArrayEquals(new long[]{1}, index.search("A", null, null, null));
+        assertArrayEquals(new long[]{3}, index.search("B", null, null, null));
+        assertEquals(2, index.describe().get("products"));
+    }
+
+    @Test
+    @DisplayName("Test tranche de prix : bornes de la série R10")
+    void testPriceBuckets() {
+        assertEquals(ProductSearchIndex.bucketOf(1000), ProductSearchIndex.bucketOf(1249));
+        assertNotEquals(ProductSearchIndex.bucketOf(1249), ProductSearchIndex.bucketOf(1250));
+        assertEquals(0, ProductSearchIndex.bucketOf(0));
+    }
+
+    private static int[] toArray(TreeSet<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Source simulée à un shard : lignes (identifiant, catégorie, quantité, prix en centimes, version)
+     */
+    private static ProductSearchIndex.Source source(Object[][] rows) {
+        return new ProductSearchIndex.Source() {
+            @Override
+            public int shardCount() {
+                return 1;
+            }
+
+            @Override
+            public void scan(int shard, ProductSearchIndex.Row row) {
+                for (Object[] values : rows) {
+                    row.accept((Long) values[0], (String) values[1], (Integer) values[2], (Long) values[3], (Long) values[4]);
+                }
+            }
+        };
+    }
+}
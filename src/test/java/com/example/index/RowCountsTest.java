@@ -0,0 +1,63 @@
+package com.example.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour RowCounts
+ */
+class RowCountsTest {
+
+    @Test
+    @DisplayName("Test comptages : total, par catégorie, en stock, déplacements")
+    void testCountsByGroupAndStock() {
+        // Arrange
+        RowCounts counts = new RowCounts("test", true, 60, null);
+        counts.reconcile(row -> {
+            row.accept("Electronics", 3, 2);
+            row.accept(null, 1, 0);
+        });
+
+        // Act
+        counts.add("Books", true);
+        counts.add("Electronics", false);
+        counts.move("Electronics", true, "Electronics", false);
+        counts.move("Books", true, "Electronics", true);
+        counts.remove(null, false);
+
+        // Assert
+        assertTrue(counts.isReady());
+        assertEquals(5, counts.count(null, null));
+        assertEquals(2, counts.count(null, true));
+        assertEquals(3, counts.count(null, false));
+        assertEquals(5, counts.count("Electronics", null));
+        assertEquals(2, counts.count("Electronics", true));
+        assertEquals(0, counts.count("Books", null));
+        assertEquals(0, counts.count("Toys", true));
+    }
+
+    @Test
+    @DisplayName("Test réconciliation : shards additionnés, écritures concurrentes rejouées, écart mesuré")
+    void testReconcileReplaysConcurrentWrites() {
+        // Arrange : compteurs dérivés de la base (écriture d'une autre instance)
+        RowCounts counts = new RowCounts("test", true, 60, null);
+        counts.reconcile(row -> row.accept("Books", 2, 2));
+        counts.add("Books", true);
+
+        // Act : deux shards, un produit créé pendant la lecture
+        counts.reconcile(row -> {
+            row.accept("Books", 2, 1);
+            counts.add("Toys", true);
+            row.accept("Books", 5, 5);
+        });
+
+        // Assert
+        assertEquals(7, counts.count("Books", null));
+        assertEquals(6, counts.count("Books", true));
+        assertEquals(1, counts.count("Toys", true));
+        assertEquals(8, counts.count(null, null));
+        assertEquals(4L, counts.describe().get("lastDrift"));
+    }
+}
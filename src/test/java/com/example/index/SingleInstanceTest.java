@@ -0,0 +1,21 @@
+package com.example.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour SingleInstance
+ */
+class SingleInstanceTest {
+
+    @Test
+    @DisplayName("Test activation : index local refusé dès que plusieurs instances sont annoncées")
+    void testRefusedWithSeveralInstances() {
+        // Act & Assert
+        assertTrue(SingleInstance.enabled("product.price.index.enabled", true, 1));
+        assertFalse(SingleInstance.enabled("product.price.index.enabled", true, 3));
+        assertFalse(SingleInstance.enabled("product.price.index.enabled", false, 1));
+    }
+}
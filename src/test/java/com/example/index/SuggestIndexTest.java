@@ -0,0 +1,112 @@
+package com.example.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour SuggestIndex
+ */
+class SuggestIndexTest {
+
+    @Test
+    @DisplayName("Test suggestions : accents et casse ignorés, classement par fréquence puis longueur")
+    void testSuggestRanksByFrequencyThenLength() {
+        // Arrange
+        SuggestIndex index = new SuggestIndex("test", true, 3, null);
+        index.rebuild(source("Écran 24", "Écran 27 pouces", "écran 24", "Ecran", "Écouteurs", "Clavier", "Écran 24"));
+
+        // Act
+        List<String> ecran = index.suggest("ECR", 10);
+        List<String> limited = index.suggest("e", 2);
+
+        // Assert : "Écran 24" deux fois, puis les plus courts ; k = 3 valeurs au plus
+        assertEquals(List.of("Écran 24", "Ecran", "écran 24"), ecran);
+        assertEquals(List.of("Écran 24", "Ecran"), limited);
+        assertEquals(List.of("Écouteurs"), index.suggest("écou", 10));
+        assertEquals(List.of(), index.suggest("écrans", 10));
+        assertEquals(List.of(), index.suggest("z", 10));
+        assertEquals(6, index.describe().get("values"));
+    }
+
+    @Test
+    @DisplayName("Test ajouts, suppressions et renommages comparés à un parcours complet")
+    void testIncrementalUpdatesMatchBruteForce() {
+        // Arrange : préfixes communs pour provoquer découpages et fusions d'arêtes
+        String[] pool = {"a", "ab", "abc", "abd", "abde", "b", "ba", "bac", "bacd", "x", "xy", "xyz", "Ab", "ABC"};
+        SuggestIndex index = new SuggestIndex("test", true, 4, null);
+        index.rebuild(source());
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int step = 0; step < 2_000; step++) {
+            // Act
+            String value = pool[random.nextInt(pool.length)];
+            if (random.nextInt(3) == 0 && expected.containsKey(value)) {
+                index.remove(value);
+                expected.computeIfPresent(value, (key, count) -> count > 1 ? count - 1 : null);
+            } else if (random.nextInt(5) == 0 && expected.containsKey(value)) {
+                String renamed = pool[random.nextInt(pool.length)];
+                index.replace(value, renamed);
+                expected.computeIfPresent(value, (key, count) -> count > 1 ? count - 1 : null);
+                expected.merge(renamed, 1, Integer::sum);
+            } else {
+                index.add(value);
+                expected.merge(value, 1, Integer::sum);
+            }
+
+            // Assert
+            for (String prefix : new String[]{"a", "ab", "abd", "b", "bac", "x", "xyz", "abx"}) {
+                assertEquals(bruteForce(expected, prefix, 4), index.suggest(prefix, 10), "préfixe " + prefix + ", étape " + step);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test instances partagées utilisables avant construction")
+    void testSharedInstancesBeforeBuild() {
+        // Act
+        SuggestIndex.forUsernames().add("alice");
+
+        // Assert
+        assertFalse(SuggestIndex.forProductNames().isReady());
+        assertEquals(1, SuggestIndex.forProductNames().describe().get("nodes"));
+    }
+
+    private static List<String> bruteForce(Map<String, Integer> values, String prefix, int k) {
+        return values.entrySet().stream()
+                .filter(entry -> TextAnalyzer.fold(entry.getKey()).startsWith(TextAnalyzer.fold(prefix)))
+                .sorted(Comparator.<Map.Entry<String, Integer>>comparingInt(entry -> -entry.getValue())
+                        .thenComparingInt(entry -> entry.getKey().length())
+                        .thenComparing(Map.Entry::getKey))
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Source simulée à un shard
+     */
+    private static SuggestIndex.Source source(String... values) {
+        return new SuggestIndex.Source() {
+            @Override
+            public int shardCount() {
+                return 1;
+            }
+
+            @Override
+            public void scan(int shard, SuggestIndex.Row row) {
+                for (String value : values) {
+                    row.accept(value);
+                }
+            }
+        };
+    }
+}
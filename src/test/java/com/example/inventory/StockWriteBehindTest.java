@@ -0,0 +1,248 @@
+package com.example.inventory;
+
+import com.example.model.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour StockWriteBehind et StockJournal (base simulée à deux shards)
+ */
+class StockWriteBehindTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Test deltas cumulés par produit, visibles en lecture et écrits en un lot par shard")
+    void testCoalescesAndFlushesPerShard() {
+        // Arrange
+        FakeStore store = new FakeStore();
+        StockWriteBehind writeBehind = new StockWriteBehind(true, store, null, 60_000L, 1000);
+        writeBehind.start();
+
+        // Act
+        writeBehind.add(1L, 5);
+        writeBehind.add(1L, -2);
+        writeBehind.add(1L, 4);
+        writeBehind.add(2L, -1);
+        Product product = new Product("Stylo", BigDecimal.ONE, 10);
+        product.setId(1L);
+        writeBehind.merge(product);
+        writeBehind.flush();
+
+        // Assert
+        assertEquals(17, product.getQuantity());
+        assertEquals(2, store.calls.size(), "un lot par shard");
+        assertEquals(7L, store.quantities.get(1L));
+        assertEquals(-1L, store.quantities.get(2L));
+        assertEquals(0L, writeBehind.pendingDelta(1L));
+        writeBehind.stop();
+    }
+
+    @Test
+    @DisplayName("Test deltas d'un shard en échec conservés et retentés au flush suivant")
+    void testFailedShardIsRetried() {
+        // Arrange
+        FakeStore store = new FakeStore();
+        store.failuresOnShard1 = 1;
+        StockWriteBehind writeBehind = new StockWriteBehind(true, store, null, 60_000L, 1000);
+        writeBehind.start();
+        writeBehind.add(1L, 3);
+        writeBehind.add(2L, 4);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, writeBehind::flush);
+        assertEquals(0L, writeBehind.pendingDelta(2L), "le shard 0 a été écrit");
+        assertEquals(3L, writeBehind.pendingDelta(1L));
+        writeBehind.add(1L, 1);
+        writeBehind.flush();
+        assertEquals(4L, store.quantities.get(1L));
+        assertEquals(4L, store.quantities.get(2L));
+        writeBehind.stop();
+    }
+
+    @Test
+    @DisplayName("Test ajouts non bloqués pendant l'écriture en base d'un flush, journalisés pour le flush suivant")
+    void testAddDoesNotWaitForFlush() throws Exception {
+        // Arrange : écriture en base suspendue jusqu'au signal
+        FakeStore store = new FakeStore();
+        store.applying = new CountDownLatch(1);
+        store.release = new CountDownLatch(1);
+        StockWriteBehind writeBehind = new StockWriteBehind(true, store, new StockJournal(directory, false), 60_000L, 1000);
+        writeBehind.start();
+        writeBehind.add(1L, 5);
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(writeBehind::flush);
+        assertTrue(store.applying.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<Void> add = CompletableFuture.runAsync(() -> writeBehind.add(1L, 2));
+        add.get(5, TimeUnit.SECONDS);
+        long pendingDuringFlush = writeBehind.pendingDelta(1L);
+        store.release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+        writeBehind.flush();
+
+        // Assert
+        assertEquals(7L, pendingDuringFlush);
+        assertEquals(List.of(Map.of(1L, 5L), Map.of(1L, 2L)), store.calls);
+        assertEquals(7L, store.quantities.get(1L));
+        writeBehind.stop();
+    }
+
+    @Test
+    @DisplayName("Test vue stable : ni les ajouts ni les mises à jour d'une autre bande n'attendent la base")
+    void testStableViewDoesNotBlockOtherWriters() throws Exception {
+        // Arrange : flush du produit 1 suspendu en base, vue stable du produit 3 suspendue
+        FakeStore store = new FakeStore();
+        store.applying = new CountDownLatch(1);
+        store.release = new CountDownLatch(1);
+        StockWriteBehind writeBehind = new StockWriteBehind(true, store, null, 60_000L, 1000);
+        writeBehind.start();
+        writeBehind.add(1L, 5);
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(writeBehind::flush);
+        assertTrue(store.applying.await(5, TimeUnit.SECONDS));
+        CountDownLatch inView = new CountDownLatch(1);
+        CountDownLatch leaveView = new CountDownLatch(1);
+        CompletableFuture<Void> view = CompletableFuture.runAsync(() -> writeBehind.withStableView(3L, () -> {
+            inView.countDown();
+            try {
+                return leaveView.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertTrue(inView.await(5, TimeUnit.SECONDS));
+
+        // Act
+        String otherStripe = CompletableFuture.supplyAsync(() -> writeBehind.withStableView(2L, () -> "ok"))
+                .get(5, TimeUnit.SECONDS);
+        CompletableFuture.runAsync(() -> writeBehind.add(3L, 4)).get(5, TimeUnit.SECONDS);
+        leaveView.countDown();
+        store.release.countDown();
+        view.get(5, TimeUnit.SECONDS);
+        flush.get(5, TimeUnit.SECONDS);
+        writeBehind.flush();
+
+        // Assert
+        assertEquals("ok", otherStripe);
+        assertEquals(5L, store.quantities.get(1L));
+        assertEquals(4L, store.quantities.get(3L));
+        writeBehind.stop();
+    }
+
+    @Test
+    @DisplayName("Test journal rejoué après un arrêt brutal, sans double application d'un segment déjà écrit")
+    void testJournalReplayIsIdempotent() throws Exception {
+        // Arrange : deltas journalisés puis arrêt brutal (ni flush ni stop)
+        FakeStore store = new FakeStore();
+        StockWriteBehind crashed = new StockWriteBehind(true, store, new StockJournal(directory, true), 60_000L, 1000);
+        crashed.start();
+        crashed.add(1L, 5);
+        crashed.add(2L, 7);
+        crashed.add(1L, 1);
+        List<Path> journalFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            journalFiles = files.toList();
+        }
+        Path copy = directory.resolve("copy.bak");
+        Files.copy(journalFiles.get(0), copy);
+        Files.writeString(journalFiles.get(0), "tronqué", StandardOpenOption.APPEND);
+
+        // Act : redémarrage, puis segment déjà appliqué remis en place
+        StockWriteBehind restarted = new StockWriteBehind(true, store, new StockJournal(directory, false), 60_000L, 1000);
+        restarted.start();
+        restarted.stop();
+        Files.copy(copy, journalFiles.get(0));
+        StockWriteBehind again = new StockWriteBehind(true, store, new StockJournal(directory, false), 60_000L, 1000);
+        again.start();
+        again.stop();
+
+        // Assert
+        assertEquals(6L, store.quantities.get(1L));
+        assertEquals(7L, store.quantities.get(2L));
+        assertFalse(Files.exists(journalFiles.get(0)), "segment rejoué supprimé");
+    }
+
+    @Test
+    @DisplayName("Test identifiant du journal : créé une fois dans le répertoire, nom d'hôte repris pour des segments existants")
+    void testJournalIdentityIsStable() throws Exception {
+        // Arrange
+        Path fresh = directory.resolve("fresh");
+        Path legacy = directory.resolve("legacy");
+        Files.createDirectories(legacy);
+        Files.writeString(legacy.resolve("stock-42.journal"), "");
+
+        // Act
+        String first = new StockJournal(fresh, false).identity("conteneur-a");
+        String recreated = new StockJournal(fresh, false).identity("conteneur-b");
+        String upgraded = new StockJournal(legacy, false).identity("conteneur-a");
+
+        // Assert
+        assertTrue(first.startsWith("journal-"));
+        assertEquals(first, recreated);
+        assertEquals("conteneur-a", upgraded);
+        assertEquals("conteneur-a", new StockJournal(legacy, false).identity("conteneur-b"));
+    }
+
+    /**
+     * Base simulée : shard = id % 2, dernier segment appliqué par shard
+     */
+    private static class FakeStore implements StockWriteBehind.Store {
+        final Map<Long, Long> quantities = new HashMap<>();
+        final Map<Integer, Long> checkpoints = new HashMap<>();
+        final List<Map<Long, Long>> calls = new ArrayList<>();
+        int failuresOnShard1;
+        CountDownLatch applying;
+        CountDownLatch release;
+
+        @Override
+        public int shardOf(long id) {
+            return (int) (id % 2);
+        }
+
+        @Override
+        public void apply(int shard, Map<Long, Long> deltas, long segment) {
+            if (applying != null && applying.getCount() > 0) {
+                applying.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                applyNow(shard, deltas, segment);
+            }
+        }
+
+        private void applyNow(int shard, Map<Long, Long> deltas, long segment) {
+            if (shard == 1 && failuresOnShard1-- > 0) {
+                throw new IllegalStateException("Shard 1 injoignable");
+            }
+            if (segment > 0 && checkpoints.getOrDefault(shard, 0L) >= segment) {
+                return;
+            }
+            calls.add(Map.copyOf(deltas));
+            deltas.forEach((id, delta) -> quantities.merge(id, delta, Long::sum));
+            if (segment > 0) {
+                checkpoints.put(shard, segment);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.lifecycle;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour BackgroundStartup et ReadinessGateFilter
+ */
+class BackgroundStartupTest {
+
+    @Test
+    @DisplayName("Test nouvelles tentatives jusqu'au succès de l'initialisation")
+    void testRetriesUntilReady() {
+        // Arrange : la base n'est joignable qu'à la troisième tentative
+        ApplicationLifecycle lifecycle = new ApplicationLifecycle();
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger readyCallbacks = new AtomicInteger();
+        BackgroundStartup startup = new BackgroundStartup(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("Connexion refusée");
+            }
+        }, readyCallbacks::incrementAndGet, lifecycle, 1L, 4L, 0);
+
+        // Act
+        startup.run();
+
+        // Assert
+        assertEquals(3, attempts.get());
+        assertEquals(1, readyCallbacks.get());
+        assertTrue(lifecycle.isReady());
+        assertEquals(3, lifecycle.describe().get("initAttempts"));
+    }
+
+    @Test
+    @DisplayName("Test abandon après le nombre maximal de tentatives")
+    void testGivesUpAfterMaxAttempts() {
+        ApplicationLifecycle lifecycle = new ApplicationLifecycle();
+        BackgroundStartup startup = new BackgroundStartup(() -> {
+            throw new IllegalStateException("Connexion refusée");
+        }, () -> fail("ne doit pas être appelé"), lifecycle, 1L, 1L, 2);
+
+        startup.run();
+
+        assertEquals(ApplicationLifecycle.State.FAILED, lifecycle.getState());
+        assertEquals("Connexion refusée", lifecycle.describe().get("lastError"));
+    }
+
+    @Test
+    @DisplayName("Test filtre de disponibilité - 503 sur /api, santé accessible")
+    void testReadinessGate() {
+        // Arrange
+        ApplicationLifecycle lifecycle = new ApplicationLifecycle();
+        ReadinessGateFilter filter = new ReadinessGateFilter(lifecycle);
+        ContainerRequestContext dataRequest = request("api/products");
+        ContainerRequestContext healthRequest = request("actuator/health");
+
+        // Act
+        filter.filter(dataRequest);
+        filter.filter(healthRequest);
+
+        // Assert
+        ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(dataRequest).abortWith(captor.capture());
+        assertEquals(503, captor.getValue().getStatus());
+        assertNotNull(captor.getValue().getHeaderString("Retry-After"));
+        verify(healthRequest, never()).abortWith(any());
+
+        lifecycle.markReady();
+        ContainerRequestContext afterReady = request("api/products");
+        filter.filter(afterReady);
+        verify(afterReady, never()).abortWith(any());
+    }
+
+    private static ContainerRequestContext request(String path) {
+        ContainerRequestContext context = mock(ContainerRequestContext.class);
+        UriInfo uriInfo = mock(UriInfo.class);
+        lenient().when(context.getUriInfo()).thenReturn(uriInfo);
+        lenient().when(uriInfo.getPath()).thenReturn(path);
+        return context;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.lifecycle;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.UriInfo;
+import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour GracefulShutdown
+ */
+class GracefulShutdownTest {
+
+    @Test
+    @DisplayName("Test arrêt progressif - transactions attendues avant la fermeture de la base")
+    @SuppressWarnings("unchecked")
+    void testDrainsBeforeClosingDatabase() throws Exception {
+        // Arrange : une transaction se termine après quelques sondages
+        ApplicationLifecycle lifecycle = new ApplicationLifecycle();
+        lifecycle.markReady();
+        HttpServer server = mock(HttpServer.class);
+        GrizzlyFuture<HttpServer> stopped = mock(GrizzlyFuture.class);
+        when(server.shutdown(anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(stopped);
+        AtomicInteger polls = new AtomicInteger();
+        List<String> steps = new ArrayList<>();
+        lifecycle.onShutdown("flush", () -> steps.add("flush:" + lifecycle.getState()));
+        GracefulShutdown shutdown = new GracefulShutdown(server, lifecycle,
+                () -> polls.incrementAndGet() < 3 ? 1 : 0,
+                () -> steps.add("close:" + polls.get()), 0L, 5_000L);
+
+        // Act
+        shutdown.run();
+
+        // Assert
+        assertEquals(List.of("flush:DRAINING", "close:3"), steps);
+        assertEquals(ApplicationLifecycle.State.STOPPED, lifecycle.getState());
+        verify(server, never()).shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Test arrêt forcé quand les requêtes dépassent l'échéance")
+    @SuppressWarnings("unchecked")
+    void testForcesShutdownAfterDeadline() throws Exception {
+        ApplicationLifecycle lifecycle = new ApplicationLifecycle();
+        lifecycle.markReady();
+        HttpServer server = mock(HttpServer.class);
+        GrizzlyFuture<HttpServer> stopped = mock(GrizzlyFuture.class);
+        when(server.shutdown(anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(stopped);
+        when(stopped.get(anyLong(), any(TimeUnit.class))).thenThrow(new TimeoutException());
+        AtomicInteger closed = new AtomicInteger();
+
+        new GracefulShutdown(server, lifecycle, () -> 1, closed::incrementAndGet, 0L, 20L).run();
+
+        verify(server).shutdownNow();
+        assertEquals(1, closed.get());
+        assertEquals(ApplicationLifecycle.State.STOPPED, lifecycle.getState());
+    }
+
+    @Test
+    @DisplayName("Test drainage - /api reste servi avec Connection: close")
+    void testDrainingKeepsServingWithConnectionClose() {
+        // Arrange
+        ApplicationLifecycle lifecycle = new ApplicationLifecycle();
+        lifecycle.markReady();
+        lifecycle.startDraining();
+        ReadinessGateFilter filter = new ReadinessGateFilter(lifecycle);
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        UriInfo uriInfo = mock(UriInfo.class);
+        lenient().when(request.getUriInfo()).thenReturn(uriInfo);
+        lenient().when(uriInfo.getPath()).thenReturn("api/products");
+        ContainerResponseContext response = mock(ContainerResponseContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        when(response.getHeaders()).thenReturn(headers);
+
+        // Act
+        filter.filter(request);
+        filter.filter(request, response);
+
+        // Assert
+        verify(request, never()).abortWith(any());
+        assertFalse(lifecycle.isReady());
+        assertEquals("close", headers.getFirst("Connection"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour AsyncLogHandler
+ */
+class AsyncLogHandlerTest {
+
+    @AfterEach
+    void tearDown() {
+        LogContext.clear();
+    }
+
+    @Test
+    @DisplayName("Test file circulaire - ordre FIFO et capacité bornée")
+    void testRingBuffer() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertThrows(IllegalArgumentException.class, () -> new LogRingBuffer<>(3));
+    }
+
+    @Test
+    @DisplayName("Test écriture JSON avec l'identifiant de requête")
+    void testJsonOutput() {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogHandler handler = new AsyncLogHandler(16, AsyncLogHandler.OverflowPolicy.DROP, out);
+        LogContext.setRequestId("abc123");
+        LogRecord record = new LogRecord(Level.INFO, "Produit {0} \"créé\"");
+        record.setParameters(new Object[]{42});
+        record.setLoggerName("test");
+
+        // Act
+        handler.publish(record);
+        handler.close();
+
+        // Assert
+        String line = out.toString(StandardCharsets.UTF_8);
+        assertTrue(line.contains("\"level\":\"INFO\""));
+        assertTrue(line.contains("\"requestId\":\"abc123\""));
+        assertTrue(line.contains("\"message\":\"Produit 42 \\\"créé\\\"\""));
+        assertTrue(line.endsWith("}\n"));
+    }
+
+    @Test
+    @DisplayName("Test politique DROP - les enregistrements en excès sont comptés")
+    void testDropWhenFull() throws Exception {
+        // Arrange : une sortie bloquée retient le thread d'écriture
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocked = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                awaitQuietly(release);
+            }
+
+            @Override
+            public void flush() {
+                awaitQuietly(release);
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(4, AsyncLogHandler.OverflowPolicy.DROP, blocked);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+
+        // Assert
+        assertTrue(handler.getDroppedCount() > 0);
+        release.countDown();
+        handler.close();
+        assertEquals(100, handler.getDroppedCount() + handler.getWrittenCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.monitoring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour RequestTiming
+ */
+class RequestTimingTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestTiming.setEnabled(false);
+    }
+
+    @Test
+    @DisplayName("Test mesure désactivée - aucune section chronométrée")
+    void testDisabled() {
+        RequestTiming.setEnabled(false);
+
+        assertEquals(0L, RequestTiming.start());
+        assertNull(RequestTiming.current());
+    }
+
+    @Test
+    @DisplayName("Test découpage des phases et en-tête Server-Timing")
+    void testPhases() {
+        RequestTiming.setEnabled(true);
+        RequestTiming timing = RequestTiming.begin(System.nanoTime() - 2_000_000L);
+
+        timing.add(RequestTiming.Phase.ENTITY_MANAGER, 100_000L);
+        timing.add(RequestTiming.Phase.CONNECTION, 400_000L);
+        timing.add(RequestTiming.Phase.DB, 3_000_000L);
+        timing.add(RequestTiming.Phase.SQL, 1_000_000L);
+
+        assertSame(timing, RequestTiming.current());
+        assertTrue(timing.get(RequestTiming.Phase.QUEUE) >= 2_000_000L);
+        assertEquals(500_000L, timing.entityManagerNanos());
+        assertEquals(1_600_000L, timing.hydrationNanos());
+
+        String header = timing.toServerTimingHeader();
+        assertTrue(header.startsWith("queue;dur="));
+        assertTrue(header.contains("em;dur=0.5"));
+        assertTrue(header.contains("sql;dur=1.0"));
+        assertTrue(header.contains("hydrate;dur=1.6"));
+
+        timing.end();
+        assertNull(RequestTiming.current());
+    }
+
+    @Test
+    @DisplayName("Test histogramme de latences")
+    void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000_000L);
+        }
+        histogram.record(100_000_000L);
+
+        assertEquals(100, histogram.getCount());
+        assertTrue(histogram.percentileMillis(0.5) <= 2.048);
+        assertTrue(histogram.percentileMillis(1.0) >= 100.0);
+    }
+}
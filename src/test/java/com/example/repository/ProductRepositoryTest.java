@@ -1,6 +1,7 @@
 package com.example.repository;
 
 import com.example.model.Product;
+import com.example.sharding.ShardIds;
 import com.example.util.JPAUtil;
 import org.junit.jupiter.api.*;
 
@@ -21,6 +22,7 @@ class ProductRepositoryTest {
 @BeforeAll
 static void setUp() {
     // Initialize JPA (already exists)
+    ShardIds.useSingleNodeUnlessConfigured();
     JPAUtil.init("example-pu-test", "src/main/resources/vars/flyway_test.conf");
 
     // Force coverage for getEntityManagerFactory()
@@ -176,4 +178,18 @@ static void tearDown() {
         Optional<Product> product = productRepository.findById(99999L);
         assertFalse(product.isPresent());
     }
+    
+    @Test
+    @Order(11)
+    @DisplayName("Test d'identifiant fourni par le client remplacé à l'enregistrement")
+    void testSaveAssignsServerId() {
+        Product existing = productRepository.save(new Product("Clavier", new BigDecimal("49.90"), 3));
+        Product product = new Product("Souris", new BigDecimal("19.90"), 8);
+        product.setId(existing.getId());
+        
+        Product savedProduct = productRepository.save(product);
+        
+        assertNotEquals(existing.getId(), savedProduct.getId());
+        assertEquals("Clavier", productRepository.findById(existing.getId()).orElseThrow().getName());
+    }
 }
@@ -0,0 +1,58 @@
+package com.example.security;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour AdminTokenFilter
+ */
+@ExtendWith(MockitoExtension.class)
+class AdminTokenFilterTest {
+
+    @Mock
+    private ContainerRequestContext requestContext;
+
+    private int abortStatus() {
+        ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+        verify(requestContext).abortWith(captor.capture());
+        return captor.getValue().getStatus();
+    }
+
+    @Test
+    @DisplayName("Test jeton valide - Requête acceptée")
+    void testValidToken() {
+        when(requestContext.getHeaderString(HttpHeaders.AUTHORIZATION)).thenReturn("Bearer secret");
+
+        new AdminTokenFilter("secret").filter(requestContext);
+
+        verify(requestContext, never()).abortWith(any());
+    }
+
+    @Test
+    @DisplayName("Test jeton invalide ou absent - 401")
+    void testInvalidToken() {
+        when(requestContext.getHeaderString(HttpHeaders.AUTHORIZATION)).thenReturn("Bearer other");
+
+        new AdminTokenFilter("secret").filter(requestContext);
+
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), abortStatus());
+    }
+
+    @Test
+    @DisplayName("Test aucun jeton configuré - 403")
+    void testNotConfigured() {
+        new AdminTokenFilter(null).filter(requestContext);
+
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), abortStatus());
+    }
+}
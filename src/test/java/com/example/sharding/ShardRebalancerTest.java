@@ -0,0 +1,179 @@
+package com.example.sharding;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour ShardIds, ShardMap, la fusion des résultats et ShardRebalancer
+ * (trois bases H2 en mémoire comme shards)
+ */
+class ShardRebalancerTest {
+
+    private static final int SHARDS = 3;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            try (Connection connection = open(shard); Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test identifiants uniques, croissants et exacts en JSON, même au-delà de 32 par milliseconde")
+    void testIdsUniqueAndIncreasing() {
+        // Arrange : horloge figée, puis qui recule
+        AtomicLong clock = new AtomicLong(ShardIds.EPOCH_MILLIS + 1_000_000L);
+        ShardIds ids = new ShardIds(5, clock::get);
+
+        // Act
+        Set<Long> generated = new HashSet<>();
+        long previous = -1L;
+        for (int i = 0; i < 100; i++) {
+            if (i == 50) {
+                clock.addAndGet(-10_000L);
+            }
+            long id = ids.next();
+            assertTrue(id > previous, "identifiants croissants");
+            previous = id;
+            generated.add(id);
+        }
+
+        // Assert
+        assertEquals(100, generated.size());
+        assertTrue(previous < (1L << 53));
+        assertThrows(IllegalArgumentException.class, () -> new ShardIds(ShardIds.MAX_NODE + 1, clock::get));
+    }
+
+    @Test
+    @DisplayName("Test répartition équilibrée en déplaçant le moins de buckets possible")
+    void testRebalancedMovesFewBuckets() throws Exception {
+        // Arrange
+        ShardMap twoShards = new ShardMap(2);
+
+        // Act
+        ShardMap threeShards = twoShards.rebalanced(3);
+
+        // Assert : 85 ou 86 buckets par shard, seuls ceux du nouveau shard ont bougé
+        int moved = 0;
+        int[] counts = new int[3];
+        for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+            counts[threeShards.ownerOf(bucket)]++;
+            if (threeShards.ownerOf(bucket) != twoShards.ownerOf(bucket)) {
+                moved++;
+                assertEquals(2, threeShards.ownerOf(bucket));
+            }
+        }
+        assertArrayEquals(new int[]{86, 85, 85}, counts);
+        assertEquals(85, moved);
+        assertThrows(IllegalStateException.class, () -> ShardMap.load(writeMap(threeShards), 2),
+                "bucket attribué à un shard retiré de la configuration");
+    }
+
+    @Test
+    @DisplayName("Test fusion k-voies des résultats triés de chaque shard")
+    void testMergeSorted() {
+        List<List<Integer>> results = List.of(List.of(1, 4, 9), List.of(), List.of(2, 3, 10), List.of(5));
+
+        assertEquals(List.of(1, 2, 3, 4, 5, 9, 10), ShardRouter.mergeSorted(results, Integer::compare));
+        assertEquals(List.of(1, 4, 9, 2, 3, 10, 5), ShardRouter.concat(results));
+    }
+
+    @Test
+    @DisplayName("Test rééquilibrage d'un shard vers trois bases H2, puis relance sans effet")
+    void testRebalanceAcrossEmbeddedDatabases() throws Exception {
+        // Arrange : 300 produits sur le seul shard 0
+        for (int shard = 0; shard < SHARDS; shard++) {
+            try (Connection connection = open(shard); Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, name VARCHAR(100) NOT NULL, "
+                        + "description TEXT, price NUMERIC(10,2) NOT NULL, quantity INT NOT NULL, "
+                        + "category VARCHAR(50), created_at TIMESTAMP NOT NULL, updated_at TIMESTAMP, "
+                        + "version BIGINT NOT NULL DEFAULT 0)");
+            }
+        }
+        ShardIds ids = new ShardIds(1, System::currentTimeMillis);
+        List<Long> productIds = new ArrayList<>();
+        try (Connection connection = open(0); PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO products VALUES (?, ?, NULL, ?, ?, 'Test', CURRENT_TIMESTAMP, NULL, 0)")) {
+            for (int i = 0; i < 300; i++) {
+                long id = ids.next();
+                productIds.add(id);
+                insert.setLong(1, id);
+                insert.setString(2, "Produit " + i);
+                insert.setBigDecimal(3, new BigDecimal(i + ".50"));
+                insert.setInt(4, i % 7);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        Path mapFile = directory.resolve("shard-map.properties");
+        // Trois shards configurés, tous les buckets encore sur le shard 0
+        ShardMap current = new ShardMap(SHARDS, new int[ShardMap.BUCKETS]);
+        ShardRebalancer rebalancer = new ShardRebalancer(ShardRebalancerTest::open, 64);
+
+        // Act
+        ShardMap rebalanced = rebalancer.rebalance(current, SHARDS, mapFile);
+        ShardMap again = rebalancer.rebalance(ShardMap.load(mapFile, SHARDS), SHARDS, mapFile);
+
+        // Assert : chaque produit est présent une seule fois, sur le shard désigné par la répartition
+        List<Long> found = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            List<Long> shardIds = ids(shard);
+            assertFalse(shardIds.isEmpty(), "shard " + shard + " vide");
+            for (long id : shardIds) {
+                assertEquals(shard, rebalanced.shardOf(id));
+            }
+            found.addAll(shardIds);
+        }
+        assertEquals(new HashSet<>(productIds), new HashSet<>(found));
+        assertEquals(productIds.size(), found.size());
+        for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+            assertEquals(rebalanced.ownerOf(bucket), again.ownerOf(bucket));
+            assertEquals(rebalanced.ownerOf(bucket), ShardMap.load(mapFile, SHARDS).ownerOf(bucket));
+        }
+    }
+
+    private Path writeMap(ShardMap map) throws IOException {
+        Path file = directory.resolve("map.properties");
+        map.save(file);
+        return file;
+    }
+
+    private static List<Long> ids(int shard) throws SQLException {
+        List<Long> result = new ArrayList<>();
+        try (Connection connection = open(shard); Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id FROM products")) {
+            while (rows.next()) {
+                result.add(rows.getLong(1));
+            }
+        }
+        return result;
+    }
+
+    private static Connection open(int shard) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:shard" + shard + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.util;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour MigrationFingerprint
+ */
+class MigrationFingerprintTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Properties flywayProperties(Path migrations) {
+        Properties props = new Properties();
+        props.setProperty("flyway.url", "jdbc:h2:mem:test");
+        props.setProperty("flyway.user", "sa");
+        props.setProperty("flyway.locations", "filesystem:" + migrations);
+        return props;
+    }
+
+    @Test
+    @DisplayName("Test empreinte stable puis modifiée par un nouveau script")
+    void testFingerprintChangesWithScripts() throws Exception {
+        // Arrange
+        Path migrations = Files.createDirectories(tempDir.resolve("migration"));
+        Files.writeString(migrations.resolve("V1__init.sql"), "CREATE TABLE t (id INT);");
+        Properties props = flywayProperties(migrations);
+
+        // Act
+        String first = MigrationFingerprint.compute(props);
+        String same = MigrationFingerprint.compute(props);
+        Files.writeString(migrations.resolve("V2__more.sql"), "ALTER TABLE t ADD c INT;");
+        String changed = MigrationFingerprint.compute(props);
+
+        // Assert
+        assertEquals(first, same);
+        assertNotEquals(first, changed);
+    }
+
+    @Test
+    @DisplayName("Test empreinte différente pour une autre base")
+    void testFingerprintDependsOnDatabase() throws Exception {
+        Path migrations = Files.createDirectories(tempDir.resolve("migration"));
+        Files.writeString(migrations.resolve("V1__init.sql"), "CREATE TABLE t (id INT);");
+        Properties props = flywayProperties(migrations);
+        String first = MigrationFingerprint.compute(props);
+
+        props.setProperty("flyway.url", "jdbc:h2:mem:other");
+
+        assertNotEquals(first, MigrationFingerprint.compute(props));
+    }
+
+    @Test
+    @DisplayName("Test lecture et écriture du fichier d'empreinte, scripts du classpath")
+    void testReadWrite() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("flyway.locations", "classpath:db/migration");
+        String fingerprint = MigrationFingerprint.compute(props);
+        Path file = tempDir.resolve("cache/fingerprint");
+
+        assertNull(MigrationFingerprint.read(file));
+        MigrationFingerprint.write(file, fingerprint);
+
+        assertEquals(fingerprint, MigrationFingerprint.read(file));
+        props.setProperty("flyway.locations", "classpath:db/missing");
+        assertNotEquals(fingerprint, MigrationFingerprint.compute(props));
+    }
+
+    @Test
+    @DisplayName("Test dernière migration lue dans l'historique : absente sur une base vide, changée par une migration")
+    void testLastAppliedFollowsDatabase() throws Exception {
+        // Arrange
+        Path migrations = Files.createDirectories(tempDir.resolve("migration"));
+        Files.writeString(migrations.resolve("V1__init.sql"), "CREATE TABLE t (id INT);");
+        Properties props = flywayProperties(migrations);
+        props.setProperty("flyway.url", "jdbc:h2:mem:history;DB_CLOSE_DELAY=-1");
+        Flyway flyway = Flyway.configure().dataSource(props.getProperty("flyway.url"), "sa", "")
+                .locations(props.getProperty("flyway.locations")).load();
+
+        // Act
+        String empty = MigrationFingerprint.lastApplied(props);
+        flyway.migrate();
+        String first = MigrationFingerprint.lastApplied(props);
+        Files.writeString(migrations.resolve("V2__more.sql"), "ALTER TABLE t ADD c INT;");
+        flyway.migrate();
+        String second = MigrationFingerprint.lastApplied(props);
+
+        // Assert
+        assertNull(empty);
+        assertNotNull(first);
+        assertTrue(second.startsWith("2:2:"));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("Test fichier d'empreinte par défaut à côté de flyway.conf, aucun pour une configuration du classpath")
+    void testDefaultFingerprintFile() {
+        // Act
+        Path mounted = JPAUtil.fingerprintFile("/app/config/flyway.conf");
+        Path classpath = JPAUtil.fingerprintFile("classpath:vars/flyway_train.conf");
+
+        // Assert
+        assertEquals(Path.of("/app/config/flyway.fingerprint"), mounted);
+        assertNull(classpath);
+    }
+}
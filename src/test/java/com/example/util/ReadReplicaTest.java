@@ -0,0 +1,125 @@
+package com.example.util;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.core.Cookie;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour ReadReplica et ReadYourWritesFilter
+ */
+class ReadReplicaTest {
+
+    @AfterEach
+    void tearDown() {
+        ReadRouting.reset();
+    }
+
+    @Test
+    @DisplayName("Test réplique écartée si elle est en retard ou injoignable")
+    void testLagAndFailures() throws Exception {
+        // Arrange : la requête de retard retourne 5000 ms puis 100 ms
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(5000L, 100L);
+        ReadReplica replica = new ReadReplica(factory(connection), "SELECT lag", 1000L, 60_000L);
+
+        // Act & Assert
+        replica.check(1);
+        assertFalse(replica.isUsable());
+        assertEquals(5000L, replica.describe().get("lagMs"));
+
+        replica.check(1);
+        assertTrue(replica.isUsable());
+
+        replica.markFailed(new IllegalStateException("Connexion refusée"));
+        assertFalse(replica.isUsable());
+        assertEquals("Connexion refusée", replica.describe().get("error"));
+        replica.check(1);
+        assertFalse(replica.isUsable(), "écartée jusqu'à la fin du délai de nouvelle tentative");
+    }
+
+    @Test
+    @DisplayName("Test lecture exécutée sur un EntityManager de la réplique, fermé ensuite")
+    void testReadClosesEntityManager() {
+        EntityManagerFactory factory = mock(EntityManagerFactory.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        when(factory.createEntityManager()).thenReturn(entityManager);
+        ReadReplica replica = new ReadReplica(factory, null, 1000L, 60_000L);
+
+        assertEquals("ok", replica.read(em -> em == entityManager ? "ok" : "ko"));
+        verify(entityManager).close();
+    }
+
+    @Test
+    @DisplayName("Test lecture de ses écritures - cookie posé après une écriture, base primaire ensuite")
+    void testReadYourWrites() {
+        // Arrange
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(5000L);
+        ContainerRequestContext post = request("POST", Map.of());
+        ContainerResponseContext response = mock(ContainerResponseContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        when(response.getHeaders()).thenReturn(headers);
+        when(response.getStatus()).thenReturn(201);
+
+        // Act : écriture
+        filter.filter(post);
+        boolean primaryDuringWrite = ReadRouting.isPrimaryRequired();
+        filter.filter(post, response);
+
+        // Assert
+        assertTrue(primaryDuringWrite);
+        assertFalse(ReadRouting.isPrimaryRequired());
+        String cookie = headers.getFirst("Set-Cookie").toString();
+        assertTrue(cookie.startsWith(ReadYourWritesFilter.COOKIE_NAME + "="));
+
+        // Lecture avec un cookie encore valide, puis sans cookie
+        String until = Long.toString(System.currentTimeMillis() + 5000L);
+        filter.filter(request("GET", Map.of(ReadYourWritesFilter.COOKIE_NAME,
+                new Cookie.Builder(ReadYourWritesFilter.COOKIE_NAME).value(until).build())));
+        assertTrue(ReadRouting.isPrimaryRequired());
+        filter.filter(request("GET", Map.of()));
+        assertFalse(ReadRouting.isPrimaryRequired());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EntityManagerFactory factory(Connection connection) {
+        EntityManagerFactory factory = mock(EntityManagerFactory.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        Session session = mock(Session.class);
+        when(factory.createEntityManager()).thenReturn(entityManager);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.doReturningWork(any())).thenAnswer(invocation ->
+                ((ReturningWork<Object>) invocation.getArgument(0)).execute(connection));
+        return factory;
+    }
+
+    private static ContainerRequestContext request(String method, Map<String, Cookie> cookies) {
+        ContainerRequestContext context = mock(ContainerRequestContext.class);
+        when(context.getMethod()).thenReturn(method);
+        lenient().when(context.getCookies()).thenReturn(cookies);
+        return context;
+    }
+}